@@ -0,0 +1,66 @@
+package edu.demidov.netchess.benchmarks;
+
+import edu.demidov.netchess.common.model.exceptions.game.chess.InvalidBoardSizeException;
+import edu.demidov.netchess.common.model.exceptions.game.chess.InvalidFenException;
+import edu.demidov.netchess.common.model.game.chess.ChessColor;
+import edu.demidov.netchess.common.model.game.chess.ChessField;
+import edu.demidov.netchess.common.model.game.chess.Fen;
+import edu.demidov.netchess.utils.Point;
+
+/**
+ * Позиции, на которых меряются правила: дебют, миддлшпиль и эндшпиль.
+ * Для каждой задан допустимый ход стороны, чей ход.
+ */
+public enum BenchmarkPosition {
+
+    // Испанская партия после 3.Bb5, ход чёрных a7-a6
+    OPENING("r1bqkbnr/pppp1ppp/2n5/1B2p3/4P3/5N2/PPPP1PPP/RNBQK2R b KQkq - 3 3", "a7", "a6"),
+    // Kiwipete: много связок, рокировки с обеих сторон; ход белых Be2xa6
+    MIDDLEGAME("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", "e2", "a6"),
+    // Ладейный эндшпиль; ход белых Rb4xf4+
+    ENDGAME("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", "b4", "f4");
+
+    private static final int FIELD_SIZE = 8;
+
+    private final String fen;
+    private final Point fromPoint;
+    private final Point toPoint;
+
+    BenchmarkPosition(final String fen, final String from, final String to) {
+        this.fen = fen;
+        this.fromPoint = point(from);
+        this.toPoint = point(to);
+    }
+
+    public String getFen() {
+        return fen;
+    }
+
+    public ChessColor getSideToMove() {
+        return "b".equals(fen.split(" ")[1]) ? ChessColor.Black : ChessColor.White;
+    }
+
+    public Point getFromPoint() {
+        return fromPoint;
+    }
+
+    public Point getToPoint() {
+        return toPoint;
+    }
+
+    /**
+     * Создаёт новое поле с расстановкой из FEN.
+     * Права на рокировку записываются в поле.
+     */
+    public ChessField createField() throws InvalidBoardSizeException, InvalidFenException {
+        final ChessField field = new ChessField(FIELD_SIZE);
+        Fen.parse(fen, field);
+        return field;
+    }
+
+    // Клетка в шахматной нотации: "e2" -> (4, 6)
+    private static Point point(final String cell) {
+        return Point.of(cell.charAt(0) - 'a', FIELD_SIZE - (cell.charAt(1) - '0'));
+    }
+
+}
@@ -0,0 +1,32 @@
+package edu.demidov.netchess.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Запускает бенчмарки с профилировщиком GC: кроме ops/s выводится gc.alloc.rate.norm - байт на операцию.
+ * <p>
+ * java -jar target/benchmarks.jar [регулярное выражение для имён бенчмарков]
+ */
+public class BenchmarksRunner {
+
+    public static void main(final String[] args) throws RunnerException {
+        final OptionsBuilder builder = new OptionsBuilder();
+        if (args.length == 0) {
+            builder.include(BenchmarksRunner.class.getPackage().getName() + ".*");
+        } else {
+            for (final String include : args) {
+                builder.include(include);
+            }
+        }
+
+        final Options options = builder
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+}
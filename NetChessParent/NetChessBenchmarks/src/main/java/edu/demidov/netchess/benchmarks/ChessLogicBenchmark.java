@@ -0,0 +1,73 @@
+package edu.demidov.netchess.benchmarks;
+
+import edu.demidov.netchess.common.model.exceptions.game.chess.GameMoveException;
+import edu.demidov.netchess.common.model.game.chess.ChessColor;
+import edu.demidov.netchess.common.model.game.chess.ChessField;
+import edu.demidov.netchess.common.model.game.chess.ChessGame;
+import edu.demidov.netchess.common.model.game.chess.ChessPlayer;
+import edu.demidov.netchess.common.model.game.chess.Fen;
+import edu.demidov.netchess.game.api.ChessLogic;
+import edu.demidov.netchess.game.impl.ChessLogicImpl;
+import edu.demidov.netchess.game.rules.impl.ChessRulesImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полный ход игрока через ChessLogicImpl.playerMoveFigure: проверка хода, ход на поле,
+ * проверка мата/пата для соперника.
+ * Ход меняет партию, поэтому перед каждым вызовом партия собирается заново (вне замера).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChessLogicBenchmark {
+
+    private static final int FIELD_SIZE = 8;
+    private static final long TIME_LEFT = TimeUnit.HOURS.toMillis(1);
+
+    @Param
+    private BenchmarkPosition position;
+
+    private ChessLogic chessLogic;
+    private ChessGame game;
+    private ChessPlayer player;
+
+    @Setup(Level.Trial)
+    public void setupLogic() {
+        chessLogic = ChessLogicImpl.getInstance();
+        chessLogic.setChessRules(new ChessRulesImpl());
+    }
+
+    @Setup(Level.Invocation)
+    public void setupGame() throws Exception {
+        final ChessPlayer white = new ChessPlayer(ChessColor.White, TIME_LEFT, "white", 0, 0, 0, 0, 0);
+        final ChessPlayer black = new ChessPlayer(ChessColor.Black, TIME_LEFT, "black", 0, 0, 0, 0, 0);
+        game = new ChessGame(1, new ChessField(FIELD_SIZE), Arrays.asList(white, black));
+
+        Fen.parse(position.getFen(), game);
+        player = game.getCurrentPlayer();
+    }
+
+    @Benchmark
+    public ChessGame playerMoveFigure() throws GameMoveException {
+        chessLogic.playerMoveFigure(player, game, position.getFromPoint(), position.getToPoint());
+        return game;
+    }
+
+}
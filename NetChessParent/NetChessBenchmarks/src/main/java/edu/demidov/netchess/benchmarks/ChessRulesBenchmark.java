@@ -0,0 +1,68 @@
+package edu.demidov.netchess.benchmarks;
+
+import edu.demidov.netchess.common.model.exceptions.game.chess.GameMoveException;
+import edu.demidov.netchess.common.model.game.chess.ChessColor;
+import edu.demidov.netchess.common.model.game.chess.ChessField;
+import edu.demidov.netchess.game.exceptions.NoKingOnFieldException;
+import edu.demidov.netchess.game.rules.ChessRules;
+import edu.demidov.netchess.game.rules.impl.ChessRulesImpl;
+import edu.demidov.netchess.utils.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверки правил на одной позиции. Поле не меняется, поэтому создаётся один раз на прогон.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChessRulesBenchmark {
+
+    @Param
+    private BenchmarkPosition position;
+
+    private ChessRules rules;
+    private ChessField field;
+    private ChessColor color;
+    private Point fromPoint;
+    private Point toPoint;
+
+    @Setup
+    public void setup() throws Exception {
+        rules = new ChessRulesImpl();
+        field = position.createField();
+        color = position.getSideToMove();
+        fromPoint = position.getFromPoint();
+        toPoint = position.getToPoint();
+    }
+
+    @Benchmark
+    public boolean isMoveCorrect() throws GameMoveException, NoKingOnFieldException {
+        return rules.isMoveCorrect(color, field, fromPoint, toPoint);
+    }
+
+    @Benchmark
+    public boolean isCheckForPlayer() throws NoKingOnFieldException {
+        return rules.isCheckForPlayer(color, field);
+    }
+
+    @Benchmark
+    public boolean isNoMoreMoves() throws NoKingOnFieldException {
+        return rules.isNoMoreMoves(color, field);
+    }
+
+}
@@ -0,0 +1,67 @@
+package edu.demidov.netchess.benchmarks;
+
+import edu.demidov.netchess.common.model.exceptions.game.chess.InvalidFenException;
+import edu.demidov.netchess.common.model.game.chess.ChessColor;
+import edu.demidov.netchess.common.model.game.chess.ChessField;
+import edu.demidov.netchess.common.model.game.chess.Fen;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запись и разбор FEN. Буфер записи и поле для разбора переиспользуются между вызовами -
+ * так видно, сколько кодек выделяет сам, для сравнения - печать поля через
+ * toString (новая строка на каждый вызов).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FenBenchmark {
+
+    private static final int FIELD_SIZE = 8;
+
+    @Param
+    private BenchmarkPosition position;
+
+    private ChessField field;
+    private ChessColor color;
+    private ChessField target;
+    private final StringBuilder out = new StringBuilder(Fen.MAX_LENGTH);
+
+    @Setup
+    public void setup() throws Exception {
+        field = position.createField();
+        color = position.getSideToMove();
+        target = new ChessField(FIELD_SIZE);
+    }
+
+    @Benchmark
+    public StringBuilder write() {
+        out.setLength(0);
+        return Fen.append(out, field, color, 0);
+    }
+
+    @Benchmark
+    public ChessColor parse() throws InvalidFenException {
+        return Fen.parse(position.getFen(), target);
+    }
+
+    @Benchmark
+    public String fieldToString() {
+        return field.toString();
+    }
+
+}
@@ -0,0 +1,194 @@
+package edu.demidov.netchess.benchmarks;
+
+import edu.demidov.netchess.common.model.game.chess.ChessAction;
+import edu.demidov.netchess.common.model.game.chess.ChessColor;
+import edu.demidov.netchess.common.model.game.chess.ChessField;
+import edu.demidov.netchess.common.model.game.chess.ChessGame;
+import edu.demidov.netchess.common.model.game.chess.ChessPlayer;
+import edu.demidov.netchess.common.model.game.chess.Fen;
+import edu.demidov.netchess.common.model.game.chess.LegalMoves;
+import edu.demidov.netchess.common.model.network.NetworkMessage;
+import edu.demidov.netchess.common.model.network.netty.NetworkMessageDecoder;
+import edu.demidov.netchess.common.model.network.netty.NetworkMessageEncoder;
+import edu.demidov.netchess.common.model.network.payload.GameActionPayload;
+import edu.demidov.netchess.common.model.network.payload.GamePayload;
+import edu.demidov.netchess.common.model.network.payload.TextPayload;
+import edu.demidov.netchess.common.model.network.payload.UsersPayload;
+import edu.demidov.netchess.common.model.users.UserProfile;
+import edu.demidov.netchess.game.rules.bitboard.MoveGenerator;
+import edu.demidov.netchess.game.rules.bitboard.Moves;
+import edu.demidov.netchess.game.rules.impl.ChessRulesImpl;
+import edu.demidov.netchess.utils.Point;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.serialization.ClassResolvers;
+import io.netty.handler.codec.serialization.ObjectDecoder;
+import io.netty.handler.codec.serialization.ObjectEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кодирование и разбор сообщений: бинарный формат (NetworkMessageEncoder/Decoder) против сериализации Java
+ * (ObjectEncoder/ObjectDecoder Netty, как было в конвейерах сервера и клиента).
+ * Оба кодека работают в EmbeddedChannel с пулом буферов, как в NettyServer; размер кадра каждого кодека
+ * выводится при подготовке замера.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param
+    private Message message;
+
+    private NetworkMessage netMsg;
+    private EmbeddedChannel wire;
+    private EmbeddedChannel serialization;
+    private ByteBuf wireFrame;
+    private ByteBuf serializedFrame;
+
+    @Setup
+    public void setup() throws Exception {
+        netMsg = message.create();
+        wire = channel(new NetworkMessageDecoder(), new NetworkMessageEncoder());
+        serialization = channel(new ObjectDecoder(ClassResolvers.cacheDisabled(null)), new ObjectEncoder());
+
+        wireFrame = encode(wire);
+        serializedFrame = encode(serialization);
+        System.out.printf("%n%s: wire=%d bytes, serialization=%d bytes%n",
+                message, wireFrame.readableBytes(), serializedFrame.readableBytes());
+    }
+
+    @TearDown
+    public void tearDown() {
+        wireFrame.release();
+        serializedFrame.release();
+        wire.finish();
+        serialization.finish();
+    }
+
+    @Benchmark
+    public int wireEncode() {
+        return encodeAndRelease(wire);
+    }
+
+    @Benchmark
+    public Object wireDecode() {
+        return decode(wire, wireFrame);
+    }
+
+    @Benchmark
+    public int serializationEncode() {
+        return encodeAndRelease(serialization);
+    }
+
+    @Benchmark
+    public Object serializationDecode() {
+        return decode(serialization, serializedFrame);
+    }
+
+    private static EmbeddedChannel channel(final ChannelHandler decoder, final ChannelHandler encoder) {
+        final EmbeddedChannel channel = new EmbeddedChannel(decoder, encoder);
+        channel.config().setAllocator(PooledByteBufAllocator.DEFAULT);
+        return channel;
+    }
+
+    private ByteBuf encode(final EmbeddedChannel channel) {
+        channel.writeOutbound(netMsg);
+        return (ByteBuf) channel.readOutbound();
+    }
+
+    private int encodeAndRelease(final EmbeddedChannel channel) {
+        final ByteBuf frame = encode(channel);
+        final int bytes = frame.readableBytes();
+        frame.release();
+        return bytes;
+    }
+
+    private static Object decode(final EmbeddedChannel channel, final ByteBuf frame) {
+        channel.writeInbound(frame.duplicate().retain());
+        return channel.readInbound();
+    }
+
+    /**
+     * Сообщения: от частых и маленьких (ход, чат) до редких и больших (список игроков, партия)
+     */
+    public enum Message {
+
+        // Ход игрока
+        MOVE {
+            @Override
+            NetworkMessage create() {
+                final ChessAction action = new ChessAction(ChessAction.Type.Move,
+                        new Point[]{Point.of(4, 6), Point.of(4, 4)});
+                return new NetworkMessage(NetworkMessage.Type.DoAction, new GameActionPayload(action));
+            }
+        },
+        // Сообщение чата
+        CHAT {
+            @Override
+            NetworkMessage create() {
+                return new NetworkMessage(NetworkMessage.Type.ChatNewMessage,
+                        new TextPayload("user: Предлагаю сыграть ещё одну партию"));
+            }
+        },
+        // Игроки on-line
+        USERS {
+            @Override
+            NetworkMessage create() {
+                final Set<UserProfile> users = new HashSet<>();
+                for (int i = 0; i < USERS_ONLINE; i++) {
+                    users.add(new UserProfile("user" + i, 1000 + i, i, i, i, i * 60, i % 3 == 0, i % 2 == 0));
+                }
+                return new NetworkMessage(NetworkMessage.Type.SendOnlineUsers, new UsersPayload(users));
+            }
+        },
+        // Партия в миддлшпиле с допустимыми ходами
+        GAME {
+            @Override
+            NetworkMessage create() throws Exception {
+                final ChessPlayer white = new ChessPlayer(ChessColor.White, TIME_LEFT, "white", 1000, 0, 0, 0, 0);
+                final ChessPlayer black = new ChessPlayer(ChessColor.Black, TIME_LEFT, "black", 1000, 0, 0, 0, 0);
+                final ChessGame game = new ChessGame(1, new ChessField(FIELD_SIZE), Arrays.asList(white, black));
+                Fen.parse(BenchmarkPosition.MIDDLEGAME.getFen(), game);
+
+                final int[] moves = new int[MoveGenerator.MAX_MOVES];
+                final int count = new ChessRulesImpl().getLegalMoves(
+                        game.getCurrentPlayer().getColor(), game.getField(), moves);
+                final LegalMoves legalMoves = new LegalMoves();
+                for (int i = 0; i < count; i++) {
+                    legalMoves.add(Moves.from(moves[i]), Moves.to(moves[i]));
+                }
+                return new NetworkMessage(NetworkMessage.Type.SendCurrentGame, new GamePayload(game, legalMoves));
+            }
+        };
+
+        private static final int USERS_ONLINE = 20;
+        private static final int FIELD_SIZE = 8;
+        private static final long TIME_LEFT = TimeUnit.MINUTES.toMillis(30);
+
+        abstract NetworkMessage create() throws Exception;
+
+    }
+
+}
@@ -5,13 +5,19 @@ import edu.demidov.netchess.common.model.exceptions.IllegalRequestParameter;
 import edu.demidov.netchess.common.model.game.chess.ChessGame;
 import edu.demidov.netchess.common.model.network.MessageQueue;
 import edu.demidov.netchess.common.model.network.NetworkMessage;
+import edu.demidov.netchess.common.model.network.payload.GamePayload;
+import edu.demidov.netchess.common.model.network.payload.MultiplePayload;
+import edu.demidov.netchess.common.model.network.payload.TextPayload;
+import edu.demidov.netchess.common.model.network.payload.UserPayload;
+import edu.demidov.netchess.common.model.network.payload.UsersPayload;
 import edu.demidov.netchess.common.model.users.UserProfile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Marker;
 import org.slf4j.MarkerFactory;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -25,6 +31,7 @@ public class ServerMessageController implements Runnable {
     private final static Logger log = LoggerFactory.getLogger(ServerMessageController.class);
     private final static Marker fatal = MarkerFactory.getMarker("FATAL");
     private final MessageQueue<NetworkMessage> messageQueue = MessageQueue.getInstance();
+    private final List<NetworkMessage> taken = new ArrayList<>();
     private final MainWindowController mainAppCntrl;
     private volatile boolean isActive = true;
 
@@ -64,11 +71,12 @@ public class ServerMessageController implements Runnable {
         log.debug("start");
         while (isActive) {
             // Обработчик пришедших с сервера сообщений
-            while (messageQueue.hasMessages()) {
-                final NetworkMessage takeMessage = messageQueue.takeMessage();
+            messageQueue.drainTo(taken, Integer.MAX_VALUE);
+            for (final NetworkMessage takeMessage : taken) {
                 log.debug("from messageQueue taken: {}", takeMessage);
                 process(takeMessage);
             }
+            taken.clear();
             log.trace("messageQueue is empty");
 
             // Усыпляем поток
@@ -123,7 +131,7 @@ public class ServerMessageController implements Runnable {
     private void processChatMsg(final NetworkMessage netMsg) {
         log.debug("processChatMsg netMsg={}", netMsg);
         try {
-            final String newChatMsg = netMsg.getParam(NetworkMessage.TEXT, String.class);
+            final String newChatMsg = netMsg.getPayload(TextPayload.class).getText();
             mainAppCntrl.addToChat(newChatMsg);
         } catch (final IllegalRequestParameter ex) {
             log.error(fatal, "exception, netMsg={}", netMsg, ex);
@@ -134,7 +142,7 @@ public class ServerMessageController implements Runnable {
     private void processServerError(final NetworkMessage netMsg) {
         log.debug("processServerError netMsg={}", netMsg);
         try {
-            final String err = netMsg.getParam(NetworkMessage.TEXT, String.class);
+            final String err = netMsg.getPayload(TextPayload.class).getText();
             mainAppCntrl.addToChat(SERVER_CHAT + err);
         } catch (final IllegalRequestParameter ex) {
             log.error(fatal, "exception, netMsg={}", netMsg, ex);
@@ -146,7 +154,7 @@ public class ServerMessageController implements Runnable {
         log.debug("processLoginUserSuccess netMsg={}", netMsg);
         try {
             // Получаем объект UserProfile
-            final UserProfile userProfile = netMsg.getParam(NetworkMessage.USER, UserProfile.class);
+            final UserProfile userProfile = netMsg.getPayload(UserPayload.class).getUser();
 
             // Посылаем событие на контроллер клиента
             mainAppCntrl.loginInfoUpdated(userProfile);
@@ -159,8 +167,7 @@ public class ServerMessageController implements Runnable {
     private void processSendOnlineUsers(final NetworkMessage netMsg) {
         log.debug("processSendOnlineUsers netMsg={}", netMsg);
         try {
-            final Set<UserProfile> onlineUserProfiles
-                    = netMsg.getParam(NetworkMessage.USERS, HashSet.class);
+            final Set<UserProfile> onlineUserProfiles = netMsg.getPayload(UsersPayload.class).getUsers();
             mainAppCntrl.onlineUserProfilesChanged(onlineUserProfiles);
         } catch (final IllegalRequestParameter ex) {
             log.error(fatal, "exception, netMsg={}", netMsg, ex);
@@ -171,8 +178,7 @@ public class ServerMessageController implements Runnable {
     private void processSendIncomingInvites(final NetworkMessage netMsg) {
         log.debug("processSendIncomingInvites netMsg={}", netMsg);
         try {
-            final Set<UserProfile> userProfilesInvites
-                    = netMsg.getParam(NetworkMessage.INVITES, HashSet.class);
+            final Set<UserProfile> userProfilesInvites = netMsg.getPayload(UsersPayload.class).getUsers();
             mainAppCntrl.incomingInvitersChanged(userProfilesInvites);
         } catch (final IllegalRequestParameter ex) {
             log.error(fatal, "exception, netMsg={}", netMsg, ex);
@@ -183,7 +189,10 @@ public class ServerMessageController implements Runnable {
     private void processSendCurrentGame(final NetworkMessage netMsg) {
         log.debug("processSendCurrentGame netMsg={}", netMsg);
         try {
-            final ChessGame game = netMsg.getParam(NetworkMessage.CURRENT_GAME, ChessGame.class, true);
+            final GamePayload payload = netMsg.getPayload(GamePayload.class);
+            final ChessGame game = payload.getGame();
+            // Допустимые ходы приходят отдельно и только тогда, когда сейчас наш ход
+            if (game != null) game.setLegalMoves(payload.getLegalMoves());
             mainAppCntrl.currentGameUpdated(game);
         } catch (final IllegalRequestParameter ex) {
             log.error(fatal, "exception, netMsg={}", netMsg, ex);
@@ -194,7 +203,7 @@ public class ServerMessageController implements Runnable {
     private void processGameError(final NetworkMessage netMsg) {
         log.debug("processGameError netMsg={}", netMsg);
         try {
-            final String text = netMsg.getParam(NetworkMessage.TEXT, String.class);
+            final String text = netMsg.getPayload(TextPayload.class).getText();
             mainAppCntrl.gameError(text);
         } catch (final IllegalRequestParameter ex) {
             log.error(fatal, "exception, netMsg={}", netMsg, ex);
@@ -205,7 +214,7 @@ public class ServerMessageController implements Runnable {
     private void processMultipleMessage(final NetworkMessage netMsg) {
         log.debug("processMultipleMessage netMsg={}", netMsg);
         try {
-            final Set<NetworkMessage> messages = netMsg.getParam(NetworkMessage.MULTI_MESSAGES, HashSet.class);
+            final Set<NetworkMessage> messages = netMsg.getPayload(MultiplePayload.class).getMessages();
 
             // Распаковываем сообщение - для каждого вложенного вызываем обработчик
             for (final NetworkMessage subMsg : messages) process(subMsg);
@@ -11,7 +11,12 @@ import edu.demidov.netchess.common.model.game.chess.ChessField;
 import edu.demidov.netchess.common.model.game.chess.ChessFigure;
 import edu.demidov.netchess.common.model.game.chess.ChessGame;
 import edu.demidov.netchess.common.model.game.chess.ChessPlayer;
+import edu.demidov.netchess.common.model.game.chess.LegalMoves;
 import edu.demidov.netchess.common.model.network.NetworkMessage;
+import edu.demidov.netchess.common.model.network.payload.CredentialsPayload;
+import edu.demidov.netchess.common.model.network.payload.GameActionPayload;
+import edu.demidov.netchess.common.model.network.payload.InvitePayload;
+import edu.demidov.netchess.common.model.network.payload.TextPayload;
 import edu.demidov.netchess.common.model.users.UserProfile;
 import edu.demidov.netchess.utils.EncryptAlgorithm;
 import edu.demidov.netchess.utils.Point;
@@ -64,9 +69,7 @@ import java.io.IOException;
 import java.net.ConnectException;
 import java.net.URL;
 import java.security.NoSuchAlgorithmException;
-import java.util.Calendar;
 import java.util.Collection;
-import java.util.Date;
 import java.util.Optional;
 import java.util.ResourceBundle;
 
@@ -93,6 +96,7 @@ public class MainWindowController implements Initializable {
     private static final String DRAW = "Ничья";
     private static final String GAME_ALERT_TITLE = "Игровая информация";
     private static final String ACTION_CONFIRM = "Подтверждение действия", GAME_MOVE_ERR = "Ошибка хода";
+    private static final String ILLEGAL_MOVE = "Неверный ход";
     private static final String SURRENDER_CONFIRMATION = "Вы действительно хотите сдаться?";
     private static final String DRAW_CONFIRMATION = "Предложить ничью?";
     private static final String ACCEPT_DRAW_CONFIRMATION = "Согласиться на ничью?";
@@ -489,8 +493,7 @@ public class MainWindowController implements Initializable {
         // Отправляем сообщение на сервер
         if (userProfile != null) {
             final NetworkMessage networkMessage;
-            networkMessage = new NetworkMessage(NetworkMessage.Type.ChatSend);
-            networkMessage.put(NetworkMessage.CHAT_TEXT, inputMsg);
+            networkMessage = new NetworkMessage(NetworkMessage.Type.ChatSend, new TextPayload(inputMsg));
             sendToServer(networkMessage);
         } else {
             addToChat(YOU_ARE_NOT_LOGIN);
@@ -537,10 +540,9 @@ public class MainWindowController implements Initializable {
                 // Создаём сообщение логина/создания нового аккаунта
                 final NetworkMessage netMsg = new NetworkMessage(
                         loginDialogCntrl.isCreateNewAccount() ?
-                                NetworkMessage.Type.CreateUser : NetworkMessage.Type.LoginUser);
+                                NetworkMessage.Type.CreateUser : NetworkMessage.Type.LoginUser,
+                        new CredentialsPayload(userName, passwordHash));
 
-                netMsg.put(NetworkMessage.NAME, userName);
-                netMsg.put(NetworkMessage.PASSWORD_HASH, passwordHash);
                 sendToServer(netMsg);
             }
         } catch (final NoSuchAlgorithmException ex) {
@@ -554,13 +556,9 @@ public class MainWindowController implements Initializable {
         if (userProfile == null) return;
 
         // Отсылаем сообщение на сервер о приглашении/отмене приглашения
-        final NetworkMessage netMsg = new NetworkMessage(NetworkMessage.Type.InviteToPlay);
-        netMsg.put(NetworkMessage.INVITE_NAME, selectedUserProfile.getName());
-        netMsg.put(
-                NetworkMessage.INVITE_TYPE,
-                selectedUserProfile.isInvited() ?
-                        NetworkMessage.INVITE_TYPE_YES : NetworkMessage.INVITE_TYPE_NO
-        );
+        final NetworkMessage netMsg = new NetworkMessage(
+                NetworkMessage.Type.InviteToPlay,
+                new InvitePayload(selectedUserProfile.getName(), selectedUserProfile.isInvited()));
 
         sendToServer(netMsg);
     }
@@ -584,13 +582,9 @@ public class MainWindowController implements Initializable {
         if (selectedUserProfile == null) return;
 
         // Отсылаем сообщение на сервер о принятии/отказе приглашения
-        final NetworkMessage netMsg = new NetworkMessage(NetworkMessage.Type.InviteToPlayResponse);
-        netMsg.put(NetworkMessage.INVITE_NAME, selectedUserProfile.getName());
-        netMsg.put(
-                NetworkMessage.INVITE_TYPE,
-                btnAcceptInvite.equals(clickedButton) ?
-                        NetworkMessage.INVITE_TYPE_YES : NetworkMessage.INVITE_TYPE_NO
-        );
+        final NetworkMessage netMsg = new NetworkMessage(
+                NetworkMessage.Type.InviteToPlayResponse,
+                new InvitePayload(selectedUserProfile.getName(), btnAcceptInvite.equals(clickedButton)));
         sendToServer(netMsg);
 
         // Удаляем пригласившего из списка
@@ -720,8 +714,8 @@ public class MainWindowController implements Initializable {
 
                         // Формируем сообщение на сервер...
                         final ChessAction chessAction = new ChessAction(ChessAction.Type.ChooseFigureInsteadPawn, figureType);
-                        final NetworkMessage netMsg = new NetworkMessage(NetworkMessage.Type.DoAction);
-                        netMsg.put(NetworkMessage.GAME_ACTION, chessAction);
+                        final NetworkMessage netMsg
+                                = new NetworkMessage(NetworkMessage.Type.DoAction, new GameActionPayload(chessAction));
                         sendToServer(netMsg);
                         break;
                     }
@@ -751,6 +745,14 @@ public class MainWindowController implements Initializable {
                     return;
                 }
 
+                // Если сервер прислал допустимые ходы - проверяем ход сразу, без запроса на сервер
+                final LegalMoves legalMoves = game.getLegalMoves();
+                if (legalMoves != null && !legalMoves.contains(gameCurrentCell, clickedCell)) {
+                    setGameCurrentCell(null);
+                    gameError(ILLEGAL_MOVE);
+                    return;
+                }
+
                 // Формируем объект хода
                 final Point[] movePoints = new Point[2];
                 movePoints[0] = gameCurrentCell;
@@ -758,8 +760,8 @@ public class MainWindowController implements Initializable {
                 final ChessAction chessAction = new ChessAction(ChessAction.Type.Move, movePoints);
 
                 // Формируем сообщение на сервер...
-                final NetworkMessage netMsg = new NetworkMessage(NetworkMessage.Type.DoAction);
-                netMsg.put(NetworkMessage.GAME_ACTION, chessAction);
+                final NetworkMessage netMsg
+                        = new NetworkMessage(NetworkMessage.Type.DoAction, new GameActionPayload(chessAction));
                 sendToServer(netMsg);
 
                 setGameCurrentCell(null);
@@ -870,18 +872,11 @@ public class MainWindowController implements Initializable {
         gameGC.setFill(Color.BLACK);
         gameGC.setFont(GAME_TIME_FONT);
 
-        // Подсчитываем время текущего хода
-        final Date currentMoveStarted = game.getCurrentMoveStarted();
-        if (currentMoveStarted == null) return;
-        Long currentMoveTime = null;
-        if (!game.isFinished())
-            currentMoveTime = Calendar.getInstance().getTime().getTime() - currentMoveStarted.getTime();
-        if (game.isFinished() && game.getFinishedGameDate() != null)
-            currentMoveTime = game.getFinishedGameDate().getTime() - currentMoveStarted.getTime();
-        if (currentMoveTime == null) return;
+        // Оставшееся время текущего игрока (после окончания партии часы стоят)
+        if (game.getClock() == null) return;
+        final long playerLeftTime = game.getTimeLeftMillis(currentPlayer);
 
         // Переводим в удобочитаемый формат
-        final long playerLeftTime = currentPlayer.getTimeLeft() - currentMoveTime;
         long seconds = 0;
         long minutes = 0;
         if (playerLeftTime > 0) {
@@ -1108,7 +1103,7 @@ public class MainWindowController implements Initializable {
         if (y == CHESSBOARD_Y + CHESSBOARD_H) y--;
 
         // Надо определить клетку по координатам
-        return new Point(
+        return Point.of(
                 (x - CHESSBOARD_X) / CELL_SIZE,
                 (y - CHESSBOARD_Y) / CELL_SIZE
         );
@@ -1178,10 +1173,9 @@ public class MainWindowController implements Initializable {
 
         // Формируем сообщение на сервер
         final NetworkMessage netMsg;
-        netMsg = new NetworkMessage(NetworkMessage.Type.DoAction);
-        netMsg.put(
-                NetworkMessage.GAME_ACTION,
-                new ChessAction(ChessAction.Type.Surrender));
+        netMsg = new NetworkMessage(
+                NetworkMessage.Type.DoAction,
+                new GameActionPayload(new ChessAction(ChessAction.Type.Surrender)));
         sendToServer(netMsg);
     }
 
@@ -1215,10 +1209,9 @@ public class MainWindowController implements Initializable {
 
         // Формируем сообщение на сервер
         final NetworkMessage netMsg;
-        netMsg = new NetworkMessage(NetworkMessage.Type.DoAction);
-        netMsg.put(
-                NetworkMessage.GAME_ACTION,
-                new ChessAction(ChessAction.Type.OfferedDraw));
+        netMsg = new NetworkMessage(
+                NetworkMessage.Type.DoAction,
+                new GameActionPayload(new ChessAction(ChessAction.Type.OfferedDraw)));
         sendToServer(netMsg);
 
         player.setOfferedDraw(true);
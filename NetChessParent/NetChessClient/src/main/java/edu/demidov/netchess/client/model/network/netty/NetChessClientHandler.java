@@ -2,26 +2,31 @@ package edu.demidov.netchess.client.model.network.netty;
 
 import edu.demidov.netchess.common.model.network.MessageQueue;
 import edu.demidov.netchess.common.model.network.NetworkMessage;
+import edu.demidov.netchess.common.model.network.netty.MessageQueueInboundHandler;
+import edu.demidov.netchess.common.model.network.payload.TextPayload;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.util.ReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class NetChessClientHandler extends ChannelInboundHandlerAdapter {
+/**
+ * Кладёт сообщения сервера в очередь сообщений клиента, не останавливая поток ввода-вывода Netty
+ * (см. MessageQueueInboundHandler): пока очередь заполнена, канал не читает сокет.
+ */
+public class NetChessClientHandler extends MessageQueueInboundHandler<NetworkMessage> {
 
     private final static Logger log = LoggerFactory.getLogger(NetChessClientHandler.class);
-    private final MessageQueue<NetworkMessage> messageQueue = MessageQueue.getInstance();
+
+    public NetChessClientHandler() {
+        super(MessageQueue.<NetworkMessage>getInstance());
+    }
 
     @Override
     public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
         log.trace("channelRead channel={}, msg={}", ctx.channel(), msg);
         try {
             // Помещаем сообщение в очередь сообщений
-            final NetworkMessage netMsg = (NetworkMessage) msg;
-            messageQueue.putMessage(netMsg);
-        } catch (final InterruptedException ex) {
-            log.error("channelRead channel={}, msg={}", ctx.channel(), msg, ex);
+            enqueue(ctx, (NetworkMessage) msg);
         } finally {
             ReferenceCountUtil.release(msg);
         }
@@ -30,16 +35,18 @@ public class NetChessClientHandler extends ChannelInboundHandlerAdapter {
     @Override
     public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) {
         log.warn("exceptionCaught channel={}, cause={}", ctx.channel(), cause);
-        try {
-            ctx.close();        // Close the connection when an exception is raised.
-
-            // Помещаем сообщение в очередь обработки
-            final NetworkMessage netMsg = new NetworkMessage(NetworkMessage.Type.ConnectionClosed);
-            netMsg.put(NetworkMessage.TEXT, cause.getLocalizedMessage());
-            messageQueue.putMessage(netMsg);
-        } catch (final InterruptedException ex) {
-            log.error("exceptionCaught channel={}, cause={}", ctx.channel(), cause, ex);
-        }
+        ctx.close();        // Close the connection when an exception is raised.
+
+        // Помещаем сообщение в очередь обработки за уже пришедшими сообщениями
+        final NetworkMessage netMsg = new NetworkMessage(
+                NetworkMessage.Type.ConnectionClosed, new TextPayload(String.valueOf(cause.getLocalizedMessage())));
+        enqueueReliably(ctx, netMsg);
+    }
+
+    @Override
+    protected void onRejected(final ChannelHandlerContext ctx, final NetworkMessage netMsg) {
+        // Очередь клиента (FullPolicy.BLOCK) сообщений не отклоняет
+        log.warn("onRejected: messageQueue is full, message rejected; channel={}, msg={}", ctx.channel(), netMsg);
     }
 
 }
@@ -2,7 +2,10 @@ package edu.demidov.netchess.client.model.network.netty;
 
 import edu.demidov.netchess.client.model.Options;
 import edu.demidov.netchess.common.model.network.NetworkMessage;
+import edu.demidov.netchess.common.model.network.netty.NetworkMessageDecoder;
+import edu.demidov.netchess.common.model.network.netty.NetworkMessageEncoder;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
@@ -10,9 +13,6 @@ import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.handler.codec.serialization.ClassResolvers;
-import io.netty.handler.codec.serialization.ObjectDecoder;
-import io.netty.handler.codec.serialization.ObjectEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,12 +47,13 @@ public class NettyClient {
             b.group(workerGroup);
             b.channel(NioSocketChannel.class);
             b.option(ChannelOption.SO_KEEPALIVE, true);
+            b.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
             b.handler(new ChannelInitializer<SocketChannel>() {
                 @Override
                 public void initChannel(final SocketChannel ch) throws Exception {
                     ch.pipeline().addLast(
-                            new ObjectDecoder(ClassResolvers.cacheDisabled(null)),
-                            new ObjectEncoder(),
+                            new NetworkMessageDecoder(),
+                            new NetworkMessageEncoder(),
                             new NetChessClientHandler()
                     );
                 }
@@ -0,0 +1,13 @@
+package edu.demidov.netchess.common.model.exceptions.game.chess;
+
+import edu.demidov.netchess.common.model.exceptions.AbstractNetworkChessException;
+
+public class InvalidFenException extends AbstractNetworkChessException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InvalidFenException(final String message) {
+        super(message);
+    }
+
+}
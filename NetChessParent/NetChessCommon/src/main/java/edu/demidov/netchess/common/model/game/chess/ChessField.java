@@ -7,6 +7,10 @@ import edu.demidov.netchess.utils.Point;
 import java.io.Serializable;
 import java.util.Arrays;
 
+/**
+ * Поле партии: фигуры (общие экземпляры ChessFigure) и права на рокировку.
+ * Права хранятся здесь, а не в фигурах: правила проверяют ход по полю, и поле - это вся позиция, кроме очереди хода.
+ */
 public class ChessField implements Serializable {
 
     private static final int MIN_COORDINATE = 0;
@@ -14,22 +18,27 @@ public class ChessField implements Serializable {
 
     private ChessFigure[][] field;
     private int fieldSize;
+    private int castlingRights;     // Права на рокировку (маска Zobrist.*_SIDE)
 
     public ChessField() {
     }
 
+    /**
+     * Создаёт пустое поле. Права на рокировку - все: пока король и ладья стоят на своих местах, рокировка возможна.
+     */
     public ChessField(final int fieldSize) throws InvalidBoardSizeException {
         if (fieldSize < MIN_SIZE) {
             throw new InvalidBoardSizeException();
         } else {
             this.fieldSize = fieldSize;
             field = new ChessFigure[fieldSize][fieldSize];
+            castlingRights = Zobrist.ALL_CASTLING;
         }
     }
 
     /**
      * Делает копирование
-     * Создаёт новый объект поля (field); а ссылки на фигуры будут общими.
+     * Создаёт новый объект поля (field) с теми же правами на рокировку; а ссылки на фигуры будут общими.
      *
      * @param other
      * @throws InvalidBoardSizeException
@@ -44,6 +53,7 @@ public class ChessField implements Serializable {
                     this.field[i], MIN_COORDINATE,
                     other.getField()[i].length - MIN_COORDINATE);
         }
+        castlingRights = other.castlingRights;
     }
 
     public ChessFigure[][] getField() {
@@ -62,6 +72,14 @@ public class ChessField implements Serializable {
         this.fieldSize = fieldSize;
     }
 
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public void setCastlingRights(final int castlingRights) {
+        this.castlingRights = castlingRights;
+    }
+
     public ChessFigure getFigure(final Point point) throws InvalidPointException {
         if (!checkPoint(point)) {
             throw new InvalidPointException();
@@ -71,7 +89,11 @@ public class ChessField implements Serializable {
     }
 
     public ChessFigure getFigure(final int x, final int y) throws InvalidPointException {
-        return getFigure(new Point(x, y));
+        if (!checkCoordinate(x, field.length) || !checkCoordinate(y, field[x].length)) {
+            throw new InvalidPointException();
+        }
+
+        return field[x][y];
     }
 
     public void setFigure(final Point point, final ChessFigure figure)
@@ -80,11 +102,21 @@ public class ChessField implements Serializable {
         field[point.getX()][point.getY()] = figure;
     }
 
+    /**
+     * Расстановка фигур в записи FEN - коротко и без вложенных массивов
+     */
+    @Override
+    public String toString() {
+        if (field == null) return "ChessField{}";
+        return Fen.appendPlacement(new StringBuilder(Fen.MAX_LENGTH), this).toString();
+    }
+
     @Override
     public int hashCode() {
         int hash = 3;
         hash = 37 * hash + Arrays.deepHashCode(this.field);
         hash = 37 * hash + this.fieldSize;
+        hash = 37 * hash + this.castlingRights;
         return hash;
     }
 
@@ -103,6 +135,9 @@ public class ChessField implements Serializable {
         if (this.fieldSize != other.fieldSize) {
             return false;
         }
+        if (this.castlingRights != other.castlingRights) {
+            return false;
+        }
         if (!Arrays.deepEquals(this.field, other.field)) {
             return false;
         }
@@ -3,47 +3,47 @@ package edu.demidov.netchess.common.model.game.chess;
 import java.io.Serializable;
 import java.util.Objects;
 
-public class ChessFigure implements Serializable {
-
-    private ChessColor color;
-    private Type type;
-    private int movesCount;
-
-    public ChessFigure() {
+/**
+ * Неизменяемая фигура. Всего 12 экземпляров (цвет x тип) - получаются через ChessFigure.of(),
+ * поэтому поле хранит только ссылки на них. При десериализации фигура заменяется на общий экземпляр.
+ * Ходила ли фигура, здесь не хранится: права на рокировку - в ChessField.
+ */
+public final class ChessFigure implements Serializable {
+
+    private static final Type[] TYPES = Type.values();
+    private static final ChessFigure[] FIGURES = new ChessFigure[ChessColor.values().length * TYPES.length];
+
+    static {
+        for (final ChessColor color : ChessColor.values()) {
+            for (final Type type : TYPES) {
+                FIGURES[index(color, type)] = new ChessFigure(color, type);
+            }
+        }
     }
 
-    public ChessFigure(final ChessColor color, final Type type) {
+    private final ChessColor color;
+    private final Type type;
+
+    private ChessFigure(final ChessColor color, final Type type) {
         this.color = color;
         this.type = type;
     }
 
-    public ChessColor getColor() {
-        return color;
+    public static ChessFigure of(final ChessColor color, final Type type) {
+        return FIGURES[index(color, type)];
     }
 
-    public void setColor(final ChessColor color) {
-        this.color = color;
+    public ChessColor getColor() {
+        return color;
     }
 
     public Type getType() {
         return type;
     }
 
-    public void setType(final Type type) {
-        this.type = type;
-    }
-
-    public int getMovesCount() {
-        return movesCount;
-    }
-
-    public void setMovesCount(final int movesCount) {
-        this.movesCount = movesCount;
-    }
-
     @Override
     public String toString() {
-        return "ChessFigure{" + "color=" + color + ", type=" + type + ", movesCount=" + movesCount + '}';
+        return "ChessFigure{" + "color=" + color + ", type=" + type + '}';
     }
 
     @Override
@@ -51,7 +51,6 @@ public class ChessFigure implements Serializable {
         int hash = 7;
         hash = 17 * hash + Objects.hashCode(this.color);
         hash = 17 * hash + Objects.hashCode(this.type);
-        hash = 17 * hash + this.movesCount;
         return hash;
     }
 
@@ -67,9 +66,6 @@ public class ChessFigure implements Serializable {
             return false;
         }
         final ChessFigure other = (ChessFigure) obj;
-        if (this.movesCount != other.movesCount) {
-            return false;
-        }
         if (this.color != other.color) {
             return false;
         }
@@ -79,6 +75,14 @@ public class ChessFigure implements Serializable {
         return true;
     }
 
+    private static int index(final ChessColor color, final Type type) {
+        return color.ordinal() * TYPES.length + type.ordinal();
+    }
+
+    private Object readResolve() {
+        return of(color, type);
+    }
+
     public enum Type {
         Pawn,       // пешка
         Bishop,     // слон
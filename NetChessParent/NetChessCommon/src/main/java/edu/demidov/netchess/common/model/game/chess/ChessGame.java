@@ -1,6 +1,7 @@
 package edu.demidov.netchess.common.model.game.chess;
 
 import edu.demidov.netchess.common.model.exceptions.game.chess.GameMoveException;
+import edu.demidov.netchess.common.model.exceptions.game.chess.InvalidBoardSizeException;
 import edu.demidov.netchess.common.model.exceptions.game.chess.InvalidPointException;
 import edu.demidov.netchess.common.model.exceptions.game.chess.NoNextPlayerFoundException;
 import edu.demidov.netchess.utils.Point;
@@ -10,6 +11,7 @@ import org.slf4j.Marker;
 import org.slf4j.MarkerFactory;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
@@ -26,31 +28,83 @@ public class ChessGame implements Serializable {
     private List<ChessPlayer> players;
     private ChessField field;
     private ChessPlayer currentPlayer;
-    private Date currentMoveStarted;
+    private GameClock clock;                // Часы партии
     private boolean isCurrentPlayerChoosingFigure;  // Если текущий игрок должен выбрать фигуру (когда пешка дошла до конца доски)
     private Point[] lastMovePoints;
+    private MoveHistory moveHistory = new MoveHistory();    // Все ходы партии
     private boolean isFinished;
     private ChessPlayer result;             // Победитель, null - если ничья
     private String resultReasonDescription; // Описание результата игры (для пользователя)
     private Date finishedGameDate;          // Время окончания партии
+    private long zobristKey;                // Хэш позиции: фигуры, права на рокировку и очередь хода
+    private String forcedOutcome;           // Исход позиции при лучшей игре по таблицам эндшпиля (для пользователя)
+    private transient LegalMoves legalMoves; // Допустимые ходы текущего игрока; null - ещё не посчитаны
+    private long version;                   // Версия партии: растёт с каждым опубликованным снимком
+    private transient volatile ChessGameSnapshot snapshot;  // Последний опубликованный снимок
 
     public ChessGame() {
     }
 
+    /**
+     * Партия без добавки времени за ход
+     */
     public ChessGame(final int id, final ChessField field, final List<ChessPlayer> players)
             throws NoNextPlayerFoundException, InvalidPointException {
-        log.debug("ChessGame id={}, field={}, players={}", id, field, players);
+        this(id, field, players, TimeControl.suddenDeath(players.get(0).getTimeLeft()));
+    }
+
+    /**
+     * Партия с контролем времени timeControl: добавка Фишера либо задержка Бронштейна.
+     * Начальный запас времени каждого игрока берётся из ChessPlayer.getTimeLeft().
+     */
+    public ChessGame(final int id, final ChessField field, final List<ChessPlayer> players,
+                     final TimeControl timeControl)
+            throws NoNextPlayerFoundException, InvalidPointException {
+        log.debug("ChessGame id={}, field={}, players={}, timeControl={}", id, field, players, timeControl);
         assert id != 0;
         assert field != null;
         assert players != null;
+        assert timeControl != null;
 
         this.id = id;
         this.field = field;
         this.players = players;
+        this.clock = new GameClock(timeControl, players.size());
+        for (int i = 0; i < players.size(); i++) {
+            clock.setRemainingMillis(i, players.get(i).getTimeLeft());
+        }
 
         initNewGame();
     }
 
+    /**
+     * Глубокая копия партии: поле, игроки и даты копируются.
+     * Набор допустимых ходов тоже копируется. Клетки и фигуры не меняются после создания - они общие с оригиналом.
+     *
+     * @param other
+     */
+    public ChessGame(final ChessGame other) {
+        this.id = other.id;
+        this.field = copyOf(other.field);
+        this.players = new ArrayList<>(other.players.size());
+        for (final ChessPlayer player : other.players) {
+            players.add(player == null ? null : new ChessPlayer(player));
+        }
+        this.currentPlayer = copiedPlayer(other, other.currentPlayer);
+        this.result = copiedPlayer(other, other.result);
+        this.clock = other.clock == null ? null : new GameClock(other.clock);
+        this.finishedGameDate = copyOf(other.finishedGameDate);
+        this.isCurrentPlayerChoosingFigure = other.isCurrentPlayerChoosingFigure;
+        this.lastMovePoints = other.lastMovePoints == null ? null : other.lastMovePoints.clone();
+        this.moveHistory = new MoveHistory(other.moveHistory);
+        this.isFinished = other.isFinished;
+        this.resultReasonDescription = other.resultReasonDescription;
+        this.zobristKey = other.zobristKey;
+        this.forcedOutcome = other.forcedOutcome;
+        this.legalMoves = other.legalMoves == null ? null : new LegalMoves(other.legalMoves);
+        this.version = other.version;
+    }
+
     public int getId() {
         return id;
     }
@@ -96,16 +150,51 @@ public class ChessGame implements Serializable {
         return currentPlayer;
     }
 
+    /**
+     * Устанавливает игрока, чей ход. Часы не трогает - см. startClock().
+     */
     public void setCurrentPlayer(final ChessPlayer currentPlayer) {
         this.currentPlayer = currentPlayer;
     }
 
-    public Date getCurrentMoveStarted() {
-        return currentMoveStarted;
+    /**
+     * Запускает часы игрока, чей ход, с текущего момента без добавки предыдущему
+     * (например, после того как партию поставили в новую позицию)
+     */
+    public void startClock() {
+        clock.start(players.indexOf(currentPlayer), System.nanoTime());
+    }
+
+    /**
+     * Часы партии. Время игроков в ChessPlayer.getTimeLeft() обновляется только после хода;
+     * остаток на текущий момент - getTimeLeftMillis().
+     */
+    public GameClock getClock() {
+        return clock;
     }
 
-    public void setCurrentMoveStarted(final Date currentMoveStarted) {
-        this.currentMoveStarted = currentMoveStarted;
+    /**
+     * Устанавливает часы партии (при восстановлении партии, например, из сети).
+     * Должен вызываться после setPlayers().
+     */
+    public void setClock(final GameClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Остаток времени игрока на текущий момент, миллисекунды; отрицательный, если время вышло
+     */
+    public long getTimeLeftMillis(final ChessPlayer player) {
+        return clock.getRemainingMillis(players.indexOf(player), System.nanoTime());
+    }
+
+    /**
+     * Вышло ли время у игрока, чей сейчас ход
+     *
+     * @param now System.nanoTime()
+     */
+    public boolean isTimeUp(final long now) {
+        return clock != null && clock.isFlagged(now);
     }
 
     public Point[] getLastMovePoints() {
@@ -116,6 +205,13 @@ public class ChessGame implements Serializable {
         this.lastMovePoints = lastMovePoints;
     }
 
+    /**
+     * Ходы партии с начала (либо с позиции, заданной через Fen.parse())
+     */
+    public MoveHistory getMoveHistory() {
+        return moveHistory;
+    }
+
     public String getResultReasonDescription() {
         return resultReasonDescription;
     }
@@ -140,6 +236,89 @@ public class ChessGame implements Serializable {
         this.finishedGameDate = finishedGameDate;
     }
 
+    /**
+     * Права на рокировку (маска Zobrist.*_SIDE) - хранятся в поле партии
+     */
+    public int getCastlingRights() {
+        return field.getCastlingRights();
+    }
+
+    public void setCastlingRights(final int castlingRights) {
+        field.setCastlingRights(castlingRights);
+    }
+
+    /**
+     * Возвращает 64-битный хэш текущей позиции (Zobrist).
+     * Обновляется при каждом ходе, рокировке и превращении пешки без пересчёта всей доски.
+     */
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    public void setZobristKey(final long zobristKey) {
+        this.zobristKey = zobristKey;
+    }
+
+    /**
+     * Возвращает описание исхода позиции при лучшей игре обеих сторон, если он известен
+     * по таблицам эндшпиля, иначе null
+     */
+    public String getForcedOutcome() {
+        return forcedOutcome;
+    }
+
+    public void setForcedOutcome(final String forcedOutcome) {
+        this.forcedOutcome = forcedOutcome;
+    }
+
+    /**
+     * Возвращает допустимые ходы текущего игрока, посчитанные после последнего хода,
+     * либо null, если они ещё не посчитаны. Любой ход или превращение пешки сбрасывают набор.
+     * Не сериализуется вместе с партией: клиенту набор отправляется отдельно, только игроку, чей ход.
+     */
+    public LegalMoves getLegalMoves() {
+        return legalMoves;
+    }
+
+    public void setLegalMoves(final LegalMoves legalMoves) {
+        this.legalMoves = legalMoves;
+    }
+
+    /**
+     * Версия партии - номер последнего опубликованного снимка (0 - снимков ещё не было)
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Устанавливает версию партии (при восстановлении партии, например, из сети)
+     */
+    public void setVersion(final long version) {
+        this.version = version;
+    }
+
+    /**
+     * Публикует снимок партии со следующей версией.
+     * Вызывается тем же потоком, что меняет партию, после каждого принятого действия.
+     *
+     * @return опубликованный снимок
+     */
+    public ChessGameSnapshot publishSnapshot() {
+        version++;
+        final ChessGameSnapshot published = new ChessGameSnapshot(new ChessGame(this));
+        snapshot = published;
+        return published;
+    }
+
+    /**
+     * Возвращает последний опубликованный снимок, либо null, если снимков ещё не было.
+     * Можно вызывать из любого потока.
+     */
+    public ChessGameSnapshot getSnapshot() {
+        return snapshot;
+    }
+
     /**
      * Возвращает игрока, следующего за указанным.
      * В случае отсутствия следующего игрока - выбрасывает исключение
@@ -186,12 +365,14 @@ public class ChessGame implements Serializable {
 
         // Передвигаем фигуру
         moveFigure(figure, fromPoint, toPoint, field);
+        legalMoves = null;
 
         // Устанавливаем предыдущий ход
         final Point[] points = new Point[2];
         points[0] = fromPoint;
         points[1] = toPoint;
         setLastMovePoints(points);
+        moveHistory.add(fromPoint.getX(), fromPoint.getY(), toPoint.getX(), toPoint.getY());
 
         // Если пешка дошла до конца доски (может стать любой фигурой)
         if (figure.getType() == ChessFigure.Type.Pawn) {
@@ -224,11 +405,14 @@ public class ChessGame implements Serializable {
         final ChessFigure pawn = field.getFigure(queenedPoint);
 
         // Заменяем найденную пешку на выбранную фигуру
-        final ChessFigure newFigure = new ChessFigure(pawn.getColor(), chosenFigureType);
-        newFigure.setMovesCount(pawn.getMovesCount());
+        final ChessFigure newFigure = ChessFigure.of(pawn.getColor(), chosenFigureType);
         field.setFigure(queenedPoint, newFigure);
+        legalMoves = null;
+        zobristKey ^= Zobrist.piece(pawn, queenedPoint.getX(), queenedPoint.getY())
+                ^ Zobrist.piece(newFigure, queenedPoint.getX(), queenedPoint.getY());
 
         isCurrentPlayerChoosingFigure = false;
+        moveHistory.setLastPromotion(chosenFigureType);
 
         // Передаём ход следующему игроку
         giveMoveToNextPlayer();
@@ -244,6 +428,14 @@ public class ChessGame implements Serializable {
     public void end(final ChessPlayer winner, final String resultDescription) throws NoNextPlayerFoundException {
         log.debug("end winner={}, resultDescription={}", winner, resultDescription);
 
+        // Останавливаем часы
+        if (clock != null && clock.isRunning()) {
+            final long now = System.nanoTime();
+            final int running = clock.getRunning();
+            clock.stop(now);
+            players.get(running).setTimeLeft(clock.getRemainingMillis(running, now));
+        }
+
         setFinished(true);
         setResult(winner);
         setResultReasonDescription(resultDescription);
@@ -254,7 +446,25 @@ public class ChessGame implements Serializable {
 
     @Override
     public String toString() {
-        return "ChessGame{" + "id=" + id + ", players=" + players + ", field=" + field + ", currentPlayer=" + currentPlayer + ", currentMoveStarted=" + currentMoveStarted + ", lastMovePoints=" + Arrays.toString(lastMovePoints) + ", isFinished=" + isFinished + ", result=" + result + ", resultReasonDescription=" + resultReasonDescription + '}';
+        return "ChessGame{" + "id=" + id + ", version=" + version + ", players=" + players + ", field=" + field + ", currentPlayer=" + currentPlayer + ", clock=" + clock + ", lastMovePoints=" + Arrays.toString(lastMovePoints) + ", moveHistory=" + moveHistory + ", isFinished=" + isFinished + ", result=" + result + ", resultReasonDescription=" + resultReasonDescription + '}';
+    }
+
+    // Игрок копии, соответствующий игроку оригинала other
+    private ChessPlayer copiedPlayer(final ChessGame other, final ChessPlayer player) {
+        return player == null ? null : players.get(other.players.indexOf(player));
+    }
+
+    // Размер исходного поля уже проверен, поэтому исключения при копировании быть не может
+    private static ChessField copyOf(final ChessField field) {
+        try {
+            return new ChessField(field);
+        } catch (final InvalidBoardSizeException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static Date copyOf(final Date date) {
+        return date == null ? null : new Date(date.getTime());
     }
 
     // Ищет пешку, дошедшую до конца поля оппонента. Если не находит - выбрасывает исключение.
@@ -265,7 +475,7 @@ public class ChessGame implements Serializable {
             final int opponentHorizontal = color == ChessColor.White ? 0 : 7;
 
             for (int i = 0; i < field.getFieldSize(); i++) {
-                final Point point = new Point(i, opponentHorizontal);
+                final Point point = Point.of(i, opponentHorizontal);
                 final ChessFigure pawn = field.getFigure(point);
 
                 if (pawn == null || pawn.getColor() != color ||
@@ -290,41 +500,44 @@ public class ChessGame implements Serializable {
 
         // Расставляем фигуры
         initChessFigures();
+
+        field.setCastlingRights(Zobrist.ALL_CASTLING);
+        zobristKey = Zobrist.hash(field, currentPlayer.getColor(), Zobrist.ALL_CASTLING);
     }
 
     // Расставляет фигуры в начальное положение
     private void initChessFigures() throws InvalidPointException {
         // Пешки
         for (int i = 0; i < field.getFieldSize(); i++) {
-            field.setFigure(new Point(i, 1), new ChessFigure(ChessColor.Black, ChessFigure.Type.Pawn));
-            field.setFigure(new Point(i, 6), new ChessFigure(ChessColor.White, ChessFigure.Type.Pawn));
+            field.setFigure(Point.of(i, 1), ChessFigure.of(ChessColor.Black, ChessFigure.Type.Pawn));
+            field.setFigure(Point.of(i, 6), ChessFigure.of(ChessColor.White, ChessFigure.Type.Pawn));
         }
 
         // Ладьи
         for (int i = 0; i < field.getFieldSize(); i += 7) {
-            field.setFigure(new Point(i, 0), new ChessFigure(ChessColor.Black, ChessFigure.Type.Castle));
-            field.setFigure(new Point(i, 7), new ChessFigure(ChessColor.White, ChessFigure.Type.Castle));
+            field.setFigure(Point.of(i, 0), ChessFigure.of(ChessColor.Black, ChessFigure.Type.Castle));
+            field.setFigure(Point.of(i, 7), ChessFigure.of(ChessColor.White, ChessFigure.Type.Castle));
         }
 
         // Кони
         for (int i = 1; i < field.getFieldSize(); i += 5) {
-            field.setFigure(new Point(i, 0), new ChessFigure(ChessColor.Black, ChessFigure.Type.Knight));
-            field.setFigure(new Point(i, 7), new ChessFigure(ChessColor.White, ChessFigure.Type.Knight));
+            field.setFigure(Point.of(i, 0), ChessFigure.of(ChessColor.Black, ChessFigure.Type.Knight));
+            field.setFigure(Point.of(i, 7), ChessFigure.of(ChessColor.White, ChessFigure.Type.Knight));
         }
 
         // Слоны
         for (int i = 2; i < field.getFieldSize(); i += 3) {
-            field.setFigure(new Point(i, 0), new ChessFigure(ChessColor.Black, ChessFigure.Type.Bishop));
-            field.setFigure(new Point(i, 7), new ChessFigure(ChessColor.White, ChessFigure.Type.Bishop));
+            field.setFigure(Point.of(i, 0), ChessFigure.of(ChessColor.Black, ChessFigure.Type.Bishop));
+            field.setFigure(Point.of(i, 7), ChessFigure.of(ChessColor.White, ChessFigure.Type.Bishop));
         }
 
         // Ферзи
-        field.setFigure(new Point(3, 0), new ChessFigure(ChessColor.Black, ChessFigure.Type.Queen));
-        field.setFigure(new Point(3, 7), new ChessFigure(ChessColor.White, ChessFigure.Type.Queen));
+        field.setFigure(Point.of(3, 0), ChessFigure.of(ChessColor.Black, ChessFigure.Type.Queen));
+        field.setFigure(Point.of(3, 7), ChessFigure.of(ChessColor.White, ChessFigure.Type.Queen));
 
         // Короли
-        field.setFigure(new Point(4, 0), new ChessFigure(ChessColor.Black, ChessFigure.Type.King));
-        field.setFigure(new Point(4, 7), new ChessFigure(ChessColor.White, ChessFigure.Type.King));
+        field.setFigure(Point.of(4, 0), ChessFigure.of(ChessColor.Black, ChessFigure.Type.King));
+        field.setFigure(Point.of(4, 7), ChessFigure.of(ChessColor.White, ChessFigure.Type.King));
     }
 
     // Передвигает фигуру на поле
@@ -337,46 +550,72 @@ public class ChessGame implements Serializable {
             // Ищем ладью
             final int offsetX = (toPoint.getX() < fromPoint.getX()) ? -1 : 1;
             final int castleX = (offsetX == -1) ? 0 : 7;
-            final Point castleStartPoint = new Point(castleX, fromPoint.getY());
+            final Point castleStartPoint = Point.of(castleX, fromPoint.getY());
             final ChessFigure castle = field.getFigure(castleStartPoint);
 
+            final Point castleEndPoint = Point.of(fromPoint.getX() + offsetX, fromPoint.getY());
+
             // Передвигаем короля
             field.setFigure(fromPoint, null);
             field.setFigure(toPoint, figure);
 
             // Передвигаем ладью
             field.setFigure(castleStartPoint, null);
-            field.setFigure(new Point(fromPoint.getX() + offsetX, fromPoint.getY()), castle);
+            field.setFigure(castleEndPoint, castle);
 
-            // Плюсуем счётчик перемещений
-            figure.setMovesCount(figure.getMovesCount() + 1);
-            castle.setMovesCount(castle.getMovesCount() + 1);
+            zobristKey ^= Zobrist.piece(figure, fromPoint.getX(), fromPoint.getY())
+                    ^ Zobrist.piece(figure, toPoint.getX(), toPoint.getY())
+                    ^ Zobrist.piece(castle, castleStartPoint.getX(), castleStartPoint.getY())
+                    ^ Zobrist.piece(castle, castleEndPoint.getX(), castleEndPoint.getY());
+            updateCastlingRights(fromPoint, toPoint);
 
             return;
         }
 
-        // Передвигаем фигуру
+        // Передвигаем фигуру (и убираем из хэша взятую фигуру, если она есть)
+        final ChessFigure captured = field.getFigure(toPoint);
+        if (captured != null) zobristKey ^= Zobrist.piece(captured, toPoint.getX(), toPoint.getY());
         field.setFigure(fromPoint, null);
         field.setFigure(toPoint, figure);
+        zobristKey ^= Zobrist.piece(figure, fromPoint.getX(), fromPoint.getY())
+                ^ Zobrist.piece(figure, toPoint.getX(), toPoint.getY());
+        updateCastlingRights(fromPoint, toPoint);
+    }
 
-        // Плюсуем счётчик перемещений
-        figure.setMovesCount(figure.getMovesCount() + 1);
+    // Снимает права на рокировку, если ход сделан с клетки короля или ладьи либо на неё
+    private void updateCastlingRights(final Point fromPoint, final Point toPoint) {
+        final int castlingRights = field.getCastlingRights();
+        final int newRights = castlingRights
+                & Zobrist.castlingKeep(fromPoint.getX(), fromPoint.getY())
+                & Zobrist.castlingKeep(toPoint.getX(), toPoint.getY());
+        zobristKey ^= Zobrist.castling(castlingRights) ^ Zobrist.castling(newRights);
+        field.setCastlingRights(newRights);
     }
 
     // Передаёт ход к следующему игроку
     private void giveMoveToNextPlayer() throws NoNextPlayerFoundException {
         log.trace("giveMoveToNextPlayer");
-        if (currentPlayer == null) {
+        final long now = System.nanoTime();
+        final ChessPlayer prevPlayer = currentPlayer;
+        if (prevPlayer == null) {
             currentPlayer = players.get(0);
         } else {
+            zobristKey ^= Zobrist.side(currentPlayer.getColor());
             currentPlayer = getNextPlayer(currentPlayer);
+            zobristKey ^= Zobrist.side(currentPlayer.getColor());
         }
 
         // Сбрасываем предложение ничьи у этого игрока
         currentPlayer.setOfferedDraw(false);
 
-        // Устанавливаем время текущего хода
-        currentMoveStarted = Calendar.getInstance().getTime();
+        // Переключаем часы: сделавшему ход списывается время хода и начисляется добавка
+        if (clock != null) {
+            clock.switchTo(players.indexOf(currentPlayer), now);
+            if (prevPlayer != null) {
+                final int prev = players.indexOf(prevPlayer);
+                prevPlayer.setTimeLeft(clock.getRemainingMillis(prev, now));
+            }
+        }
     }
 
     // Рассчитывает игрокам очки за игру
@@ -0,0 +1,39 @@
+package edu.demidov.netchess.common.model.game.chess;
+
+/**
+ * Снимок партии после принятого действия: копия партии и номер её версии.
+ * <p>
+ * Партию меняет только поток обработки сообщений. Снимок после публикации не меняется,
+ * поэтому его читают из любых потоков без блокировок: сериализация для отправки клиентам,
+ * наблюдатели, сохранение. Версии снимков одной партии строго растут.
+ */
+public final class ChessGameSnapshot {
+
+    private final ChessGame game;
+
+    ChessGameSnapshot(final ChessGame game) {
+        this.game = game;
+    }
+
+    public long getVersion() {
+        return game.getVersion();
+    }
+
+    public int getGameId() {
+        return game.getId();
+    }
+
+    /**
+     * Партия на момент снимка. Копия делается один раз при публикации и общая для всех читателей,
+     * поэтому её только читают: менять её нельзя. Чтобы изменить партию, сделайте копию: new ChessGame(getGame()).
+     */
+    public ChessGame getGame() {
+        return game;
+    }
+
+    @Override
+    public String toString() {
+        return "ChessGameSnapshot{gameId=" + getGameId() + ", version=" + getVersion() + '}';
+    }
+
+}
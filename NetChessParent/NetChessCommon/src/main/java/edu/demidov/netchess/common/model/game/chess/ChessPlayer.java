@@ -21,6 +21,13 @@ public class ChessPlayer extends AbstractUser {
         this.timeLeft = timeLeft;
     }
 
+    public ChessPlayer(final ChessPlayer other) {
+        this(other.color, other.timeLeft, other.getName(), other.getRank(), other.getWins(), other.getDefeats(),
+                other.getDraws(), other.getTotalTimeOnServer());
+        this.isOfferedDraw = other.isOfferedDraw;
+        this.accruedScores = other.accruedScores;
+    }
+
     public ChessColor getColor() {
         return color;
     }
@@ -0,0 +1,360 @@
+package edu.demidov.netchess.common.model.game.chess;
+
+import edu.demidov.netchess.common.model.exceptions.game.chess.InvalidFenException;
+
+import java.util.List;
+
+/**
+ * Запись позиции в FEN и разбор FEN: "расстановка очередь рокировки взятие-на-проходе полуходы номер-хода".
+ * <p>
+ * Кодек не создаёт промежуточных объектов: запись идёт в переданный StringBuilder (его можно переиспользовать),
+ * разбор читает CharSequence по символам и пишет в массив поля общие экземпляры фигур (ChessFigure.of).
+ * <p>
+ * Взятия на проходе и счётчиков ходов в правилах партии нет: при записи это всегда "- 0 1", при разборе
+ * эти поля необязательны; поле взятия на проходе проверяется и попадает только в PackedField, счётчики
+ * пропускаются. Права на рокировку при разборе записываются в поле. У каждой стороны должен быть ровно один король.
+ * Разбор один и для партии, и для движка (BitboardPosition.loadFen() читает FEN через PackedField) -
+ * так обе стороны принимают одни и те же позиции.
+ * Горизонтали FEN идут от 8-й к 1-й - так же, как y в ChessField (y = 0 - 8-я горизонталь).
+ */
+public final class Fen {
+
+    public static final String START_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    // Самая длинная запись: 64 клетки, 7 разделителей горизонталей и " w KQkq - 0 1"
+    public static final int MAX_LENGTH = 84;
+
+    private static final int SIZE = Zobrist.SIZE;
+    // Буквы фигур в порядке ChessFigure.Type
+    private static final String FIGURES = "pbnrqk";
+    private static final ChessFigure.Type[] TYPES = ChessFigure.Type.values();
+    private static final String CASTLING = "KQkq";
+    private static final int[] CASTLING_RIGHTS = {
+            Zobrist.WHITE_KING_SIDE, Zobrist.WHITE_QUEEN_SIDE, Zobrist.BLACK_KING_SIDE, Zobrist.BLACK_QUEEN_SIDE
+    };
+    // Флаг очереди чёрных рядом с правами на рокировку в результате parsePosition, выше - вертикаль взятия + 1
+    private static final int BLACK_TO_MOVE = Zobrist.ALL_CASTLING + 1;
+    private static final int EN_PASSANT_SHIFT = 5;
+    // Горизонтали поля взятия на проходе: за пешкой чёрных (ход белых) и за пешкой белых (ход чёрных)
+    private static final char WHITE_TO_MOVE_EP_RANK = '6', BLACK_TO_MOVE_EP_RANK = '3';
+    private static final String NO_MOVE_COUNTERS = " - 0 1";
+    private static final String FEN_EXCEPTION = "Неверная запись FEN \"%s\": %s (символ %d)";
+    private static final String FIELD_SIZE_EXCEPTION = "Поле должно быть %dx%d";
+    private static final String NO_PLAYER_EXCEPTION = "В партии нет игрока, чей ход";
+    private static final String SHORT_RANK = "неполная горизонталь";
+    private static final String LONG_RANK = "слишком длинная горизонталь";
+    private static final String EXTRA_RANK = "лишняя горизонталь";
+    private static final String RANKS_COUNT = "должно быть 8 горизонталей";
+    private static final String UNKNOWN_FIGURE = "неизвестная фигура";
+    private static final String UNKNOWN_SIDE = "очередь хода должна быть w или b";
+    private static final String NO_CASTLING = "нет прав на рокировку";
+    private static final String UNKNOWN_CASTLING = "неизвестное право на рокировку";
+    private static final String KINGS_COUNT = "у каждой стороны должен быть ровно один король";
+    private static final String INVALID_EN_PASSANT = "неверное поле взятия на проходе";
+    private static final String NO_SPACE = "ожидается пробел";
+
+    private Fen() {
+    }
+
+    /**
+     * Записывает партию целиком: расстановка, очередь хода и права на рокировку
+     */
+    public static String toFen(final ChessGame game) {
+        return append(new StringBuilder(MAX_LENGTH), game).toString();
+    }
+
+    /**
+     * Дописывает FEN партии в out
+     *
+     * @return out
+     */
+    public static StringBuilder append(final StringBuilder out, final ChessGame game) {
+        return append(out, game.getField(), game.getCurrentPlayer().getColor(), game.getCastlingRights());
+    }
+
+    /**
+     * Дописывает FEN позиции в out
+     *
+     * @param castlingRights маска Zobrist.*_SIDE
+     * @return out
+     */
+    public static StringBuilder append(final StringBuilder out, final ChessField field,
+                                       final ChessColor sideToMove, final int castlingRights) {
+        appendPlacement(out, field);
+        out.append(' ').append(sideToMove == ChessColor.White ? 'w' : 'b').append(' ');
+
+        if ((castlingRights & Zobrist.ALL_CASTLING) == 0) {
+            out.append('-');
+        } else {
+            for (int i = 0; i < CASTLING_RIGHTS.length; i++) {
+                if ((castlingRights & CASTLING_RIGHTS[i]) != 0) out.append(CASTLING.charAt(i));
+            }
+        }
+        return out.append(NO_MOVE_COUNTERS);
+    }
+
+    /**
+     * Дописывает в out только расстановку фигур (первое поле FEN)
+     *
+     * @return out
+     */
+    public static StringBuilder appendPlacement(final StringBuilder out, final ChessField field) {
+        final ChessFigure[][] figures = field.getField();
+        final int size = field.getFieldSize();
+
+        for (int y = 0; y < size; y++) {
+            if (y > 0) out.append('/');
+            int empty = 0;
+            for (int x = 0; x < size; x++) {
+                final ChessFigure figure = figures[x][y];
+                if (figure == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) out.append(empty);
+                empty = 0;
+                out.append(letter(figure));
+            }
+            if (empty > 0) out.append(empty);
+        }
+        return out;
+    }
+
+    /**
+     * Дописывает в out расстановку фигур упакованного поля
+     *
+     * @return out
+     */
+    public static StringBuilder appendPlacement(final StringBuilder out, final PackedField field) {
+        for (int y = 0; y < SIZE; y++) {
+            if (y > 0) out.append('/');
+            int empty = 0;
+            for (int x = 0; x < SIZE; x++) {
+                final int code = field.getCode(x, y);
+                if (code == PackedField.EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) out.append(empty);
+                empty = 0;
+                out.append(letter(PackedField.colorOf(code), PackedField.typeOf(code)));
+            }
+            if (empty > 0) out.append(empty);
+        }
+        return out;
+    }
+
+    /**
+     * Заполняет поле расстановкой из FEN (прежние фигуры убираются)
+     *
+     * @param fen
+     * @param field поле 8x8; получает и права на рокировку
+     * @return цвет стороны, чей ход
+     * @throws InvalidFenException если строка не разбирается
+     */
+    public static ChessColor parse(final CharSequence fen, final ChessField field) throws InvalidFenException {
+        checkFieldSize(fen, field);
+        final int state = parsePosition(fen, field.getField(), null);
+        field.setCastlingRights(state & Zobrist.ALL_CASTLING);
+        return sideToMove(state);
+    }
+
+    /**
+     * Заполняет упакованное поле позицией из FEN (прежние фигуры убираются):
+     * расстановка, права на рокировку и вертикаль взятия на проходе
+     *
+     * @param fen
+     * @param field
+     * @return цвет стороны, чей ход
+     * @throws InvalidFenException если строка не разбирается
+     */
+    public static ChessColor parse(final CharSequence fen, final PackedField field) throws InvalidFenException {
+        final int state = parsePosition(fen, null, field);
+        field.setCastlingRights(state & Zobrist.ALL_CASTLING);
+        field.setEnPassantFile((state >>> EN_PASSANT_SHIFT) - 1);
+        return sideToMove(state);
+    }
+
+    /**
+     * Ставит партию в позицию из FEN: расстановка на поле партии, игрок, чей ход, права на рокировку и хэш.
+     * Последний ход, выбор фигуры и посчитанные допустимые ходы сбрасываются.
+     *
+     * @throws InvalidFenException если строка не разбирается или в партии нет игрока нужного цвета
+     */
+    public static void parse(final CharSequence fen, final ChessGame game) throws InvalidFenException {
+        final ChessField field = game.getField();
+        final ChessColor sideToMove = parse(fen, field);
+        final int castlingRights = field.getCastlingRights();
+
+        final ChessPlayer player = findPlayer(game.getPlayers(), sideToMove);
+        if (player == null) throw new InvalidFenException(NO_PLAYER_EXCEPTION);
+
+        game.setCurrentPlayer(player);
+        // Часы идут у того, чей ход
+        if (game.getClock() != null && game.getClock().isRunning()) game.startClock();
+        game.setZobristKey(hash(field.getField(), sideToMove, castlingRights));
+        game.setLastMovePoints(null);
+        game.setCurrentPlayerChoosingFigure(false);
+        game.setLegalMoves(null);
+    }
+
+    private static char letter(final ChessFigure figure) {
+        return letter(figure.getColor(), figure.getType());
+    }
+
+    private static char letter(final ChessColor color, final ChessFigure.Type type) {
+        final char letter = FIGURES.charAt(type.ordinal());
+        return color == ChessColor.White ? Character.toUpperCase(letter) : letter;
+    }
+
+    /* Расставляет фигуры в figures либо в packed (второй - null). Возвращает права на рокировку, флаг BLACK_TO_MOVE
+    и вертикаль взятия на проходе + 1 (со сдвигом EN_PASSANT_SHIFT) одним числом - так разбор обходится без
+    объекта-результата.
+    */
+    private static int parsePosition(final CharSequence fen, final ChessFigure[][] figures, final PackedField packed)
+            throws InvalidFenException {
+        int index = skipSpace(fen, parsePlacement(fen, figures, packed));
+        final ChessColor sideToMove = parseSide(fen, index);
+        index = skipSpace(fen, index + 1);
+        final int castlingRights = parseCastling(fen, index);
+        final int enPassantFile = parseEnPassant(fen, nextField(fen, index), sideToMove);
+        return castlingRights | (sideToMove == ChessColor.Black ? BLACK_TO_MOVE : 0)
+                | (enPassantFile + 1) << EN_PASSANT_SHIFT;
+    }
+
+    private static ChessColor sideToMove(final int state) {
+        return (state & BLACK_TO_MOVE) != 0 ? ChessColor.Black : ChessColor.White;
+    }
+
+    // Расставляет фигуры в figures либо в packed; возвращает индекс первого символа после расстановки
+    private static int parsePlacement(final CharSequence fen, final ChessFigure[][] figures, final PackedField packed)
+            throws InvalidFenException {
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                if (figures != null) {
+                    figures[x][y] = null;
+                } else {
+                    packed.setCode(x, y, PackedField.EMPTY);
+                }
+            }
+        }
+
+        int index = 0;
+        int x = 0, y = 0;
+        int whiteKings = 0, blackKings = 0;
+        for (; index < fen.length(); index++) {
+            final char c = fen.charAt(index);
+            if (c == ' ') break;
+
+            if (c == '/') {
+                if (x != SIZE) throw exception(fen, SHORT_RANK, index);
+                if (++y == SIZE) throw exception(fen, EXTRA_RANK, index);
+                x = 0;
+            } else if (c >= '1' && c <= '8') {
+                x += c - '0';
+                if (x > SIZE) throw exception(fen, LONG_RANK, index);
+            } else {
+                final int type = FIGURES.indexOf(Character.toLowerCase(c));
+                if (type < 0) throw exception(fen, UNKNOWN_FIGURE, index);
+                if (x == SIZE) throw exception(fen, LONG_RANK, index);
+                final ChessColor color = Character.isUpperCase(c) ? ChessColor.White : ChessColor.Black;
+                if (TYPES[type] == ChessFigure.Type.King) {
+                    if (color == ChessColor.White) whiteKings++;
+                    else blackKings++;
+                }
+                if (figures != null) {
+                    figures[x][y] = ChessFigure.of(color, TYPES[type]);
+                } else {
+                    packed.setCode(x, y, PackedField.code(color, TYPES[type]));
+                }
+                x++;
+            }
+        }
+
+        if (y != SIZE - 1) throw exception(fen, RANKS_COUNT, index);
+        if (x != SIZE) throw exception(fen, SHORT_RANK, index);
+        if (whiteKings != 1 || blackKings != 1) throw exception(fen, KINGS_COUNT, index);
+        return index;
+    }
+
+    private static ChessColor parseSide(final CharSequence fen, final int index) throws InvalidFenException {
+        final char c = index < fen.length() ? fen.charAt(index) : ' ';
+        if (c == 'w') return ChessColor.White;
+        if (c == 'b') return ChessColor.Black;
+        throw exception(fen, UNKNOWN_SIDE, index);
+    }
+
+    private static int parseCastling(final CharSequence fen, final int index) throws InvalidFenException {
+        if (index >= fen.length()) throw exception(fen, NO_CASTLING, index);
+        if (fen.charAt(index) == '-') return 0;
+
+        int rights = 0;
+        for (int i = index; i < fen.length() && fen.charAt(i) != ' '; i++) {
+            final int right = CASTLING.indexOf(fen.charAt(i));
+            if (right < 0) throw exception(fen, UNKNOWN_CASTLING, i);
+            rights |= CASTLING_RIGHTS[right];
+        }
+        return rights;
+    }
+
+    /* Вертикаль взятия на проходе, либо PackedField.NO_EN_PASSANT, если поля нет или это "-".
+    Поле взятия должно стоять за пешкой соперника: на 6-й горизонтали при ходе белых, на 3-й - при ходе чёрных.
+    */
+    private static int parseEnPassant(final CharSequence fen, final int index, final ChessColor sideToMove)
+            throws InvalidFenException {
+        if (index >= fen.length()) return PackedField.NO_EN_PASSANT;
+        if (fen.charAt(index) == '-' && isFieldEnd(fen, index + 1)) return PackedField.NO_EN_PASSANT;
+
+        final char file = fen.charAt(index);
+        final char rank = index + 1 < fen.length() ? fen.charAt(index + 1) : ' ';
+        final char expectedRank = sideToMove == ChessColor.White ? WHITE_TO_MOVE_EP_RANK : BLACK_TO_MOVE_EP_RANK;
+        if (file < 'a' || file > 'h' || rank != expectedRank || !isFieldEnd(fen, index + 2)) {
+            throw exception(fen, INVALID_EN_PASSANT, index);
+        }
+        return file - 'a';
+    }
+
+    // Индекс начала следующего поля после поля, начинающегося с index (длина строки, если полей больше нет)
+    private static int nextField(final CharSequence fen, final int index) {
+        int i = index;
+        while (i < fen.length() && fen.charAt(i) != ' ') i++;
+        return Math.min(i + 1, fen.length());
+    }
+
+    private static boolean isFieldEnd(final CharSequence fen, final int index) {
+        return index >= fen.length() || fen.charAt(index) == ' ';
+    }
+
+    private static int skipSpace(final CharSequence fen, final int index) throws InvalidFenException {
+        if (index >= fen.length() || fen.charAt(index) != ' ') throw exception(fen, NO_SPACE, index);
+        return index + 1;
+    }
+
+    // Тот же хэш, что и Zobrist.hash, но без обращения к полю через точки
+    private static long hash(final ChessFigure[][] figures, final ChessColor sideToMove, final int castlingRights) {
+        long key = Zobrist.castling(castlingRights) ^ Zobrist.side(sideToMove);
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                if (figures[x][y] != null) key ^= Zobrist.piece(figures[x][y], x, y);
+            }
+        }
+        return key;
+    }
+
+    private static ChessPlayer findPlayer(final List<ChessPlayer> players, final ChessColor color) {
+        for (int i = 0; i < players.size(); i++) {
+            if (players.get(i).getColor() == color) return players.get(i);
+        }
+        return null;
+    }
+
+    private static void checkFieldSize(final CharSequence fen, final ChessField field) throws InvalidFenException {
+        if (field.getFieldSize() != SIZE) {
+            throw exception(fen, String.format(FIELD_SIZE_EXCEPTION, SIZE, SIZE), 0);
+        }
+    }
+
+    private static InvalidFenException exception(final CharSequence fen, final String reason, final int index) {
+        return new InvalidFenException(String.format(FEN_EXCEPTION, fen, reason, index));
+    }
+
+}
@@ -0,0 +1,167 @@
+package edu.demidov.netchess.common.model.game.chess;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Шахматные часы партии на System.nanoTime(): не зависят от перевода системных часов
+ * и не создают объектов - всё состояние в примитивах.
+ * <p>
+ * Игроки - индексы в списке игроков партии. Идут часы только одного игрока (running), остаток
+ * остальных хранится в remainingNanos. Текущее время (now) передаётся снаружи: одно значение
+ * System.nanoTime() на всё действие.
+ * <p>
+ * System.nanoTime() имеет смысл только внутри одной JVM, поэтому при сериализации записывается время,
+ * прошедшее с начала хода, и на принимающей стороне ход "начинается" заново с этим запасом.
+ * Экземпляр не потокобезопасен.
+ */
+public final class GameClock implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int STOPPED = -1;
+
+    private final TimeControl timeControl;
+    private final long[] remainingNanos;    // Остаток времени игроков на начало хода идущих часов
+    private int running = STOPPED;          // Чьи часы идут
+    private transient long startedNanos;    // Когда пошли часы running (System.nanoTime())
+
+    /**
+     * @param timeControl контроль времени: добавка Фишера и задержка Бронштейна
+     * @param players     число игроков; у каждого основное время из timeControl
+     */
+    public GameClock(final TimeControl timeControl, final int players) {
+        this.timeControl = timeControl;
+        this.remainingNanos = new long[players];
+        Arrays.fill(remainingNanos, TimeUnit.MILLISECONDS.toNanos(timeControl.getBaseMillis()));
+    }
+
+    public GameClock(final GameClock other) {
+        this.timeControl = other.timeControl;
+        this.remainingNanos = other.remainingNanos.clone();
+        this.running = other.running;
+        this.startedNanos = other.startedNanos;
+    }
+
+    public TimeControl getTimeControl() {
+        return timeControl;
+    }
+
+    /**
+     * Индекс игрока, чьи часы идут, либо STOPPED
+     */
+    public int getRunning() {
+        return running;
+    }
+
+    public boolean isRunning() {
+        return running != STOPPED;
+    }
+
+    /**
+     * Устанавливает остаток времени игрока (например, при восстановлении партии)
+     */
+    public void setRemainingMillis(final int player, final long millis) {
+        remainingNanos[player] = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * То же, с точностью до наносекунды. Для игрока, чьи часы идут, - остаток на начало хода.
+     */
+    public void setRemainingNanos(final int player, final long nanos) {
+        remainingNanos[player] = nanos;
+    }
+
+    /**
+     * Запускает часы игрока без добавки предыдущему (начало партии)
+     */
+    public void start(final int player, final long now) {
+        running = player;
+        startedNanos = now;
+    }
+
+    /**
+     * Завершает ход: списывает время игрока, чьи часы шли, прибавляет ему добавку и запускает часы next
+     *
+     * @return время сделанного хода, наносекунды
+     */
+    public long switchTo(final int next, final long now) {
+        long elapsed = 0;
+        if (running != STOPPED) {
+            elapsed = now - startedNanos;
+            remainingNanos[running] += bonusNanos(elapsed) - elapsed;
+        }
+        start(next, now);
+        return elapsed;
+    }
+
+    /**
+     * Останавливает часы (конец партии): списывает потраченное время без добавки
+     *
+     * @return время текущего хода, наносекунды (0, если часы не шли)
+     */
+    public long stop(final long now) {
+        if (running == STOPPED) return 0;
+
+        final long elapsed = now - startedNanos;
+        remainingNanos[running] -= elapsed;
+        running = STOPPED;
+        return elapsed;
+    }
+
+    /**
+     * Время текущего хода, наносекунды (0, если часы стоят)
+     */
+    public long getElapsedNanos(final long now) {
+        return running == STOPPED ? 0 : now - startedNanos;
+    }
+
+    /**
+     * Остаток времени игрока на момент now; отрицательный, если время вышло
+     */
+    public long getRemainingNanos(final int player, final long now) {
+        final long remaining = remainingNanos[player];
+        return player == running ? remaining - (now - startedNanos) : remaining;
+    }
+
+    public long getRemainingMillis(final int player, final long now) {
+        return TimeUnit.NANOSECONDS.toMillis(getRemainingNanos(player, now));
+    }
+
+    /**
+     * Вышло ли время у игрока, чьи часы идут
+     */
+    public boolean isFlagged(final long now) {
+        return running != STOPPED && getRemainingNanos(running, now) < 0;
+    }
+
+    @Override
+    public String toString() {
+        return "GameClock{" +
+                "timeControl=" + timeControl +
+                ", remainingNanos=" + Arrays.toString(remainingNanos) +
+                ", running=" + running +
+                '}';
+    }
+
+    // Добавка после хода длиной elapsed
+    private long bonusNanos(final long elapsed) {
+        return TimeUnit.MILLISECONDS.toNanos(timeControl.getIncrementMillis())
+                + Math.min(elapsed, TimeUnit.MILLISECONDS.toNanos(timeControl.getDelayMillis()));
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeLong(getElapsedNanos(System.nanoTime()));
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        startedNanos = System.nanoTime() - in.readLong();
+    }
+
+}
@@ -0,0 +1,102 @@
+package edu.demidov.netchess.common.model.game.chess;
+
+import edu.demidov.netchess.utils.Point;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Множество допустимых ходов игрока, чей ход, в текущей позиции партии.
+ * Для каждой клетки хранится битовая маска клеток, куда с неё можно пойти,
+ * поэтому проверка хода - одна битовая операция, а весь набор занимает 64 long.
+ * Номер клетки - y * SIZE + x (см. Zobrist.square).
+ */
+public class LegalMoves implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long[] targets = new long[Zobrist.SQUARES];
+    private int count;
+
+    public LegalMoves() {
+    }
+
+    /**
+     * Копия набора ходов other
+     */
+    public LegalMoves(final LegalMoves other) {
+        this.targets = other.targets.clone();
+        this.count = other.count;
+    }
+
+    /**
+     * Добавляет ход с клетки from на клетку to (номера клеток)
+     */
+    public void add(final int from, final int to) {
+        final long bit = 1L << to;
+        if ((targets[from] & bit) == 0) {
+            targets[from] |= bit;
+            count++;
+        }
+    }
+
+    /**
+     * Возвращает true, если ход fromPoint-toPoint допустим
+     */
+    public boolean contains(final Point fromPoint, final Point toPoint) {
+        return isOnBoard(fromPoint) && isOnBoard(toPoint)
+                && (getTargets(fromPoint) & (1L << square(toPoint))) != 0;
+    }
+
+    /**
+     * Возвращает маску клеток, на которые можно пойти с клетки point
+     */
+    public long getTargets(final Point point) {
+        return isOnBoard(point) ? targets[square(point)] : 0L;
+    }
+
+    /**
+     * Количество допустимых ходов (превращение пешки считается одним ходом)
+     */
+    public int size() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(targets);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final LegalMoves other = (LegalMoves) obj;
+        return Arrays.equals(this.targets, other.targets);
+    }
+
+    @Override
+    public String toString() {
+        return "LegalMoves{" + "count=" + count + '}';
+    }
+
+    private static int square(final Point point) {
+        return Zobrist.square(point.getX(), point.getY());
+    }
+
+    private static boolean isOnBoard(final Point point) {
+        return point.getX() >= 0 && point.getX() < Zobrist.SIZE && point.getY() >= 0 && point.getY() < Zobrist.SIZE;
+    }
+
+}
@@ -0,0 +1,132 @@
+package edu.demidov.netchess.common.model.game.chess;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Ходы партии по порядку, каждый - 16 бит в массиве short[]:
+ * биты 0-5 - клетка "откуда", 6-11 - клетка "куда", 12-15 - фигура превращения (ChessFigure.Type.ordinal() + 1,
+ * 0 - без превращения). Клетка - Zobrist.square(x, y) = y * 8 + x, как в ChessField.
+ * <p>
+ * Ходы только дописываются; массив растёт вдвое, поэтому на ход объектов не создаётся.
+ * Сериализуется плоским массивом из size() ходов. Экземпляр не потокобезопасен.
+ */
+public final class MoveHistory implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int NO_PROMOTION = 0;
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int SQUARE_MASK = 0x3F;
+    private static final int TO_SHIFT = 6;
+    private static final int PROMOTION_SHIFT = 12;
+    private static final ChessFigure.Type[] TYPES = ChessFigure.Type.values();
+
+    private transient short[] moves;
+    private transient int size;
+
+    public MoveHistory() {
+        moves = new short[INITIAL_CAPACITY];
+    }
+
+    public MoveHistory(final MoveHistory other) {
+        moves = Arrays.copyOf(other.moves, Math.max(other.size, INITIAL_CAPACITY));
+        size = other.size;
+    }
+
+    /**
+     * Кодирует ход
+     *
+     * @param from      клетка "откуда"
+     * @param to        клетка "куда"
+     * @param promotion фигура превращения, либо null
+     */
+    public static int encode(final int from, final int to, final ChessFigure.Type promotion) {
+        return from | to << TO_SHIFT | (promotion == null ? NO_PROMOTION : promotion.ordinal() + 1) << PROMOTION_SHIFT;
+    }
+
+    public static int from(final int move) {
+        return move & SQUARE_MASK;
+    }
+
+    public static int to(final int move) {
+        return move >>> TO_SHIFT & SQUARE_MASK;
+    }
+
+    /**
+     * Фигура превращения, либо null, если ход без превращения
+     */
+    public static ChessFigure.Type promotion(final int move) {
+        final int code = move >>> PROMOTION_SHIFT & 0xF;
+        return code == NO_PROMOTION ? null : TYPES[code - 1];
+    }
+
+    /**
+     * Дописывает ход
+     */
+    public void add(final int fromX, final int fromY, final int toX, final int toY) {
+        if (size == moves.length) moves = Arrays.copyOf(moves, size * 2);
+        moves[size++] = (short) encode(Zobrist.square(fromX, fromY), Zobrist.square(toX, toY), null);
+    }
+
+    /**
+     * Дописывает фигуру превращения к последнему ходу (пешка дошла до края доски, игрок выбрал фигуру)
+     */
+    public void setLastPromotion(final ChessFigure.Type promotion) {
+        assert size > 0;
+        final int last = get(size - 1);
+        moves[size - 1] = (short) encode(from(last), to(last), promotion);
+    }
+
+    /**
+     * Ход с номером index (с 0) в кодировке encode()
+     */
+    public int get(final int index) {
+        assert index < size;
+        return moves[index] & 0xFFFF;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Копия ходов с номерами [from, size())
+     */
+    public short[] toArray(final int from) {
+        return Arrays.copyOfRange(moves, from, size);
+    }
+
+    @Override
+    public String toString() {
+        return "MoveHistory{size=" + size + '}';
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeShort(moves[i]);
+        }
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        size = in.readInt();
+        if (size < 0) throw new InvalidObjectException("size=" + size);
+        moves = new short[Math.max(size, INITIAL_CAPACITY)];
+        for (int i = 0; i < size; i++) {
+            moves[i] = in.readShort();
+        }
+    }
+
+}
@@ -0,0 +1,226 @@
+package edu.demidov.netchess.common.model.game.chess;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Упакованное поле 8x8: 64 байта с кодами фигур и байт состояния (права на рокировку и вертикаль взятия
+ * на проходе) - 65 байт против графа объектов ChessField/ChessFigure; быстро копируется и сравнивается.
+ * <p>
+ * Сейчас это рабочий формат движка и правил: перегрузки ChessRules, BitboardPosition.load()/store() и разбор FEN
+ * для движка (Fen.parse()); WireFormat передаёт клетки поля теми же кодами фигур. Партия (ChessGame) по-прежнему
+ * хранит ChessField, и клиент рисует доску по нему - память на партию этот класс не уменьшает.
+ * <p>
+ * Клетка - Zobrist.square(x, y) = y * 8 + x, как в ChessField (y = 0 - 8-я горизонталь).
+ * Код фигуры - тип (ChessFigure.Type.ordinal() + 1) в младших битах и флаг BLACK; 0 - пустая клетка.
+ * Экземпляр не потокобезопасен.
+ */
+public final class PackedField implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int SIZE = Zobrist.SIZE;
+    public static final int SQUARES = Zobrist.SQUARES;
+    // Длина в байтах: клетки и байт состояния
+    public static final int BYTES = SQUARES + 1;
+
+    public static final int EMPTY = 0;
+    public static final int BLACK = 8;
+    public static final int NO_EN_PASSANT = -1;
+
+    private static final int TYPE_MASK = BLACK - 1;
+    private static final int STATE = SQUARES;
+    private static final int EN_PASSANT_SHIFT = 4;
+    private static final ChessFigure.Type[] TYPES = ChessFigure.Type.values();
+
+    // Клетки и последним байтом - состояние: права на рокировку (маска Zobrist.*_SIDE) в младших 4 битах,
+    // вертикаль взятия на проходе + 1 - в старших
+    private final byte[] bytes = new byte[BYTES];
+
+    public PackedField() {
+    }
+
+    public PackedField(final PackedField other) {
+        System.arraycopy(other.bytes, 0, bytes, 0, BYTES);
+    }
+
+    /**
+     * Упаковывает поле партии вместе с её правами на рокировку
+     */
+    public static PackedField of(final ChessGame game) {
+        final PackedField packed = new PackedField();
+        packed.pack(game.getField());
+        return packed;
+    }
+
+    /**
+     * Упаковывает байты, записанные write()
+     */
+    public static PackedField fromBytes(final byte[] in, final int offset) {
+        final PackedField packed = new PackedField();
+        packed.read(in, offset);
+        return packed;
+    }
+
+    public static int code(final ChessColor color, final ChessFigure.Type type) {
+        return (type.ordinal() + 1) | (color == ChessColor.Black ? BLACK : 0);
+    }
+
+    public static int code(final ChessFigure figure) {
+        return figure == null ? EMPTY : code(figure.getColor(), figure.getType());
+    }
+
+    public static ChessColor colorOf(final int code) {
+        return (code & BLACK) != 0 ? ChessColor.Black : ChessColor.White;
+    }
+
+    public static ChessFigure.Type typeOf(final int code) {
+        return TYPES[(code & TYPE_MASK) - 1];
+    }
+
+    /**
+     * Заполняет упакованное поле по полю 8x8 с его правами на рокировку (поле взятия на проходе сбрасывается).
+     * Новых объектов не создаётся.
+     */
+    public void pack(final ChessField field) {
+        pack(field, field.getCastlingRights());
+    }
+
+    /**
+     * То же, но с указанными правами на рокировку
+     *
+     * @param field
+     * @param castlingRights права на рокировку (маска Zobrist.*_SIDE)
+     */
+    public void pack(final ChessField field, final int castlingRights) {
+        final ChessFigure[][] figures = field.getField();
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                bytes[Zobrist.square(x, y)] = (byte) code(figures[x][y]);
+            }
+        }
+        bytes[STATE] = (byte) (castlingRights & Zobrist.ALL_CASTLING);
+    }
+
+    /**
+     * Расставляет фигуры на поле 8x8 и переносит права на рокировку. Новых объектов не создаётся.
+     */
+    public void unpack(final ChessField field) {
+        final ChessFigure[][] figures = field.getField();
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                final int code = bytes[Zobrist.square(x, y)];
+                figures[x][y] = code == EMPTY ? null : ChessFigure.of(colorOf(code), typeOf(code));
+            }
+        }
+        field.setCastlingRights(getCastlingRights());
+    }
+
+    public int getCode(final int x, final int y) {
+        return bytes[Zobrist.square(x, y)];
+    }
+
+    public int getCode(final int square) {
+        return bytes[square];
+    }
+
+    public void setCode(final int x, final int y, final int code) {
+        bytes[Zobrist.square(x, y)] = (byte) code;
+    }
+
+    public boolean isEmpty(final int x, final int y) {
+        return getCode(x, y) == EMPTY;
+    }
+
+    /**
+     * Цвет фигуры на клетке, либо null, если клетка пуста
+     */
+    public ChessColor getColor(final int x, final int y) {
+        final int code = getCode(x, y);
+        return code == EMPTY ? null : colorOf(code);
+    }
+
+    /**
+     * Тип фигуры на клетке, либо null, если клетка пуста
+     */
+    public ChessFigure.Type getType(final int x, final int y) {
+        final int code = getCode(x, y);
+        return code == EMPTY ? null : typeOf(code);
+    }
+
+    public int getCastlingRights() {
+        return bytes[STATE] & Zobrist.ALL_CASTLING;
+    }
+
+    public void setCastlingRights(final int castlingRights) {
+        bytes[STATE] = (byte) ((bytes[STATE] & ~Zobrist.ALL_CASTLING) | (castlingRights & Zobrist.ALL_CASTLING));
+    }
+
+    /**
+     * Вертикаль, на которой возможно взятие на проходе, либо NO_EN_PASSANT
+     */
+    public int getEnPassantFile() {
+        return ((bytes[STATE] & 0xFF) >>> EN_PASSANT_SHIFT) - 1;
+    }
+
+    public void setEnPassantFile(final int x) {
+        bytes[STATE] = (byte) (getCastlingRights() | ((x + 1) << EN_PASSANT_SHIFT));
+    }
+
+    /**
+     * Записывает BYTES байт в out начиная с offset
+     */
+    public void write(final byte[] out, final int offset) {
+        System.arraycopy(bytes, 0, out, offset, BYTES);
+    }
+
+    /**
+     * Читает BYTES байт, записанных write(), из in начиная с offset
+     */
+    public void read(final byte[] in, final int offset) {
+        System.arraycopy(in, offset, bytes, 0, BYTES);
+    }
+
+    public byte[] toBytes() {
+        return bytes.clone();
+    }
+
+    /**
+     * Считает хэш позиции - тот же, что Zobrist.hash для распакованного поля.
+     * Вертикаль взятия на проходе в хэш не входит, как и в хэш партии.
+     */
+    public long hash(final ChessColor sideToMove) {
+        long key = Zobrist.castling(getCastlingRights()) ^ Zobrist.side(sideToMove);
+        for (int square = 0; square < SQUARES; square++) {
+            final int code = bytes[square];
+            if (code != EMPTY) key ^= Zobrist.piece(colorOf(code), typeOf(code), square % SIZE, square / SIZE);
+        }
+        return key;
+    }
+
+    /**
+     * Расстановка фигур в записи FEN
+     */
+    @Override
+    public String toString() {
+        return Fen.appendPlacement(new StringBuilder(Fen.MAX_LENGTH), this).toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bytes);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final PackedField other = (PackedField) obj;
+        return Arrays.equals(bytes, other.bytes);
+    }
+
+}
@@ -0,0 +1,84 @@
+package edu.demidov.netchess.common.model.game.chess;
+
+import java.io.Serializable;
+
+/**
+ * Контроль времени партии: основное время и добавка за ход.
+ * <p>
+ * Добавка Фишера (increment) прибавляется после каждого хода целиком.
+ * Задержка Бронштейна (delay) возвращает после хода потраченное на него время, но не больше задержки:
+ * часы идут с начала хода, запаса времени задержка не увеличивает.
+ */
+public final class TimeControl implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long baseMillis;
+    private final long incrementMillis;
+    private final long delayMillis;
+
+    public TimeControl(final long baseMillis, final long incrementMillis, final long delayMillis) {
+        assert baseMillis >= 0;
+        assert incrementMillis >= 0;
+        assert delayMillis >= 0;
+        this.baseMillis = baseMillis;
+        this.incrementMillis = incrementMillis;
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * Только основное время, без добавки
+     */
+    public static TimeControl suddenDeath(final long baseMillis) {
+        return new TimeControl(baseMillis, 0, 0);
+    }
+
+    public static TimeControl fischer(final long baseMillis, final long incrementMillis) {
+        return new TimeControl(baseMillis, incrementMillis, 0);
+    }
+
+    public static TimeControl bronstein(final long baseMillis, final long delayMillis) {
+        return new TimeControl(baseMillis, 0, delayMillis);
+    }
+
+    public long getBaseMillis() {
+        return baseMillis;
+    }
+
+    public long getIncrementMillis() {
+        return incrementMillis;
+    }
+
+    public long getDelayMillis() {
+        return delayMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "TimeControl{" +
+                "baseMillis=" + baseMillis +
+                ", incrementMillis=" + incrementMillis +
+                ", delayMillis=" + delayMillis +
+                '}';
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * Long.hashCode(baseMillis) + Long.hashCode(incrementMillis)) + Long.hashCode(delayMillis);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final TimeControl other = (TimeControl) obj;
+        return baseMillis == other.baseMillis
+                && incrementMillis == other.incrementMillis
+                && delayMillis == other.delayMillis;
+    }
+
+}
@@ -0,0 +1,152 @@
+package edu.demidov.netchess.common.model.game.chess;
+
+import edu.demidov.netchess.common.model.exceptions.game.chess.InvalidPointException;
+
+/**
+ * Ключи Zobrist для 64-битного хэша позиции.
+ * Хэш - XOR ключей всех фигур на своих клетках, ключа прав на рокировку и ключа очереди хода чёрных.
+ * Поэтому при ходе хэш обновляется за O(1): XOR-ом убираем фигуру со старой клетки и ставим на новую.
+ * Ключи генерируются детерминированно (SplitMix64 с фиксированным зерном) и совпадают на сервере и клиенте,
+ * а также между запусками - хэши можно хранить.
+ * Номер клетки - y * SIZE + x, как в ChessField.
+ */
+public final class Zobrist {
+
+    public static final int SIZE = 8;
+    public static final int SQUARES = SIZE * SIZE;
+
+    // Права на рокировку (битовая маска)
+    public static final int WHITE_KING_SIDE = 1;
+    public static final int WHITE_QUEEN_SIDE = 2;
+    public static final int BLACK_KING_SIDE = 4;
+    public static final int BLACK_QUEEN_SIDE = 8;
+    public static final int ALL_CASTLING = WHITE_KING_SIDE | WHITE_QUEEN_SIDE | BLACK_KING_SIDE | BLACK_QUEEN_SIDE;
+
+    private static final long SEED = 0x4E657443686573L;
+    private static final int COLORS = ChessColor.values().length;
+    private static final int TYPES = ChessFigure.Type.values().length;
+
+    private static final long[] PIECES = new long[COLORS * TYPES * SQUARES];
+    private static final long[] CASTLING = new long[ALL_CASTLING + 1];
+    private static final long BLACK_TO_MOVE;
+    private static final long[] EN_PASSANT = new long[SIZE];
+
+    // Какие права на рокировку остаются, если фигура уходит с клетки или на неё приходит
+    private static final int[] CASTLING_KEEP = new int[SQUARES];
+
+    static {
+        long state = SEED;
+        for (int i = 0; i < PIECES.length; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            PIECES[i] = mix(state);
+        }
+
+        // Ключ набора прав - XOR ключей отдельных прав
+        final long[] rightKeys = new long[Integer.bitCount(ALL_CASTLING)];
+        for (int i = 0; i < rightKeys.length; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            rightKeys[i] = mix(state);
+        }
+        for (int rights = 0; rights <= ALL_CASTLING; rights++) {
+            for (int i = 0; i < rightKeys.length; i++) {
+                if ((rights & (1 << i)) != 0) CASTLING[rights] ^= rightKeys[i];
+            }
+        }
+
+        state += 0x9E3779B97F4A7C15L;
+        BLACK_TO_MOVE = mix(state);
+
+        // Ключи вертикалей взятия на проходе идут последними - остальные ключи от них не зависят
+        for (int x = 0; x < SIZE; x++) {
+            state += 0x9E3779B97F4A7C15L;
+            EN_PASSANT[x] = mix(state);
+        }
+
+        for (int square = 0; square < SQUARES; square++) {
+            CASTLING_KEEP[square] = ALL_CASTLING;
+        }
+        CASTLING_KEEP[square(0, SIZE - 1)] &= ~WHITE_QUEEN_SIDE;
+        CASTLING_KEEP[square(SIZE - 1, SIZE - 1)] &= ~WHITE_KING_SIDE;
+        CASTLING_KEEP[square(4, SIZE - 1)] &= ~(WHITE_KING_SIDE | WHITE_QUEEN_SIDE);
+        CASTLING_KEEP[square(0, 0)] &= ~BLACK_QUEEN_SIDE;
+        CASTLING_KEEP[square(SIZE - 1, 0)] &= ~BLACK_KING_SIDE;
+        CASTLING_KEEP[square(4, 0)] &= ~(BLACK_KING_SIDE | BLACK_QUEEN_SIDE);
+    }
+
+    private Zobrist() {
+    }
+
+    public static int square(final int x, final int y) {
+        return y * SIZE + x;
+    }
+
+    /**
+     * Ключ фигуры color/type на клетке (x, y)
+     */
+    public static long piece(final ChessColor color, final ChessFigure.Type type, final int x, final int y) {
+        return PIECES[(color.ordinal() * TYPES + type.ordinal()) * SQUARES + square(x, y)];
+    }
+
+    public static long piece(final ChessFigure figure, final int x, final int y) {
+        return piece(figure.getColor(), figure.getType(), x, y);
+    }
+
+    /**
+     * Ключ набора прав на рокировку
+     */
+    public static long castling(final int castlingRights) {
+        return CASTLING[castlingRights];
+    }
+
+    /**
+     * Ключ очереди хода: у белых - 0, у чёрных - отдельный ключ
+     */
+    public static long side(final ChessColor color) {
+        return color == ChessColor.Black ? BLACK_TO_MOVE : 0L;
+    }
+
+    /**
+     * Ключ вертикали x, на которой возможно взятие на проходе.
+     * В правилах партии взятия на проходе нет, поэтому в hash() ключ не входит - он нужен позициям движка.
+     */
+    public static long enPassant(final int x) {
+        return EN_PASSANT[x];
+    }
+
+    /**
+     * Маска прав на рокировку, которые сохраняются после хода с клетки (x, y) или на неё
+     */
+    public static int castlingKeep(final int x, final int y) {
+        return CASTLING_KEEP[square(x, y)];
+    }
+
+    /**
+     * Считает хэш позиции с нуля
+     *
+     * @param field          поле размером SIZE
+     * @param sideToMove     цвет игрока, чей ход
+     * @param castlingRights права на рокировку
+     * @return
+     * @throws InvalidPointException
+     */
+    public static long hash(final ChessField field, final ChessColor sideToMove, final int castlingRights)
+            throws InvalidPointException {
+        long key = castling(castlingRights) ^ side(sideToMove);
+
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                final ChessFigure figure = field.getFigure(x, y);
+                if (figure != null) key ^= piece(figure, x, y);
+            }
+        }
+
+        return key;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+}
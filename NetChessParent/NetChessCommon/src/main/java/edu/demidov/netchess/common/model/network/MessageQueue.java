@@ -1,36 +1,273 @@
 package edu.demidov.netchess.common.model.network;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
 
+/**
+ * Ограниченная очередь сообщений: много потоков-производителей (Netty, планировщик, потоки бота и разбора)
+ * и один поток-потребитель (цикл обработки сообщений).
+ * <p>
+ * Кольцевой буфер с заранее выделенными ячейками: у каждой ячейки свой номер (sequence), по которому
+ * производитель понимает, что ячейка свободна, а потребитель - что в ней уже лежит сообщение.
+ * Производители занимают ячейки через CAS, блокировок и новых объектов на сообщение нет.
+ * <p>
+ * Что делать, когда очередь заполнена, решает FullPolicy. Потоки, которые нельзя останавливать, кладут
+ * сообщения через offerMessage(), а служебные сообщения идут мимо кольцевого буфера - putServiceMessage().
+ * Потребитель забирает сообщения пачками - drainTo().
+ * Брать сообщения (takeMessage, pollMessage, drainTo) можно только из одного потока.
+ */
 public class MessageQueue<T> {
 
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    // Сколько ждёт производитель перед повторной попыткой, если очередь заполнена (FullPolicy.BLOCK)
+    private static final long PRODUCER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    // Сколько раз потребитель проверяет пустую очередь, прежде чем уснуть
+    private static final int CONSUMER_SPINS = 64;
+
     private static MessageQueue instance;
-    private final BlockingQueue<T> bq;
 
-    private MessageQueue() {
-        bq = new LinkedBlockingQueue<>();
+    private final int capacity;
+    private final int mask;
+    private final Object[] buffer;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();   // Следующая ячейка для производителей
+    private final AtomicLong head = new AtomicLong();   // Следующая ячейка потребителя (пишет только потребитель)
+    private final Queue<T> service = new ConcurrentLinkedQueue<>();    // Служебные сообщения, без ограничения
+    private final FullPolicy fullPolicy;
+    private final Predicate<? super T> droppable;
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile int maxDepth;
+    private volatile Thread waitingConsumer;
+
+    /**
+     * Что делать с новым сообщением, когда очередь заполнена.
+     * putMessage() ждёт места сам; кто кладёт через offerMessage(), решает по isRejectedWhenFull(),
+     * отклонить сообщение или отложить его (см. MessageQueueInboundHandler).
+     */
+    public enum FullPolicy {
+        REJECT,             // Не класть сообщение: putMessage() вернёт false
+        DROP_DROPPABLE,     // Не класть второстепенные сообщения (лобби, чат), остальных ждать
+        BLOCK               // Ждать, пока потребитель не освободит место
+    }
+
+    /**
+     * @param capacity   ёмкость, округляется вверх до степени двойки (не меньше 2)
+     * @param fullPolicy что делать, когда очередь заполнена
+     * @param droppable  второстепенные сообщения для FullPolicy.DROP_DROPPABLE
+     */
+    public MessageQueue(final int capacity, final FullPolicy fullPolicy, final Predicate<? super T> droppable) {
+        assert capacity > 0 && capacity <= 1 << 30;
+        assert fullPolicy != null;
+        assert droppable != null;
+
+        this.capacity = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.buffer = new Object[this.capacity];
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.fullPolicy = fullPolicy;
+        this.droppable = droppable;
+    }
+
+    /**
+     * Задаёт ёмкость и FullPolicy общей очереди. Вызывается до первого getInstance().
+     */
+    public static synchronized <V> void configure(final int capacity, final FullPolicy fullPolicy,
+                                                  final Predicate<? super V> droppable) {
+        if (instance != null) throw new IllegalStateException("MessageQueue is already created");
+        instance = new MessageQueue<>(capacity, fullPolicy, droppable);
     }
 
     public static synchronized <V> MessageQueue<V> getInstance() {
-        if (instance == null) instance = new MessageQueue<>();
+        if (instance == null) instance = new MessageQueue<>(DEFAULT_CAPACITY, FullPolicy.BLOCK, message -> false);
         return instance;
     }
 
-    public void putMessage(final T message) throws InterruptedException {
-        bq.put(message);
+    /**
+     * Кладёт сообщение в очередь. Если очередь заполнена - поступает по FullPolicy.
+     *
+     * @return false, если сообщение не положено (очередь заполнена)
+     * @throws InterruptedException если поток прервали во время ожидания места
+     */
+    public boolean putMessage(final T message) throws InterruptedException {
+        assert message != null;
+        while (!offer(message)) {
+            if (isRejectedWhenFull(message)) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (Thread.interrupted()) throw new InterruptedException();
+            LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+        }
+        return true;
     }
 
+    /**
+     * Кладёт сообщение, не ожидая места ни при какой FullPolicy - для потоков, которые нельзя останавливать
+     * (поток ввода-вывода Netty).
+     *
+     * @return false, если очередь заполнена; если FullPolicy такое сообщение отклоняет,
+     * отказ учитывается в getRejected()
+     */
+    public boolean offerMessage(final T message) {
+        assert message != null;
+        if (offer(message)) return true;
+
+        if (isRejectedWhenFull(message)) rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Отклоняет ли FullPolicy сообщение, когда очередь заполнена (false - сообщение должно ждать места)
+     */
+    public boolean isRejectedWhenFull(final T message) {
+        return fullPolicy == FullPolicy.REJECT
+                || fullPolicy == FullPolicy.DROP_DROPPABLE && droppable.test(message);
+    }
+
+    /**
+     * Кладёт служебное сообщение (задачи сервера, открытие и закрытие соединений) в отдельную очередь
+     * без ограничения ёмкости: сообщение не ждёт места и не отбрасывается. Число таких сообщений ограничивают
+     * сами производители - числом соединений, партий и периодических задач.
+     * Потребитель забирает служебные сообщения раньше обычных.
+     */
+    public void putServiceMessage(final T message) {
+        assert message != null;
+        service.add(message);
+        wakeConsumer();
+    }
+
+    /**
+     * Забирает сообщение, ожидая его, если очередь пуста
+     */
     public T takeMessage() throws InterruptedException {
-        return bq.take();
+        T message = pollMessage();
+        for (int spin = 0; message == null && spin < CONSUMER_SPINS; spin++) {
+            message = pollMessage();
+        }
+        if (message != null) return message;
+
+        // Засыпаем; производитель разбудит, увидев waitingConsumer
+        waitingConsumer = Thread.currentThread();
+        try {
+            while ((message = pollMessage()) == null) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) throw new InterruptedException();
+            }
+        } finally {
+            waitingConsumer = null;
+        }
+        return message;
+    }
+
+    /**
+     * Забирает сообщение, либо возвращает null, если очередь пуста
+     */
+    @SuppressWarnings("unchecked")
+    public T pollMessage() {
+        final T serviceMessage = service.poll();
+        if (serviceMessage != null) return serviceMessage;
+
+        final long position = head.get();
+        final int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) return null;
+
+        final T message = (T) buffer[index];
+        buffer[index] = null;
+        sequences.lazySet(index, position + capacity);     // Ячейка свободна для следующего круга
+        head.lazySet(position + 1);
+        return message;
+    }
+
+    /**
+     * Забирает в to все имеющиеся сообщения, но не больше maxMessages. Не ждёт.
+     *
+     * @return сколько сообщений забрано
+     */
+    public int drainTo(final Collection<? super T> to, final int maxMessages) {
+        int count = 0;
+        T message;
+        while (count < maxMessages && (message = pollMessage()) != null) {
+            to.add(message);
+            count++;
+        }
+        return count;
     }
 
     public boolean hasMessages() {
-        return !bq.isEmpty();
+        return !service.isEmpty() || tail.get() > head.get();
     }
 
+    /**
+     * Глубина очереди - сколько сообщений ждут обработки, вместе со служебными
+     */
     public int size() {
-        return bq.size();
+        final long depth = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(depth, capacity)) + service.size();
+    }
+
+    /**
+     * Наибольшая глубина очереди с момента создания
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Сколько сообщений не положено в заполненную очередь
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public FullPolicy getFullPolicy() {
+        return fullPolicy;
+    }
+
+    // Занимает свободную ячейку и кладёт в неё сообщение; false - свободных ячеек нет
+    private boolean offer(final T message) {
+        long position = tail.get();
+        while (true) {
+            final int index = (int) position & mask;
+            final long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) break;
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;   // Ячейку круг назад ещё не забрал потребитель - очередь заполнена
+            } else {
+                position = tail.get();  // Ячейку уже занял другой производитель
+            }
+        }
+
+        final int index = (int) position & mask;
+        buffer[index] = message;
+        sequences.set(index, position + 1);     // Публикуем сообщение потребителю
+
+        final int depth = (int) (position + 1 - head.get());
+        if (depth > maxDepth) maxDepth = depth;     // Приблизительно: гонки производителей допустимы
+
+        wakeConsumer();
+        return true;
+    }
+
+    // Будит потребителя, если он уснул в takeMessage()
+    private void wakeConsumer() {
+        final Thread consumer = waitingConsumer;
+        if (consumer != null) LockSupport.unpark(consumer);
     }
 
 }
@@ -1,143 +1,160 @@
 package edu.demidov.netchess.common.model.network;
 
 import edu.demidov.netchess.common.model.exceptions.IllegalRequestParameter;
+import edu.demidov.netchess.common.model.network.payload.CredentialsPayload;
+import edu.demidov.netchess.common.model.network.payload.GameActionPayload;
+import edu.demidov.netchess.common.model.network.payload.GamePayload;
+import edu.demidov.netchess.common.model.network.payload.InvitePayload;
+import edu.demidov.netchess.common.model.network.payload.MultiplePayload;
+import edu.demidov.netchess.common.model.network.payload.Payload;
+import edu.demidov.netchess.common.model.network.payload.TextPayload;
+import edu.demidov.netchess.common.model.network.payload.UserPayload;
+import edu.demidov.netchess.common.model.network.payload.UsersPayload;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.Map;
 
+/**
+ * Сообщение между клиентом и сервером: тип и данные (Payload) с фиксированными полями.
+ * Класс данных определяется типом сообщения - Type.getPayloadClass().
+ */
 public class NetworkMessage implements Serializable {
 
-    public static final String NAME = "name", PASSWORD_HASH = "passwordHash";
-    public static final String TEXT = "text";
-    public static final String USER = "user", USERS = "users";
-    public static final String CHAT_TEXT = "text";
-    public static final String INVITE_NAME = "inviteName", INVITES = "invites",
-            INVITE_TYPE = "type", INVITE_TYPE_YES = "y", INVITE_TYPE_NO = "n";
-    public static final String CURRENT_GAME = "game", GAME_ACTION = "action";
-    public static final String MULTI_MESSAGES = "multi";
-    private static final String NO_SUCH_KEY = "Некорректные параметры запроса (%s)";
-    private static final String ILLEGAL_REQUEST_PARAMETERS = "Некорректные параметры запроса (%s:%s)";
+    private static final String ILLEGAL_PAYLOAD = "Некорректные параметры запроса (%s:%s)";
     private final static Logger log = LoggerFactory.getLogger(NetworkMessage.class);
-    private Type type;
-    private Map<String, Object> map = new HashMap();
+    private final Type type;
+    private final Payload payload;
 
-    public NetworkMessage() {
+    /**
+     * Сообщение без данных
+     */
+    public NetworkMessage(final Type type) {
+        this(type, null);
     }
 
-    public NetworkMessage(final Type type) {
+    public NetworkMessage(final Type type, final Payload payload) {
         assert type != null;
+        assert type.getPayloadClass() == null ? payload == null : type.getPayloadClass().isInstance(payload);
         this.type = type;
+        this.payload = payload;
     }
 
     public Type getType() {
         return type;
     }
 
-    public void setType(final Type type) {
-        this.type = type;
-    }
-
-    public Map getMap() {
-        return map;
-    }
-
-    public void setMap(final Map map) {
-        this.map = map;
+    /**
+     * Данные сообщения без проверки; null, если у типа сообщения данных нет
+     */
+    public Payload getPayload() {
+        return payload;
     }
 
     /**
-     * Достаёт данные из сообщения.
-     * В случае некорректных данных выбрасывает исключение:
-     * - если в сообщении нет такого ключа;
-     * - если значение null и isMayBeNull установлено в false;
-     * - если значение не соответсвует ожидаемому типу
+     * Данные сообщения ожидаемого класса.
+     * Выбрасывает исключение, если данные не соответствуют типу сообщения (см. checkPayload()) или классу clazz.
      *
      * @param <T>
-     * @param key
      * @param clazz
-     * @param isMayBeNull
      * @return
      * @throws edu.demidov.netchess.common.model.exceptions.IllegalRequestParameter
      */
-    public <T> T getParam(final String key, final Class<T> clazz, boolean isMayBeNull) throws IllegalRequestParameter {
-        log.trace("getParam key={}, clazz={}, isMayBeNull={}", key, clazz, isMayBeNull);
-
-        // Проверяем есть ли такой ключ
-        if (!map.containsKey(key))
-            throw new IllegalRequestParameter(String.format(NO_SUCH_KEY, key));
-        final Object value = map.get(key);
-
-        // Проверяем на null (по необходимости); а также на соответствие типа
-        if (value == null && !isMayBeNull || value != null && value.getClass() != clazz) {
-            log.trace("getParam IllegalRequestParameter key={}, clazz={}, isMayBeNull={}, value={}, map={}", key, clazz, isMayBeNull, value, map);
-            throw new IllegalRequestParameter(String.format(ILLEGAL_REQUEST_PARAMETERS, key, value));
+    public <T extends Payload> T getPayload(final Class<T> clazz) throws IllegalRequestParameter {
+        checkPayload();
+        if (!clazz.isInstance(payload)) {
+            log.trace("getPayload IllegalRequestParameter clazz={}, msg={}", clazz, this);
+            throw new IllegalRequestParameter(String.format(ILLEGAL_PAYLOAD, type, payload));
         }
-
-        return (T) value;
-    }
-
-    public <T> T getParam(final String key, final Class<T> clazz) throws IllegalRequestParameter {
-        return getParam(key, clazz, false);
+        return clazz.cast(payload);
     }
 
     /**
-     * Записывает данные в сообщение
+     * Проверяет данные пришедшего по сети сообщения. Выбрасывает исключение:
+     * - если тип сообщения не задан;
+     * - если класс данных не соответствует типу сообщения;
+     * - если не заполнены обязательные поля данных
      *
-     * @param key
-     * @param object
+     * @throws edu.demidov.netchess.common.model.exceptions.IllegalRequestParameter
      */
-    public void put(final String key, final Object object) {
-        map.put(key, object);
+    public void checkPayload() throws IllegalRequestParameter {
+        final boolean isValid;
+        if (type == null) {
+            isValid = false;
+        } else if (type.getPayloadClass() == null) {
+            isValid = payload == null;
+        } else {
+            isValid = payload != null && payload.getClass() == type.getPayloadClass() && payload.isValid();
+        }
+
+        if (!isValid) {
+            log.trace("checkPayload IllegalRequestParameter msg={}", this);
+            throw new IllegalRequestParameter(String.format(ILLEGAL_PAYLOAD, type, payload));
+        }
     }
 
     @Override
     public String toString() {
         return "NetworkMessage{"
                 + "type=" + type
-                + ", map=" + map
+                + ", payload=" + payload
                 + '}';
     }
 
     public enum Type {
         // For Server:
-        CreateUser,
-        LoginUser,
+        CreateUser(CredentialsPayload.class),
+        LoginUser(CredentialsPayload.class),
 
-        ChatSend,
+        ChatSend(TextPayload.class),
 
         GetOnlineUsers,
 
-        InviteToPlay,
+        InviteToPlay(InvitePayload.class),
         GetIncomingInviters,
-        InviteToPlayResponse,
+        InviteToPlayResponse(InvitePayload.class),
 
         GetCurrentGame,
-        DoAction,
+        DoAction(GameActionPayload.class),
 
         // For Client:
-        SomeError,
-        MultipleMessage,       // Несколько сообщений, упакованных в одно. MULTI_MESSAGE содержит Set сообщений.
+        SomeError(TextPayload.class),
+        MultipleMessage(MultiplePayload.class),       // Несколько сообщений, упакованных в одно
 
-        CreateUserError,
-        LoginUserError,
-        LoginUserSuccess,
-        AuthError,
+        CreateUserError(TextPayload.class),
+        LoginUserError(TextPayload.class),
+        LoginUserSuccess(UserPayload.class),
+        AuthError(TextPayload.class),
 
-        ChatNewMessage,
+        ChatNewMessage(TextPayload.class),
 
-        SendOnlineUsers,
+        SendOnlineUsers(UsersPayload.class),
 
-        SendIncomingInvites,
+        SendIncomingInvites(UsersPayload.class),
 
-        SendCurrentGame,
-        GameActionError,
+        SendCurrentGame(GamePayload.class),
+        GameActionError(TextPayload.class),
 
         // Other
-        ConnectionClosed,
-        ConnectionOpened,
+        ConnectionClosed(TextPayload.class),
+        ConnectionOpened;
+
+        private final Class<? extends Payload> payloadClass;
+
+        Type() {
+            this(null);
+        }
+
+        Type(final Class<? extends Payload> payloadClass) {
+            this.payloadClass = payloadClass;
+        }
+
+        /**
+         * Класс данных сообщения этого типа; null, если данных нет
+         */
+        public Class<? extends Payload> getPayloadClass() {
+            return payloadClass;
+        }
     }
 
 }
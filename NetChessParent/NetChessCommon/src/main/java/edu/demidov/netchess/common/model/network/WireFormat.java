@@ -0,0 +1,693 @@
+package edu.demidov.netchess.common.model.network;
+
+import edu.demidov.netchess.common.model.exceptions.game.chess.InvalidBoardSizeException;
+import edu.demidov.netchess.common.model.game.chess.ChessAction;
+import edu.demidov.netchess.common.model.game.chess.ChessColor;
+import edu.demidov.netchess.common.model.game.chess.ChessField;
+import edu.demidov.netchess.common.model.game.chess.ChessFigure;
+import edu.demidov.netchess.common.model.game.chess.ChessGame;
+import edu.demidov.netchess.common.model.game.chess.ChessPlayer;
+import edu.demidov.netchess.common.model.game.chess.GameClock;
+import edu.demidov.netchess.common.model.game.chess.LegalMoves;
+import edu.demidov.netchess.common.model.game.chess.MoveHistory;
+import edu.demidov.netchess.common.model.game.chess.PackedField;
+import edu.demidov.netchess.common.model.game.chess.TimeControl;
+import edu.demidov.netchess.common.model.game.chess.Zobrist;
+import edu.demidov.netchess.common.model.network.payload.CredentialsPayload;
+import edu.demidov.netchess.common.model.network.payload.GameActionPayload;
+import edu.demidov.netchess.common.model.network.payload.GamePayload;
+import edu.demidov.netchess.common.model.network.payload.InvitePayload;
+import edu.demidov.netchess.common.model.network.payload.MultiplePayload;
+import edu.demidov.netchess.common.model.network.payload.Payload;
+import edu.demidov.netchess.common.model.network.payload.TextPayload;
+import edu.demidov.netchess.common.model.network.payload.UserPayload;
+import edu.demidov.netchess.common.model.network.payload.UsersPayload;
+import edu.demidov.netchess.common.model.users.UserProfile;
+import edu.demidov.netchess.utils.Point;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Бинарный формат сообщений NetworkMessage - вместо сериализации Java: без описаний классов
+ * и рефлексии, каждое поле пишется прямо в ByteBuf.
+ * <p>
+ * Кадр:
+ * <pre>
+ * длина тела   int, FRAME_LENGTH_BYTES байта - пишет и читает NetworkMessageEncoder/Decoder
+ * тип          байт, Type.ordinal()
+ * наличие      байт, только у типов с данными (Type.getPayloadClass() != null): всегда 1, так как
+ *              NetworkMessage таких типов без данных не создаётся; 0 при чтении - ошибка кадра
+ * данные       поля payload по порядку (см. ниже)
+ * </pre>
+ * Данные по типам payload:
+ * <ul>
+ * <li>CredentialsPayload: name, passwordHash;</li>
+ * <li>TextPayload: text;</li>
+ * <li>InvitePayload: name, isAccept (байт);</li>
+ * <li>GameActionPayload: ChessAction - байт наличия, тип (ordinal + 1), точки, фигура вместо пешки (ordinal + 1);</li>
+ * <li>UserPayload: профиль; UsersPayload: размер и профили (UserProfile);</li>
+ * <li>MultiplePayload: размер и сообщения целиком, без длины кадра и без вложенных MultipleMessage;</li>
+ * <li>GamePayload: ChessGame (см. writeGame()), затем LegalMoves - байт наличия, число клеток (varint)
+ * и для каждой клетки её номер (байт) и маска ходов (long, 8 байт).</li>
+ * </ul>
+ * Числа:
+ * <ul>
+ * <li>int (счётчики, рейтинг, id, индексы + 1) - varint: по 7 бит, начиная с младших, старший бит байта -
+ * есть ли ещё байты; отрицательный int занимает 5 байт;</li>
+ * <li>координаты точек - zigzag varint от int: координаты поля - по байту, отрицательные - тоже коротко;</li>
+ * <li>long (время, даты, версия партии) - zigzag varint от long;</li>
+ * <li>хэш позиции и маски клеток - long целиком, 8 байт.</li>
+ * </ul>
+ * Строки - varint (длина UTF-8 + 1) и байты UTF-8; коллекции и массивы - varint (размер + 1) и элементы;
+ * 0 в длине - null. Вложенные объекты (действие, профиль, партия, игрок, поле, часы, точка, дата окончания)
+ * начинаются с байта наличия: 0 - null, 1 - далее поля объекта.
+ * Перечисления пишутся по ordinal(), поэтому новые типы сообщений и значения добавляются только в конец.
+ * <p>
+ * Некорректное тело (обрыв, неизвестный тип, неверные размеры) - CorruptedFrameException.
+ */
+public final class WireFormat {
+
+    public static final int FRAME_LENGTH_BYTES = 4;
+    public static final int MAX_FRAME_BYTES = 1 << 20;
+
+    private static final NetworkMessage.Type[] MESSAGE_TYPES = NetworkMessage.Type.values();
+    private static final ChessAction.Type[] ACTION_TYPES = ChessAction.Type.values();
+    private static final ChessFigure.Type[] FIGURE_TYPES = ChessFigure.Type.values();
+    private static final ChessColor[] COLORS = ChessColor.values();
+    private static final int NULL = 0;
+    private static final int INVITED = 1, PLAYING = 2;
+    private static final int CHOOSING_FIGURE = 1, FINISHED = 2;
+
+    private WireFormat() {
+    }
+
+    /**
+     * Записывает тело сообщения в out
+     */
+    public static void write(final NetworkMessage msg, final ByteBuf out) {
+        write(msg, out, true);
+    }
+
+    /**
+     * Читает тело сообщения, записанное write(), из in
+     *
+     * @throws CorruptedFrameException если тело некорректно
+     */
+    public static NetworkMessage read(final ByteBuf in) {
+        try {
+            return read(in, true);
+        } catch (final IndexOutOfBoundsException ex) {
+            throw new CorruptedFrameException("Обрыв сообщения", ex);
+        }
+    }
+
+    private static void write(final NetworkMessage msg, final ByteBuf out, final boolean isTopLevel) {
+        final NetworkMessage.Type type = msg.getType();
+        out.writeByte(type.ordinal());
+        if (type.getPayloadClass() == null) return;
+
+        final Payload payload = msg.getPayload();
+        out.writeBoolean(payload != null);
+        if (payload == null) return;
+
+        switch (type) {
+            case CreateUser:
+            case LoginUser:
+                final CredentialsPayload credentials = (CredentialsPayload) payload;
+                writeString(out, credentials.getName());
+                writeString(out, credentials.getPasswordHash());
+                break;
+            case InviteToPlay:
+            case InviteToPlayResponse:
+                final InvitePayload invite = (InvitePayload) payload;
+                writeString(out, invite.getName());
+                out.writeBoolean(invite.isAccept());
+                break;
+            case DoAction:
+                writeAction(out, ((GameActionPayload) payload).getAction());
+                break;
+            case MultipleMessage:
+                if (!isTopLevel) throw new IllegalArgumentException("Вложенное сообщение " + type);
+                final Set<NetworkMessage> messages = ((MultiplePayload) payload).getMessages();
+                writeSize(out, messages);
+                if (messages != null) {
+                    for (final NetworkMessage message : messages) {
+                        write(message, out, false);
+                    }
+                }
+                break;
+            case LoginUserSuccess:
+                writeProfile(out, ((UserPayload) payload).getUser());
+                break;
+            case SendOnlineUsers:
+            case SendIncomingInvites:
+                final Set<UserProfile> users = ((UsersPayload) payload).getUsers();
+                writeSize(out, users);
+                if (users != null) {
+                    for (final UserProfile user : users) {
+                        writeProfile(out, user);
+                    }
+                }
+                break;
+            case SendCurrentGame:
+                final GamePayload gamePayload = (GamePayload) payload;
+                writeGame(out, gamePayload.getGame());
+                writeLegalMoves(out, gamePayload.getLegalMoves());
+                break;
+            default:
+                // Остальные типы - TextPayload
+                writeString(out, ((TextPayload) payload).getText());
+        }
+    }
+
+    private static NetworkMessage read(final ByteBuf in, final boolean isTopLevel) {
+        final NetworkMessage.Type type = readEnum(in, MESSAGE_TYPES);
+        if (type.getPayloadClass() == null) return new NetworkMessage(type);
+        if (!in.readBoolean()) throw new CorruptedFrameException("Нет данных сообщения " + type);
+
+        final Payload payload;
+        switch (type) {
+            case CreateUser:
+            case LoginUser:
+                payload = new CredentialsPayload(readString(in), readString(in));
+                break;
+            case InviteToPlay:
+            case InviteToPlayResponse:
+                payload = new InvitePayload(readString(in), in.readBoolean());
+                break;
+            case DoAction:
+                payload = new GameActionPayload(readAction(in));
+                break;
+            case MultipleMessage:
+                if (!isTopLevel) throw new CorruptedFrameException("Вложенное сообщение " + type);
+                final int messagesCount = readSize(in);
+                Set<NetworkMessage> messages = null;
+                if (messagesCount >= 0) {
+                    messages = new HashSet<>(capacity(messagesCount));
+                    for (int i = 0; i < messagesCount; i++) {
+                        messages.add(read(in, false));
+                    }
+                }
+                payload = new MultiplePayload(messages);
+                break;
+            case LoginUserSuccess:
+                payload = new UserPayload(readProfile(in));
+                break;
+            case SendOnlineUsers:
+            case SendIncomingInvites:
+                final int usersCount = readSize(in);
+                Set<UserProfile> users = null;
+                if (usersCount >= 0) {
+                    users = new HashSet<>(capacity(usersCount));
+                    for (int i = 0; i < usersCount; i++) {
+                        users.add(readProfile(in));
+                    }
+                }
+                payload = new UsersPayload(users);
+                break;
+            case SendCurrentGame:
+                payload = new GamePayload(readGame(in), readLegalMoves(in));
+                break;
+            default:
+                payload = new TextPayload(readString(in));
+        }
+        return new NetworkMessage(type, payload);
+    }
+
+    // Игровое действие: тип (ordinal + 1), точки, фигура вместо пешки (ordinal + 1)
+    private static void writeAction(final ByteBuf out, final ChessAction action) {
+        out.writeBoolean(action != null);
+        if (action == null) return;
+
+        writeNullableEnum(out, action.getType());
+        writePoints(out, action.getPoints());
+        writeNullableEnum(out, action.getChooseFigureType());
+    }
+
+    private static ChessAction readAction(final ByteBuf in) {
+        if (!in.readBoolean()) return null;
+
+        final ChessAction action = new ChessAction(readNullableEnum(in, ACTION_TYPES));
+        action.setPoints(readPoints(in));
+        action.setChooseFigureType(readNullableEnum(in, FIGURE_TYPES));
+        return action;
+    }
+
+    private static void writeProfile(final ByteBuf out, final UserProfile user) {
+        out.writeBoolean(user != null);
+        if (user == null) return;
+
+        writeString(out, user.getName());
+        writeVarInt(out, user.getRank());
+        writeVarInt(out, user.getWins());
+        writeVarInt(out, user.getDefeats());
+        writeVarInt(out, user.getDraws());
+        writeVarInt(out, user.getTotalTimeOnServer());
+        out.writeByte((user.isInvited() ? INVITED : 0) | (user.isPlaying() ? PLAYING : 0));
+    }
+
+    private static UserProfile readProfile(final ByteBuf in) {
+        if (!in.readBoolean()) return null;
+
+        final String name = readString(in);
+        final int rank = readVarInt(in);
+        final int wins = readVarInt(in);
+        final int defeats = readVarInt(in);
+        final int draws = readVarInt(in);
+        final int totalTimeOnServer = readVarInt(in);
+        final int flags = in.readUnsignedByte();
+        return new UserProfile(name, rank, wins, defeats, draws, totalTimeOnServer,
+                (flags & INVITED) != 0, (flags & PLAYING) != 0);
+    }
+
+    /* Партия: id, игроки, поле, индексы текущего игрока и победителя, часы, флаги, последний ход,
+    ходы партии (MoveHistory - по 2 байта), описание результата, дата окончания, хэш позиции,
+    исход по таблицам эндшпиля и версия. Допустимые ходы (ChessGame.getLegalMoves()) не передаются,
+    как и при сериализации Java.
+    */
+    private static void writeGame(final ByteBuf out, final ChessGame game) {
+        out.writeBoolean(game != null);
+        if (game == null) return;
+
+        writeVarInt(out, game.getId());
+
+        final List<ChessPlayer> players = game.getPlayers();
+        writeSize(out, players);
+        if (players != null) {
+            for (final ChessPlayer player : players) {
+                writePlayer(out, player);
+            }
+        }
+
+        writeField(out, game.getField());
+        writeVarInt(out, indexOf(players, game.getCurrentPlayer()) + 1);
+        writeVarInt(out, indexOf(players, game.getResult()) + 1);
+        writeClock(out, game.getClock(), players == null ? 0 : players.size());
+        out.writeByte((game.isCurrentPlayerChoosingFigure() ? CHOOSING_FIGURE : 0) | (game.isFinished() ? FINISHED : 0));
+        writePoints(out, game.getLastMovePoints());
+
+        final MoveHistory history = game.getMoveHistory();
+        writeVarInt(out, history.size());
+        for (int i = 0; i < history.size(); i++) {
+            out.writeShort(history.get(i));
+        }
+
+        writeString(out, game.getResultReasonDescription());
+        final Date finished = game.getFinishedGameDate();
+        out.writeBoolean(finished != null);
+        if (finished != null) writeVarLong(out, finished.getTime());
+        out.writeLong(game.getZobristKey());
+        writeString(out, game.getForcedOutcome());
+        writeVarLong(out, game.getVersion());
+    }
+
+    private static ChessGame readGame(final ByteBuf in) {
+        if (!in.readBoolean()) return null;
+
+        final ChessGame game = new ChessGame();
+        game.setId(readVarInt(in));
+
+        final int playersCount = readSize(in);
+        List<ChessPlayer> players = null;
+        if (playersCount >= 0) {
+            players = new ArrayList<>(playersCount);
+            for (int i = 0; i < playersCount; i++) {
+                players.add(readPlayer(in));
+            }
+        }
+        game.setPlayers(players);
+
+        game.setField(readField(in));
+        game.setCurrentPlayer(readPlayerIndex(in, players));
+        game.setResult(readPlayerIndex(in, players));
+        game.setClock(readClock(in, playersCount));
+
+        final int flags = in.readUnsignedByte();
+        game.setCurrentPlayerChoosingFigure((flags & CHOOSING_FIGURE) != 0);
+        if ((flags & FINISHED) != 0) game.setFinished(true);
+        game.setLastMovePoints(readPoints(in));
+
+        final MoveHistory history = game.getMoveHistory();
+        final int moves = readVarInt(in);
+        if (moves < 0) throw new CorruptedFrameException("Ходов " + moves);
+        checkSize(in, moves);
+        for (int i = 0; i < moves; i++) {
+            final int move = in.readUnsignedShort();
+            final int from = MoveHistory.from(move), to = MoveHistory.to(move);
+            history.add(from % Zobrist.SIZE, from / Zobrist.SIZE, to % Zobrist.SIZE, to / Zobrist.SIZE);
+            final ChessFigure.Type promotion = MoveHistory.promotion(move);
+            if (promotion != null) history.setLastPromotion(promotion);
+        }
+
+        game.setResultReasonDescription(readString(in));
+        game.setFinishedGameDate(in.readBoolean() ? new Date(readVarLong(in)) : null);
+        game.setZobristKey(in.readLong());
+        game.setForcedOutcome(readString(in));
+        game.setVersion(readVarLong(in));
+        return game;
+    }
+
+    private static void writePlayer(final ByteBuf out, final ChessPlayer player) {
+        out.writeBoolean(player != null);
+        if (player == null) return;
+
+        writeString(out, player.getName());
+        writeVarInt(out, player.getRank());
+        writeVarInt(out, player.getWins());
+        writeVarInt(out, player.getDefeats());
+        writeVarInt(out, player.getDraws());
+        writeVarInt(out, player.getTotalTimeOnServer());
+        writeNullableEnum(out, player.getColor());
+        writeVarLong(out, player.getTimeLeft());
+        out.writeBoolean(player.isOfferedDraw());
+        writeVarInt(out, player.getAccruedScores());
+    }
+
+    private static ChessPlayer readPlayer(final ByteBuf in) {
+        if (!in.readBoolean()) return null;
+
+        final ChessPlayer player = new ChessPlayer();
+        player.setName(readString(in));
+        player.setRank(readVarInt(in));
+        player.setWins(readVarInt(in));
+        player.setDefeats(readVarInt(in));
+        player.setDraws(readVarInt(in));
+        player.setTotalTimeOnServer(readVarInt(in));
+        player.setColor(readNullableEnum(in, COLORS));
+        player.setTimeLeft(readVarLong(in));
+        player.setOfferedDraw(in.readBoolean());
+        player.setAccruedScores(readVarInt(in));
+        return player;
+    }
+
+    // Поле: размер, коды фигур (PackedField.code()) по клеткам y * size + x и права на рокировку
+    private static void writeField(final ByteBuf out, final ChessField field) {
+        out.writeBoolean(field != null);
+        if (field == null) return;
+
+        final int size = field.getFieldSize();
+        final ChessFigure[][] figures = field.getField();
+        writeVarInt(out, size);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                out.writeByte(PackedField.code(figures[x][y]));
+            }
+        }
+        out.writeByte(field.getCastlingRights());
+    }
+
+    private static ChessField readField(final ByteBuf in) {
+        if (!in.readBoolean()) return null;
+
+        final int size = readVarInt(in);
+        if (size < 0 || size > Zobrist.SIZE * Zobrist.SIZE) throw new CorruptedFrameException("Размер поля " + size);
+        checkSize(in, size * size);
+
+        final ChessField field;
+        try {
+            field = new ChessField(size);
+        } catch (final InvalidBoardSizeException ex) {
+            throw new CorruptedFrameException("Размер поля " + size, ex);
+        }
+        final ChessFigure[][] figures = field.getField();
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                final int code = in.readUnsignedByte();
+                if (code == PackedField.EMPTY) {
+                    figures[x][y] = null;
+                } else {
+                    if ((code & ~PackedField.BLACK) > FIGURE_TYPES.length) throw new CorruptedFrameException("Код фигуры " + code);
+                    figures[x][y] = ChessFigure.of(PackedField.colorOf(code), PackedField.typeOf(code));
+                }
+            }
+        }
+        field.setCastlingRights(in.readUnsignedByte() & Zobrist.ALL_CASTLING);
+        return field;
+    }
+
+    /* Часы: контроль времени, остаток каждого игрока и чьи часы идут. System.nanoTime() имеет смысл
+    только в одной JVM, поэтому, как и при сериализации Java, передаётся время текущего хода.
+    */
+    private static void writeClock(final ByteBuf out, final GameClock clock, final int players) {
+        out.writeBoolean(clock != null);
+        if (clock == null) return;
+
+        final TimeControl timeControl = clock.getTimeControl();
+        writeVarLong(out, timeControl.getBaseMillis());
+        writeVarLong(out, timeControl.getIncrementMillis());
+        writeVarLong(out, timeControl.getDelayMillis());
+
+        final long now = System.nanoTime();
+        final long elapsed = clock.getElapsedNanos(now);
+        for (int i = 0; i < players; i++) {
+            // Остаток на начало хода, как хранят сами часы
+            writeVarLong(out, clock.getRemainingNanos(i, now) + (i == clock.getRunning() ? elapsed : 0));
+        }
+        writeVarInt(out, clock.getRunning() + 1);
+        writeVarLong(out, elapsed);
+    }
+
+    private static GameClock readClock(final ByteBuf in, final int players) {
+        if (!in.readBoolean()) return null;
+
+        final long base = readVarLong(in), increment = readVarLong(in), delay = readVarLong(in);
+        if (base < 0 || increment < 0 || delay < 0) throw new CorruptedFrameException("Контроль времени");
+
+        final int count = Math.max(players, 0);
+        final GameClock clock = new GameClock(new TimeControl(base, increment, delay), count);
+        for (int i = 0; i < count; i++) {
+            clock.setRemainingNanos(i, readVarLong(in));
+        }
+        final int running = readVarInt(in) - 1;
+        final long elapsed = readVarLong(in);
+        if (running < GameClock.STOPPED || running >= count) throw new CorruptedFrameException("Часы игрока " + running);
+        if (running != GameClock.STOPPED) clock.start(running, System.nanoTime() - elapsed);
+        return clock;
+    }
+
+    private static void writeLegalMoves(final ByteBuf out, final LegalMoves legalMoves) {
+        out.writeBoolean(legalMoves != null);
+        if (legalMoves == null) return;
+
+        int squares = 0;
+        for (int square = 0; square < Zobrist.SQUARES; square++) {
+            if (legalMoves.getTargets(Point.of(square)) != 0) squares++;
+        }
+        writeVarInt(out, squares);
+        for (int square = 0; square < Zobrist.SQUARES; square++) {
+            final long targets = legalMoves.getTargets(Point.of(square));
+            if (targets == 0) continue;
+            out.writeByte(square);
+            out.writeLong(targets);
+        }
+    }
+
+    private static LegalMoves readLegalMoves(final ByteBuf in) {
+        if (!in.readBoolean()) return null;
+
+        final LegalMoves legalMoves = new LegalMoves();
+        final int squares = readVarInt(in);
+        if (squares < 0 || squares > Zobrist.SQUARES) throw new CorruptedFrameException("Допустимые ходы " + squares);
+        for (int i = 0; i < squares; i++) {
+            final int from = in.readUnsignedByte();
+            if (from >= Zobrist.SQUARES) throw new CorruptedFrameException("Клетка " + from);
+            for (long targets = in.readLong(); targets != 0; targets &= targets - 1) {
+                legalMoves.add(from, Long.numberOfTrailingZeros(targets));
+            }
+        }
+        return legalMoves;
+    }
+
+    private static void writePoints(final ByteBuf out, final Point[] points) {
+        writeVarInt(out, points == null ? NULL : points.length + 1);
+        if (points == null) return;
+
+        for (final Point point : points) {
+            out.writeBoolean(point != null);
+            if (point == null) continue;
+            writeZigZag(out, point.getX());
+            writeZigZag(out, point.getY());
+        }
+    }
+
+    private static Point[] readPoints(final ByteBuf in) {
+        final int count = readSize(in);
+        if (count < 0) return null;
+
+        final Point[] points = new Point[count];
+        for (int i = 0; i < count; i++) {
+            if (in.readBoolean()) points[i] = Point.of(readZigZag(in), readZigZag(in));
+        }
+        return points;
+    }
+
+    private static void writeSize(final ByteBuf out, final Collection<?> collection) {
+        writeVarInt(out, collection == null ? NULL : collection.size() + 1);
+    }
+
+    // Размер коллекции, записанный writeSize(), либо -1 для null
+    private static int readSize(final ByteBuf in) {
+        final int size = readVarInt(in) - 1;
+        if (size < -1) throw new CorruptedFrameException("Размер " + size);
+        checkSize(in, size);
+        return size;
+    }
+
+    // Каждый элемент занимает хотя бы байт - больший размер означает повреждённое сообщение
+    private static void checkSize(final ByteBuf in, final int size) {
+        if (size > in.readableBytes()) throw new CorruptedFrameException("Размер " + size);
+    }
+
+    private static int indexOf(final List<ChessPlayer> players, final ChessPlayer player) {
+        return players == null || player == null ? -1 : players.indexOf(player);
+    }
+
+    private static ChessPlayer readPlayerIndex(final ByteBuf in, final List<ChessPlayer> players) {
+        final int index = readVarInt(in) - 1;
+        if (index == -1) return null;
+        if (players == null || index < 0 || index >= players.size()) throw new CorruptedFrameException("Игрок " + index);
+        return players.get(index);
+    }
+
+    private static <E extends Enum<E>> E readEnum(final ByteBuf in, final E[] values) {
+        final int ordinal = in.readUnsignedByte();
+        if (ordinal >= values.length) throw new CorruptedFrameException("Значение " + ordinal);
+        return values[ordinal];
+    }
+
+    private static void writeNullableEnum(final ByteBuf out, final Enum<?> value) {
+        out.writeByte(value == null ? NULL : value.ordinal() + 1);
+    }
+
+    private static <E extends Enum<E>> E readNullableEnum(final ByteBuf in, final E[] values) {
+        final int code = in.readUnsignedByte();
+        if (code == NULL) return null;
+        if (code > values.length) throw new CorruptedFrameException("Значение " + code);
+        return values[code - 1];
+    }
+
+    // Строка: длина в байтах UTF-8 + 1 (0 - null) и сами байты - пишутся в out без промежуточного массива
+    private static void writeString(final ByteBuf out, final String str) {
+        if (str == null) {
+            writeVarInt(out, NULL);
+            return;
+        }
+
+        writeVarInt(out, utf8Length(str) + 1);
+        out.ensureWritable(str.length() * 3);
+        for (int i = 0; i < str.length(); i++) {
+            final char c = str.charAt(i);
+            if (c < 0x80) {
+                out.writeByte(c);
+            } else if (c < 0x800) {
+                out.writeByte(0xC0 | c >> 6);
+                out.writeByte(0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < str.length() && Character.isLowSurrogate(str.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, str.charAt(++i));
+                out.writeByte(0xF0 | codePoint >> 18);
+                out.writeByte(0x80 | codePoint >> 12 & 0x3F);
+                out.writeByte(0x80 | codePoint >> 6 & 0x3F);
+                out.writeByte(0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                // Непарный суррогат - как в String.getBytes()
+                out.writeByte('?');
+            } else {
+                out.writeByte(0xE0 | c >> 12);
+                out.writeByte(0x80 | c >> 6 & 0x3F);
+                out.writeByte(0x80 | c & 0x3F);
+            }
+        }
+    }
+
+    private static int utf8Length(final String str) {
+        int length = 0;
+        for (int i = 0; i < str.length(); i++) {
+            final char c = str.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < str.length() && Character.isLowSurrogate(str.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static String readString(final ByteBuf in) {
+        final int length = readVarInt(in) - 1;
+        if (length == -1) return null;
+        if (length < 0 || length > in.readableBytes()) throw new CorruptedFrameException("Длина строки " + length);
+
+        final String str = in.toString(in.readerIndex(), length, StandardCharsets.UTF_8);
+        in.skipBytes(length);
+        return str;
+    }
+
+    // varint: по 7 бит, начиная с младших; старший бит байта - есть ли ещё байты. Отрицательные - 5 байт.
+    static void writeVarInt(final ByteBuf out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(final ByteBuf in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final int b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new CorruptedFrameException("varint длиннее 5 байт");
+    }
+
+    // zigzag varint для int: числа, близкие к нулю, любого знака - в один-два байта
+    static void writeZigZag(final ByteBuf out, final int value) {
+        writeVarInt(out, value << 1 ^ value >> 31);
+    }
+
+    static int readZigZag(final ByteBuf in) {
+        final int zigzag = readVarInt(in);
+        return zigzag >>> 1 ^ -(zigzag & 1);
+    }
+
+    // zigzag varint: числа, близкие к нулю, любого знака - в несколько байт
+    static void writeVarLong(final ByteBuf out, final long value) {
+        long zigzag = value << 1 ^ value >> 63;
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) (zigzag & 0x7F | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    static long readVarLong(final ByteBuf in) {
+        long zigzag = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            final int b = in.readByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return zigzag >>> 1 ^ -(zigzag & 1);
+        }
+        throw new CorruptedFrameException("varint длиннее 10 байт");
+    }
+
+    private static int capacity(final int size) {
+        return size * 4 / 3 + 1;
+    }
+
+}
@@ -0,0 +1,92 @@
+package edu.demidov.netchess.common.model.network.netty;
+
+import edu.demidov.netchess.common.model.network.MessageQueue;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кладёт сообщения канала в очередь сообщений, не останавливая поток ввода-вывода Netty.
+ * <p>
+ * Если очередь заполнена, сообщение, которое отклоняет FullPolicy очереди (MessageQueue.isRejectedWhenFull()),
+ * передаётся в onRejected(). Остальные откладываются по порядку, а канал перестаёт читать сокет
+ * (setAutoRead(false)), пока очередь не примет отложенные сообщения - их повторяют каждые RETRY_MILLIS
+ * в потоке канала. Сообщения одного канала попадают в очередь в том порядке, в каком пришли.
+ * <p>
+ * Экземпляр - на один канал; все методы вызываются в потоке канала.
+ */
+public abstract class MessageQueueInboundHandler<T> extends ChannelInboundHandlerAdapter {
+
+    public static final long RETRY_MILLIS = 10;    // Через сколько повторить отложенные сообщения
+    private final static Logger log = LoggerFactory.getLogger(MessageQueueInboundHandler.class);
+    protected final MessageQueue<T> messageQueue;
+    private final Queue<T> pending = new ArrayDeque<>();   // Не принятые очередью, по порядку
+
+    protected MessageQueueInboundHandler(final MessageQueue<T> messageQueue) {
+        this.messageQueue = messageQueue;
+    }
+
+    /**
+     * Кладёт сообщение в очередь; пока есть отложенные - за ними.
+     * Если очередь заполнена - отклоняет сообщение по FullPolicy, либо откладывает его.
+     */
+    protected void enqueue(final ChannelHandlerContext ctx, final T message) {
+        if (!pending.isEmpty()) {
+            pending.add(message);
+        } else if (!messageQueue.offerMessage(message)) {
+            if (messageQueue.isRejectedWhenFull(message)) {
+                onRejected(ctx, message);
+            } else {
+                postpone(ctx, message);
+            }
+        }
+    }
+
+    /**
+     * Кладёт сообщение в очередь за отложенными, никогда не отклоняя его (например, о закрытии соединения).
+     * Сообщение дойдёт, даже если канал уже закрыт.
+     */
+    protected void enqueueReliably(final ChannelHandlerContext ctx, final T message) {
+        if (!pending.isEmpty()) {
+            pending.add(message);
+        } else if (!messageQueue.offerMessage(message)) {
+            postpone(ctx, message);
+        }
+    }
+
+    /**
+     * Очередь заполнена, и FullPolicy отклоняет сообщение
+     */
+    protected abstract void onRejected(ChannelHandlerContext ctx, T message);
+
+    // Откладывает первое не принятое сообщение и перестаёт читать канал
+    private void postpone(final ChannelHandlerContext ctx, final T message) {
+        log.warn("postpone: messageQueue is full, reading paused; channel={}", ctx.channel());
+        pending.add(message);
+        ctx.channel().config().setAutoRead(false);
+        scheduleRetry(ctx);
+    }
+
+    private void scheduleRetry(final ChannelHandlerContext ctx) {
+        ctx.executor().schedule(() -> retryPending(ctx), RETRY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // Отдаёт очереди отложенные сообщения и снова включает чтение
+    private void retryPending(final ChannelHandlerContext ctx) {
+        while (!pending.isEmpty()) {
+            if (!messageQueue.offerMessage(pending.peek())) {
+                scheduleRetry(ctx);
+                return;
+            }
+            pending.remove();
+        }
+        log.debug("retryPending: reading resumed; channel={}", ctx.channel());
+        ctx.channel().config().setAutoRead(true);
+    }
+
+}
@@ -0,0 +1,48 @@
+package edu.demidov.netchess.common.model.network.netty;
+
+import edu.demidov.netchess.common.model.network.NetworkMessage;
+import edu.demidov.netchess.common.model.network.WireFormat;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+
+/**
+ * Читает кадры WireFormat и отдаёт дальше по конвейеру NetworkMessage.
+ * Кадр длиннее WireFormat.MAX_FRAME_BYTES отбрасывается (TooLongFrameException), как и некорректное тело
+ * (CorruptedFrameException) - обработчик канала получает исключение в exceptionCaught().
+ * Хранит недочитанный кадр, поэтому у каждого канала свой экземпляр.
+ */
+public class NetworkMessageDecoder extends LengthFieldBasedFrameDecoder {
+
+    private static final String BYTES_LEFT = "Лишние байты после сообщения %s: %d";
+
+    public NetworkMessageDecoder() {
+        super(WireFormat.MAX_FRAME_BYTES + WireFormat.FRAME_LENGTH_BYTES,
+                0, WireFormat.FRAME_LENGTH_BYTES, 0, WireFormat.FRAME_LENGTH_BYTES);
+    }
+
+    @Override
+    protected Object decode(final ChannelHandlerContext ctx, final ByteBuf in) throws Exception {
+        final ByteBuf frame = (ByteBuf) super.decode(ctx, in);
+        if (frame == null) return null;
+
+        try {
+            final NetworkMessage msg = WireFormat.read(frame);
+            if (frame.isReadable()) {
+                throw new CorruptedFrameException(String.format(BYTES_LEFT, msg.getType(), frame.readableBytes()));
+            }
+            return msg;
+        } finally {
+            frame.release();
+        }
+    }
+
+    // Кадр читается сразу, поэтому копировать его из входного буфера не нужно
+    @Override
+    protected ByteBuf extractFrame(final ChannelHandlerContext ctx, final ByteBuf buffer, final int index,
+                                   final int length) {
+        return buffer.slice(index, length).retain();
+    }
+
+}
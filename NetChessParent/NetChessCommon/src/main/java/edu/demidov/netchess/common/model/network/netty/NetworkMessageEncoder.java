@@ -0,0 +1,34 @@
+package edu.demidov.netchess.common.model.network.netty;
+
+import edu.demidov.netchess.common.model.network.NetworkMessage;
+import edu.demidov.netchess.common.model.network.WireFormat;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.TooLongFrameException;
+
+/**
+ * Пишет NetworkMessage кадром WireFormat: длина тела и тело.
+ * Буфер берётся у аллокатора канала (ChannelOption.ALLOCATOR), тело пишется в него сразу после места под длину -
+ * ни промежуточных массивов, ни копирования. Состояния нет, поэтому один экземпляр - на все каналы.
+ */
+@ChannelHandler.Sharable
+public class NetworkMessageEncoder extends MessageToByteEncoder<NetworkMessage> {
+
+    private static final String TOO_LONG_FRAME = "Сообщение длиной %d байт больше допустимых %d";
+
+    @Override
+    protected void encode(final ChannelHandlerContext ctx, final NetworkMessage msg, final ByteBuf out) {
+        final int lengthIndex = out.writerIndex();
+        out.writeInt(0);
+        WireFormat.write(msg, out);
+
+        final int length = out.writerIndex() - lengthIndex - WireFormat.FRAME_LENGTH_BYTES;
+        if (length > WireFormat.MAX_FRAME_BYTES) {
+            throw new TooLongFrameException(String.format(TOO_LONG_FRAME, length, WireFormat.MAX_FRAME_BYTES));
+        }
+        out.setInt(lengthIndex, length);
+    }
+
+}
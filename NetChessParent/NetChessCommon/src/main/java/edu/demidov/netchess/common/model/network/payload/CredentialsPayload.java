@@ -0,0 +1,34 @@
+package edu.demidov.netchess.common.model.network.payload;
+
+/**
+ * Имя пользователя и хэш пароля - для входа и регистрации
+ */
+public final class CredentialsPayload implements Payload {
+
+    private final String name;
+    private final String passwordHash;
+
+    public CredentialsPayload(final String name, final String passwordHash) {
+        this.name = name;
+        this.passwordHash = passwordHash;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    @Override
+    public boolean isValid() {
+        return name != null && passwordHash != null;
+    }
+
+    @Override
+    public String toString() {
+        return "CredentialsPayload{name=" + name + '}';
+    }
+
+}
@@ -0,0 +1,30 @@
+package edu.demidov.netchess.common.model.network.payload;
+
+import edu.demidov.netchess.common.model.game.chess.ChessAction;
+
+/**
+ * Игровое действие: ход, выбор фигуры вместо пешки, сдача, предложение ничьей
+ */
+public final class GameActionPayload implements Payload {
+
+    private final ChessAction action;
+
+    public GameActionPayload(final ChessAction action) {
+        this.action = action;
+    }
+
+    public ChessAction getAction() {
+        return action;
+    }
+
+    @Override
+    public boolean isValid() {
+        return action != null && action.getType() != null;
+    }
+
+    @Override
+    public String toString() {
+        return "GameActionPayload{action=" + action + '}';
+    }
+
+}
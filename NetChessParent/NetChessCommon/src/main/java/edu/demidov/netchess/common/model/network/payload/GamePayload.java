@@ -0,0 +1,41 @@
+package edu.demidov.netchess.common.model.network.payload;
+
+import edu.demidov.netchess.common.model.game.chess.ChessGame;
+import edu.demidov.netchess.common.model.game.chess.LegalMoves;
+
+/**
+ * Текущая партия пользователя и допустимые в ней ходы
+ */
+public final class GamePayload implements Payload {
+
+    private final ChessGame game;
+    private final LegalMoves legalMoves;
+
+    /**
+     * @param game       партия; null, если пользователь не играет
+     * @param legalMoves допустимые ходы; null, если сейчас ход не этого пользователя
+     */
+    public GamePayload(final ChessGame game, final LegalMoves legalMoves) {
+        this.game = game;
+        this.legalMoves = legalMoves;
+    }
+
+    public ChessGame getGame() {
+        return game;
+    }
+
+    public LegalMoves getLegalMoves() {
+        return legalMoves;
+    }
+
+    @Override
+    public boolean isValid() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "GamePayload{game=" + game + ", legalMoves=" + legalMoves + '}';
+    }
+
+}
@@ -0,0 +1,38 @@
+package edu.demidov.netchess.common.model.network.payload;
+
+/**
+ * Приглашение сыграть (или его отмена) либо ответ на приглашение
+ */
+public final class InvitePayload implements Payload {
+
+    private final String name;
+    private final boolean isAccept;
+
+    /**
+     * @param name     имя приглашаемого (или пригласившего - в ответе) пользователя
+     * @param isAccept true - пригласить (принять приглашение), false - отменить (отклонить)
+     */
+    public InvitePayload(final String name, final boolean isAccept) {
+        this.name = name;
+        this.isAccept = isAccept;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isAccept() {
+        return isAccept;
+    }
+
+    @Override
+    public boolean isValid() {
+        return name != null;
+    }
+
+    @Override
+    public String toString() {
+        return "InvitePayload{name=" + name + ", isAccept=" + isAccept + '}';
+    }
+
+}
@@ -0,0 +1,32 @@
+package edu.demidov.netchess.common.model.network.payload;
+
+import edu.demidov.netchess.common.model.network.NetworkMessage;
+
+import java.util.Set;
+
+/**
+ * Несколько сообщений, упакованных в одно
+ */
+public final class MultiplePayload implements Payload {
+
+    private final Set<NetworkMessage> messages;
+
+    public MultiplePayload(final Set<NetworkMessage> messages) {
+        this.messages = messages;
+    }
+
+    public Set<NetworkMessage> getMessages() {
+        return messages;
+    }
+
+    @Override
+    public boolean isValid() {
+        return messages != null;
+    }
+
+    @Override
+    public String toString() {
+        return "MultiplePayload{messages=" + messages + '}';
+    }
+
+}
@@ -0,0 +1,17 @@
+package edu.demidov.netchess.common.model.network.payload;
+
+import java.io.Serializable;
+
+/**
+ * Данные сообщения NetworkMessage. Каждому типу сообщения соответствует свой класс данных
+ * (NetworkMessage.Type.getPayloadClass()) с фиксированными полями.
+ */
+public interface Payload extends Serializable {
+
+    /**
+     * Проверяет, что заполнены все обязательные поля.
+     * Данные приходят по сети, в обход конструктора, поэтому проверка нужна отдельно.
+     */
+    boolean isValid();
+
+}
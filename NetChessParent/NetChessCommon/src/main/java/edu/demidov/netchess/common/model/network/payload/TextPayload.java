@@ -0,0 +1,28 @@
+package edu.demidov.netchess.common.model.network.payload;
+
+/**
+ * Текст: сообщение чата или описание ошибки
+ */
+public final class TextPayload implements Payload {
+
+    private final String text;
+
+    public TextPayload(final String text) {
+        this.text = text;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public boolean isValid() {
+        return text != null;
+    }
+
+    @Override
+    public String toString() {
+        return "TextPayload{text=" + text + '}';
+    }
+
+}
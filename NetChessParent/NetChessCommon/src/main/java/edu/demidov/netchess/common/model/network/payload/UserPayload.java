@@ -0,0 +1,30 @@
+package edu.demidov.netchess.common.model.network.payload;
+
+import edu.demidov.netchess.common.model.users.UserProfile;
+
+/**
+ * Профиль пользователя
+ */
+public final class UserPayload implements Payload {
+
+    private final UserProfile user;
+
+    public UserPayload(final UserProfile user) {
+        this.user = user;
+    }
+
+    public UserProfile getUser() {
+        return user;
+    }
+
+    @Override
+    public boolean isValid() {
+        return user != null;
+    }
+
+    @Override
+    public String toString() {
+        return "UserPayload{user=" + user + '}';
+    }
+
+}
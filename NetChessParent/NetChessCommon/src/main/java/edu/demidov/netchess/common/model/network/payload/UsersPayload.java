@@ -0,0 +1,32 @@
+package edu.demidov.netchess.common.model.network.payload;
+
+import edu.demidov.netchess.common.model.users.UserProfile;
+
+import java.util.Set;
+
+/**
+ * Множество профилей пользователей: пользователи on-line или пригласившие игроки
+ */
+public final class UsersPayload implements Payload {
+
+    private final Set<UserProfile> users;
+
+    public UsersPayload(final Set<UserProfile> users) {
+        this.users = users;
+    }
+
+    public Set<UserProfile> getUsers() {
+        return users;
+    }
+
+    @Override
+    public boolean isValid() {
+        return users != null;
+    }
+
+    @Override
+    public String toString() {
+        return "UsersPayload{users=" + users + '}';
+    }
+
+}
@@ -9,9 +9,13 @@ import java.security.NoSuchAlgorithmException;
 public class EncryptAlgorithm {
 
     public static final String SHA512_ALGORITHM = "SHA-512";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
     private final static Logger log = LoggerFactory.getLogger(EncryptAlgorithm.class);
     private static EncryptAlgorithm instance;
 
+    // MessageDigest не потокобезопасен и дорог в создании - у каждого потока свой
+    private final ThreadLocal<MessageDigest> sha512 = ThreadLocal.withInitial(() -> newDigest(SHA512_ALGORITHM));
+
     private EncryptAlgorithm() {
     }
 
@@ -31,16 +35,55 @@ public class EncryptAlgorithm {
     public String getHashCodeFromString(final String algorithm, final String str)
             throws NoSuchAlgorithmException {
         log.trace("getHashCodeFromString algorithm={}", algorithm);
-        final MessageDigest md = MessageDigest.getInstance(algorithm);
-        md.update(str.getBytes());
-        final byte byteData[] = md.digest();
-
-        // convert the byte to hex format
-        final StringBuffer hashCodeBuffer = new StringBuffer();
-        for (int i = 0; i < byteData.length; i++) {
-            hashCodeBuffer.append(Integer.toString((byteData[i] & 0xff) + 0x100, 16).substring(1));
+        final MessageDigest md = SHA512_ALGORITHM.equals(algorithm) ? sha512.get() : MessageDigest.getInstance(algorithm);
+        return toHex(md.digest(str.getBytes()));
+    }
+
+    /**
+     * Экземпляр MessageDigest алгоритма SHA-512 текущего потока
+     */
+    public MessageDigest getSha512Digest() {
+        final MessageDigest md = sha512.get();
+        md.reset();
+        return md;
+    }
+
+    /**
+     * Байты в шестнадцатеричной записи (строчными буквами)
+     */
+    public static String toHex(final byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX_DIGITS[(bytes[i] >>> 4) & 0xF];
+            chars[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Байты из шестнадцатеричной записи toHex()
+     *
+     * @throws IllegalArgumentException если запись некорректна
+     */
+    public static byte[] fromHex(final String hex) {
+        if (hex.length() % 2 != 0) throw new IllegalArgumentException(hex);
+        final byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            final int high = Character.digit(hex.charAt(2 * i), 16);
+            final int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) throw new IllegalArgumentException(hex);
+            bytes[i] = (byte) (high << 4 | low);
+        }
+        return bytes;
+    }
+
+    private static MessageDigest newDigest(final String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (final NoSuchAlgorithmException ex) {
+            // SHA-512 обязан поддерживаться любой реализацией Java
+            throw new IllegalStateException(ex);
         }
-        return hashCodeBuffer.toString();
     }
 
 }
@@ -2,30 +2,63 @@ package edu.demidov.netchess.utils;
 
 import java.io.Serializable;
 
-public class Point implements Serializable {
+/**
+ * Неизменяемая точка (клетка поля).
+ * Клетки поля 8x8 создаются один раз - Point.of() отдаёт их без выделения памяти; точки за пределами
+ * этого поля создаются по запросу. При десериализации клетки поля заменяются на общие экземпляры.
+ */
+public final class Point implements Serializable {
 
-    private int x;
-    private int y;
+    public static final int CACHED_SIZE = 8;
 
+    private static final Point[] SQUARES = new Point[CACHED_SIZE * CACHED_SIZE];
+    private static final String SQUARE_EXCEPTION = "Номер клетки %d вне поля 0-%d";
+
+    static {
+        for (int y = 0; y < CACHED_SIZE; y++) {
+            for (int x = 0; x < CACHED_SIZE; x++) {
+                SQUARES[y * CACHED_SIZE + x] = new Point(x, y);
+            }
+        }
+    }
+
+    private final int x;
+    private final int y;
+
+    /**
+     * Создаёт новую точку. Для клеток поля лучше Point.of() - без выделения памяти.
+     */
     public Point(final int x, final int y) {
         this.x = x;
         this.y = y;
     }
 
-    public int getX() {
-        return x;
+    /**
+     * Общий экземпляр клетки (x, y), если она на поле 8x8, иначе - новая точка
+     */
+    public static Point of(final int x, final int y) {
+        if (x >= 0 && x < CACHED_SIZE && y >= 0 && y < CACHED_SIZE) return SQUARES[y * CACHED_SIZE + x];
+        return new Point(x, y);
     }
 
-    public void setX(final int x) {
-        this.x = x;
+    /**
+     * Клетка поля 8x8 по номеру y * 8 + x
+     *
+     * @throws IllegalArgumentException если номер клетки вне 0-63
+     */
+    public static Point of(final int square) {
+        if (square < 0 || square >= SQUARES.length) {
+            throw new IllegalArgumentException(String.format(SQUARE_EXCEPTION, square, SQUARES.length - 1));
+        }
+        return SQUARES[square];
     }
 
-    public int getY() {
-        return y;
+    public int getX() {
+        return x;
     }
 
-    public void setY(final int y) {
-        this.y = y;
+    public int getY() {
+        return y;
     }
 
     @Override
@@ -62,4 +95,8 @@ public class Point implements Serializable {
         return true;
     }
 
+    private Object readResolve() {
+        return of(x, y);
+    }
+
 }
@@ -5,12 +5,17 @@ import edu.demidov.netchess.common.model.exceptions.game.chess.InvalidPointExcep
 import edu.demidov.netchess.utils.Point;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Random;
 
 import static org.hamcrest.core.IsEqual.equalTo;
 import static org.hamcrest.core.IsNot.not;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
@@ -30,7 +35,7 @@ public class ChessFieldTest {
     public void testSetFigure() throws Exception {
         final ChessField field = new ChessField(FIELD_SIZE);
         final Point inputPoint = new Point(0, 0);
-        final ChessFigure inputFigure = new ChessFigure(ChessColor.White, ChessFigure.Type.Pawn);
+        final ChessFigure inputFigure = ChessFigure.of(ChessColor.White, ChessFigure.Type.Pawn);
 
         field.setFigure(inputPoint, inputFigure);
         final ChessFigure actualFigure = field.getFigure(inputPoint);
@@ -115,7 +120,7 @@ public class ChessFieldTest {
         final Point inputPoint = new Point(0, 3);
 
         final ChessField field = new ChessField(FIELD_SIZE);
-        final ChessFigure inputFigure = new ChessFigure(ChessColor.White, ChessFigure.Type.Pawn);
+        final ChessFigure inputFigure = ChessFigure.of(ChessColor.White, ChessFigure.Type.Pawn);
         field.setFigure(inputPoint, inputFigure);
 
         // Проверяем, что объекты field у обоих досок ссылаются на разные объекты, но одинаковы
@@ -136,4 +141,28 @@ public class ChessFieldTest {
         assertEquals("На второй доске фигура должна стать newFigure", newFigure, clonedField.getFigure(inputPoint));
     }
 
+    @Test
+    public void testSerialization_KeepsFlyweights() throws Exception {
+        final ChessField field = new ChessField(FIELD_SIZE);
+        field.setFigure(Point.of(4, 7), ChessFigure.of(ChessColor.White, ChessFigure.Type.King));
+        field.setCastlingRights(Zobrist.WHITE_KING_SIDE);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(field);
+            out.writeObject(new Point(4, 7));
+        }
+        final ChessField read;
+        final Point point;
+        try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read = (ChessField) in.readObject();
+            point = (Point) in.readObject();
+        }
+
+        assertEquals(field, read);
+        assertSame(ChessFigure.of(ChessColor.White, ChessFigure.Type.King), read.getFigure(4, 7));
+        assertSame(Point.of(4, 7), point);
+        assertEquals(Zobrist.WHITE_KING_SIDE, read.getCastlingRights());
+    }
+
 }
@@ -0,0 +1,183 @@
+package edu.demidov.netchess.common.model.game.chess;
+
+import edu.demidov.netchess.utils.Point;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ChessGameTest {
+
+    private static final int FIELD_SIZE = 8;
+
+    private ChessPlayer white;
+    private ChessGame game;
+
+    @Before
+    public void before() throws Exception {
+        white = new ChessPlayer(ChessColor.White, 0, "white", 0, 0, 0, 0, 0);
+        final ChessPlayer black = new ChessPlayer(ChessColor.Black, 0, "black", 0, 0, 0, 0, 0);
+        game = new ChessGame(1, new ChessField(FIELD_SIZE), Arrays.asList(white, black));
+    }
+
+    @Test
+    public void testZobristKey_WhenStartPosition() throws Exception {
+        assertEquals(Zobrist.ALL_CASTLING, game.getCastlingRights());
+        assertKeyIsActual();
+    }
+
+    @Test
+    public void testZobristKey_WhenSamePositionReached() throws Exception {
+        final long startKey = game.getZobristKey();
+
+        move("g1", "f3");
+        assertTrue(startKey != game.getZobristKey());
+        move("g8", "f6");
+        move("f3", "g1");
+        move("f6", "g8");
+
+        assertEquals(startKey, game.getZobristKey());
+    }
+
+    @Test
+    public void testZobristKey_WhenCastling() throws Exception {
+        move("e2", "e4");
+        move("e7", "e5");
+        move("g1", "f3");
+        move("b8", "c6");
+        move("f1", "c4");
+        move("g8", "f6");
+        move("e1", "g1");
+
+        assertEquals(Zobrist.BLACK_KING_SIDE | Zobrist.BLACK_QUEEN_SIDE, game.getCastlingRights());
+        assertKeyIsActual();
+    }
+
+    @Test
+    public void testZobristKey_WhenTransformPawnWithCapture() throws Exception {
+        move("e2", "e4");
+        move("d7", "d5");
+        move("e4", "d5");
+        move("c7", "c6");
+        move("d5", "c6");
+        move("g8", "f6");
+        move("c6", "b7");
+        move("e7", "e6");
+        move("b7", "a8");
+
+        // Взята ладья a8 - чёрные теряют длинную рокировку
+        assertTrue(game.isCurrentPlayerChoosingFigure());
+        assertEquals(Zobrist.ALL_CASTLING & ~Zobrist.BLACK_QUEEN_SIDE, game.getCastlingRights());
+        assertKeyIsActual();
+
+        game.transformPawn(white, ChessFigure.Type.Queen);
+        assertKeyIsActual();
+    }
+
+    @Test
+    public void testSetCurrentPlayer_DoesNotStartClock() {
+        final ChessPlayer black = game.getPlayers().get(1);
+
+        game.setCurrentPlayer(black);
+        assertEquals(0, game.getClock().getRunning());
+
+        game.startClock();
+        assertEquals(1, game.getClock().getRunning());
+    }
+
+    @Test
+    public void testPublishSnapshot_WhenGameChangesAfterwards() throws Exception {
+        assertNull(game.getSnapshot());
+
+        final ChessGameSnapshot first = game.publishSnapshot();
+        move("e2", "e4");
+        white.setOfferedDraw(true);
+
+        // Снимок не видит изменений партии после публикации
+        final ChessGame copy = first.getGame();
+        assertEquals(1, first.getVersion());
+        assertNotNull(copy.getField().getFigure(point("e2")));
+        assertNull(copy.getField().getFigure(point("e4")));
+        assertEquals(ChessColor.White, copy.getCurrentPlayer().getColor());
+        assertFalse(copy.getPlayers().get(0).isOfferedDraw());
+        assertSame(copy.getPlayers().get(0), copy.getCurrentPlayer());
+
+        final ChessGameSnapshot second = game.publishSnapshot();
+        assertSame(second, game.getSnapshot());
+        assertEquals(2, second.getVersion());
+        assertEquals(game.getZobristKey(), second.getGame().getZobristKey());
+        assertEquals(game.getField(), second.getGame().getField());
+        assertTrue(second.getGame().getPlayers().get(0).isOfferedDraw());
+    }
+
+    @Test
+    public void testPublishSnapshot_WhenLiveGameIsChanged() throws Exception {
+        final LegalMoves legalMoves = new LegalMoves();
+        legalMoves.add(Zobrist.square(4, 6), Zobrist.square(4, 4));
+        game.setLegalMoves(legalMoves);
+        final ChessGameSnapshot snapshot = game.publishSnapshot();
+
+        // Чтение снимка не копирует партию; набор допустимых ходов с живой партией не общий
+        final ChessGame copy = snapshot.getGame();
+        assertSame(copy, snapshot.getGame());
+        assertNotSame(game, copy);
+        assertNotSame(legalMoves, copy.getLegalMoves());
+        legalMoves.add(Zobrist.square(4, 6), Zobrist.square(4, 5));
+        game.getPlayers().get(0).setOfferedDraw(true);
+
+        assertEquals(1, copy.getLegalMoves().size());
+        assertFalse(copy.getPlayers().get(0).isOfferedDraw());
+    }
+
+    @Test
+    public void testMoveHistory_WhenTransformPawn() throws Exception {
+        move("g2", "g4");
+        move("h7", "h5");
+        move("g4", "h5");
+        move("g7", "g6");
+        move("h5", "g6");
+        move("f8", "h6");
+        move("g6", "g7");
+        move("h6", "f8");
+        move("g7", "h8");
+        game.transformPawn(white, ChessFigure.Type.Knight);
+
+        final MoveHistory history = game.getMoveHistory();
+        assertEquals(9, history.size());
+        assertEquals(Zobrist.square(6, 6), MoveHistory.from(history.get(0)));
+        assertEquals(Zobrist.square(6, 4), MoveHistory.to(history.get(0)));
+        assertNull(MoveHistory.promotion(history.get(0)));
+        assertEquals(Zobrist.square(7, 0), MoveHistory.to(history.get(8)));
+        assertEquals(ChessFigure.Type.Knight, MoveHistory.promotion(history.get(8)));
+
+        // Снимок хранит свою копию ходов
+        final ChessGame copy = game.publishSnapshot().getGame();
+        move("f8", "g7");
+        assertEquals(9, copy.getMoveHistory().size());
+        assertEquals(10, history.size());
+    }
+
+    private void move(final String from, final String to) throws Exception {
+        game.moveFigure(point(from), point(to));
+        assertKeyIsActual();
+    }
+
+    private void assertKeyIsActual() throws Exception {
+        assertEquals(Zobrist.hash(game.getField(), game.getCurrentPlayer().getColor(), game.getCastlingRights()),
+                game.getZobristKey());
+    }
+
+    // Клетка в шахматной нотации: "e2" -> (4, 6)
+    private Point point(final String cell) {
+        return new Point(cell.charAt(0) - 'a', FIELD_SIZE - (cell.charAt(1) - '0'));
+    }
+
+}
@@ -0,0 +1,121 @@
+package edu.demidov.netchess.common.model.game.chess;
+
+import edu.demidov.netchess.common.model.exceptions.game.chess.InvalidFenException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class FenTest {
+
+    private static final int FIELD_SIZE = 8;
+    // Kiwipete: рокировки с обеих сторон, фигуры на всех горизонталях
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    private ChessGame game;
+
+    @Before
+    public void before() throws Exception {
+        final ChessPlayer white = new ChessPlayer(ChessColor.White, 0, "white", 0, 0, 0, 0, 0);
+        final ChessPlayer black = new ChessPlayer(ChessColor.Black, 0, "black", 0, 0, 0, 0, 0);
+        game = new ChessGame(1, new ChessField(FIELD_SIZE), Arrays.asList(white, black));
+    }
+
+    @Test
+    public void testToFen_WhenStartPosition() {
+        assertEquals(Fen.START_POSITION, Fen.toFen(game));
+    }
+
+    @Test
+    public void testAppend_WhenBuilderReused() {
+        final StringBuilder out = new StringBuilder(Fen.MAX_LENGTH);
+        Fen.append(out, game);
+        out.setLength(0);
+        Fen.append(out, game.getField(), ChessColor.Black, Zobrist.WHITE_KING_SIDE | Zobrist.BLACK_QUEEN_SIDE);
+
+        assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR b Kq - 0 1", out.toString());
+    }
+
+    @Test
+    public void testParse_WhenRoundTrip() throws Exception {
+        final String fen = "4k3/8/8/8/8/8/8/4K2R b K - 0 1";
+
+        Fen.parse(fen, game);
+
+        assertEquals(fen, Fen.toFen(game));
+        assertEquals(ChessColor.Black, game.getCurrentPlayer().getColor());
+        assertEquals(Zobrist.WHITE_KING_SIDE, game.getCastlingRights());
+        assertEquals(Zobrist.hash(game.getField(), ChessColor.Black, Zobrist.WHITE_KING_SIDE), game.getZobristKey());
+        assertNull(game.getLastMovePoints());
+
+        Fen.parse(KIWIPETE, game);
+        assertEquals(KIWIPETE, Fen.toFen(game));
+    }
+
+    @Test
+    public void testParse_WhenNoCastlingRights() throws Exception {
+        final ChessField field = new ChessField(FIELD_SIZE);
+
+        final ChessColor sideToMove = Fen.parse("r3k2r/8/8/8/8/8/8/R3K2R w Qk", field);
+
+        // Права на рокировку записываются в поле; счётчики ходов в строке необязательны
+        assertEquals(ChessColor.White, sideToMove);
+        assertEquals(Zobrist.WHITE_QUEEN_SIDE | Zobrist.BLACK_KING_SIDE, field.getCastlingRights());
+        assertEquals("r3k2r/8/8/8/8/8/8/R3K2R", field.toString());
+    }
+
+    @Test
+    public void testParse_WhenPackedField() throws Exception {
+        final PackedField field = new PackedField();
+
+        final ChessColor sideToMove = Fen.parse("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", field);
+
+        assertEquals(ChessColor.Black, sideToMove);
+        assertEquals(4, field.getEnPassantFile());
+        assertEquals(Zobrist.ALL_CASTLING, field.getCastlingRights());
+        assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR",
+                Fen.appendPlacement(new StringBuilder(), field).toString());
+    }
+
+    @Test
+    public void testParse_WhenInvalid() throws Exception {
+        final String[] invalid = {
+                "",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR/8 w KQkq - 0 1",
+                "rnbqkbnr/ppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "rnbqkbnr/ppppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/9/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNX w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQxq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKKNR w KQkq - 0 1",
+                "rnbq1bnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQ - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq e9 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq e3 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR b KQkq x3 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR b KQkq e",
+        };
+
+        for (final String fen : invalid) {
+            try {
+                Fen.parse(fen, new ChessField(FIELD_SIZE));
+                fail("The FEN must be rejected: " + fen);
+            } catch (final InvalidFenException ex) {
+                // ожидаемо
+            }
+            try {
+                Fen.parse(fen, new PackedField());
+                fail("The FEN must be rejected for the packed field: " + fen);
+            } catch (final InvalidFenException ex) {
+                // ожидаемо
+            }
+        }
+    }
+
+}
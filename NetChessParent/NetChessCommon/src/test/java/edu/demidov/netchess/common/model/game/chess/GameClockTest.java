@@ -0,0 +1,113 @@
+package edu.demidov.netchess.common.model.game.chess;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GameClockTest {
+
+    private static final long BASE_MILLIS = 60_000;
+    private static final long BONUS_MILLIS = 2_000;
+    private static final int WHITE = 0, BLACK = 1;
+
+    @Test
+    public void testSwitchTo_WhenSuddenDeath() {
+        final GameClock clock = new GameClock(TimeControl.suddenDeath(BASE_MILLIS), 2);
+        clock.start(WHITE, 0);
+
+        clock.switchTo(BLACK, nanos(5_000));
+
+        assertEquals(BASE_MILLIS - 5_000, clock.getRemainingMillis(WHITE, nanos(7_000)));
+        assertEquals(BASE_MILLIS - 2_000, clock.getRemainingMillis(BLACK, nanos(7_000)));
+        assertEquals(BLACK, clock.getRunning());
+    }
+
+    @Test
+    public void testSwitchTo_WhenFischerIncrement() {
+        final GameClock clock = new GameClock(TimeControl.fischer(BASE_MILLIS, BONUS_MILLIS), 2);
+        clock.start(WHITE, 0);
+
+        clock.switchTo(BLACK, nanos(500));
+
+        // Добавка Фишера начисляется целиком, даже если ход был быстрее неё
+        assertEquals(BASE_MILLIS - 500 + BONUS_MILLIS, clock.getRemainingMillis(WHITE, nanos(500)));
+    }
+
+    @Test
+    public void testSwitchTo_WhenBronsteinDelay() {
+        final GameClock clock = new GameClock(TimeControl.bronstein(BASE_MILLIS, BONUS_MILLIS), 2);
+        clock.start(WHITE, 0);
+
+        // Быстрый ход: время возвращается полностью
+        clock.switchTo(BLACK, nanos(500));
+        assertEquals(BASE_MILLIS, clock.getRemainingMillis(WHITE, nanos(500)));
+
+        // Долгий ход: возвращается не больше задержки
+        clock.switchTo(WHITE, nanos(500 + 5_000));
+        assertEquals(BASE_MILLIS - 5_000 + BONUS_MILLIS, clock.getRemainingMillis(BLACK, nanos(5_500)));
+    }
+
+    @Test
+    public void testIsFlagged() {
+        final GameClock clock = new GameClock(TimeControl.fischer(BASE_MILLIS, BONUS_MILLIS), 2);
+        clock.start(WHITE, 0);
+
+        assertFalse(clock.isFlagged(nanos(BASE_MILLIS)));
+        assertTrue(clock.isFlagged(nanos(BASE_MILLIS + 1)));
+    }
+
+    @Test
+    public void testStop_WhenTimeIsFrozen() {
+        final GameClock clock = new GameClock(TimeControl.fischer(BASE_MILLIS, BONUS_MILLIS), 2);
+        clock.start(WHITE, 0);
+
+        clock.stop(nanos(3_000));
+
+        // Добавки за прерванный ход нет, после остановки время не идёт
+        assertFalse(clock.isRunning());
+        assertEquals(BASE_MILLIS - 3_000, clock.getRemainingMillis(WHITE, nanos(100_000)));
+        assertFalse(clock.isFlagged(nanos(100_000)));
+    }
+
+    @Test
+    public void testSerialization_KeepsElapsedTime() throws Exception {
+        final GameClock clock = new GameClock(TimeControl.suddenDeath(BASE_MILLIS), 2);
+        final long now = System.nanoTime();
+        clock.start(BLACK, now - nanos(10_000));
+
+        final GameClock actual = deserialize(serialize(clock));
+
+        // Начало хода переносится в System.nanoTime() принимающей стороны
+        final long remaining = actual.getRemainingMillis(BLACK, System.nanoTime());
+        assertTrue(remaining <= BASE_MILLIS - 10_000);
+        assertTrue(remaining > BASE_MILLIS - 20_000);
+        assertEquals(BASE_MILLIS, actual.getRemainingMillis(WHITE, System.nanoTime()));
+    }
+
+    private static long nanos(final long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static byte[] serialize(final GameClock clock) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(clock);
+        }
+        return out.toByteArray();
+    }
+
+    private static GameClock deserialize(final byte[] bytes) throws Exception {
+        try (final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (GameClock) ois.readObject();
+        }
+    }
+
+}
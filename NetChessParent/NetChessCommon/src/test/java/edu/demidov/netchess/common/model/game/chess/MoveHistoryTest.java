@@ -0,0 +1,83 @@
+package edu.demidov.netchess.common.model.game.chess;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MoveHistoryTest {
+
+    private static final int MOVES = 1000;
+
+    @Test
+    public void testEncode_WhenAllSquaresAndPromotions() {
+        for (int from = 0; from < Zobrist.SQUARES; from++) {
+            for (int to = 0; to < Zobrist.SQUARES; to++) {
+                final int move = MoveHistory.encode(from, to, ChessFigure.Type.Queen);
+                assertTrue(move <= 0xFFFF);
+                assertEquals(from, MoveHistory.from(move));
+                assertEquals(to, MoveHistory.to(move));
+                assertEquals(ChessFigure.Type.Queen, MoveHistory.promotion(move));
+            }
+        }
+        assertNull(MoveHistory.promotion(MoveHistory.encode(63, 0, null)));
+    }
+
+    @Test
+    public void testAdd_WhenGrows() {
+        final MoveHistory history = fill(new MoveHistory());
+
+        assertEquals(MOVES, history.size());
+        for (int i = 0; i < MOVES; i++) {
+            assertEquals(i % Zobrist.SQUARES, MoveHistory.from(history.get(i)));
+        }
+        assertEquals(MOVES - 10, history.toArray(10).length);
+    }
+
+    @Test
+    public void testSerialization_WritesOnlyMoves() throws Exception {
+        final MoveHistory history = fill(new MoveHistory());
+        history.setLastPromotion(ChessFigure.Type.Castle);
+
+        final byte[] bytes = serialize(history);
+        final MoveHistory actual = deserialize(bytes);
+
+        // Ёмкость массива больше числа ходов, но записываются только ходы
+        assertTrue(bytes.length < MOVES * 2 + 100);
+        assertEquals(MOVES, actual.size());
+        for (int i = 0; i < MOVES; i++) {
+            assertEquals(history.get(i), actual.get(i));
+        }
+        assertEquals(ChessFigure.Type.Castle, MoveHistory.promotion(actual.get(MOVES - 1)));
+    }
+
+    // Дописывает MOVES ходов; ход i - с клетки i % 64
+    private static MoveHistory fill(final MoveHistory history) {
+        for (int i = 0; i < MOVES; i++) {
+            final int square = i % Zobrist.SQUARES;
+            history.add(square % Zobrist.SIZE, square / Zobrist.SIZE, 0, 0);
+        }
+        return history;
+    }
+
+    private static byte[] serialize(final MoveHistory history) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(history);
+        }
+        return out.toByteArray();
+    }
+
+    private static MoveHistory deserialize(final byte[] bytes) throws Exception {
+        try (final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (MoveHistory) ois.readObject();
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+package edu.demidov.netchess.common.model.game.chess;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PackedFieldTest {
+
+    private static final int FIELD_SIZE = 8;
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w Kq - 0 1";
+
+    private ChessGame game;
+
+    @Before
+    public void before() throws Exception {
+        final ChessPlayer white = new ChessPlayer(ChessColor.White, 0, "white", 0, 0, 0, 0, 0);
+        final ChessPlayer black = new ChessPlayer(ChessColor.Black, 0, "black", 0, 0, 0, 0, 0);
+        game = new ChessGame(1, new ChessField(FIELD_SIZE), Arrays.asList(white, black));
+    }
+
+    @Test
+    public void testOf_WhenStartPosition() {
+        final PackedField packed = PackedField.of(game);
+
+        assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR", packed.toString());
+        assertEquals(Zobrist.ALL_CASTLING, packed.getCastlingRights());
+        assertEquals(PackedField.NO_EN_PASSANT, packed.getEnPassantFile());
+        assertEquals(ChessColor.Black, packed.getColor(4, 0));
+        assertEquals(ChessFigure.Type.King, packed.getType(4, 0));
+        assertNull(packed.getType(4, 4));
+        assertEquals(game.getZobristKey(), packed.hash(ChessColor.White));
+    }
+
+    @Test
+    public void testUnpack_WhenRoundTrip() throws Exception {
+        Fen.parse(KIWIPETE, game);
+        final PackedField packed = PackedField.of(game);
+        final ChessField field = new ChessField(FIELD_SIZE);
+
+        packed.unpack(field);
+
+        assertEquals(game.getField(), field);
+        assertEquals(Zobrist.WHITE_KING_SIDE | Zobrist.BLACK_QUEEN_SIDE, field.getCastlingRights());
+        // Фигуры - общие экземпляры
+        assertSame(game.getField().getFigure(4, 7), field.getFigure(4, 7));
+        assertEquals(game.getZobristKey(), packed.hash(ChessColor.White));
+    }
+
+    @Test
+    public void testWrite_WhenRoundTrip() throws Exception {
+        Fen.parse(KIWIPETE, game);
+        final PackedField packed = PackedField.of(game);
+        packed.setEnPassantFile(3);
+        final byte[] bytes = new byte[PackedField.BYTES + 2];
+
+        packed.write(bytes, 2);
+        final PackedField read = PackedField.fromBytes(bytes, 2);
+
+        assertEquals(packed, read);
+        assertEquals(3, read.getEnPassantFile());
+        assertEquals(Zobrist.WHITE_KING_SIDE | Zobrist.BLACK_QUEEN_SIDE, read.getCastlingRights());
+        assertEquals(PackedField.BYTES, packed.toBytes().length);
+    }
+
+    @Test
+    public void testSerializedSize() throws IOException {
+        final int fieldSize = serializedSize(game.getField());
+        final int packedSize = serializedSize(PackedField.of(game));
+
+        // Сами байты поля - на порядок меньше, остальное - описание класса в потоке сериализации
+        assertTrue("field=" + fieldSize, PackedField.BYTES * 10 < fieldSize);
+        assertTrue("field=" + fieldSize + ", packed=" + packedSize, packedSize * 5 < fieldSize);
+    }
+
+    private static int serializedSize(final Serializable object) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        return bytes.size();
+    }
+
+}
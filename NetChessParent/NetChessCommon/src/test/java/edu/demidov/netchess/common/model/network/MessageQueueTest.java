@@ -0,0 +1,185 @@
+package edu.demidov.netchess.common.model.network;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MessageQueueTest {
+
+    @Test
+    public void testCapacity_WhenNotPowerOfTwo() {
+        assertEquals(8, new MessageQueue<Integer>(5, MessageQueue.FullPolicy.REJECT, message -> false).getCapacity());
+        assertEquals(8, new MessageQueue<Integer>(8, MessageQueue.FullPolicy.REJECT, message -> false).getCapacity());
+        assertEquals(2, new MessageQueue<Integer>(1, MessageQueue.FullPolicy.REJECT, message -> false).getCapacity());
+    }
+
+    @Test
+    public void testDrainTo_KeepsOrderAcrossWrap() throws Exception {
+        final MessageQueue<Integer> queue = new MessageQueue<>(4, MessageQueue.FullPolicy.REJECT, message -> false);
+        final List<Integer> drained = new ArrayList<>();
+
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(queue.putMessage(round * 10 + i));
+            }
+            assertEquals(3, queue.size());
+            assertEquals(2, queue.drainTo(drained, 2));
+            assertEquals(1, queue.drainTo(drained, 10));
+        }
+
+        assertEquals(Arrays.asList(0, 1, 2, 10, 11, 12, 20, 21, 22), drained);
+        assertFalse(queue.hasMessages());
+        assertNull(queue.pollMessage());
+        assertEquals(3, queue.getMaxDepth());
+    }
+
+    @Test
+    public void testPutMessage_WhenFullAndReject() throws Exception {
+        final MessageQueue<Integer> queue = new MessageQueue<>(2, MessageQueue.FullPolicy.REJECT, message -> false);
+
+        assertTrue(queue.putMessage(1));
+        assertTrue(queue.putMessage(2));
+        assertFalse(queue.putMessage(3));
+
+        assertEquals(1, queue.getRejected());
+        assertEquals(Integer.valueOf(1), queue.takeMessage());
+        assertTrue(queue.putMessage(3));
+    }
+
+    @Test
+    public void testPutMessage_WhenFullAndDropDroppable() throws Exception {
+        final MessageQueue<Integer> queue = new MessageQueue<>(
+                2, MessageQueue.FullPolicy.DROP_DROPPABLE, message -> message < 0);
+        queue.putMessage(1);
+        queue.putMessage(2);
+
+        // Второстепенное сообщение отбрасывается сразу
+        assertFalse(queue.putMessage(-1));
+
+        // Важное - ждёт, пока потребитель не освободит место
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean put = new AtomicBoolean();
+        final Thread producer = new Thread(() -> {
+            try {
+                started.countDown();
+                put.set(queue.putMessage(3));
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        started.await();
+
+        assertEquals(Integer.valueOf(1), queue.takeMessage());
+        assertEquals(Integer.valueOf(2), queue.takeMessage());
+        assertEquals(Integer.valueOf(3), queue.takeMessage());
+        producer.join();
+        assertTrue(put.get());
+        assertEquals(1, queue.getRejected());
+    }
+
+    @Test(timeout = 5000)
+    public void testOfferMessage_WhenFullAndBlock() throws Exception {
+        final MessageQueue<Integer> queue = new MessageQueue<>(2, MessageQueue.FullPolicy.BLOCK, message -> message < 0);
+        assertTrue(queue.offerMessage(1));
+        assertTrue(queue.offerMessage(2));
+
+        // Не ждёт места даже при FullPolicy.BLOCK; BLOCK ничего не отклоняет - отказов нет
+        assertFalse(queue.offerMessage(3));
+        assertFalse(queue.offerMessage(-1));
+        assertFalse(queue.isRejectedWhenFull(-1));
+        assertEquals(0, queue.getRejected());
+
+        assertEquals(Integer.valueOf(1), queue.takeMessage());
+        assertTrue(queue.offerMessage(3));
+    }
+
+    @Test
+    public void testIsRejectedWhenFull() {
+        final MessageQueue<Integer> reject = new MessageQueue<>(2, MessageQueue.FullPolicy.REJECT, message -> message < 0);
+        final MessageQueue<Integer> drop = new MessageQueue<>(
+                2, MessageQueue.FullPolicy.DROP_DROPPABLE, message -> message < 0);
+
+        assertTrue(reject.isRejectedWhenFull(1));
+        assertTrue(drop.isRejectedWhenFull(-1));
+        assertFalse(drop.isRejectedWhenFull(1));
+
+        // Отказ учитывается, только если FullPolicy сообщение отклоняет
+        drop.offerMessage(1);
+        drop.offerMessage(2);
+        assertFalse(drop.offerMessage(3));
+        assertFalse(drop.offerMessage(-1));
+        assertEquals(1, drop.getRejected());
+    }
+
+    @Test
+    public void testPutServiceMessage_WhenFull() throws Exception {
+        final MessageQueue<Integer> queue = new MessageQueue<>(2, MessageQueue.FullPolicy.REJECT, message -> false);
+        queue.putMessage(1);
+        queue.putMessage(2);
+
+        // Служебное сообщение кладётся мимо заполненного буфера и забирается первым
+        queue.putServiceMessage(100);
+        assertEquals(3, queue.size());
+
+        final List<Integer> drained = new ArrayList<>();
+        assertEquals(3, queue.drainTo(drained, 10));
+        assertEquals(Arrays.asList(100, 1, 2), drained);
+        assertFalse(queue.hasMessages());
+        assertEquals(0, queue.getRejected());
+    }
+
+    @Test(timeout = 5000)
+    public void testTakeMessage_WhenServiceMessagePut() throws Exception {
+        final MessageQueue<Integer> queue = new MessageQueue<>(2, MessageQueue.FullPolicy.REJECT, message -> false);
+        final Thread producer = new Thread(() -> queue.putServiceMessage(1));
+        producer.start();
+
+        // Служебное сообщение будит уснувшего потребителя
+        assertEquals(Integer.valueOf(1), queue.takeMessage());
+        producer.join();
+    }
+
+    @Test
+    public void testTakeMessage_WhenManyProducers() throws Exception {
+        final int producers = 4, messages = 10_000;
+        final MessageQueue<Integer> queue = new MessageQueue<>(64, MessageQueue.FullPolicy.BLOCK, message -> false);
+        final Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < messages; i++) {
+                        queue.putMessage(producer * messages + i);
+                    }
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads[p].start();
+        }
+
+        // Сообщения каждого производителя приходят все и по порядку
+        final int[] next = new int[producers];
+        for (int i = 0; i < producers * messages; i++) {
+            final int message = queue.takeMessage();
+            final int producer = message / messages;
+            assertEquals(next[producer]++, message % messages);
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertFalse(queue.hasMessages());
+        assertEquals(0, queue.getRejected());
+    }
+
+}
@@ -1,64 +1,107 @@
 package edu.demidov.netchess.common.model.network;
 
 import edu.demidov.netchess.common.model.exceptions.IllegalRequestParameter;
+import edu.demidov.netchess.common.model.network.payload.CredentialsPayload;
+import edu.demidov.netchess.common.model.network.payload.TextPayload;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.fail;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class NetworkMessageTest {
 
-    @Test(expected = IllegalRequestParameter.class)
-    public void testGetParam_3args_WhenNoSuchKey() throws Exception {
-        final String key = "someKey";
+    @Test
+    public void testGetPayload_WhenPayloadIsRight() throws Exception {
+        final NetworkMessage netMsg = new NetworkMessage(
+                NetworkMessage.Type.LoginUser, new CredentialsPayload("name", "hash"));
 
-        final NetworkMessage netMsg = new NetworkMessage(NetworkMessage.Type.LoginUser);
+        final CredentialsPayload actual = netMsg.getPayload(CredentialsPayload.class);
 
-        netMsg.getParam(key, String.class, false);
+        assertEquals("name", actual.getName());
+        assertEquals("hash", actual.getPasswordHash());
+    }
+
+    @Test(expected = IllegalRequestParameter.class)
+    public void testGetPayload_WhenPayloadHasIllegalClass() throws Exception {
+        final NetworkMessage netMsg = new NetworkMessage(
+                NetworkMessage.Type.LoginUser, new CredentialsPayload("name", "hash"));
+
+        netMsg.getPayload(TextPayload.class);
     }
 
     @Test
-    public void testGetParam_3args_WhenParameterIsRight() throws Exception {
-        final String key = "someKey";
-        final String inputValue = "someValue";
+    public void testCheckPayload_WhenNoPayload() throws Exception {
+        final NetworkMessage netMsg = new NetworkMessage(NetworkMessage.Type.GetOnlineUsers);
 
-        final NetworkMessage netMsg = new NetworkMessage(NetworkMessage.Type.LoginUser);
-        netMsg.put(key, inputValue);
+        netMsg.checkPayload();
 
-        final String actualValue = netMsg.getParam(key, String.class, false);
+        assertNull(netMsg.getPayload());
+    }
 
-        assertEquals(inputValue, actualValue);
+    @Test(expected = IllegalRequestParameter.class)
+    public void testCheckPayload_WhenRequiredFieldIsNull() throws Exception {
+        final NetworkMessage netMsg = new NetworkMessage(
+                NetworkMessage.Type.LoginUser, new CredentialsPayload("name", null));
+
+        netMsg.checkPayload();
     }
 
     @Test(expected = IllegalRequestParameter.class)
-    public void testGetParam_3args_WhenParameterHasIllegalType() throws Exception {
-        final String key = "someKey";
-        final int inputValue = 12345;
-        final Class<String> notInputValueClass = String.class;
+    public void testCheckPayload_WhenPayloadDoesNotMatchType() throws Exception {
+        // Пришедшее по сети сообщение создаётся в обход конструктора
+        final NetworkMessage netMsg = new NetworkMessage(NetworkMessage.Type.ChatSend, new TextPayload("hi"));
+        final NetworkMessage forged = deserialize(serialize(netMsg, NetworkMessage.Type.DoAction));
+
+        forged.checkPayload();
+    }
+
+    @Test
+    public void testSerialization_KeepsPayload() throws Exception {
+        final NetworkMessage netMsg = new NetworkMessage(NetworkMessage.Type.ChatNewMessage, new TextPayload("hi"));
 
-        final NetworkMessage netMsg = new NetworkMessage(NetworkMessage.Type.LoginUser);
-        netMsg.put(key, inputValue);
+        final NetworkMessage actual = deserialize(serialize(netMsg));
 
-        netMsg.getParam(key, notInputValueClass, false);
+        assertEquals(NetworkMessage.Type.ChatNewMessage, actual.getType());
+        assertEquals("hi", actual.getPayload(TextPayload.class).getText());
     }
 
     @Test
-    public void testGetParam_3args_WhenParameterIsNull() throws Exception {
-        final String key = "someKey";
-        final String inputValue = null;
-        final Class<String> expectedStringClass = String.class;
-
-        final NetworkMessage netMsg = new NetworkMessage(NetworkMessage.Type.LoginUser);
-        netMsg.put(key, inputValue);
-
-        try {
-            netMsg.getParam(key, expectedStringClass, false);
-            fail("the value is null; and forbidden to take null value");
-        } catch (final IllegalRequestParameter ex) {
+    public void testSerialization_HasNoParameterKeys() throws Exception {
+        final NetworkMessage netMsg = new NetworkMessage(NetworkMessage.Type.ChatSend, new TextPayload("hi"));
+
+        final String bytes = new String(serialize(netMsg), "ISO-8859-1");
+
+        assertTrue(bytes.contains("hi"));
+        assertFalse(bytes.contains("HashMap"));
+    }
+
+    private static byte[] serialize(final NetworkMessage netMsg) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(netMsg);
         }
+        return out.toByteArray();
+    }
 
-        final String actualValue = netMsg.getParam(key, expectedStringClass, true);
-        assertEquals("the value is null; and allowed to take null value", inputValue, actualValue);
+    // Подменяет имя константы типа в потоке - имитирует сообщение клиента с чужими данными
+    private static byte[] serialize(final NetworkMessage netMsg, final NetworkMessage.Type type) throws Exception {
+        final String bytes = new String(serialize(netMsg), "ISO-8859-1");
+        final String from = netMsg.getType().name();
+        assertEquals(from.length(), type.name().length());
+        return bytes.replace(from, type.name()).getBytes("ISO-8859-1");
+    }
+
+    private static NetworkMessage deserialize(final byte[] bytes) throws Exception {
+        try (final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (NetworkMessage) ois.readObject();
+        }
     }
 
 }
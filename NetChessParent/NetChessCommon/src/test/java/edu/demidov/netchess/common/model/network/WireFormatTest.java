@@ -0,0 +1,223 @@
+package edu.demidov.netchess.common.model.network;
+
+import edu.demidov.netchess.common.model.game.chess.ChessAction;
+import edu.demidov.netchess.common.model.game.chess.ChessColor;
+import edu.demidov.netchess.common.model.game.chess.ChessField;
+import edu.demidov.netchess.common.model.game.chess.ChessFigure;
+import edu.demidov.netchess.common.model.game.chess.ChessGame;
+import edu.demidov.netchess.common.model.game.chess.ChessPlayer;
+import edu.demidov.netchess.common.model.game.chess.LegalMoves;
+import edu.demidov.netchess.common.model.game.chess.TimeControl;
+import edu.demidov.netchess.common.model.network.netty.NetworkMessageDecoder;
+import edu.demidov.netchess.common.model.network.netty.NetworkMessageEncoder;
+import edu.demidov.netchess.common.model.network.payload.CredentialsPayload;
+import edu.demidov.netchess.common.model.network.payload.GameActionPayload;
+import edu.demidov.netchess.common.model.network.payload.GamePayload;
+import edu.demidov.netchess.common.model.network.payload.MultiplePayload;
+import edu.demidov.netchess.common.model.network.payload.TextPayload;
+import edu.demidov.netchess.common.model.network.payload.UsersPayload;
+import edu.demidov.netchess.common.model.users.UserProfile;
+import edu.demidov.netchess.utils.Point;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class WireFormatTest {
+
+    private static final int FIELD_SIZE = 8;
+    private static final long BASE_MILLIS = 60_000;
+
+    private EmbeddedChannel channel;
+
+    @Before
+    public void before() {
+        channel = new EmbeddedChannel(new NetworkMessageDecoder(), new NetworkMessageEncoder());
+    }
+
+    @Test
+    public void testRoundTrip_WhenCredentials() throws Exception {
+        final NetworkMessage actual = roundTrip(new NetworkMessage(
+                NetworkMessage.Type.LoginUser, new CredentialsPayload("Игрок 😀", null)));
+
+        final CredentialsPayload payload = (CredentialsPayload) actual.getPayload();
+        assertEquals(NetworkMessage.Type.LoginUser, actual.getType());
+        assertEquals("Игрок 😀", payload.getName());
+        assertNull(payload.getPasswordHash());
+    }
+
+    @Test
+    public void testRoundTrip_WhenAction() throws Exception {
+        final ChessAction action = new ChessAction(ChessAction.Type.Move, new Point[]{Point.of(4, 6), Point.of(-1, 100)});
+
+        final NetworkMessage actual = roundTrip(new NetworkMessage(
+                NetworkMessage.Type.DoAction, new GameActionPayload(action)));
+
+        final ChessAction actualAction = actual.getPayload(GameActionPayload.class).getAction();
+        assertEquals(ChessAction.Type.Move, actualAction.getType());
+        assertArrayEquals(action.getPoints(), actualAction.getPoints());
+        assertNull(actualAction.getChooseFigureType());
+    }
+
+    @Test
+    public void testRoundTrip_WhenMultipleMessage() throws Exception {
+        final Set<UserProfile> users = new HashSet<>(Arrays.asList(
+                new UserProfile("first", 1000, 1, 2, 3, 4, true, false),
+                new UserProfile("second", 1200, 0, 0, 0, 100_000, false, true)));
+        final Set<NetworkMessage> messages = new HashSet<>(Arrays.asList(
+                new NetworkMessage(NetworkMessage.Type.SendOnlineUsers, new UsersPayload(users)),
+                new NetworkMessage(NetworkMessage.Type.ChatNewMessage, new TextPayload("hi"))));
+
+        final NetworkMessage actual = roundTrip(new NetworkMessage(
+                NetworkMessage.Type.MultipleMessage, new MultiplePayload(messages)));
+
+        final Set<NetworkMessage> actualMessages = actual.getPayload(MultiplePayload.class).getMessages();
+        assertEquals(2, actualMessages.size());
+        for (final NetworkMessage msg : actualMessages) {
+            if (msg.getType() != NetworkMessage.Type.SendOnlineUsers) continue;
+            final Set<UserProfile> actualUsers = msg.getPayload(UsersPayload.class).getUsers();
+            assertEquals(users, actualUsers);
+            for (final UserProfile user : actualUsers) {
+                if (!"second".equals(user.getName())) continue;
+                assertEquals(1200, user.getRank());
+                assertEquals(100_000, user.getTotalTimeOnServer());
+                assertTrue(user.isPlaying());
+            }
+        }
+    }
+
+    @Test
+    public void testRoundTrip_WhenGame() throws Exception {
+        final ChessGame game = newGame();
+        game.moveFigure(Point.of(4, 6), Point.of(4, 4));
+        final LegalMoves legalMoves = new LegalMoves();
+        legalMoves.add(12, 28);
+        legalMoves.add(12, 20);
+        legalMoves.add(6, 21);
+
+        final NetworkMessage actual = roundTrip(new NetworkMessage(
+                NetworkMessage.Type.SendCurrentGame, new GamePayload(game, legalMoves)));
+
+        final GamePayload payload = actual.getPayload(GamePayload.class);
+        final ChessGame actualGame = payload.getGame();
+        assertEquals(game.getId(), actualGame.getId());
+        assertEquals(game.getPlayers(), actualGame.getPlayers());
+        assertSame(actualGame.getPlayers().get(1), actualGame.getCurrentPlayer());
+        assertEquals(game.getField(), actualGame.getField());
+        assertEquals(game.getZobristKey(), actualGame.getZobristKey());
+        assertArrayEquals(game.getLastMovePoints(), actualGame.getLastMovePoints());
+        assertEquals(1, actualGame.getMoveHistory().size());
+        assertEquals(game.getMoveHistory().get(0), actualGame.getMoveHistory().get(0));
+        assertEquals(game.getClock().getTimeControl(), actualGame.getClock().getTimeControl());
+        assertEquals(1, actualGame.getClock().getRunning());
+        assertTrue(actualGame.getTimeLeftMillis(actualGame.getPlayers().get(1)) <= BASE_MILLIS);
+        assertEquals(legalMoves, payload.getLegalMoves());
+        assertEquals(3, payload.getLegalMoves().size());
+    }
+
+    @Test
+    public void testRoundTrip_WhenPawnTransformed() throws Exception {
+        final ChessGame game = newGame();
+        game.moveFigure(Point.of(0, 6), Point.of(0, 0));
+        game.transformPawn(game.getCurrentPlayer(), ChessFigure.Type.Knight);
+        game.end(game.getPlayers().get(0), "result");
+
+        final ChessGame actual = roundTrip(new NetworkMessage(
+                NetworkMessage.Type.SendCurrentGame, new GamePayload(game, null))).getPayload(GamePayload.class).getGame();
+
+        assertEquals(game.getMoveHistory().get(0), actual.getMoveHistory().get(0));
+        assertSame(actual.getPlayers().get(0), actual.getResult());
+        assertTrue(actual.isFinished());
+        assertEquals(game.getFinishedGameDate(), actual.getFinishedGameDate());
+        assertEquals("result", actual.getResultReasonDescription());
+        assertEquals(game.getPlayers().get(0).getAccruedScores(), actual.getPlayers().get(0).getAccruedScores());
+    }
+
+    @Test
+    public void testEncode_IsSmallerThanSerialization() throws Exception {
+        final NetworkMessage msg = new NetworkMessage(NetworkMessage.Type.SendCurrentGame, new GamePayload(newGame(), null));
+
+        assertTrue(channel.writeOutbound(msg));
+        final ByteBuf frame = (ByteBuf) channel.readOutbound();
+        final int frameBytes = frame.readableBytes();
+        frame.release();
+
+        final ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(msg);
+        }
+        assertTrue(frameBytes * 10 < serialized.size());
+    }
+
+    @Test
+    public void testDecode_WhenFrameIsSplit() throws Exception {
+        assertTrue(channel.writeOutbound(new NetworkMessage(NetworkMessage.Type.ChatSend, new TextPayload("hello"))));
+        final ByteBuf frame = (ByteBuf) channel.readOutbound();
+
+        channel.writeInbound(frame.readSlice(3).retain());
+        assertNull(channel.readInbound());
+        channel.writeInbound(frame);
+
+        final NetworkMessage actual = (NetworkMessage) channel.readInbound();
+        assertEquals("hello", actual.getPayload(TextPayload.class).getText());
+    }
+
+    @Test
+    public void testZigZag_WhenBoundaryValues() {
+        final ByteBuf buf = Unpooled.buffer();
+        final int[] values = {0, -1, 1, 7, -64, 63, Integer.MIN_VALUE, Integer.MAX_VALUE};
+        for (final int value : values) {
+            WireFormat.writeZigZag(buf, value);
+        }
+        for (final int value : values) {
+            assertEquals(value, WireFormat.readZigZag(buf));
+        }
+        assertEquals(0, buf.readableBytes());
+
+        // Координата поля и небольшая отрицательная - по байту
+        WireFormat.writeZigZag(buf, 7);
+        WireFormat.writeZigZag(buf, -1);
+        assertEquals(2, buf.readableBytes());
+        buf.release();
+    }
+
+    @Test(expected = DecoderException.class)
+    public void testDecode_WhenUnknownType() {
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[]{0, 0, 0, 1, (byte) 0xFF}));
+    }
+
+    @Test(expected = DecoderException.class)
+    public void testDecode_WhenSizeIsTooBig() {
+        // SendOnlineUsers с размером множества больше длины кадра
+        final byte type = (byte) NetworkMessage.Type.SendOnlineUsers.ordinal();
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[]{0, 0, 0, 4, type, 1, (byte) 0xFF, 0x7F}));
+    }
+
+    private NetworkMessage roundTrip(final NetworkMessage msg) {
+        assertTrue(channel.writeOutbound(msg));
+        assertTrue(channel.writeInbound(channel.readOutbound()));
+        return (NetworkMessage) channel.readInbound();
+    }
+
+    private static ChessGame newGame() throws Exception {
+        final ChessPlayer white = new ChessPlayer(ChessColor.White, BASE_MILLIS, "white", 1000, 0, 0, 0, 0);
+        final ChessPlayer black = new ChessPlayer(ChessColor.Black, BASE_MILLIS, "black", 1000, 0, 0, 0, 0);
+        return new ChessGame(1, new ChessField(FIELD_SIZE), Arrays.asList(white, black),
+                TimeControl.bronstein(BASE_MILLIS, 5_000));
+    }
+
+}
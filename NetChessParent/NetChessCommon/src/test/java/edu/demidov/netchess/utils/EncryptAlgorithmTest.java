@@ -0,0 +1,52 @@
+package edu.demidov.netchess.utils;
+
+import org.junit.Test;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EncryptAlgorithmTest {
+
+    // SHA-512("abc") из FIPS 180-2
+    private static final String SHA512_ABC = "ddaf35a193617abacc417349ae20413112e6fa4e89a97ea20a9eeee64b55d39a"
+            + "2192992a274fc1a836ba3c23a3feebbd454d4423643ce80e2a9ac94fa54ca49f";
+
+    private final EncryptAlgorithm encryptAlgorithm = EncryptAlgorithm.getInstance();
+
+    @Test
+    public void testGetHashCodeFromString() throws NoSuchAlgorithmException {
+        assertEquals(SHA512_ABC, encryptAlgorithm.getHashCodeFromString(EncryptAlgorithm.SHA512_ALGORITHM, "abc"));
+        // Повторный вызов тем же экземпляром MessageDigest даёт тот же хэш
+        assertEquals(SHA512_ABC, encryptAlgorithm.getHashCodeFromString(EncryptAlgorithm.SHA512_ALGORITHM, "abc"));
+    }
+
+    @Test
+    public void testGetSha512Digest_WhenOtherThread() throws InterruptedException {
+        final AtomicReference<Object> other = new AtomicReference<>();
+        final Thread thread = new Thread(() -> other.set(encryptAlgorithm.getSha512Digest()));
+        thread.start();
+        thread.join();
+
+        assertTrue(other.get() != null);
+        assertFalse(other.get() == encryptAlgorithm.getSha512Digest());
+    }
+
+    @Test
+    public void testFromHex_WhenToHex() {
+        final byte[] bytes = {0, 1, 15, 16, 127, -128, -1};
+
+        assertEquals("00010f107f80ff", EncryptAlgorithm.toHex(bytes));
+        assertTrue(Arrays.equals(bytes, EncryptAlgorithm.fromHex("00010f107f80ff")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromHex_WhenNotHex() {
+        EncryptAlgorithm.fromHex("0g");
+    }
+
+}
@@ -0,0 +1,30 @@
+package edu.demidov.netchess.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PointTest {
+
+    @Test
+    public void testOf_WhenSquare() {
+        assertSame(Point.of(4, 6), Point.of(6 * Point.CACHED_SIZE + 4));
+        assertEquals(new Point(7, 7), Point.of(63));
+    }
+
+    @Test
+    public void testOf_WhenSquareOutOfField() {
+        for (final int square : new int[]{-1, 64}) {
+            try {
+                Point.of(square);
+                fail("The square must be rejected: " + square);
+            } catch (final IllegalArgumentException ex) {
+                assertTrue(ex.getMessage().contains(String.valueOf(square)));
+            }
+        }
+    }
+
+}
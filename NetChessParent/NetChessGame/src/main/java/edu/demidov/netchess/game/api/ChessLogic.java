@@ -5,6 +5,8 @@ import edu.demidov.netchess.common.model.exceptions.game.chess.NoNextPlayerFound
 import edu.demidov.netchess.common.model.game.chess.ChessFigure;
 import edu.demidov.netchess.common.model.game.chess.ChessGame;
 import edu.demidov.netchess.common.model.game.chess.ChessPlayer;
+import edu.demidov.netchess.common.model.game.chess.TimeControl;
+import edu.demidov.netchess.game.engine.tablebase.Tablebases;
 import edu.demidov.netchess.game.rules.ChessRules;
 import edu.demidov.netchess.utils.Point;
 
@@ -14,6 +16,11 @@ public interface ChessLogic extends ChessLogicObservable {
 
     ChessGame startGame(List<ChessPlayer> chessPlayers);
 
+    /**
+     * Начинает партию с контролем времени timeControl (добавка Фишера либо задержка Бронштейна)
+     */
+    ChessGame startGame(List<ChessPlayer> chessPlayers, TimeControl timeControl);
+
     void playerMoveFigure(ChessPlayer player, ChessGame game, Point fromPoint, Point toPoint)
             throws GameMoveException;
 
@@ -28,4 +35,6 @@ public interface ChessLogic extends ChessLogicObservable {
 
     void setChessRules(ChessRules chessRules);
 
+    void setTablebases(Tablebases tablebases);
+
 }
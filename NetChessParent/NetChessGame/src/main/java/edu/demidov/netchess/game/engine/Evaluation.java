@@ -0,0 +1,138 @@
+package edu.demidov.netchess.game.engine;
+
+import edu.demidov.netchess.game.rules.bitboard.BitboardPosition;
+
+import static edu.demidov.netchess.game.rules.bitboard.BitboardPosition.BISHOP;
+import static edu.demidov.netchess.game.rules.bitboard.BitboardPosition.BLACK;
+import static edu.demidov.netchess.game.rules.bitboard.BitboardPosition.KING;
+import static edu.demidov.netchess.game.rules.bitboard.BitboardPosition.PAWN;
+import static edu.demidov.netchess.game.rules.bitboard.BitboardPosition.QUEEN;
+import static edu.demidov.netchess.game.rules.bitboard.BitboardPosition.WHITE;
+
+/**
+ * Статическая оценка позиции: материал плюс таблицы бонусов за положение фигур.
+ * Таблицы заданы для белых, построчно от 8-й горизонтали к 1-й - так же, как нумеруются клетки (a8 = 0);
+ * для чёрных клетка отражается по горизонтали. У короля две таблицы: для миддлшпиля и для эндшпиля.
+ */
+public final class Evaluation {
+
+    // Стоимость фигур в сотых долях пешки, индекс - тип фигуры
+    public static final int[] PIECE_VALUES = {100, 330, 320, 500, 900, 0};
+
+    // Эндшпиль - когда у каждой стороны из фигур (кроме пешек и короля) осталось не больше ладьи и лёгкой фигуры
+    private static final int ENDGAME_MATERIAL = 830;
+    private static final int MIRROR = 56;
+
+    private static final int[] PAWN_TABLE = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            10, 10, 20, 30, 30, 20, 10, 10,
+            5, 5, 10, 25, 25, 10, 5, 5,
+            0, 0, 0, 20, 20, 0, 0, 0,
+            5, -5, -10, 0, 0, -10, -5, 5,
+            5, 10, 10, -20, -20, 10, 10, 5,
+            0, 0, 0, 0, 0, 0, 0, 0};
+
+    private static final int[] KNIGHT_TABLE = {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20, 0, 0, 0, 0, -20, -40,
+            -30, 0, 10, 15, 15, 10, 0, -30,
+            -30, 5, 15, 20, 20, 15, 5, -30,
+            -30, 0, 15, 20, 20, 15, 0, -30,
+            -30, 5, 10, 15, 15, 10, 5, -30,
+            -40, -20, 0, 5, 5, 0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50};
+
+    private static final int[] BISHOP_TABLE = {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 10, 10, 5, 0, -10,
+            -10, 5, 5, 10, 10, 5, 5, -10,
+            -10, 0, 10, 10, 10, 10, 0, -10,
+            -10, 10, 10, 10, 10, 10, 10, -10,
+            -10, 5, 0, 0, 0, 0, 5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20};
+
+    private static final int[] ROOK_TABLE = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            5, 10, 10, 10, 10, 10, 10, 5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            0, 0, 0, 5, 5, 0, 0, 0};
+
+    private static final int[] QUEEN_TABLE = {
+            -20, -10, -10, -5, -5, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 5, 5, 5, 0, -10,
+            -5, 0, 5, 5, 5, 5, 0, -5,
+            0, 0, 5, 5, 5, 5, 0, -5,
+            -10, 5, 5, 5, 5, 5, 0, -10,
+            -10, 0, 5, 0, 0, 0, 0, -10,
+            -20, -10, -10, -5, -5, -10, -10, -20};
+
+    private static final int[] KING_MIDDLE_TABLE = {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+            20, 20, 0, 0, 0, 0, 20, 20,
+            20, 30, 10, 0, 0, 10, 30, 20};
+
+    private static final int[] KING_END_TABLE = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10, 0, 0, -10, -20, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -30, 0, 0, 0, 0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50};
+
+    // Индекс - тип фигуры; у короля таблица миддлшпиля
+    private static final int[][] TABLES = {
+            PAWN_TABLE, BISHOP_TABLE, KNIGHT_TABLE, ROOK_TABLE, QUEEN_TABLE, KING_MIDDLE_TABLE};
+
+    private Evaluation() {
+    }
+
+    /**
+     * Оценка позиции с точки зрения стороны, чей ход: положительная - у неё перевес
+     */
+    public static int evaluate(final BitboardPosition position) {
+        final boolean isEndgame = pieceMaterial(position, WHITE) <= ENDGAME_MATERIAL
+                && pieceMaterial(position, BLACK) <= ENDGAME_MATERIAL;
+
+        final int score = evaluateSide(position, WHITE, isEndgame) - evaluateSide(position, BLACK, isEndgame);
+        return position.getSideToMove() == WHITE ? score : -score;
+    }
+
+    /**
+     * Стоимость фигур цвета color без пешек и короля
+     */
+    public static int pieceMaterial(final BitboardPosition position, final int color) {
+        int material = 0;
+        for (int type = BISHOP; type <= QUEEN; type++) {
+            material += Long.bitCount(position.getPieces(color, type)) * PIECE_VALUES[type];
+        }
+        return material;
+    }
+
+    private static int evaluateSide(final BitboardPosition position, final int color, final boolean isEndgame) {
+        final int mirror = color == WHITE ? 0 : MIRROR;
+        int score = 0;
+
+        for (int type = PAWN; type <= KING; type++) {
+            final int[] table = type == KING && isEndgame ? KING_END_TABLE : TABLES[type];
+            for (long pieces = position.getPieces(color, type); pieces != 0; pieces &= pieces - 1) {
+                score += PIECE_VALUES[type] + table[Long.numberOfTrailingZeros(pieces) ^ mirror];
+            }
+        }
+        return score;
+    }
+
+}
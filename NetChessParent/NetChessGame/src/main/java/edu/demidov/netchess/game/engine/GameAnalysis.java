@@ -0,0 +1,85 @@
+package edu.demidov.netchess.game.engine;
+
+import edu.demidov.netchess.game.rules.bitboard.BitboardPosition;
+
+/**
+ * Разбор сыгранной партии: оценка каждой позиции и пометка каждого хода.
+ * <p>
+ * Оценки хранятся компактно - по short на позицию, в сотых долях пешки с точки зрения белых
+ * (позиций на одну больше, чем ходов: последняя - позиция после последнего хода).
+ * Маты обрезаются до ±MAX_EVALUATION. Пометки ходов - по байту на ход (OK, MISTAKE, BLUNDER).
+ */
+public class GameAnalysis {
+
+    public static final byte OK = 0, MISTAKE = 1, BLUNDER = 2;
+    // Предел оценки: мат считается выигрышем в MAX_EVALUATION
+    public static final int MAX_EVALUATION = 3000;
+
+    private final int firstColor;
+    private final short[] evaluations;
+    private final byte[] marks;
+
+    /**
+     * @param firstColor  цвет стороны, сделавшей первый ход (BitboardPosition.WHITE или BLACK)
+     * @param evaluations оценки позиций с точки зрения белых, moves + 1 штук; массив не копируется
+     * @param marks       пометки ходов; массив не копируется
+     */
+    public GameAnalysis(final int firstColor, final short[] evaluations, final byte[] marks) {
+        this.firstColor = firstColor;
+        this.evaluations = evaluations;
+        this.marks = marks;
+    }
+
+    public int getMoveCount() {
+        return marks.length;
+    }
+
+    /**
+     * Оценка позиции перед ходом ply (ply = getMoveCount() - итоговая позиция) с точки зрения белых
+     */
+    public int getEvaluation(final int ply) {
+        return evaluations[ply];
+    }
+
+    public byte getMark(final int ply) {
+        return marks[ply];
+    }
+
+    /**
+     * Цвет стороны, сделавшей ход ply
+     */
+    public int getColor(final int ply) {
+        return (firstColor + ply) % 2;
+    }
+
+    /**
+     * Сколько оценки потерял ход ply с точки зрения сделавшей его стороны (не меньше нуля)
+     */
+    public int getLoss(final int ply) {
+        final int change = evaluations[ply] - evaluations[ply + 1];
+        return Math.max(0, getColor(ply) == BitboardPosition.WHITE ? change : -change);
+    }
+
+    /**
+     * Сколько ходов стороны color помечено как mark
+     */
+    public int count(final int color, final byte mark) {
+        int count = 0;
+        for (int ply = 0; ply < marks.length; ply++) {
+            if (marks[ply] == mark && getColor(ply) == color) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "GameAnalysis{" +
+                "moves=" + marks.length +
+                ", whiteMistakes=" + count(BitboardPosition.WHITE, MISTAKE) +
+                ", whiteBlunders=" + count(BitboardPosition.WHITE, BLUNDER) +
+                ", blackMistakes=" + count(BitboardPosition.BLACK, MISTAKE) +
+                ", blackBlunders=" + count(BitboardPosition.BLACK, BLUNDER) +
+                '}';
+    }
+
+}
@@ -0,0 +1,159 @@
+package edu.demidov.netchess.game.engine;
+
+import edu.demidov.netchess.game.rules.bitboard.BitboardPosition;
+import edu.demidov.netchess.game.rules.bitboard.MoveGenerator;
+import edu.demidov.netchess.game.rules.bitboard.Moves;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Разбор сыгранной партии: каждая позиция оценивается поиском фиксированной глубины (без ограничения по времени),
+ * ход помечается по тому, сколько оценки он потерял: от MISTAKE_LOSS - ошибка, от BLUNDER_LOSS - грубая ошибка.
+ * <p>
+ * У разборщика своя таблица перестановок и свой Search: экземпляр не потокобезопасен, одному потоку - один разборщик.
+ * Таблица не очищается между позициями партии - соседние позиции помогают друг другу.
+ * <p>
+ * Каждую позицию разборщик оценивает с разрешением из общего бюджета ядер cores. Разрешение берётся без очереди
+ * и только если его никто не ждёт: разбор уступает ядра тем, кому они нужны сейчас (ходу бота в идущей партии).
+ */
+public class GameAnalyzer {
+
+    // Потеря оценки ходом, в сотых долях пешки
+    public static final int MISTAKE_LOSS = 100;
+    public static final int BLUNDER_LOSS = 300;
+
+    // Поиск ограничен глубиной, время - лишь страховка
+    private static final long TIME_MILLIS = TimeUnit.HOURS.toMillis(1);
+    // Сколько вынужденных ходов подряд проходим, прежде чем оценить позицию без них
+    private static final int MAX_FORCED_MOVES = 8;
+    private static final String MOVES_EXCEPTION = "Ход %d недопустим в позиции партии";
+    // Через сколько разбор снова просит ядро, если ядро ему не досталось
+    private static final long CORE_BACKOFF_MILLIS = 10;
+
+    private final TranspositionTable table;
+    private final Search search;
+    private final int depth;
+    private final Semaphore cores;
+    private final int[] legalMoves = new int[MoveGenerator.MAX_MOVES];
+
+    /**
+     * @param hashMb размер таблицы перестановок, мегабайты
+     * @param depth  глубина поиска для каждой позиции
+     */
+    public GameAnalyzer(final int hashMb, final int depth) {
+        this(hashMb, depth, new Semaphore(Integer.MAX_VALUE));
+    }
+
+    /**
+     * @param hashMb размер таблицы перестановок, мегабайты
+     * @param depth  глубина поиска для каждой позиции
+     * @param cores  общий бюджет ядер: разрешение берётся на время оценки одной позиции
+     */
+    public GameAnalyzer(final int hashMb, final int depth, final Semaphore cores) {
+        this.table = new TranspositionTable(hashMb);
+        this.search = new Search(table);
+        this.depth = depth;
+        this.cores = cores;
+    }
+
+    /**
+     * Разбирает партию из позиции start по ходам moves[0..count). Позиция start не меняется.
+     * Если кто-то выставит stopSignal (может быть null) или поток прервут, пока разбор ждёт ядро,
+     * разбор прерывается и возвращается null.
+     *
+     * @throws IllegalArgumentException если ход недопустим в позиции партии
+     */
+    public GameAnalysis analyze(final BitboardPosition start, final int[] moves, final int count,
+                                final AtomicBoolean stopSignal) {
+        table.clear();
+        final short[] evaluations = new short[count + 1];
+        final byte[] marks = new byte[count];
+        final int firstColor = start.getSideToMove();
+
+        BitboardPosition position = new BitboardPosition(start);
+        for (int ply = 0; ; ply++) {
+            if (stopSignal != null && stopSignal.get()) return null;
+
+            if (!acquireCore(stopSignal)) return null;
+            final int score;
+            try {
+                score = evaluate(position, stopSignal);
+            } finally {
+                cores.release();
+            }
+            evaluations[ply] = (short) (position.getSideToMove() == BitboardPosition.WHITE ? score : -score);
+            if (ply == count) break;
+
+            if (!isLegal(position, moves[ply])) throw new IllegalArgumentException(String.format(MOVES_EXCEPTION, ply));
+            // Копия без стека отмены: партия может быть длиннее BitboardPosition.MAX_PLY
+            position = new BitboardPosition(position);
+            position.makeMove(moves[ply]);
+            // Взятия на проходе в правилах игры нет
+            position.setEpSquare(BitboardPosition.NO_SQUARE);
+        }
+
+        final GameAnalysis analysis = new GameAnalysis(firstColor, evaluations, marks);
+        for (int ply = 0; ply < count; ply++) {
+            marks[ply] = mark(analysis.getLoss(ply));
+        }
+        return analysis;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /* Берёт разрешение из бюджета ядер без очереди. Пока разрешение кто-то ждёт или свободных нет -
+    уступает и пробует снова через CORE_BACKOFF_MILLIS. false - разбор остановлен или поток прерван.
+    */
+    private boolean acquireCore(final AtomicBoolean stopSignal) {
+        while (cores.hasQueuedThreads() || !cores.tryAcquire()) {
+            if (stopSignal != null && stopSignal.get()) return false;
+            try {
+                Thread.sleep(CORE_BACKOFF_MILLIS);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte mark(final int loss) {
+        if (loss >= BLUNDER_LOSS) return GameAnalysis.BLUNDER;
+        if (loss >= MISTAKE_LOSS) return GameAnalysis.MISTAKE;
+        return GameAnalysis.OK;
+    }
+
+    /* Оценка позиции для стороны, чей ход, в пределах ±MAX_EVALUATION.
+    Search не ищет, когда ход единственный, поэтому вынужденные ходы делаем сами и оцениваем позицию после них.
+    */
+    private int evaluate(final BitboardPosition root, final AtomicBoolean stopSignal) {
+        final BitboardPosition position = new BitboardPosition(root);
+        int sign = 1;
+        for (int forced = 0; forced < MAX_FORCED_MOVES; forced++) {
+            final int count = MoveGenerator.generateLegalMoves(position, legalMoves);
+            if (count == 0) {
+                return position.isInCheck(position.getSideToMove()) ? -sign * GameAnalysis.MAX_EVALUATION : 0;
+            }
+            if (count > 1) break;
+
+            position.makeMove(legalMoves[0]);
+            sign = -sign;
+        }
+
+        final int score = search.search(position, TIME_MILLIS, depth, 1, stopSignal).getScore();
+        return sign * Math.max(-GameAnalysis.MAX_EVALUATION, Math.min(GameAnalysis.MAX_EVALUATION, score));
+    }
+
+    private boolean isLegal(final BitboardPosition position, final int move) {
+        final int count = MoveGenerator.generateLegalMoves(position, legalMoves);
+        for (int i = 0; i < count; i++) {
+            if (legalMoves[i] == move) return true;
+        }
+        return false;
+    }
+
+}
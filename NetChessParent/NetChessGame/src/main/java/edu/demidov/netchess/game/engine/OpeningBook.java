@@ -0,0 +1,170 @@
+package edu.demidov.netchess.game.engine;
+
+import edu.demidov.netchess.game.rules.bitboard.BitboardPosition;
+import edu.demidov.netchess.game.rules.bitboard.Bitboards;
+import edu.demidov.netchess.game.rules.bitboard.MoveGenerator;
+import edu.demidov.netchess.game.rules.bitboard.Moves;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Дебютная книга только для чтения в формате записей Polyglot: файл - массив 16-байтных записей
+ * (ключ позиции 8 байт, ход 2 байта, вес 2 байта, поле обучения 4 байта, big-endian), отсортированный по ключу
+ * как по беззнаковому числу. Ключ позиции - ключ Zobrist позиции (BitboardPosition.getKey()), а не таблица
+ * случайных чисел Polyglot, поэтому книги собираются OpeningBookBuilder'ом.
+ * <p>
+ * Файл отображается в память (MappedByteBuffer) и не копируется в кучу: открытие книги не зависит от её размера,
+ * а страницы файла подгружаются ОС по мере обращения. Ходы позиции ищутся двоичным поиском.
+ * Книга не меняется после открытия, поэтому одним экземпляром могут пользоваться все партии и потоки.
+ */
+public class OpeningBook {
+
+    public static final int ENTRY_SIZE = 16;
+    // Сколько разных ходов книга может вернуть для одной позиции
+    public static final int MAX_BOOK_MOVES = 64;
+
+    private static final int MOVE_OFFSET = 8, WEIGHT_OFFSET = 10;
+    private static final String FILE_SIZE_EXCEPTION = "Неверный размер файла книги: %d байт";
+
+    private final ByteBuffer buffer;
+    private final int entries;
+
+    private OpeningBook(final ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.entries = buffer.capacity() / ENTRY_SIZE;
+    }
+
+    /**
+     * Открывает книгу из файла: только отображает файл в память
+     *
+     * @param file
+     * @return
+     * @throws IOException если файл не читается или его размер не кратен размеру записи
+     */
+    public static OpeningBook open(final Path file) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size % ENTRY_SIZE != 0 || size > Integer.MAX_VALUE) {
+                throw new IOException(String.format(FILE_SIZE_EXCEPTION, size));
+            }
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new OpeningBook(buffer);
+        }
+    }
+
+    /**
+     * Ход Polyglot (биты 0-2 - вертикаль "куда", 3-5 - горизонталь "куда", 6-8 и 9-11 - то же "откуда",
+     * 12-14 - фигура превращения) из хода в кодировке Moves. Горизонталь 0 - первая, рокировка - ход короля на ладью.
+     */
+    public static int toBookMove(final int move) {
+        final int from = Moves.from(move);
+        int to = Moves.to(move);
+        if (Moves.flag(move) == Moves.CASTLING) {
+            to = to > from ? to + 1 : to - 2;
+        }
+
+        int promotion = 0;
+        if (Moves.isPromotion(move)) {
+            promotion = Moves.flag(move) - Moves.PROMOTION_KNIGHT + 1;
+        }
+
+        return bookSquare(to) | (bookSquare(from) << 6) | (promotion << 12);
+    }
+
+    public int size() {
+        return entries;
+    }
+
+    /**
+     * Записывает в moves допустимые в позиции ходы книги (в кодировке Moves), в weights - их веса.
+     * Буферы - размером не меньше MAX_BOOK_MOVES.
+     *
+     * @return количество ходов; 0 - позиции в книге нет
+     */
+    public int findMoves(final BitboardPosition position, final int[] moves, final int[] weights) {
+        final long key = position.getKey();
+        final int[] legal = new int[MoveGenerator.MAX_MOVES];
+        int legalCount = -1;
+        int count = 0;
+
+        for (int index = lowerBound(key); index < entries && count < MAX_BOOK_MOVES && keyAt(index) == key; index++) {
+            if (legalCount < 0) legalCount = MoveGenerator.generateLegalMoves(position, legal);
+
+            // Ход из книги принимаем, только если он допустим - защита от совпадения ключей
+            final int bookMove = buffer.getShort(index * ENTRY_SIZE + MOVE_OFFSET) & 0xFFFF;
+            final int move = findLegal(legal, legalCount, bookMove);
+            if (move != Moves.NO_MOVE) {
+                moves[count] = move;
+                weights[count] = buffer.getShort(index * ENTRY_SIZE + WEIGHT_OFFSET) & 0xFFFF;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Выбирает ход книги случайно, пропорционально весам
+     *
+     * @return ход в кодировке Moves, либо Moves.NO_MOVE, если позиции в книге нет
+     */
+    public int chooseMove(final BitboardPosition position, final Random random) {
+        final int[] moves = new int[MAX_BOOK_MOVES];
+        final int[] weights = new int[MAX_BOOK_MOVES];
+        final int count = findMoves(position, moves, weights);
+        if (count == 0) return Moves.NO_MOVE;
+
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            total += weights[i];
+        }
+        if (total == 0) return moves[random.nextInt(count)];
+
+        int pick = random.nextInt(total);
+        for (int i = 0; i < count; i++) {
+            pick -= weights[i];
+            if (pick < 0) return moves[i];
+        }
+        return moves[count - 1];
+    }
+
+    // Первая запись с ключом не меньше key (ключи сравниваются как беззнаковые)
+    private int lowerBound(final long key) {
+        int low = 0, high = entries;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (isUnsignedLess(keyAt(middle), key)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long keyAt(final int index) {
+        return buffer.getLong(index * ENTRY_SIZE);
+    }
+
+    private static boolean isUnsignedLess(final long a, final long b) {
+        return a + Long.MIN_VALUE < b + Long.MIN_VALUE;
+    }
+
+    private static int findLegal(final int[] legal, final int count, final int bookMove) {
+        for (int i = 0; i < count; i++) {
+            if (toBookMove(legal[i]) == bookMove) return legal[i];
+        }
+        return Moves.NO_MOVE;
+    }
+
+    // Клетка в нумерации Polyglot: горизонталь * 8 + вертикаль, a1 = 0
+    private static int bookSquare(final int square) {
+        return (Bitboards.SIZE - 1 - Bitboards.y(square)) * Bitboards.SIZE + Bitboards.x(square);
+    }
+
+}
@@ -0,0 +1,227 @@
+package edu.demidov.netchess.game.engine;
+
+import edu.demidov.netchess.game.pgn.PgnGame;
+import edu.demidov.netchess.game.pgn.PgnImportResult;
+import edu.demidov.netchess.game.pgn.PgnImporter;
+import edu.demidov.netchess.game.rules.bitboard.BitboardPosition;
+import edu.demidov.netchess.game.rules.bitboard.Bitboards;
+import edu.demidov.netchess.game.rules.bitboard.MoveGenerator;
+import edu.demidov.netchess.game.rules.bitboard.Moves;
+import edu.demidov.netchess.game.rules.bitboard.Perft;
+import edu.demidov.netchess.game.rules.impl.ChessRulesImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Собирает файл дебютной книги для OpeningBook из дебютных вариантов.
+ * Вариант - ходы из начальной позиции в координатной записи через пробел: "e2e4 e7e5 g1f3", превращение - "e7e8q".
+ * Вес хода - сколько раз он встретился в этой позиции во всех вариантах.
+ * <p>
+ * Запуск: java ... OpeningBookBuilder варианты.txt книга.bin [полуходов] - по строке файла на вариант,
+ * из каждого варианта берутся первые полуходы (по умолчанию DEFAULT_MAX_PLY).
+ * Вместо вариантов можно дать файл партий .pgn - из него берутся начала партий, прошедших проверку правилами.
+ */
+public class OpeningBookBuilder {
+
+    public static final int DEFAULT_MAX_PLY = 14;
+
+    private static final Logger log = LoggerFactory.getLogger(OpeningBookBuilder.class);
+    private static final int MAX_WEIGHT = 0xFFFF;
+    private static final String PROMOTIONS = "nbrq";
+    private static final String PGN_EXTENSION = ".pgn";
+    private static final String MOVE_EXCEPTION = "Недопустимый ход в варианте: ";
+
+    // Ключ позиции -> (ход Polyglot -> вес)
+    private final Map<Long, Map<Integer, Integer>> positions = new HashMap<>();
+    private int entries;
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            log.error("Usage: OpeningBookBuilder <lines.txt|games.pgn> <book.bin> [maxPly]");
+            System.exit(1);
+        }
+        final int maxPly = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_PLY;
+
+        final OpeningBookBuilder builder = new OpeningBookBuilder();
+        final Path source = Paths.get(args[0]);
+        if (source.toString().endsWith(PGN_EXTENSION)) {
+            builder.addGames(source, maxPly);
+        } else {
+            builder.addLines(source, maxPly);
+        }
+        builder.write(Paths.get(args[1]));
+        log.info("book written: entries={}", builder.size());
+    }
+
+    /**
+     * Добавляет первые maxPly полуходов всех партий файла PGN, прошедших проверку (только из начальной позиции).
+     * Партии проверяются параллельно в ForkJoinPool по числу процессоров.
+     */
+    public PgnImportResult addGames(final Path file, final int maxPly) throws IOException {
+        final ForkJoinPool pool = new ForkJoinPool();
+        final PgnImporter importer = new PgnImporter(new ChessRulesImpl(), pool);
+        try (final BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importer.importGames(reader, new PgnImporter.GameHandler() {
+                @Override
+                public void gameValidated(final PgnGame game, final int[] moves, final int count) {
+                    if (game.getTag(PgnGame.FEN_TAG) != null) return;
+                    synchronized (OpeningBookBuilder.this) {
+                        addMoves(moves, Math.min(count, maxPly));
+                    }
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Добавляет варианты из текстового файла: по строке на вариант
+     */
+    public void addLines(final Path file, final int maxPly) throws IOException {
+        int lines = 0;
+        try (final BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                addLine(line, maxPly);
+                lines++;
+            }
+        }
+        log.info("addLines: file={}, lines={}", file, lines);
+    }
+
+    /**
+     * Добавляет первые maxPly полуходов варианта
+     *
+     * @param line   ходы через пробел
+     * @param maxPly
+     * @throws IllegalArgumentException если ход не разбирается или недопустим
+     */
+    public void addLine(final String line, final int maxPly) {
+        final BitboardPosition position = Perft.StandardPosition.INITIAL.createPosition();
+        final String[] moves = line.trim().split("\\s+");
+
+        for (int ply = 0; ply < moves.length && ply < maxPly; ply++) {
+            final int move = parseMove(position, moves[ply]);
+            add(position, move, 1);
+            position.makeMove(move);
+            // Взятие на проходе правилами игры не поддерживается, и позиция партии на сервере строится без поля
+            // взятия - ключи книги должны совпадать с ключами таких позиций
+            position.setEpSquare(BitboardPosition.NO_SQUARE);
+        }
+    }
+
+    /**
+     * Добавляет ходы moves[0..count) из начальной позиции. Ходы должны быть допустимыми.
+     */
+    public void addMoves(final int[] moves, final int count) {
+        final BitboardPosition position = Perft.StandardPosition.INITIAL.createPosition();
+        for (int ply = 0; ply < count; ply++) {
+            add(position, moves[ply], 1);
+            position.makeMove(moves[ply]);
+            position.setEpSquare(BitboardPosition.NO_SQUARE);
+        }
+    }
+
+    /**
+     * Добавляет ход move позиции position с весом weight (веса одинаковых ходов складываются)
+     */
+    public void add(final BitboardPosition position, final int move, final int weight) {
+        Map<Integer, Integer> moves = positions.get(position.getKey());
+        if (moves == null) {
+            moves = new HashMap<>();
+            positions.put(position.getKey(), moves);
+        }
+
+        final int bookMove = OpeningBook.toBookMove(move);
+        final Integer old = moves.get(bookMove);
+        if (old == null) entries++;
+        moves.put(bookMove, Math.min(MAX_WEIGHT, (old == null ? 0 : old) + weight));
+    }
+
+    /**
+     * Количество записей (разных пар позиция-ход)
+     */
+    public int size() {
+        return entries;
+    }
+
+    /**
+     * Записывает книгу: записи отсортированы по ключу (как по беззнаковому числу), ходы позиции - по убыванию веса
+     */
+    public void write(final Path file) throws IOException {
+        final List<Long> keys = new ArrayList<>(positions.keySet());
+        Collections.sort(keys, new Comparator<Long>() {
+            @Override
+            public int compare(final Long a, final Long b) {
+                return Long.compare(a + Long.MIN_VALUE, b + Long.MIN_VALUE);
+            }
+        });
+
+        try (final OutputStream stream = Files.newOutputStream(file);
+             final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            for (final Long key : keys) {
+                final List<Map.Entry<Integer, Integer>> moves = new ArrayList<>(positions.get(key).entrySet());
+                Collections.sort(moves, new Comparator<Map.Entry<Integer, Integer>>() {
+                    @Override
+                    public int compare(final Map.Entry<Integer, Integer> a, final Map.Entry<Integer, Integer> b) {
+                        return Integer.compare(b.getValue(), a.getValue());
+                    }
+                });
+
+                for (final Map.Entry<Integer, Integer> move : moves) {
+                    out.writeLong(key);
+                    out.writeShort(move.getKey());
+                    out.writeShort(move.getValue());
+                    out.writeInt(0);
+                }
+            }
+        }
+    }
+
+    // Ход в координатной записи ("e2e4", "e7e8q") -> допустимый ход позиции
+    private static int parseMove(final BitboardPosition position, final String text) {
+        if (text.length() < 4 || text.length() > 5) throw new IllegalArgumentException(MOVE_EXCEPTION + text);
+        final int from = square(text.charAt(0), text.charAt(1));
+        final int to = square(text.charAt(2), text.charAt(3));
+        // Без буквы фигуры пешка превращается в ферзя
+        final int promotionFlag = text.length() == 5
+                ? Moves.PROMOTION_KNIGHT + PROMOTIONS.indexOf(text.charAt(4)) : Moves.PROMOTION_QUEEN;
+
+        final int[] legal = new int[MoveGenerator.MAX_MOVES];
+        final int count = MoveGenerator.generateLegalMoves(position, legal);
+        for (int i = 0; i < count; i++) {
+            final int move = legal[i];
+            if (Moves.from(move) != from || Moves.to(move) != to) continue;
+            if (!Moves.isPromotion(move) || Moves.flag(move) == promotionFlag) {
+                return move;
+            }
+        }
+        throw new IllegalArgumentException(MOVE_EXCEPTION + text);
+    }
+
+    private static int square(final char file, final char rank) {
+        final int x = file - 'a', y = Bitboards.SIZE - (rank - '0');
+        if (!Bitboards.isOnBoard(x, y)) throw new IllegalArgumentException(MOVE_EXCEPTION + file + rank);
+        return Bitboards.square(x, y);
+    }
+
+}
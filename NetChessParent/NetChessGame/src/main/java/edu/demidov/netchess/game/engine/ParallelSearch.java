@@ -0,0 +1,133 @@
+package edu.demidov.netchess.game.engine;
+
+import edu.demidov.netchess.game.rules.bitboard.BitboardPosition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Многопоточный поиск по схеме Lazy SMP: несколько потоков независимо ищут ход в одной и той же позиции
+ * и общаются только через общую таблицу перестановок. Каждый поток быстрее находит в таблице то,
+ * что уже посчитали другие, поэтому главный поток за то же время уходит глубже.
+ * Помощники с нечётным номером начинают итерации с глубины 2 - так потоки реже считают одно и то же.
+ * <p>
+ * Главный поиск идёт в вызывающем потоке, помощники - в пуле helpers. Каждый помощник держит разрешение
+ * из общего бюджета ядер cores: если свободных разрешений или потоков в пуле нет, поиск идёт с меньшим числом
+ * помощников, а не вытесняет другие вычисления. Разрешение для главного поиска берёт вызывающий. Когда главный поиск закончен, помощники останавливаются;
+ * итог - результат, досчитанный до наибольшей глубины.
+ */
+public class ParallelSearch {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelSearch.class);
+
+    private final TranspositionTable table;
+    private final ExecutorService helpers;
+    private final Semaphore cores;
+    // У каждого потока свой Search, таблица перестановок - общая
+    private final ThreadLocal<Search> searches = new ThreadLocal<Search>() {
+        @Override
+        protected Search initialValue() {
+            return new Search(table);
+        }
+    };
+
+    /**
+     * Поиск без общего бюджета ядер: число помощников ограничено только пулом helpers
+     *
+     * @param table   общая таблица перестановок
+     * @param helpers пул для потоков-помощников
+     */
+    public ParallelSearch(final TranspositionTable table, final ExecutorService helpers) {
+        this(table, helpers, new Semaphore(Integer.MAX_VALUE));
+    }
+
+    /**
+     * @param table   общая таблица перестановок
+     * @param helpers пул для потоков-помощников
+     * @param cores   общий бюджет ядер: помощник берёт разрешение без ожидания и возвращает по окончании поиска
+     */
+    public ParallelSearch(final TranspositionTable table, final ExecutorService helpers, final Semaphore cores) {
+        this.table = table;
+        this.helpers = helpers;
+        this.cores = cores;
+    }
+
+    /**
+     * Ищет лучший ход в threads потоков (вызывающий поток плюс threads - 1 помощников).
+     * Позиция root не меняется.
+     */
+    public SearchResult search(final BitboardPosition root, final long timeMillis, final int maxDepth,
+                               final int threads) {
+        final AtomicBoolean stopSignal = new AtomicBoolean();
+        final List<Future<SearchResult>> futures = new ArrayList<>(Math.max(threads - 1, 0));
+
+        for (int helper = 1; helper < threads; helper++) {
+            if (!cores.tryAcquire()) {
+                log.trace("search: no free cores, helpers={}", futures.size());
+                break;
+            }
+            try {
+                futures.add(helpers.submit(new Helper(root, timeMillis, maxDepth, 1 + helper % 2, stopSignal)));
+            } catch (final RejectedExecutionException ex) {
+                cores.release();
+                log.trace("search: no free helper threads, helpers={}", futures.size());
+                break;
+            }
+        }
+
+        SearchResult best = searches.get().search(root, timeMillis, maxDepth, 1, stopSignal);
+        stopSignal.set(true);
+
+        for (final Future<SearchResult> future : futures) {
+            try {
+                final SearchResult result = future.get();
+                if (result.getDepth() > best.getDepth()) best = result;
+            } catch (final ExecutionException ex) {
+                log.error("search: helper failed", ex);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return best;
+    }
+
+    // Поиск в потоке-помощнике
+    private class Helper implements Callable<SearchResult> {
+
+        private final BitboardPosition root;
+        private final long timeMillis;
+        private final int maxDepth;
+        private final int firstDepth;
+        private final AtomicBoolean stopSignal;
+
+        Helper(final BitboardPosition root, final long timeMillis, final int maxDepth, final int firstDepth,
+               final AtomicBoolean stopSignal) {
+            this.root = root;
+            this.timeMillis = timeMillis;
+            this.maxDepth = maxDepth;
+            this.firstDepth = firstDepth;
+            this.stopSignal = stopSignal;
+        }
+
+        @Override
+        public SearchResult call() {
+            try {
+                return searches.get().search(root, timeMillis, maxDepth, firstDepth, stopSignal);
+            } finally {
+                cores.release();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,307 @@
+package edu.demidov.netchess.game.engine;
+
+import edu.demidov.netchess.game.rules.bitboard.BitboardPosition;
+import edu.demidov.netchess.game.rules.bitboard.MoveGenerator;
+import edu.demidov.netchess.game.rules.bitboard.Moves;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Поиск лучшего хода: итеративное углубление, alpha-beta (negamax с нулевым окном для всех ходов, кроме первого),
+ * таблица перестановок, отсечение нулевым ходом, продление шахов и форсированный поиск взятий на листьях.
+ * Порядок ходов: ход из таблицы, взятия (ценная жертва - дешёвый нападающий), ходы-убийцы, остальные.
+ * <p>
+ * Поиск идёт на собственной копии позиции и не создаёт объектов внутри дерева - буферы ходов выделяются
+ * в конструкторе. Экземпляр не потокобезопасен: одному потоку - один Search. Таблица перестановок
+ * может быть общей для нескольких Search (см. ParallelSearch).
+ */
+public class Search {
+
+    public static final int MAX_DEPTH = 64;
+    public static final int INFINITY = 32_000;
+    public static final int MATE = 31_000;
+
+    private static final int MAX_PLY = 128;
+    // Оценки по модулю выше этой - мат в известное число ходов
+    private static final int MATE_BOUND = MATE - MAX_PLY;
+    private static final int NULL_MOVE_REDUCTION = 2;
+    private static final int NODES_BETWEEN_TIME_CHECKS = 4096;
+
+    // Надбавки порядка ходов
+    private static final int TT_MOVE_ORDER = 1_000_000;
+    private static final int CAPTURE_ORDER = 100_000;
+    private static final int KILLER_ORDER = 90_000;
+
+    private final TranspositionTable table;
+    private BitboardPosition position;
+    private final int[][] moves = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    private final int[][] orders = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    private final int[][] killers = new int[MAX_PLY][2];
+
+    private long deadline;
+    private long nodes;
+    private boolean isStopped;
+    private AtomicBoolean stopSignal;
+    private int rootBestMove;
+
+    public Search(final TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Возвращает true, если оценка означает мат (в пользу любой из сторон)
+     */
+    public static boolean isMateScore(final int score) {
+        return Math.abs(score) > MATE_BOUND;
+    }
+
+    /**
+     * Ищет лучший ход не дольше timeMillis и не глубже maxDepth.
+     * Позиция root не меняется.
+     */
+    public SearchResult search(final BitboardPosition root, final long timeMillis, final int maxDepth) {
+        return search(root, timeMillis, maxDepth, 1, null);
+    }
+
+    /**
+     * Ищет лучший ход, начиная итерации с глубины firstDepth.
+     * Поиск прекращается по времени, по глубине или когда кто-то выставит stopSignal (может быть null).
+     */
+    public SearchResult search(final BitboardPosition root, final long timeMillis, final int maxDepth,
+                               final int firstDepth, final AtomicBoolean stopSignal) {
+        final long started = System.nanoTime();
+        deadline = started + TimeUnit.MILLISECONDS.toNanos(timeMillis);
+        nodes = 0;
+        isStopped = false;
+        this.stopSignal = stopSignal;
+        for (final int[] killer : killers) {
+            killer[0] = Moves.NO_MOVE;
+            killer[1] = Moves.NO_MOVE;
+        }
+        position = new BitboardPosition(root);
+
+        // Нет ходов - искать нечего; единственный ход делаем сразу
+        final int rootCount = MoveGenerator.generateLegalMoves(position, moves[0]);
+        if (rootCount == 0) return result(Moves.NO_MOVE, 0, 0, started);
+        if (rootCount == 1) return result(moves[0][0], 0, 0, started);
+
+        int bestMove = moves[0][0];
+        int bestScore = 0;
+        int completedDepth = 0;
+        final int depthLimit = Math.min(maxDepth, MAX_DEPTH);
+
+        for (int depth = Math.min(firstDepth, depthLimit); depth <= depthLimit; depth++) {
+            rootBestMove = Moves.NO_MOVE;
+            final int score = alphaBeta(depth, -INFINITY, INFINITY, 0, false);
+
+            // Результат незавершённой итерации не используем; если не успели даже первую - берём лучшее из найденного
+            if (isStopped) {
+                if (rootBestMove != Moves.NO_MOVE && completedDepth == 0) bestMove = rootBestMove;
+                break;
+            }
+
+            bestMove = rootBestMove;
+            bestScore = score;
+            completedDepth = depth;
+
+            // Мат найден, либо следующая итерация заведомо не успеет
+            if (isMateScore(score)) break;
+            if (System.nanoTime() - started > (deadline - started) / 2) break;
+        }
+
+        return result(bestMove, bestScore, completedDepth, started);
+    }
+
+    private SearchResult result(final int move, final int score, final int depth, final long started) {
+        return new SearchResult(move, score, depth, nodes,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    private int alphaBeta(int depth, int alpha, final int beta, final int ply, final boolean isNullAllowed) {
+        if (checkStop()) return 0;
+
+        final int side = position.getSideToMove();
+        final boolean isInCheck = position.isInCheck(side);
+        if (isInCheck) depth++;
+        if (depth <= 0 || ply >= MAX_PLY - 1) return quiescence(alpha, beta, ply);
+        nodes++;
+
+        // Таблица перестановок: в корне отсечения нет - там нужен ход
+        final long key = position.getKey();
+        final long entry = table.probe(key);
+        int ttMove = Moves.NO_MOVE;
+        if (entry != TranspositionTable.NO_ENTRY) {
+            ttMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                final int ttScore = fromTable(TranspositionTable.score(entry), ply);
+                final int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || bound == TranspositionTable.LOWER && ttScore >= beta
+                        || bound == TranspositionTable.UPPER && ttScore <= alpha) {
+                    return ttScore;
+                }
+            }
+        }
+
+        // Нулевой ход: если даже после пропуска хода позиция не хуже beta - отсекаем.
+        // Без фигур (только пешки) не делаем - там пропуск хода бывает выгоден (цугцванг).
+        if (isNullAllowed && !isInCheck && depth > NULL_MOVE_REDUCTION
+                && Evaluation.pieceMaterial(position, side) > 0 && Evaluation.evaluate(position) >= beta) {
+            position.makeNullMove();
+            final int score = -alphaBeta(depth - 1 - NULL_MOVE_REDUCTION, -beta, -beta + 1, ply + 1, false);
+            position.unmakeNullMove();
+            if (isStopped) return 0;
+            if (score >= beta) return beta;
+        }
+
+        final int[] buffer = moves[ply];
+        final int count = MoveGenerator.generateLegalMoves(position, buffer);
+        if (count == 0) return isInCheck ? -MATE + ply : 0;
+        orderMoves(buffer, orders[ply], count, ttMove, ply);
+
+        final int alphaStart = alpha;
+        int bestMove = Moves.NO_MOVE;
+        int bestScore = -INFINITY;
+
+        for (int i = 0; i < count; i++) {
+            final int move = nextMove(buffer, orders[ply], count, i);
+            position.makeMove(move);
+            int score;
+            if (i == 0) {
+                score = -alphaBeta(depth - 1, -beta, -alpha, ply + 1, true);
+            } else {
+                score = -alphaBeta(depth - 1, -alpha - 1, -alpha, ply + 1, true);
+                if (score > alpha && score < beta) {
+                    score = -alphaBeta(depth - 1, -beta, -alpha, ply + 1, true);
+                }
+            }
+            position.unmakeMove(move);
+            if (isStopped) return 0;
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (ply == 0) rootBestMove = move;
+            }
+            if (score > alpha) {
+                alpha = score;
+            }
+            if (alpha >= beta) {
+                if (!isCapture(move)) addKiller(move, ply);
+                break;
+            }
+        }
+
+        final int bound = bestScore >= beta ? TranspositionTable.LOWER
+                : bestScore > alphaStart ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(key, bestMove, toTable(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    // Форсированный поиск: только взятия и превращения (при шахе - все ходы), пока позиция не успокоится
+    private int quiescence(int alpha, final int beta, final int ply) {
+        if (checkStop()) return 0;
+        nodes++;
+
+        final boolean isInCheck = position.isInCheck(position.getSideToMove());
+        if (ply >= MAX_PLY - 1) return Evaluation.evaluate(position);
+
+        int bestScore = -INFINITY;
+        if (!isInCheck) {
+            bestScore = Evaluation.evaluate(position);
+            if (bestScore >= beta) return bestScore;
+            if (bestScore > alpha) alpha = bestScore;
+        }
+
+        final int[] buffer = moves[ply];
+        final int count = MoveGenerator.generateLegalMoves(position, buffer);
+        if (count == 0) return isInCheck ? -MATE + ply : 0;
+        orderMoves(buffer, orders[ply], count, Moves.NO_MOVE, ply);
+
+        for (int i = 0; i < count; i++) {
+            final int move = nextMove(buffer, orders[ply], count, i);
+            if (!isInCheck && !isCapture(move) && !Moves.isPromotion(move)) continue;
+
+            position.makeMove(move);
+            final int score = -quiescence(-beta, -alpha, ply + 1);
+            position.unmakeMove(move);
+            if (isStopped) return 0;
+
+            if (score > bestScore) bestScore = score;
+            if (score > alpha) alpha = score;
+            if (alpha >= beta) break;
+        }
+        return bestScore;
+    }
+
+    // Раз в NODES_BETWEEN_TIME_CHECKS узлов сверяется с часами и с сигналом остановки
+    private boolean checkStop() {
+        if (!isStopped && (nodes % NODES_BETWEEN_TIME_CHECKS) == 0
+                && (System.nanoTime() >= deadline || stopSignal != null && stopSignal.get())) {
+            isStopped = true;
+        }
+        return isStopped;
+    }
+
+    // Выставляет каждому ходу вес для порядка перебора
+    private void orderMoves(final int[] buffer, final int[] order, final int count, final int ttMove, final int ply) {
+        for (int i = 0; i < count; i++) {
+            final int move = buffer[i];
+            if (move == ttMove) {
+                order[i] = TT_MOVE_ORDER;
+            } else if (isCapture(move)) {
+                final int victim = Moves.flag(move) == Moves.EN_PASSANT
+                        ? BitboardPosition.PAWN : BitboardPosition.typeOf(position.getPiece(Moves.to(move)));
+                final int attacker = BitboardPosition.typeOf(position.getPiece(Moves.from(move)));
+                order[i] = CAPTURE_ORDER + Evaluation.PIECE_VALUES[victim] * 10 - Evaluation.PIECE_VALUES[attacker] / 10;
+            } else if (move == killers[ply][0] || move == killers[ply][1]) {
+                order[i] = KILLER_ORDER;
+            } else {
+                order[i] = Moves.isPromotion(move) ? CAPTURE_ORDER : 0;
+            }
+        }
+    }
+
+    // Выбирает ход с наибольшим весом среди оставшихся и ставит его на место index
+    private static int nextMove(final int[] buffer, final int[] order, final int count, final int index) {
+        int best = index;
+        for (int i = index + 1; i < count; i++) {
+            if (order[i] > order[best]) best = i;
+        }
+        if (best != index) {
+            final int move = buffer[best];
+            buffer[best] = buffer[index];
+            buffer[index] = move;
+            final int weight = order[best];
+            order[best] = order[index];
+            order[index] = weight;
+        }
+        return buffer[index];
+    }
+
+    private boolean isCapture(final int move) {
+        return Moves.flag(move) == Moves.EN_PASSANT || position.getPiece(Moves.to(move)) != BitboardPosition.NO_PIECE;
+    }
+
+    private void addKiller(final int move, final int ply) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+    }
+
+    // Оценка мата в таблице хранится относительно текущего узла, а не корня
+    private static int toTable(final int score, final int ply) {
+        if (score > MATE_BOUND) return score + ply;
+        if (score < -MATE_BOUND) return score - ply;
+        return score;
+    }
+
+    private static int fromTable(final int score, final int ply) {
+        if (score > MATE_BOUND) return score - ply;
+        if (score < -MATE_BOUND) return score + ply;
+        return score;
+    }
+
+}
@@ -0,0 +1,64 @@
+package edu.demidov.netchess.game.engine;
+
+import edu.demidov.netchess.game.rules.bitboard.Moves;
+
+/**
+ * Результат поиска: лучший ход (в кодировке Moves), его оценка и статистика
+ */
+public class SearchResult {
+
+    private final int move;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final long timeMillis;
+
+    public SearchResult(final int move, final int score, final int depth, final long nodes, final long timeMillis) {
+        this.move = move;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.timeMillis = timeMillis;
+    }
+
+    /**
+     * Лучший ход, либо Moves.NO_MOVE, если ходов нет (мат или пат)
+     */
+    public int getMove() {
+        return move;
+    }
+
+    /**
+     * Оценка с точки зрения стороны, чей ход
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Глубина последней завершённой итерации
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchResult{" +
+                "move=" + (move == Moves.NO_MOVE ? "none" : Moves.from(move) + "-" + Moves.to(move)) +
+                ", score=" + score +
+                ", depth=" + depth +
+                ", nodes=" + nodes +
+                ", timeMillis=" + timeMillis +
+                '}';
+    }
+
+}
@@ -0,0 +1,96 @@
+package edu.demidov.netchess.game.engine;
+
+import java.util.Arrays;
+
+/**
+ * Таблица перестановок фиксированного размера: результаты уже просчитанных позиций по ключу Zobrist.
+ * Запись - два long: ключ и упакованные данные (ход, оценка, глубина, тип оценки), поэтому таблица
+ * не создаёт объектов и её размер не растёт за время партии.
+ * Индекс записи - младшие биты ключа; при коллизии запись заменяется, если новая посчитана не мельче старой.
+ * <p>
+ * Таблица общая для нескольких потоков поиска и обходится без блокировок: вместо ключа хранится
+ * ключ XOR данные. Если запись прочитана наполовину (другой поток успел записать только одно из двух чисел
+ * или половину long), проверка ключа не сходится и запись считается отсутствующей - испорченные данные
+ * в поиск не попадают. Потерянная при гонке запись лишь пересчитывается.
+ * <p>
+ * Формат данных: биты 0-15 - ход, 16-31 - оценка (со знаком), 32-39 - глубина, 40-41 - тип оценки.
+ */
+public class TranspositionTable {
+
+    // Тип оценки: точная, не меньше (отсечение по beta), не больше (ни один ход не улучшил alpha)
+    public static final int EXACT = 1, LOWER = 2, UPPER = 3;
+    // Данные отсутствующей записи. У настоящей записи тип оценки не 0, поэтому и данные не 0.
+    public static final long NO_ENTRY = 0L;
+
+    private static final int ENTRY_BYTES = 2 * Long.SIZE / Byte.SIZE;
+    private static final int BYTES_IN_MB = 1024 * 1024;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+
+    /**
+     * @param sizeMb размер таблицы в мегабайтах; число записей округляется вниз до степени двойки
+     */
+    public TranspositionTable(final int sizeMb) {
+        final long entries = Math.max(1L, (long) sizeMb * BYTES_IN_MB / ENTRY_BYTES);
+        final int size = (int) Long.highestOneBit(Math.min(entries, 1 << 30));
+        keys = new long[size];
+        data = new long[size];
+        mask = size - 1;
+    }
+
+    public static int move(final long entry) {
+        return (int) (entry & 0xFFFF);
+    }
+
+    public static int score(final long entry) {
+        return (short) (entry >>> 16);
+    }
+
+    public static int depth(final long entry) {
+        return (int) ((entry >>> 32) & 0xFF);
+    }
+
+    public static int bound(final long entry) {
+        return (int) ((entry >>> 40) & 0x3);
+    }
+
+    /**
+     * Возвращает данные записи для позиции с ключом key, либо NO_ENTRY
+     */
+    public long probe(final long key) {
+        final int index = (int) key & mask;
+        final long entry = data[index];
+        return (keys[index] ^ entry) == key ? entry : NO_ENTRY;
+    }
+
+    /**
+     * Сохраняет результат позиции. Глубина - от 0 до 255, оценка - в пределах short.
+     */
+    public void store(final long key, final int move, final int score, final int depth, final int bound) {
+        final int index = (int) key & mask;
+        final long old = data[index];
+        if ((keys[index] ^ old) == key || depth >= depth(old)) {
+            final long entry = (move & 0xFFFFL)
+                    | ((score & 0xFFFFL) << 16)
+                    | ((long) depth << 32)
+                    | ((long) bound << 40);
+            data[index] = entry;
+            keys[index] = key ^ entry;
+        }
+    }
+
+    /**
+     * Очищает таблицу (например, перед новой партией)
+     */
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, NO_ENTRY);
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+}
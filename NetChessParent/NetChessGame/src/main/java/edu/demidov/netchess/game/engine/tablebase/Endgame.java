@@ -0,0 +1,198 @@
+package edu.demidov.netchess.game.engine.tablebase;
+
+import edu.demidov.netchess.game.rules.bitboard.BitboardPosition;
+import edu.demidov.netchess.game.rules.bitboard.Bitboards;
+
+import java.util.Arrays;
+
+/**
+ * Эндшпиль, для которого строится таблица: король и фигуры сильной стороны против одинокого короля.
+ * <p>
+ * Позиция в таблице всегда записана так, будто сильная сторона - белые (пешки идут к y = 0).
+ * Индекс позиции: ((клетка сильного короля * 64 + клетка слабого короля) * 64 + клетки фигур...) * 2 + очередь хода
+ * (0 - ходит сильная сторона). Индекс без коллизий: каждой позиции соответствует ровно одна запись.
+ * Симметрии доски уменьшают таблицу: сильный король отражается на вертикали a-d, а без пешек -
+ * ещё и в треугольник a1-d1-d4 (отражения по горизонтали и по диагонали a1-h8).
+ */
+public enum Endgame {
+
+    KQK(BitboardPosition.QUEEN),
+    KRK(BitboardPosition.ROOK),
+    KPK(BitboardPosition.PAWN),
+    KBNK(BitboardPosition.BISHOP, BitboardPosition.KNIGHT);
+
+    // Номера клеток в squares: сильный король, слабый король, затем фигуры в порядке pieces
+    public static final int STRONG_KING = 0, WEAK_KING = 1, FIRST_PIECE = 2;
+
+    private static final int SIDES = 2;
+    private static final int HALF = Bitboards.SIZE / 2;
+    private static final int MIRROR_FILE = 1, MIRROR_RANK = 2, MIRROR_DIAGONAL = 4;
+
+    private final int[] pieces;
+    private final boolean hasPawns;
+    // Клетки, на которых может стоять сильный король, и номер клетки в этом списке (-1 - клетка не используется)
+    private final int[] kingSquares;
+    private final int[] kingIndexes = new int[Bitboards.SQUARES];
+    private final int size;
+
+    Endgame(final int... pieces) {
+        this.pieces = pieces;
+        boolean pawns = false;
+        for (final int piece : pieces) {
+            if (piece == BitboardPosition.PAWN) pawns = true;
+        }
+        hasPawns = pawns;
+
+        Arrays.fill(kingIndexes, -1);
+        final int[] squares = new int[Bitboards.SQUARES];
+        int count = 0;
+        for (int square = 0; square < Bitboards.SQUARES; square++) {
+            if (canonicalFlip(square, hasPawns) == 0) {
+                kingIndexes[square] = count;
+                squares[count++] = square;
+            }
+        }
+        kingSquares = Arrays.copyOf(squares, count);
+
+        int entries = count * Bitboards.SQUARES * SIDES;
+        for (int i = 0; i < pieces.length; i++) {
+            entries *= Bitboards.SQUARES;
+        }
+        size = entries;
+    }
+
+    /**
+     * Эндшпиль, которому соответствует материал позиции, либо null.
+     * У стороны weak должен быть только король.
+     */
+    public static Endgame find(final BitboardPosition position, final int strong) {
+        if (position.getColorPieces(1 - strong) != position.getPieces(1 - strong, BitboardPosition.KING)) return null;
+
+        for (final Endgame endgame : values()) {
+            if (endgame.matches(position, strong)) return endgame;
+        }
+        return null;
+    }
+
+    /**
+     * Типы фигур сильной стороны (кроме короля)
+     */
+    public int[] getPieces() {
+        return pieces.clone();
+    }
+
+    public int getPieceCount() {
+        return pieces.length;
+    }
+
+    public boolean hasPawns() {
+        return hasPawns;
+    }
+
+    /**
+     * Количество записей таблицы
+     */
+    public int size() {
+        return size;
+    }
+
+    public String fileName() {
+        return name().toLowerCase() + ".tb";
+    }
+
+    /**
+     * Индекс позиции. Клетки - в порядке STRONG_KING, WEAK_KING, фигуры; массив не меняется.
+     *
+     * @param squares
+     * @param isStrongToMove
+     */
+    public int index(final int[] squares, final boolean isStrongToMove) {
+        final int flip = canonicalFlip(squares, hasPawns);
+        int index = kingIndexes[transform(squares[STRONG_KING], flip)];
+        for (int i = WEAK_KING; i < FIRST_PIECE + pieces.length; i++) {
+            index = index * Bitboards.SQUARES + transform(squares[i], flip);
+        }
+        return index * SIDES + (isStrongToMove ? 0 : 1);
+    }
+
+    /**
+     * Заполняет клетки позиции по индексу. Не каждый индекс используется: у симметричной позиции с королём
+     * на диагонали a1-h8 индекс один, и index(decode(i)) может не совпасть с i.
+     *
+     * @param index
+     * @param squares массив длиной не меньше FIRST_PIECE + getPieceCount()
+     * @return true, если ходит сильная сторона
+     */
+    public boolean decode(final int index, final int[] squares) {
+        int rest = index / SIDES;
+        for (int i = FIRST_PIECE + pieces.length - 1; i >= WEAK_KING; i--) {
+            squares[i] = rest % Bitboards.SQUARES;
+            rest /= Bitboards.SQUARES;
+        }
+        squares[STRONG_KING] = kingSquares[rest];
+        return index % SIDES == 0;
+    }
+
+    private boolean matches(final BitboardPosition position, final int strong) {
+        final int[] counts = new int[BitboardPosition.PIECE_TYPES];
+        for (final int piece : pieces) {
+            counts[piece]++;
+        }
+        for (int type = 0; type < BitboardPosition.KING; type++) {
+            if (Long.bitCount(position.getPieces(strong, type)) != counts[type]) return false;
+        }
+        return true;
+    }
+
+    /* Отражения, переводящие позицию в основную часть доски. Если сильный король стоит на диагонали a1-h8,
+    отражение по ней выбирается по первой фигуре вне диагонали - так у симметричных позиций один индекс.
+    */
+    private int canonicalFlip(final int[] squares, final boolean hasPawns) {
+        int flip = canonicalFlip(squares[STRONG_KING], hasPawns);
+        if (hasPawns || !isOnDiagonal(transform(squares[STRONG_KING], flip))) return flip;
+
+        for (int i = WEAK_KING; i < FIRST_PIECE + pieces.length; i++) {
+            final int square = transform(squares[i], flip);
+            if (isOnDiagonal(square)) continue;
+            if (Bitboards.x(square) + Bitboards.y(square) < Bitboards.SIZE - 1) flip |= MIRROR_DIAGONAL;
+            break;
+        }
+        return flip;
+    }
+
+    private static boolean isOnDiagonal(final int square) {
+        return Bitboards.x(square) + Bitboards.y(square) == Bitboards.SIZE - 1;
+    }
+
+    // Какие отражения переводят сильного короля на клетку square в основную часть доски
+    private static int canonicalFlip(final int square, final boolean hasPawns) {
+        int x = Bitboards.x(square), y = Bitboards.y(square);
+        int flip = 0;
+        if (x >= HALF) {
+            flip |= MIRROR_FILE;
+            x = Bitboards.SIZE - 1 - x;
+        }
+        if (hasPawns) return flip;
+
+        if (y < HALF) {
+            flip |= MIRROR_RANK;
+            y = Bitboards.SIZE - 1 - y;
+        }
+        // Над диагональю a1-h8
+        if (x + y < Bitboards.SIZE - 1) flip |= MIRROR_DIAGONAL;
+        return flip;
+    }
+
+    private static int transform(final int square, final int flip) {
+        int x = Bitboards.x(square), y = Bitboards.y(square);
+        if ((flip & MIRROR_FILE) != 0) x = Bitboards.SIZE - 1 - x;
+        if ((flip & MIRROR_RANK) != 0) y = Bitboards.SIZE - 1 - y;
+        if ((flip & MIRROR_DIAGONAL) != 0) {
+            final int diagonalX = Bitboards.SIZE - 1 - y;
+            y = Bitboards.SIZE - 1 - x;
+            x = diagonalX;
+        }
+        return Bitboards.square(x, y);
+    }
+
+}
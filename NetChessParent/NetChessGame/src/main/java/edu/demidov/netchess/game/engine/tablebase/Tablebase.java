@@ -0,0 +1,143 @@
+package edu.demidov.netchess.game.engine.tablebase;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Таблица одного эндшпиля, отображённая в память только для чтения.
+ * <p>
+ * Запись - код позиции: 0 - ничья (или невозможная позиция), иначе число полуходов до мата + 1.
+ * Нечётное число полуходов - выигрывает сторона, чья очередь хода, чётное - она проигрывает (0 - ей уже мат).
+ * Коды упакованы по bits бит подряд, где bits - наименьшая ширина, вмещающая наибольший код таблицы
+ * (для KQK - 5 бит на позицию вместо байта).
+ * <p>
+ * Формат файла: заголовок (MAGIC, VERSION, номер эндшпиля, bits - по int) и упакованные коды.
+ */
+public class Tablebase {
+
+    public static final int MAGIC = 0x4E435442;     // "NCTB"
+    public static final int VERSION = 1;
+    // Код ничьей; коды выигрышей и проигрышей - от 1
+    public static final int DRAW = 0;
+
+    private static final int HEADER_SIZE = 4 * Integer.SIZE / Byte.SIZE;
+    private static final int MAX_BITS = Byte.SIZE;
+    private static final String HEADER_EXCEPTION = "Неверный заголовок файла таблицы: %s";
+    private static final String CODE_EXCEPTION = "Код позиции вне допустимых пределов: %d";
+
+    private final Endgame endgame;
+    private final ByteBuffer buffer;
+    private final int bits;
+    private final int mask;
+
+    private Tablebase(final Endgame endgame, final ByteBuffer buffer, final int bits) {
+        this.endgame = endgame;
+        this.buffer = buffer;
+        this.bits = bits;
+        this.mask = (1 << bits) - 1;
+    }
+
+    /**
+     * Открывает таблицу: проверяет заголовок и отображает файл в память
+     *
+     * @throws IOException если файл не читается или это не таблица эндшпиля endgame
+     */
+    public static Tablebase open(final Path file, final Endgame endgame) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_SIZE
+                    || buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != endgame.ordinal()) {
+                throw new IOException(String.format(HEADER_EXCEPTION, file));
+            }
+
+            final int bits = buffer.getInt();
+            if (bits < 1 || bits > MAX_BITS || buffer.remaining() < dataSize(endgame, bits)) {
+                throw new IOException(String.format(HEADER_EXCEPTION, file));
+            }
+            return new Tablebase(endgame, buffer.slice(), bits);
+        }
+    }
+
+    /**
+     * Записывает таблицу в файл. codes - коды всех позиций эндшпиля по индексам.
+     */
+    public static void write(final Path file, final Endgame endgame, final byte[] codes) throws IOException {
+        int maxCode = 1;
+        for (final byte code : codes) {
+            if (code < 0) throw new IllegalArgumentException(String.format(CODE_EXCEPTION, code));
+            maxCode = Math.max(maxCode, code);
+        }
+        final int bits = Integer.SIZE - Integer.numberOfLeadingZeros(maxCode);
+
+        final byte[] data = new byte[(int) dataSize(endgame, bits)];
+        long bitPosition = 0;
+        for (int index = 0; index < endgame.size(); index++, bitPosition += bits) {
+            // Код кладётся старшими битами вперёд и занимает не больше двух соседних байтов
+            final int shift = 2 * Byte.SIZE - (int) (bitPosition & 7) - bits;
+            final int word = codes[index] << shift;
+            final int offset = (int) (bitPosition >>> 3);
+            data[offset] |= (byte) (word >>> Byte.SIZE);
+            data[offset + 1] |= (byte) word;
+        }
+
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(endgame.ordinal());
+            out.writeInt(bits);
+            out.write(data);
+        }
+    }
+
+    public static boolean isWin(final int code) {
+        return code != DRAW && distance(code) % 2 == 1;
+    }
+
+    public static boolean isLoss(final int code) {
+        return code != DRAW && distance(code) % 2 == 0;
+    }
+
+    /**
+     * Число полуходов до мата для кода выигрыша или проигрыша
+     */
+    public static int distance(final int code) {
+        return code - 1;
+    }
+
+    /**
+     * Код позиции выигрыша (нечётное plies) или проигрыша (чётное plies) через plies полуходов
+     */
+    public static int code(final int plies) {
+        return plies + 1;
+    }
+
+    public Endgame getEndgame() {
+        return endgame;
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    /**
+     * Код позиции с индексом index
+     */
+    public int get(final int index) {
+        final long bitPosition = (long) index * bits;
+        final int offset = (int) (bitPosition >>> 3);
+        final int word = ((buffer.get(offset) & 0xFF) << Byte.SIZE) | (buffer.get(offset + 1) & 0xFF);
+        return (word >>> (2 * Byte.SIZE - (int) (bitPosition & 7) - bits)) & mask;
+    }
+
+    // Размер упакованных кодов; лишний байт в конце позволяет всегда читать код двумя байтами
+    private static long dataSize(final Endgame endgame, final int bits) {
+        return ((long) endgame.size() * bits + Byte.SIZE - 1) / Byte.SIZE + 1;
+    }
+
+}
@@ -0,0 +1,133 @@
+package edu.demidov.netchess.game.engine.tablebase;
+
+import edu.demidov.netchess.game.rules.bitboard.BitboardPosition;
+import edu.demidov.netchess.game.rules.bitboard.Bitboards;
+import edu.demidov.netchess.game.rules.bitboard.MoveGenerator;
+import edu.demidov.netchess.game.rules.bitboard.Moves;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Набор таблиц эндшпиля из одного каталога (файлы Endgame.fileName()).
+ * Отвечает, известен ли исход позиции при лучшей игре обеих сторон, и выбирает ход, ведущий к нему кратчайшим путём.
+ * Таблицы не меняются после открытия, поэтому набор можно использовать из нескольких потоков.
+ * <p>
+ * Позиции с правом рокировки в таблицах не учитываются, взятие на проходе в таких эндшпилях невозможно.
+ */
+public class Tablebases {
+
+    // Позиции нет в таблицах
+    public static final int UNKNOWN = -1;
+
+    private static final Logger log = LoggerFactory.getLogger(Tablebases.class);
+    private static final int MAX_PIECES = 4;
+    private static final int WIN_SCORE = 1000;
+
+    private final Map<Endgame, Tablebase> tables = new EnumMap<>(Endgame.class);
+
+    /**
+     * Открывает таблицы, найденные в каталоге directory; отсутствующие файлы пропускаются
+     */
+    public static Tablebases open(final Path directory) {
+        final Tablebases tablebases = new Tablebases();
+        for (final Endgame endgame : Endgame.values()) {
+            final Path file = directory.resolve(endgame.fileName());
+            if (!Files.exists(file)) continue;
+
+            try {
+                tablebases.tables.put(endgame, Tablebase.open(file, endgame));
+            } catch (final IOException ex) {
+                log.error("open: can't open the tablebase, file={}", file, ex);
+            }
+        }
+        log.info("open: directory={}, tablebases={}", directory, tablebases.tables.keySet());
+        return tablebases;
+    }
+
+    public boolean isEmpty() {
+        return tables.isEmpty();
+    }
+
+    /**
+     * Код позиции (см. Tablebase) для стороны, чья очередь хода, либо UNKNOWN
+     */
+    public int probe(final BitboardPosition position) {
+        if (tables.isEmpty() || position.getCastlingRights() != 0
+                || Long.bitCount(position.getOccupied()) > MAX_PIECES) return UNKNOWN;
+
+        final int strong = findStrongSide(position);
+        if (strong < 0) return UNKNOWN;
+        final Endgame endgame = Endgame.find(position, strong);
+        final Tablebase table = endgame == null ? null : tables.get(endgame);
+        if (table == null) return UNKNOWN;
+
+        final int[] squares = new int[Endgame.FIRST_PIECE + endgame.getPieceCount()];
+        squares[Endgame.STRONG_KING] = position.kingSquare(strong);
+        squares[Endgame.WEAK_KING] = position.kingSquare(1 - strong);
+        final int[] pieces = endgame.getPieces();
+        for (int i = 0; i < pieces.length; i++) {
+            squares[Endgame.FIRST_PIECE + i] = Bitboards.firstSquare(position.getPieces(strong, pieces[i]));
+        }
+
+        // В таблице сильная сторона - белые: за чёрных доска переворачивается
+        if (strong == BitboardPosition.BLACK) {
+            for (int i = 0; i < squares.length; i++) {
+                squares[i] = Bitboards.square(Bitboards.x(squares[i]), Bitboards.SIZE - 1 - Bitboards.y(squares[i]));
+            }
+        }
+        return table.get(endgame.index(squares, position.getSideToMove() == strong));
+    }
+
+    /**
+     * Лучший по таблицам ход: в выигранной позиции - к самому быстрому мату, в проигранной - к самому долгому,
+     * в ничейной - сохраняющий ничью. Moves.NO_MOVE, если позиции нет в таблицах или ходов нет.
+     * Позиция после вызова не меняется.
+     */
+    public int bestMove(final BitboardPosition position) {
+        if (probe(position) == UNKNOWN) return Moves.NO_MOVE;
+
+        final int[] moves = new int[MoveGenerator.MAX_MOVES];
+        final int count = MoveGenerator.generateLegalMoves(position, moves);
+        int bestMove = Moves.NO_MOVE;
+        int bestScore = Integer.MIN_VALUE;
+
+        for (int i = 0; i < count; i++) {
+            position.makeMove(moves[i]);
+            final int score = -score(probe(position));
+            position.unmakeMove(moves[i]);
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = moves[i];
+            }
+        }
+        return bestMove;
+    }
+
+    // Оценка кода для стороны, чья очередь хода: быстрый выигрыш лучше долгого, долгий проигрыш - лучше быстрого.
+    // Позиции вне таблиц после взятия или превращения в лёгкую фигуру - ничейные (KK, KBK, KNK).
+    private static int score(final int code) {
+        if (code == UNKNOWN || code == Tablebase.DRAW) return 0;
+        return Tablebase.isWin(code) ? WIN_SCORE - Tablebase.distance(code) : Tablebase.distance(code) - WIN_SCORE;
+    }
+
+    // Сторона с фигурами против одинокого короля, либо -1
+    private static int findStrongSide(final BitboardPosition position) {
+        if (position.kingSquare(BitboardPosition.WHITE) == BitboardPosition.NO_SQUARE
+                || position.kingSquare(BitboardPosition.BLACK) == BitboardPosition.NO_SQUARE) return -1;
+
+        final boolean isWhiteBare = position.getColorPieces(BitboardPosition.WHITE)
+                == position.getPieces(BitboardPosition.WHITE, BitboardPosition.KING);
+        final boolean isBlackBare = position.getColorPieces(BitboardPosition.BLACK)
+                == position.getPieces(BitboardPosition.BLACK, BitboardPosition.KING);
+        if (isWhiteBare == isBlackBare) return -1;
+        return isBlackBare ? BitboardPosition.WHITE : BitboardPosition.BLACK;
+    }
+
+}
@@ -0,0 +1,13 @@
+package edu.demidov.netchess.game.exceptions;
+
+import edu.demidov.netchess.common.model.exceptions.AbstractNetworkChessException;
+
+public class InvalidPgnException extends AbstractNetworkChessException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InvalidPgnException(final String message) {
+        super(message);
+    }
+
+}
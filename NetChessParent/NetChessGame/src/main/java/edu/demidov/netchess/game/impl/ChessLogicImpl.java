@@ -4,20 +4,27 @@ import edu.demidov.netchess.common.model.exceptions.game.chess.GameMoveException
 import edu.demidov.netchess.common.model.exceptions.game.chess.InvalidBoardSizeException;
 import edu.demidov.netchess.common.model.exceptions.game.chess.InvalidPointException;
 import edu.demidov.netchess.common.model.exceptions.game.chess.NoNextPlayerFoundException;
+import edu.demidov.netchess.common.model.game.chess.ChessColor;
 import edu.demidov.netchess.common.model.game.chess.ChessField;
 import edu.demidov.netchess.common.model.game.chess.ChessFigure;
 import edu.demidov.netchess.common.model.game.chess.ChessGame;
 import edu.demidov.netchess.common.model.game.chess.ChessPlayer;
+import edu.demidov.netchess.common.model.game.chess.LegalMoves;
+import edu.demidov.netchess.common.model.game.chess.TimeControl;
 import edu.demidov.netchess.game.api.ChessLogic;
 import edu.demidov.netchess.game.api.ChessLogicObserver;
+import edu.demidov.netchess.game.engine.tablebase.Tablebase;
+import edu.demidov.netchess.game.engine.tablebase.Tablebases;
 import edu.demidov.netchess.game.exceptions.NoKingOnFieldException;
 import edu.demidov.netchess.game.rules.ChessRules;
+import edu.demidov.netchess.game.rules.bitboard.BitboardPosition;
+import edu.demidov.netchess.game.rules.bitboard.MoveGenerator;
+import edu.demidov.netchess.game.rules.bitboard.Moves;
 import edu.demidov.netchess.utils.Point;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.List;
 import java.util.Random;
 
@@ -32,7 +39,11 @@ public class ChessLogicImpl implements ChessLogic {
     private static final String GAME_ALREADY_FINISHED = "Партия уже завершена";
     private static final String CURRENT_PLAYER_MUST_CHOOSE_FIGURE_EXCEPTION = "Не удалось найти пешку на доске";
     private static final String NO_NEXT_PLAYER_FOUND_EXCEPTION = "Не удалось найти следующего игрока";
+    private static final String ILLEGAL_MOVE_EXCEPTION = "Неверный ход";
     private final static String MOVE_SEQUENCE_EXCEPTION = "Дождитесь своего хода. Сейчас ходит игрок '%s'.";
+    private static final String FORCED_WIN = "Форсированный выигрыш: %s ставят мат не более чем за %d ход(ов)";
+    private static final String FORCED_DRAW = "Ничья при правильной игре обеих сторон";
+    private static final String WHITE = "белые", BLACK = "чёрные";
 
     private static final Random RANDOM = new Random();
     private static final int RANDOM_ID_MAX = 999_999_999;
@@ -41,7 +52,15 @@ public class ChessLogicImpl implements ChessLogic {
     private static final Logger log = LoggerFactory.getLogger(ChessLogicImpl.class);
     private static ChessLogicImpl instance;
     private final List<ChessLogicObserver> listeners;
+    // Буфер для генерации ходов, свой у каждого потока
+    private final ThreadLocal<int[]> movesBuffers = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[MoveGenerator.MAX_MOVES];
+        }
+    };
     private ChessRules chessRules;
+    private Tablebases tablebases;
 
     private ChessLogicImpl() {
         listeners = new ArrayList<>();
@@ -59,6 +78,11 @@ public class ChessLogicImpl implements ChessLogic {
         this.chessRules = chessRules;
     }
 
+    @Override
+    public void setTablebases(final Tablebases tablebases) {
+        this.tablebases = tablebases;
+    }
+
     @Override
     public void addListener(final ChessLogicObserver listener) {
         listeners.add(listener);
@@ -73,6 +97,8 @@ public class ChessLogicImpl implements ChessLogic {
     public void notifyListenersThatGameChanged(final ChessGame game) {
         log.trace("notifyListenersThatGameChanged game={}", game);
 
+        // Принятое действие - новая версия партии. Наблюдатели читают её снимок из любых потоков.
+        game.publishSnapshot();
         for (final ChessLogicObserver listener : listeners) {
             listener.gameChanged(game);
         }
@@ -80,6 +106,7 @@ public class ChessLogicImpl implements ChessLogic {
 
     @Override
     public void notifyListenersThatGameEnded(final ChessGame game, final ChessPlayer winner) {
+        game.publishSnapshot();
         for (final ChessLogicObserver listener : listeners) {
             listener.gameEnded(game, winner);
         }
@@ -87,7 +114,12 @@ public class ChessLogicImpl implements ChessLogic {
 
     @Override
     public ChessGame startGame(final List<ChessPlayer> chessPlayers) {
-        log.debug("startGame chessPlayers={}", chessPlayers);
+        return startGame(chessPlayers, TimeControl.suddenDeath(chessPlayers.get(0).getTimeLeft()));
+    }
+
+    @Override
+    public ChessGame startGame(final List<ChessPlayer> chessPlayers, final TimeControl timeControl) {
+        log.debug("startGame chessPlayers={}, timeControl={}", chessPlayers, timeControl);
 
         ChessGame game = null;
 
@@ -96,8 +128,12 @@ public class ChessLogicImpl implements ChessLogic {
             game = new ChessGame(
                     RANDOM.nextInt(RANDOM_ID_MAX),
                     field,
-                    chessPlayers);
-        } catch (final InvalidBoardSizeException | NoNextPlayerFoundException | InvalidPointException e) {
+                    chessPlayers,
+                    timeControl);
+            updateLegalMoves(game);
+            game.publishSnapshot();
+        } catch (final InvalidBoardSizeException | NoNextPlayerFoundException | InvalidPointException
+                | NoKingOnFieldException e) {
             log.error("Exception, ", e);
         }
 
@@ -110,8 +146,6 @@ public class ChessLogicImpl implements ChessLogic {
                                  final Point fromPoint, final Point toPoint) throws GameMoveException {
         log.debug("playerMoveFigure player={}, game={}, fromPoint={}, toPoint={}", player, game, fromPoint, toPoint);
         try {
-            final long currentMoveTime = countCurrentMoveMilliseconds(game);  // Подсчитываем время текущего хода
-
             checkThatGameNotFinished(game);
             checkThatPlayerIsCurrent(player, game);
 
@@ -119,14 +153,18 @@ public class ChessLogicImpl implements ChessLogic {
             if (game.isCurrentPlayerChoosingFigure())
                 throw new GameMoveException(CURRENT_PLAYER_MUST_CHOOSE_FIGURE_EXCEPTION);
 
-            // Если ход не корректный (и почему-то не выкинулось исключение с описанием) - выходим
-            if (!chessRules.isMoveCorrect(player.getColor(), game.getField(), fromPoint, toPoint))
-                return;
+            /* Ход ищется в наборе допустимых ходов, посчитанном после предыдущего хода.
+            Если хода там нет - правила выбросят исключение с причиной.
+            */
+            if (!getLegalMoves(game).contains(fromPoint, toPoint)) {
+                chessRules.isMoveCorrect(player.getColor(), game.getField(), fromPoint, toPoint);
+                throw new GameMoveException(ILLEGAL_MOVE_EXCEPTION);
+            }
 
             // Делаем сам ход
             game.moveFigure(fromPoint, toPoint);
 
-            processIfCurrentPlayerChanged(game, player, currentMoveTime);
+            processIfCurrentPlayerChanged(game, player);
         } catch (final NoKingOnFieldException | NoNextPlayerFoundException | InvalidPointException ex) {
             log.warn("Exception: player={}, game={}, fromPoint={}, toPoint={}", player, game, fromPoint, toPoint, ex);
             throw new GameMoveException(ex.toString());
@@ -145,8 +183,6 @@ public class ChessLogicImpl implements ChessLogic {
         }
 
         try {
-            final long currentMoveTime = countCurrentMoveMilliseconds(game);  // Подсчитываем время текущего хода
-
             checkThatGameNotFinished(game);
             checkThatPlayerIsCurrent(player, game);
 
@@ -160,7 +196,7 @@ public class ChessLogicImpl implements ChessLogic {
             // Заменяем пешку игрока на выбранную фигуру
             game.transformPawn(player, chosenFigureType);
 
-            processIfCurrentPlayerChanged(game, player, currentMoveTime);
+            processIfCurrentPlayerChanged(game, player);
         } catch (final InvalidPointException | NoKingOnFieldException | NoNextPlayerFoundException ex) {
             log.error("Exception: game={}, player={}, chosenFigureType={}", game, player, chosenFigureType, ex);
             throw new GameMoveException(ex.toString());
@@ -236,10 +272,7 @@ public class ChessLogicImpl implements ChessLogic {
             return;
         }
 
-        final long currentMoveTime = countCurrentMoveMilliseconds(game);
-        final long currentPlayerNewTimeLeft = currentPlayer.getTimeLeft() - currentMoveTime;
-
-        if (currentPlayerNewTimeLeft < 0) {
+        if (game.isTimeUp(System.nanoTime())) {
             endGame(game, game.getNextPlayer(currentPlayer), TIME_IS_UP);
         }
     }
@@ -275,19 +308,14 @@ public class ChessLogicImpl implements ChessLogic {
         }
     }
 
-    /* Если ход передался новому игроку:
-    - проверяем нет ли мата;
-    - уменьшаем время хода
+    /* Если ход передался новому игроку - проверяем нет ли мата.
+    Время хода списывают часы партии при передаче хода.
     */
-    private void processIfCurrentPlayerChanged(final ChessGame game,
-                                               final ChessPlayer prevPlayer, final long currentMoveTime)
+    private void processIfCurrentPlayerChanged(final ChessGame game, final ChessPlayer prevPlayer)
             throws NoKingOnFieldException, NoNextPlayerFoundException {
         if (!prevPlayer.equals(game.getCurrentPlayer())) {
             // Проверяем нет ли мата/пата
             checkGameForEndByPosition(game);
-
-            // Уменьшаем оставшееся время у игрока, сделавшего ход
-            prevPlayer.setTimeLeft(prevPlayer.getTimeLeft() - currentMoveTime);
         }
     }
 
@@ -298,18 +326,68 @@ public class ChessLogicImpl implements ChessLogic {
         final ChessPlayer currentPlayer = game.getCurrentPlayer();
         final ChessField field = game.getField();
 
-        /* Если не осталось ни одного допустимого хода для текущего игрока,
-        то это либо мат (если сейчас шах), либо пат (если шаха нет).
+        /* Считаем допустимые ходы нового текущего игрока - этим же набором потом проверяется его ход.
+        Если не осталось ни одного допустимого хода, то это либо мат (если сейчас шах), либо пат (если шаха нет).
         */
-        if (chessRules.isNoMoreMoves(currentPlayer.getColor(), field)) {
+        if (updateLegalMoves(game).isEmpty()) {
             if (chessRules.isCheckForPlayer(currentPlayer.getColor(), field)) {
                 endGame(game, game.getNextPlayer(currentPlayer), MATE);     // мат
             } else {
                 endGame(game, null, STALEMATE);     // пат
             }
+        } else {
+            updateForcedOutcome(game);
         }
     }
 
+    /* Отмечает в партии исход, известный по таблицам эндшпиля: мат при лучшей игре или ничья.
+    Пока на доске больше фигур, чем в таблицах, исход неизвестен (null).
+    */
+    private void updateForcedOutcome(final ChessGame game) {
+        if (tablebases == null || tablebases.isEmpty()) return;
+
+        final ChessColor color = game.getCurrentPlayer().getColor();
+        final int code;
+        try {
+            code = tablebases.probe(new BitboardPosition(game.getField(), BitboardPosition.color(color)));
+        } catch (final InvalidBoardSizeException ex) {
+            log.error("updateForcedOutcome: game={}", game, ex);
+            return;
+        }
+
+        if (code == Tablebases.UNKNOWN) {
+            game.setForcedOutcome(null);
+        } else if (code == Tablebase.DRAW) {
+            game.setForcedOutcome(FORCED_DRAW);
+        } else {
+            final boolean isWhiteWinning = Tablebase.isWin(code) == (color == ChessColor.White);
+            final int moves = (Tablebase.distance(code) + 1) / 2;
+            game.setForcedOutcome(String.format(FORCED_WIN, isWhiteWinning ? WHITE : BLACK, moves));
+        }
+        log.trace("updateForcedOutcome game={}, code={}", game, code);
+    }
+
+    /* Считает допустимые ходы текущего игрока и сохраняет их в партии.
+    Превращение пешки в наборе - один ход: фигура выбирается отдельным действием.
+    */
+    private LegalMoves updateLegalMoves(final ChessGame game) throws NoKingOnFieldException {
+        final int[] moves = movesBuffers.get();
+        final int count = chessRules.getLegalMoves(game.getCurrentPlayer().getColor(), game.getField(), moves);
+
+        final LegalMoves legalMoves = new LegalMoves();
+        for (int i = 0; i < count; i++) {
+            legalMoves.add(Moves.from(moves[i]), Moves.to(moves[i]));
+        }
+        game.setLegalMoves(legalMoves);
+        return legalMoves;
+    }
+
+    // Возвращает набор допустимых ходов из партии, если он ещё не посчитан - считает
+    private LegalMoves getLegalMoves(final ChessGame game) throws NoKingOnFieldException {
+        final LegalMoves legalMoves = game.getLegalMoves();
+        return legalMoves != null ? legalMoves : updateLegalMoves(game);
+    }
+
     // Завершает партию
     private void endGame(final ChessGame game, final ChessPlayer winner, final String reasonResult) {
         log.debug("endGame game={}, winner={}, reasonResult={}", game, winner, reasonResult);
@@ -323,10 +401,6 @@ public class ChessLogicImpl implements ChessLogic {
         }
     }
 
-    private long countCurrentMoveMilliseconds(final ChessGame game) {
-        return Calendar.getInstance().getTime().getTime() - game.getCurrentMoveStarted().getTime();
-    }
-
     private void checkChooseFigureInsteadPawn(ChessFigure.Type chosenFigureType) throws GameMoveException {
         if (chosenFigureType == null || chosenFigureType == ChessFigure.Type.King || chosenFigureType == ChessFigure.Type.Pawn) {
             throw new GameMoveException(UNKNOWN_FIGURE_TYPE_EXCEPTION);
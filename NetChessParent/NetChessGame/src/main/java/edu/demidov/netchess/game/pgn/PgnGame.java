@@ -0,0 +1,67 @@
+package edu.demidov.netchess.game.pgn;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Партия, прочитанная из PGN: теги и ходы в алгебраической записи (SAN) - без номеров ходов,
+ * комментариев, вариантов и оценок ходов. Ходы ещё не проверены - это делает PgnReplay.
+ */
+public class PgnGame {
+
+    public static final String FEN_TAG = "FEN";
+    public static final String RESULT_TAG = "Result";
+
+    private final Map<String, String> tags;
+    private final List<String> moves;
+    private final String result;
+    private final long lineNumber;
+
+    /**
+     * @param tags       теги; коллекция не копируется
+     * @param moves      ходы SAN; коллекция не копируется
+     * @param result     результат в конце записи ходов ("1-0", "0-1", "1/2-1/2", "*"), либо null
+     * @param lineNumber номер строки файла, с которой начинается партия (с 1)
+     */
+    public PgnGame(final Map<String, String> tags, final List<String> moves, final String result,
+                   final long lineNumber) {
+        this.tags = tags;
+        this.moves = moves;
+        this.result = result;
+        this.lineNumber = lineNumber;
+    }
+
+    /**
+     * Значение тега, либо null
+     */
+    public String getTag(final String name) {
+        return tags.get(name);
+    }
+
+    public Map<String, String> getTags() {
+        return Collections.unmodifiableMap(tags);
+    }
+
+    public List<String> getMoves() {
+        return Collections.unmodifiableList(moves);
+    }
+
+    /**
+     * Результат из записи ходов, а если его там нет - из тега Result
+     */
+    public String getResult() {
+        return result != null ? result : tags.get(RESULT_TAG);
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public String toString() {
+        return "PgnGame{" + "lineNumber=" + lineNumber + ", tags=" + tags + ", moves=" + moves.size()
+                + ", result=" + getResult() + '}';
+    }
+
+}
@@ -0,0 +1,71 @@
+package edu.demidov.netchess.game.pgn;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Итог загрузки PGN: сколько партий прочитано, сколько прошло проверку, скорость и первые ошибки
+ */
+public class PgnImportResult {
+
+    private final long games;
+    private final long validGames;
+    private final long moves;
+    private final long timeMillis;
+    private final List<String> errors;
+
+    public PgnImportResult(final long games, final long validGames, final long moves, final long timeMillis,
+                           final List<String> errors) {
+        this.games = games;
+        this.validGames = validGames;
+        this.moves = moves;
+        this.timeMillis = timeMillis;
+        this.errors = errors;
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public long getValidGames() {
+        return validGames;
+    }
+
+    public long getInvalidGames() {
+        return games - validGames;
+    }
+
+    /**
+     * Ходов в партиях, прошедших проверку
+     */
+    public long getMoves() {
+        return moves;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public long getGamesPerSecond() {
+        return timeMillis == 0 ? games : games * 1000 / timeMillis;
+    }
+
+    /**
+     * Описания первых ошибок (не больше PgnImporter.MAX_ERRORS)
+     */
+    public List<String> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    @Override
+    public String toString() {
+        return "PgnImportResult{" +
+                "games=" + games +
+                ", validGames=" + validGames +
+                ", moves=" + moves +
+                ", timeMillis=" + timeMillis +
+                ", gamesPerSecond=" + getGamesPerSecond() +
+                '}';
+    }
+
+}
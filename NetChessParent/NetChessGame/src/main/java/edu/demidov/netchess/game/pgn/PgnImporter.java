@@ -0,0 +1,177 @@
+package edu.demidov.netchess.game.pgn;
+
+import edu.demidov.netchess.game.exceptions.InvalidPgnException;
+import edu.demidov.netchess.game.rules.ChessRules;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Загрузка PGN: партии читаются потоково (PgnReader) в вызывающем потоке, пачками по batchSize уходят
+ * в ForkJoinPool и проверяются там параллельно (PgnReplay - свой у каждой задачи проверки, к потокам пула
+ * он не привязывается).
+ * <p>
+ * В работе одновременно не больше maxBatches пачек: когда их больше, чтение ждёт самую старую.
+ * Поэтому память не растёт с размером файла, а чтение и проверка идут одновременно.
+ * Прошедшие проверку партии отдаются в GameHandler из потоков пула.
+ * Любой сбой на отдельной партии (в том числе RuntimeException разбора или обработчика) делает неверной только
+ * эту партию - загрузка продолжается.
+ */
+public class PgnImporter {
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    // Сколько ошибок попадает в итог; остальные только считаются
+    public static final int MAX_ERRORS = 10;
+
+    private static final Logger log = LoggerFactory.getLogger(PgnImporter.class);
+    // Пачка делится пополам, пока в ней больше партий
+    private static final int SEQUENTIAL_GAMES = 16;
+    private static final String GAME_FAILURE_EXCEPTION = "Строка %d: сбой проверки партии: %s";
+
+    private final ChessRules rules;
+    private final ForkJoinPool pool;
+    private final int batchSize;
+    private final int maxBatches;
+
+    /**
+     * Обработчик партий, прошедших проверку. Вызывается из потоков пула одновременно - должен быть потокобезопасным.
+     */
+    public interface GameHandler {
+
+        /**
+         * @param game  партия
+         * @param moves ходы партии в кодировке Moves; значимы первые count, массив действителен только во время вызова
+         * @param count
+         */
+        void gameValidated(PgnGame game, int[] moves, int count);
+
+    }
+
+    public PgnImporter(final ChessRules rules, final ForkJoinPool pool) {
+        this(rules, pool, DEFAULT_BATCH_SIZE, 2 * pool.getParallelism());
+    }
+
+    /**
+     * @param rules      правила, по которым проверяются ходы (должны быть потокобезопасными)
+     * @param pool       пул проверки
+     * @param batchSize  партий в пачке
+     * @param maxBatches сколько пачек может быть в работе одновременно
+     */
+    public PgnImporter(final ChessRules rules, final ForkJoinPool pool, final int batchSize, final int maxBatches) {
+        this.rules = rules;
+        this.pool = pool;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+    }
+
+    /**
+     * Читает все партии из in и проверяет их. Поток in не закрывается.
+     *
+     * @param handler обработчик прошедших проверку партий, может быть null
+     */
+    public PgnImportResult importGames(final Reader in, final GameHandler handler) throws IOException {
+        final long started = System.nanoTime();
+        final Counters counters = new Counters();
+        final Deque<ForkJoinTask<Void>> batches = new ArrayDeque<>();
+        final PgnReader reader = new PgnReader(in);
+
+        List<PgnGame> batch = new ArrayList<>(batchSize);
+        PgnGame game;
+        while ((game = reader.next()) != null) {
+            batch.add(game);
+            if (batch.size() < batchSize) continue;
+
+            // Не даём читателю убежать вперёд: ждём самую старую пачку
+            if (batches.size() >= maxBatches) batches.poll().join();
+            batches.add(pool.submit(new ValidateTask(batch, 0, batch.size(), handler, counters)));
+            batch = new ArrayList<>(batchSize);
+        }
+        if (!batch.isEmpty()) batches.add(pool.submit(new ValidateTask(batch, 0, batch.size(), handler, counters)));
+        while (!batches.isEmpty()) batches.poll().join();
+
+        final PgnImportResult result = new PgnImportResult(counters.games.get(), counters.validGames.get(),
+                counters.moves.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started),
+                new ArrayList<>(counters.errors));
+        log.info("importGames result={}", result);
+        return result;
+    }
+
+    private static class Counters {
+
+        private final AtomicLong games = new AtomicLong();
+        private final AtomicLong validGames = new AtomicLong();
+        private final AtomicLong moves = new AtomicLong();
+        private final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+
+        void addError(final String error) {
+            synchronized (errors) {
+                if (errors.size() < MAX_ERRORS) errors.add(error);
+            }
+        }
+
+    }
+
+    // Проверка партий batch[from..to): большие куски делятся пополам
+    private class ValidateTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<PgnGame> batch;
+        private final int from;
+        private final int to;
+        private final GameHandler handler;
+        private final Counters counters;
+
+        ValidateTask(final List<PgnGame> batch, final int from, final int to,
+                     final GameHandler handler, final Counters counters) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+            this.handler = handler;
+            this.counters = counters;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SEQUENTIAL_GAMES) {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new ValidateTask(batch, from, middle, handler, counters),
+                        new ValidateTask(batch, middle, to, handler, counters));
+                return;
+            }
+
+            // Не больше SEQUENTIAL_GAMES партий на задачу - новый PgnReplay дешевле, чем ThreadLocal в потоках пула
+            final PgnReplay replay = new PgnReplay(rules);
+            for (int i = from; i < to; i++) {
+                final PgnGame game = batch.get(i);
+                counters.games.incrementAndGet();
+                try {
+                    final int count = replay.replay(game);
+                    if (handler != null) handler.gameValidated(game, replay.getMoves(), count);
+                    counters.validGames.incrementAndGet();
+                    counters.moves.addAndGet(count);
+                } catch (final InvalidPgnException ex) {
+                    log.debug("the game is invalid: {}", ex.getMessage());
+                    counters.addError(ex.getMessage());
+                } catch (final RuntimeException ex) {
+                    log.warn("the game failed, lineNumber={}", game.getLineNumber(), ex);
+                    counters.addError(String.format(GAME_FAILURE_EXCEPTION, game.getLineNumber(), ex));
+                }
+            }
+        }
+
+    }
+
+}
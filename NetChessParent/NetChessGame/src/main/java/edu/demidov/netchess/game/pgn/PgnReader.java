@@ -0,0 +1,209 @@
+package edu.demidov.netchess.game.pgn;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Потоковое чтение PGN: партии читаются по одной, в памяти - только текущая партия и буфер чтения,
+ * поэтому размер файла не ограничен.
+ * <p>
+ * Чтение нестрогое: пропускаются комментарии {...} и ;..., варианты (...) любой вложенности, оценки $n,
+ * пометки !? и строки-экранирования %. Тег с ошибкой пропускается. Партия заканчивается результатом
+ * (1-0, 0-1, 1/2-1/2, *) или началом тегов следующей партии. Экземпляр не потокобезопасен.
+ */
+public class PgnReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int EOF = -1;
+    private static final int INITIAL_MOVES = 128;
+    private static final String[] RESULTS = {"1-0", "0-1", "1/2-1/2", "*"};
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private int pushedBack = EOF;
+    private boolean isLineStart;
+    private char previous = '\n';
+    private long lineNumber = 1;
+
+    // Буферы для разбора - переиспользуются между партиями
+    private final StringBuilder token = new StringBuilder();
+    private final StringBuilder value = new StringBuilder();
+
+    public PgnReader(final Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Следующая партия, либо null, если партий больше нет
+     */
+    public PgnGame next() throws IOException {
+        int c = skipWhitespace();
+        if (c == EOF) return null;
+
+        final long startLine = lineNumber;
+        final Map<String, String> tags = new LinkedHashMap<>();
+        final List<String> moves = new ArrayList<>(INITIAL_MOVES);
+        String result = null;
+
+        for (; c != EOF; c = skipWhitespace()) {
+            if (c == '[') {
+                // Теги после ходов - это уже следующая партия
+                if (!moves.isEmpty()) {
+                    pushBack(c);
+                    break;
+                }
+                readTag(tags);
+            } else if (c == '%' && isLineStart) {
+                skipLine();
+            } else if (c == ';') {
+                skipLine();
+            } else if (c == '{') {
+                skipUntil('}');
+            } else if (c == '(') {
+                skipVariation();
+            } else if (c == '$') {
+                readToken(c);
+            } else {
+                readToken(c);
+                if (isResult(token)) {
+                    result = token.toString();
+                    break;
+                }
+                final String move = toMove(token);
+                if (move != null) moves.add(move);
+            }
+        }
+        return new PgnGame(tags, moves, result, startLine);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    // [Имя "значение"] - открывающая скобка уже прочитана
+    private void readTag(final Map<String, String> tags) throws IOException {
+        token.setLength(0);
+        int c = read();
+        while (c != EOF && c != ']' && c != '"' && !Character.isWhitespace(c)) {
+            token.append((char) c);
+            c = read();
+        }
+        while (c != EOF && Character.isWhitespace(c) && c != '\n') c = read();
+        if (c != '"') {
+            // Тег с ошибкой - пропускаем до конца
+            if (c != ']' && c != '\n') skipUntil(']');
+            return;
+        }
+
+        value.setLength(0);
+        for (c = read(); c != EOF && c != '"' && c != '\n'; c = read()) {
+            if (c == '\\') c = read();
+            if (c != EOF) value.append((char) c);
+        }
+        if (c == '"') skipUntil(']');
+        if (token.length() > 0) tags.put(token.toString(), value.toString());
+    }
+
+    // Слово записи ходов: до пробела или до начала комментария/варианта/тега
+    private void readToken(final int first) throws IOException {
+        token.setLength(0);
+        token.append((char) first);
+        int c = read();
+        while (c != EOF && !Character.isWhitespace(c) && "{}();[".indexOf(c) < 0) {
+            token.append((char) c);
+            c = read();
+        }
+        if (c != EOF) pushBack(c);
+    }
+
+    /* Ход без номера и пометок: "12.Nf3!?" -> "Nf3", "12..." -> null. Оценки $n тоже дают null.
+    Строка создаётся один раз на ход.
+    */
+    private static String toMove(final StringBuilder token) {
+        int start = 0;
+        while (start < token.length() && Character.isDigit(token.charAt(start))) start++;
+        if (start < token.length() && token.charAt(start) == '.') {
+            while (start < token.length() && token.charAt(start) == '.') start++;
+        } else {
+            start = 0;
+        }
+
+        int end = token.length();
+        while (end > start && (token.charAt(end - 1) == '!' || token.charAt(end - 1) == '?')) end--;
+        if (end == start || token.charAt(start) == '$') return null;
+        return token.substring(start, end);
+    }
+
+    private static boolean isResult(final StringBuilder token) {
+        for (final String result : RESULTS) {
+            if (result.contentEquals(token)) return true;
+        }
+        return false;
+    }
+
+    private void skipVariation() throws IOException {
+        int depth = 1;
+        for (int c = read(); c != EOF; c = read()) {
+            if (c == '{') {
+                skipUntil('}');
+            } else if (c == ';') {
+                skipLine();
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return;
+            }
+        }
+    }
+
+    private void skipUntil(final char end) throws IOException {
+        int c = read();
+        while (c != EOF && c != end) c = read();
+    }
+
+    private void skipLine() throws IOException {
+        skipUntil('\n');
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c = read();
+        while (c != EOF && Character.isWhitespace(c)) c = read();
+        return c;
+    }
+
+    private void pushBack(final int c) {
+        pushedBack = c;
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != EOF) {
+            final int c = pushedBack;
+            pushedBack = EOF;
+            return c;
+        }
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return EOF;
+            }
+        }
+
+        final char c = buffer[position++];
+        // Первый ли в строке прочитанный символ
+        isLineStart = previous == '\n';
+        previous = c;
+        if (c == '\n') lineNumber++;
+        return c;
+    }
+
+}
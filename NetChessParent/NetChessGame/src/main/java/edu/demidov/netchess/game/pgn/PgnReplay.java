@@ -0,0 +1,197 @@
+package edu.demidov.netchess.game.pgn;
+
+import edu.demidov.netchess.common.model.exceptions.AbstractNetworkChessException;
+import edu.demidov.netchess.common.model.game.chess.ChessColor;
+import edu.demidov.netchess.common.model.game.chess.ChessField;
+import edu.demidov.netchess.common.model.game.chess.ChessFigure;
+import edu.demidov.netchess.common.model.game.chess.ChessGame;
+import edu.demidov.netchess.common.model.game.chess.ChessPlayer;
+import edu.demidov.netchess.common.model.game.chess.Fen;
+import edu.demidov.netchess.game.exceptions.InvalidPgnException;
+import edu.demidov.netchess.game.rules.ChessRules;
+import edu.demidov.netchess.game.rules.bitboard.Bitboards;
+import edu.demidov.netchess.game.rules.bitboard.MoveGenerator;
+import edu.demidov.netchess.game.rules.bitboard.Moves;
+import edu.demidov.netchess.utils.Point;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Проверка партии PGN: ходы SAN разбираются по допустимым ходам из ChessRules и делаются на ChessGame -
+ * так же, как ходы игроков на сервере. Проверяются и пометки шаха (+) и мата (#).
+ * <p>
+ * Взятия на проходе в правилах игры нет, поэтому партия с ним не проходит проверку.
+ * Экземпляр не потокобезопасен: одному потоку - один PgnReplay.
+ */
+public class PgnReplay {
+
+    private static final int FIELD_SIZE = 8;
+    private static final int INITIAL_MOVES = 128;
+    // Буквы фигур SAN в порядке ChessFigure.Type
+    private static final String PIECES = "PBNRQK";
+    private static final ChessFigure.Type[] TYPES = ChessFigure.Type.values();
+    private static final String ILLEGAL_MOVE_EXCEPTION = "Строка %d, ход %d (%s): %s";
+    private static final String NO_MOVE = "недопустимый ход";
+    private static final String AMBIGUOUS_MOVE = "ход неоднозначен";
+    private static final String MALFORMED_MOVE = "ход не разбирается";
+    private static final String NOT_CHECK = "ход помечен как шах, но шаха нет";
+    private static final String NOT_MATE = "ход помечен как мат, но мата нет";
+    private static final String AFTER_END = "ход после окончания партии";
+    private static final String POSITION_EXCEPTION = "Строка %d: неверная начальная позиция: %s";
+
+    private final ChessRules rules;
+    private final int[] legalMoves = new int[MoveGenerator.MAX_MOVES];
+    private int[] moves = new int[INITIAL_MOVES];
+
+    public PgnReplay(final ChessRules rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Проверяет партию. Ходы партии (в кодировке Moves) доступны через getMoves() до следующего вызова.
+     *
+     * @return число ходов
+     * @throws InvalidPgnException если начальная позиция или какой-то ход неверны
+     */
+    public int replay(final PgnGame pgn) throws InvalidPgnException {
+        final ChessGame game = createGame(pgn);
+        final ChessField field = game.getField();
+        final List<String> sanMoves = pgn.getMoves();
+        if (moves.length < sanMoves.size()) moves = Arrays.copyOf(moves, Math.max(sanMoves.size(), moves.length * 2));
+
+        for (int ply = 0; ply < sanMoves.size(); ply++) {
+            final String san = sanMoves.get(ply);
+            try {
+                final ChessColor color = game.getCurrentPlayer().getColor();
+                final int count = rules.getLegalMoves(color, field, legalMoves);
+                if (count == 0) throw exception(pgn, ply, san, AFTER_END);
+
+                final int move = resolve(pgn, ply, san, field.getField(), count);
+                game.moveFigure(point(Moves.from(move)), point(Moves.to(move)));
+                if (Moves.isPromotion(move)) {
+                    game.transformPawn(game.getCurrentPlayer(), TYPES[Moves.promotionType(move)]);
+                }
+                moves[ply] = move;
+
+                checkSuffix(pgn, ply, san, game);
+            } catch (final InvalidPgnException ex) {
+                throw ex;
+            } catch (final AbstractNetworkChessException ex) {
+                throw exception(pgn, ply, san, ex.getClass().getSimpleName());
+            }
+        }
+        return sanMoves.size();
+    }
+
+    /**
+     * Ходы последней проверенной партии; значимы первые replay() элементов
+     */
+    public int[] getMoves() {
+        return moves;
+    }
+
+    // Партия из начальной позиции либо из позиции тега FEN
+    private static ChessGame createGame(final PgnGame pgn) throws InvalidPgnException {
+        try {
+            final ChessPlayer white = new ChessPlayer(ChessColor.White, 0, "white", 0, 0, 0, 0, 0);
+            final ChessPlayer black = new ChessPlayer(ChessColor.Black, 0, "black", 0, 0, 0, 0, 0);
+            final ChessGame game = new ChessGame(1, new ChessField(FIELD_SIZE), Arrays.asList(white, black));
+
+            final String fen = pgn.getTag(PgnGame.FEN_TAG);
+            if (fen != null) Fen.parse(fen, game);
+            return game;
+        } catch (final AbstractNetworkChessException ex) {
+            throw new InvalidPgnException(String.format(POSITION_EXCEPTION, pgn.getLineNumber(), ex.getMessage()));
+        }
+    }
+
+    // Единственный допустимый ход, подходящий под запись SAN
+    private int resolve(final PgnGame pgn, final int ply, final String san,
+                        final ChessFigure[][] figures, final int count) throws InvalidPgnException {
+        int end = san.length();
+        while (end > 0 && (san.charAt(end - 1) == '+' || san.charAt(end - 1) == '#')) end--;
+
+        // Рокировка: король ходит на две клетки
+        if (san.startsWith("O-O") || san.startsWith("0-0")) {
+            final int direction = end >= "O-O-O".length() ? -1 : 1;
+            for (int i = 0; i < count; i++) {
+                final int move = legalMoves[i];
+                if (Moves.flag(move) == Moves.CASTLING
+                        && Integer.signum(Bitboards.x(Moves.to(move)) - Bitboards.x(Moves.from(move))) == direction) {
+                    return move;
+                }
+            }
+            throw exception(pgn, ply, san, NO_MOVE);
+        }
+
+        // Превращение: "e8=Q" или "e8Q"
+        int promotion = -1;
+        if (end >= 2 && PIECES.indexOf(san.charAt(end - 1)) > 0) {
+            promotion = PIECES.indexOf(san.charAt(end - 1));
+            end -= san.charAt(end - 2) == '=' ? 2 : 1;
+        }
+
+        final int pieceIndex = PIECES.indexOf(san.charAt(0));
+        final int type = pieceIndex > 0 ? pieceIndex : 0;
+        final int start = pieceIndex > 0 ? 1 : 0;
+        if (end - start < 2) throw exception(pgn, ply, san, MALFORMED_MOVE);
+
+        final int toX = san.charAt(end - 2) - 'a', toY = FIELD_SIZE - (san.charAt(end - 1) - '0');
+        if (!Bitboards.isOnBoard(toX, toY)) throw exception(pgn, ply, san, MALFORMED_MOVE);
+
+        // Уточнение клетки, откуда ход: вертикаль, горизонталь или обе
+        int fromX = -1, fromY = -1;
+        for (int i = start; i < end - 2; i++) {
+            final char c = san.charAt(i);
+            if (c >= 'a' && c <= 'h') {
+                fromX = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromY = FIELD_SIZE - (c - '0');
+            } else if (c != 'x' && c != '-') {
+                throw exception(pgn, ply, san, MALFORMED_MOVE);
+            }
+        }
+
+        final int to = Bitboards.square(toX, toY);
+        int found = Moves.NO_MOVE;
+        for (int i = 0; i < count; i++) {
+            final int move = legalMoves[i];
+            final int from = Moves.from(move);
+            if (Moves.to(move) != to || Moves.flag(move) == Moves.CASTLING) continue;
+            if (fromX >= 0 && Bitboards.x(from) != fromX || fromY >= 0 && Bitboards.y(from) != fromY) continue;
+            if (figures[Bitboards.x(from)][Bitboards.y(from)].getType().ordinal() != type) continue;
+            if (Moves.isPromotion(move) ? Moves.promotionType(move) != promotion : promotion >= 0) continue;
+
+            if (found != Moves.NO_MOVE) throw exception(pgn, ply, san, AMBIGUOUS_MOVE);
+            found = move;
+        }
+        if (found == Moves.NO_MOVE) throw exception(pgn, ply, san, NO_MOVE);
+        return found;
+    }
+
+    // Пометки шаха и мата должны соответствовать позиции после хода
+    private void checkSuffix(final PgnGame pgn, final int ply, final String san, final ChessGame game)
+            throws AbstractNetworkChessException {
+        final char last = san.charAt(san.length() - 1);
+        if (last != '+' && last != '#') return;
+
+        final ChessColor opponent = game.getCurrentPlayer().getColor();
+        if (!rules.isCheckForPlayer(opponent, game.getField())) {
+            throw exception(pgn, ply, san, last == '#' ? NOT_MATE : NOT_CHECK);
+        }
+        if (last == '#' && rules.getLegalMoves(opponent, game.getField(), legalMoves) != 0) {
+            throw exception(pgn, ply, san, NOT_MATE);
+        }
+    }
+
+    private static Point point(final int square) {
+        return Point.of(Bitboards.x(square), Bitboards.y(square));
+    }
+
+    private static InvalidPgnException exception(final PgnGame pgn, final int ply, final String san,
+                                                 final String reason) {
+        return new InvalidPgnException(String.format(ILLEGAL_MOVE_EXCEPTION, pgn.getLineNumber(), ply + 1, san, reason));
+    }
+
+}
@@ -3,6 +3,7 @@ package edu.demidov.netchess.game.rules;
 import edu.demidov.netchess.common.model.exceptions.game.chess.GameMoveException;
 import edu.demidov.netchess.common.model.game.chess.ChessColor;
 import edu.demidov.netchess.common.model.game.chess.ChessField;
+import edu.demidov.netchess.common.model.game.chess.PackedField;
 import edu.demidov.netchess.game.exceptions.NoKingOnFieldException;
 import edu.demidov.netchess.utils.Point;
 
@@ -15,4 +16,22 @@ public interface ChessRules {
 
     boolean isNoMoreMoves(ChessColor color, ChessField field) throws NoKingOnFieldException;
 
+    /**
+     * Записывает все допустимые ходы игрока в буфер moves и возвращает их количество.
+     * Ходы закодированы в int (см. Moves), буфер должен вмещать MoveGenerator.MAX_MOVES ходов.
+     */
+    int getLegalMoves(ChessColor color, ChessField field, int[] moves) throws NoKingOnFieldException;
+
+    /* Те же проверки на упакованном поле. Поле взятия на проходе, если оно задано, тоже учитывается.
+    */
+
+    boolean isMoveCorrect(ChessColor color, PackedField field, Point fromPoint, Point toPoint)
+            throws GameMoveException, NoKingOnFieldException;
+
+    boolean isCheckForPlayer(ChessColor color, PackedField field) throws NoKingOnFieldException;
+
+    boolean isNoMoreMoves(ChessColor color, PackedField field) throws NoKingOnFieldException;
+
+    int getLegalMoves(ChessColor color, PackedField field, int[] moves) throws NoKingOnFieldException;
+
 }
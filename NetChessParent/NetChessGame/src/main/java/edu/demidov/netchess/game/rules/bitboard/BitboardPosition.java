@@ -0,0 +1,607 @@
+package edu.demidov.netchess.game.rules.bitboard;
+
+import edu.demidov.netchess.common.model.exceptions.game.chess.InvalidBoardSizeException;
+import edu.demidov.netchess.common.model.exceptions.game.chess.InvalidFenException;
+import edu.demidov.netchess.common.model.game.chess.ChessColor;
+import edu.demidov.netchess.common.model.game.chess.ChessField;
+import edu.demidov.netchess.common.model.game.chess.ChessFigure;
+import edu.demidov.netchess.common.model.game.chess.Fen;
+import edu.demidov.netchess.common.model.game.chess.PackedField;
+import edu.demidov.netchess.common.model.game.chess.Zobrist;
+
+import java.util.Arrays;
+
+import static edu.demidov.netchess.game.rules.bitboard.Bitboards.KING_ATTACKS;
+import static edu.demidov.netchess.game.rules.bitboard.Bitboards.KNIGHT_ATTACKS;
+import static edu.demidov.netchess.game.rules.bitboard.Bitboards.PAWN_ATTACKS;
+import static edu.demidov.netchess.game.rules.bitboard.Bitboards.SIZE;
+import static edu.demidov.netchess.game.rules.bitboard.Bitboards.SQUARES;
+import static edu.demidov.netchess.game.rules.bitboard.Bitboards.bishopAttacks;
+import static edu.demidov.netchess.game.rules.bitboard.Bitboards.bit;
+import static edu.demidov.netchess.game.rules.bitboard.Bitboards.rookAttacks;
+
+/**
+ * Позиция на битовых досках: по одному long на каждый тип фигуры каждого цвета,
+ * плюс доска-массив (клетка -> фигура) для быстрого ответа "что стоит на клетке".
+ * Ходы делаются и отменяются на месте (makeMove/unmakeMove): взятая фигура, права на рокировку
+ * и поле взятия на проходе сохраняются в стеке отмены, поэтому проверка хода не создаёт объектов.
+ * Позиция хранит 64-битный ключ Zobrist и обновляет его при каждом изменении; ключи фигур, рокировок
+ * и очереди хода те же, что в ChessGame.getZobristKey(), плюс ключ вертикали взятия на проходе.
+ * Номера клеток - см. Bitboards, кодирование ходов - см. Moves.
+ */
+public class BitboardPosition {
+
+    public static final int WHITE = 0, BLACK = 1;
+    // Типы фигур; порядок совпадает с ChessFigure.Type
+    public static final int PAWN = 0, BISHOP = 1, KNIGHT = 2, ROOK = 3, QUEEN = 4, KING = 5;
+    public static final int PIECE_TYPES = 6;
+    public static final int NO_PIECE = -1;
+    public static final int NO_SQUARE = -1;
+
+    // Права на рокировку (битовая маска)
+    public static final int WHITE_KING_SIDE = 1, WHITE_QUEEN_SIDE = 2, BLACK_KING_SIDE = 4, BLACK_QUEEN_SIDE = 8;
+    public static final int ALL_CASTLING = WHITE_KING_SIDE | WHITE_QUEEN_SIDE | BLACK_KING_SIDE | BLACK_QUEEN_SIDE;
+
+    // Максимальная глубина стека отмены ходов
+    public static final int MAX_PLY = 256;
+
+    private static final int WHITE_KING_START = 60, BLACK_KING_START = 4;   // e1, e8
+    private static final int WHITE_PAWN_LINE = 6, BLACK_PAWN_LINE = 1;      // С каких полей пешка может пройти вперёд на 2 клетки
+    private static final int WHITE_PAWN_TRANSFORM_LINE = 0, BLACK_PAWN_TRANSFORM_LINE = 7;
+
+    private static final ChessFigure.Type[] TYPES = ChessFigure.Type.values();
+
+    // Какие права на рокировку остаются после хода с клетки или на клетку (король или ладья ушли/взяты)
+    private static final int[] CASTLING_KEEP = new int[SQUARES];
+
+    // Ключи Zobrist фигур: [код фигуры][клетка]
+    private static final long[][] PIECE_KEYS = new long[2 * PIECE_TYPES][SQUARES];
+
+    static {
+        for (final ChessColor color : ChessColor.values()) {
+            for (final ChessFigure.Type type : ChessFigure.Type.values()) {
+                for (int square = 0; square < SQUARES; square++) {
+                    PIECE_KEYS[pieceCode(color(color), type.ordinal())][square]
+                            = Zobrist.piece(color, type, Bitboards.x(square), Bitboards.y(square));
+                }
+            }
+        }
+
+        Arrays.fill(CASTLING_KEEP, ALL_CASTLING);
+        CASTLING_KEEP[WHITE_KING_START] &= ~(WHITE_KING_SIDE | WHITE_QUEEN_SIDE);
+        CASTLING_KEEP[WHITE_KING_START + 3] &= ~WHITE_KING_SIDE;
+        CASTLING_KEEP[WHITE_KING_START - 4] &= ~WHITE_QUEEN_SIDE;
+        CASTLING_KEEP[BLACK_KING_START] &= ~(BLACK_KING_SIDE | BLACK_QUEEN_SIDE);
+        CASTLING_KEEP[BLACK_KING_START + 3] &= ~BLACK_KING_SIDE;
+        CASTLING_KEEP[BLACK_KING_START - 4] &= ~BLACK_QUEEN_SIDE;
+    }
+
+    private final long[][] pieces = new long[2][PIECE_TYPES];
+    private final long[] colorPieces = new long[2];
+    private final int[] board = new int[SQUARES];      // Код фигуры (color * PIECE_TYPES + type) или NO_PIECE
+    private long occupied;
+    private int sideToMove;
+    private int castlingRights;
+    private int epSquare = NO_SQUARE;                  // Поле, через которое пешка прошла на 2 клетки последним ходом
+    private long key;
+
+    // Стек отмены ходов
+    private final int[] undoCaptured = new int[MAX_PLY];
+    private final int[] undoCastlingRights = new int[MAX_PLY];
+    private final int[] undoEpSquare = new int[MAX_PLY];
+    private final long[] undoKey = new long[MAX_PLY];
+    private int ply;
+
+    /**
+     * Создаёт пустую позицию. Заполняется через load().
+     */
+    public BitboardPosition() {
+        Arrays.fill(board, NO_PIECE);
+    }
+
+    /**
+     * Строит позицию по шахматному полю
+     *
+     * @param field
+     * @param sideToMove цвет, чей ход
+     * @throws InvalidBoardSizeException если поле не 8x8
+     */
+    public BitboardPosition(final ChessField field, final int sideToMove) throws InvalidBoardSizeException {
+        this();
+        load(field, sideToMove);
+    }
+
+    /**
+     * Строит позицию по упакованному полю
+     *
+     * @param field
+     * @param sideToMove цвет, чей ход
+     */
+    public BitboardPosition(final PackedField field, final int sideToMove) {
+        this();
+        load(field, sideToMove);
+    }
+
+    /**
+     * Делает копию позиции (без стека отмены ходов)
+     *
+     * @param other
+     */
+    public BitboardPosition(final BitboardPosition other) {
+        for (int color = WHITE; color <= BLACK; color++) {
+            System.arraycopy(other.pieces[color], 0, pieces[color], 0, PIECE_TYPES);
+        }
+        System.arraycopy(other.colorPieces, 0, colorPieces, 0, colorPieces.length);
+        System.arraycopy(other.board, 0, board, 0, SQUARES);
+        occupied = other.occupied;
+        sideToMove = other.sideToMove;
+        castlingRights = other.castlingRights;
+        epSquare = other.epSquare;
+        key = other.key;
+    }
+
+    public static int color(final ChessColor color) {
+        return color == ChessColor.White ? WHITE : BLACK;
+    }
+
+    public static int pieceCode(final int color, final int type) {
+        return color * PIECE_TYPES + type;
+    }
+
+    public static int colorOf(final int pieceCode) {
+        return pieceCode / PIECE_TYPES;
+    }
+
+    public static int typeOf(final int pieceCode) {
+        return pieceCode % PIECE_TYPES;
+    }
+
+    /**
+     * Заполняет позицию по шахматному полю.
+     * Права на рокировку берутся из поля; права без короля и ладьи на своих местах отбрасываются.
+     * Взятие на проходе в правилах игры не поддерживается, поэтому поле взятия не устанавливается.
+     *
+     * @param field
+     * @param sideToMove цвет, чей ход
+     * @throws InvalidBoardSizeException если поле не 8x8
+     */
+    public void load(final ChessField field, final int sideToMove) throws InvalidBoardSizeException {
+        if (field.getFieldSize() != SIZE) throw new InvalidBoardSizeException();
+        clear();
+
+        final ChessFigure[][] figures = field.getField();
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                final ChessFigure figure = figures[x][y];
+                if (figure != null) {
+                    putPiece(pieceCode(color(figure.getColor()), figure.getType().ordinal()), Bitboards.square(x, y));
+                }
+            }
+        }
+
+        this.sideToMove = sideToMove;
+        castlingRights = field.getCastlingRights() & castlingRightsByPieces();
+        key ^= stateKey();
+    }
+
+    /**
+     * Заполняет позицию по упакованному полю: права на рокировку и поле взятия на проходе берутся из него как есть,
+     * только права без короля и ладьи на своих местах отбрасываются.
+     *
+     * @param field
+     * @param sideToMove цвет, чей ход
+     */
+    public void load(final PackedField field, final int sideToMove) {
+        clear();
+        for (int square = 0; square < SQUARES; square++) {
+            final int code = field.getCode(square);
+            if (code != PackedField.EMPTY) {
+                putPiece(pieceCode(color(PackedField.colorOf(code)), PackedField.typeOf(code).ordinal()), square);
+            }
+        }
+
+        this.sideToMove = sideToMove;
+        castlingRights = field.getCastlingRights() & castlingRightsByPieces();
+        final int epFile = field.getEnPassantFile();
+        if (epFile != PackedField.NO_EN_PASSANT) {
+            // Поле взятия - за пешкой, только что прошедшей на две клетки
+            epSquare = Bitboards.square(epFile, sideToMove == WHITE ? BLACK_PAWN_LINE + 1 : WHITE_PAWN_LINE - 1);
+        }
+        key ^= stateKey();
+    }
+
+    /**
+     * Записывает позицию в упакованное поле: фигуры, права на рокировку и вертикаль взятия на проходе
+     */
+    public void store(final PackedField field) {
+        for (int square = 0; square < SQUARES; square++) {
+            final int piece = board[square];
+            field.setCode(Bitboards.x(square), Bitboards.y(square), piece == NO_PIECE ? PackedField.EMPTY
+                    : PackedField.code(colorOf(piece) == WHITE ? ChessColor.White : ChessColor.Black,
+                    TYPES[typeOf(piece)]));
+        }
+        field.setCastlingRights(castlingRights);
+        field.setEnPassantFile(epSquare == NO_SQUARE ? PackedField.NO_EN_PASSANT : Bitboards.x(epSquare));
+    }
+
+    /**
+     * Заполняет позицию по строке FEN: расстановка, очередь хода, права на рокировку и поле взятия на проходе.
+     * Строка разбирается общим Fen.parse() - те же позиции принимает и партия; права на рокировку без короля
+     * и ладьи на своих местах отбрасываются, как в load(). Счётчики полуходов и номер хода, если есть, игнорируются.
+     *
+     * @param fen например, "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"
+     * @throws IllegalArgumentException если строка не разбирается
+     */
+    public void loadFen(final String fen) {
+        final PackedField field = new PackedField();
+        try {
+            load(field, color(Fen.parse(fen, field)));
+        } catch (final InvalidFenException ex) {
+            throw new IllegalArgumentException(ex.getLocalizedMessage(), ex);
+        }
+    }
+
+    /**
+     * Очищает доску и состояние позиции
+     */
+    public void clear() {
+        for (int color = WHITE; color <= BLACK; color++) {
+            Arrays.fill(pieces[color], 0L);
+        }
+        Arrays.fill(colorPieces, 0L);
+        Arrays.fill(board, NO_PIECE);
+        occupied = 0L;
+        sideToMove = WHITE;
+        castlingRights = 0;
+        epSquare = NO_SQUARE;
+        key = 0L;
+        ply = 0;
+    }
+
+    public long getPieces(final int color, final int type) {
+        return pieces[color][type];
+    }
+
+    public long getColorPieces(final int color) {
+        return colorPieces[color];
+    }
+
+    public long getOccupied() {
+        return occupied;
+    }
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    public void setSideToMove(final int sideToMove) {
+        key ^= stateKey();
+        this.sideToMove = sideToMove;
+        key ^= stateKey();
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public void setCastlingRights(final int castlingRights) {
+        key ^= stateKey();
+        this.castlingRights = castlingRights;
+        key ^= stateKey();
+    }
+
+    public int getEpSquare() {
+        return epSquare;
+    }
+
+    public void setEpSquare(final int epSquare) {
+        key ^= stateKey();
+        this.epSquare = epSquare;
+        key ^= stateKey();
+    }
+
+    /**
+     * Ключ Zobrist позиции
+     */
+    public long getKey() {
+        return key;
+    }
+
+    /**
+     * Возвращает код фигуры на клетке, либо NO_PIECE
+     */
+    public int getPiece(final int square) {
+        return board[square];
+    }
+
+    /**
+     * Ставит фигуру на пустую клетку
+     */
+    public void putPiece(final int piece, final int square) {
+        final long bit = bit(square);
+        pieces[colorOf(piece)][typeOf(piece)] |= bit;
+        colorPieces[colorOf(piece)] |= bit;
+        occupied |= bit;
+        board[square] = piece;
+        key ^= PIECE_KEYS[piece][square];
+    }
+
+    /**
+     * Возвращает клетку короля указанного цвета, либо NO_SQUARE, если короля нет
+     */
+    public int kingSquare(final int color) {
+        final long king = pieces[color][KING];
+        return king == 0 ? NO_SQUARE : Bitboards.firstSquare(king);
+    }
+
+    /**
+     * Возвращает true, если клетка атакована фигурами цвета byColor
+     */
+    public boolean isSquareAttacked(final int square, final int byColor) {
+        final long[] enemy = pieces[byColor];
+        return (PAWN_ATTACKS[byColor ^ 1][square] & enemy[PAWN]) != 0
+                || (KNIGHT_ATTACKS[square] & enemy[KNIGHT]) != 0
+                || (KING_ATTACKS[square] & enemy[KING]) != 0
+                || (bishopAttacks(square, occupied) & (enemy[BISHOP] | enemy[QUEEN])) != 0
+                || (rookAttacks(square, occupied) & (enemy[ROOK] | enemy[QUEEN])) != 0;
+    }
+
+    /**
+     * Фигуры цвета byColor, атакующие клетку, при занятых клетках occupied
+     */
+    public long attackersTo(final int square, final int byColor, final long occupied) {
+        final long[] enemy = pieces[byColor];
+        return (PAWN_ATTACKS[byColor ^ 1][square] & enemy[PAWN])
+                | (KNIGHT_ATTACKS[square] & enemy[KNIGHT])
+                | (KING_ATTACKS[square] & enemy[KING])
+                | (bishopAttacks(square, occupied) & (enemy[BISHOP] | enemy[QUEEN]))
+                | (rookAttacks(square, occupied) & (enemy[ROOK] | enemy[QUEEN]));
+    }
+
+    /**
+     * Возвращает true, если король указанного цвета под шахом. Король должен быть на доске.
+     */
+    public boolean isInCheck(final int color) {
+        return isSquareAttacked(kingSquare(color), color ^ 1);
+    }
+
+    /**
+     * Клетки, которые атакует фигура с клетки square (без учёта цвета фигур на этих клетках)
+     */
+    public long attacksFrom(final int square) {
+        final int piece = board[square];
+        switch (typeOf(piece)) {
+            case PAWN:
+                return PAWN_ATTACKS[colorOf(piece)][square];
+            case KNIGHT:
+                return KNIGHT_ATTACKS[square];
+            case BISHOP:
+                return bishopAttacks(square, occupied);
+            case ROOK:
+                return rookAttacks(square, occupied);
+            case QUEEN:
+                return Bitboards.queenAttacks(square, occupied);
+            case KING:
+                return KING_ATTACKS[square];
+            default:
+                throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Клетки, на которые может пойти фигура с клетки square, без проверки шаха своему королю.
+     * Включает взятия, ходы пешек вперёд и рокировки.
+     */
+    public long pseudoLegalTargets(final int square) {
+        final int piece = board[square];
+        final int color = colorOf(piece);
+
+        switch (typeOf(piece)) {
+            case PAWN:
+                final long epBit = epSquare == NO_SQUARE ? 0L : bit(epSquare);
+                return pawnPushes(square, color)
+                        | (PAWN_ATTACKS[color][square] & (colorPieces[color ^ 1] | epBit));
+            case KING:
+                return (KING_ATTACKS[square] & ~colorPieces[color]) | castlingTargets(color);
+            default:
+                return attacksFrom(square) & ~colorPieces[color];
+        }
+    }
+
+    /**
+     * Возвращает ход from-to с нужным флагом: рокировка, взятие на проходе, ход пешки на 2 клетки
+     * или превращение (в ферзя). Клетка from должна быть занята.
+     */
+    public int toMove(final int from, final int to) {
+        final int piece = board[from];
+        if (typeOf(piece) == KING && Math.abs(to - from) == 2) {
+            return Moves.create(from, to, Moves.CASTLING);
+        }
+        if (typeOf(piece) == PAWN) {
+            if (to == epSquare) return Moves.create(from, to, Moves.EN_PASSANT);
+            if (Math.abs(to - from) == 2 * SIZE) return Moves.create(from, to, Moves.DOUBLE_PAWN_PUSH);
+
+            final int transformLine = colorOf(piece) == WHITE ? WHITE_PAWN_TRANSFORM_LINE : BLACK_PAWN_TRANSFORM_LINE;
+            if (Bitboards.y(to) == transformLine) return Moves.create(from, to, Moves.PROMOTION_QUEEN);
+        }
+        return Moves.create(from, to, Moves.NORMAL);
+    }
+
+    /**
+     * Делает ход на месте. Ход должен быть корректным для текущей позиции.
+     * Отменяется вызовом unmakeMove с тем же ходом.
+     */
+    public void makeMove(final int move) {
+        final int from = Moves.from(move);
+        final int to = Moves.to(move);
+        final int flag = Moves.flag(move);
+        final int piece = board[from];
+        final int color = colorOf(piece);
+
+        // Сохраняем состояние для отмены хода
+        final int capturedSquare = flag == Moves.EN_PASSANT ? epCapturedSquare(to, color) : to;
+        undoCaptured[ply] = board[capturedSquare];
+        undoCastlingRights[ply] = castlingRights;
+        undoEpSquare[ply] = epSquare;
+        undoKey[ply] = key;
+        ply++;
+
+        key ^= stateKey();
+
+        if (board[capturedSquare] != NO_PIECE) removePiece(capturedSquare);
+        removePiece(from);
+        putPiece(Moves.isPromotion(move) ? pieceCode(color, Moves.promotionType(move)) : piece, to);
+
+        if (flag == Moves.CASTLING) {
+            moveCastlingRook(from, to, false);
+        }
+
+        epSquare = flag == Moves.DOUBLE_PAWN_PUSH ? (from + to) >>> 1 : NO_SQUARE;
+        castlingRights &= CASTLING_KEEP[from] & CASTLING_KEEP[to];
+        sideToMove ^= 1;
+        key ^= stateKey();
+    }
+
+    /**
+     * Отменяет последний сделанный ход
+     */
+    public void unmakeMove(final int move) {
+        final int from = Moves.from(move);
+        final int to = Moves.to(move);
+        final int flag = Moves.flag(move);
+
+        sideToMove ^= 1;
+        ply--;
+
+        final int piece = Moves.isPromotion(move) ? pieceCode(sideToMove, PAWN) : board[to];
+        removePiece(to);
+        putPiece(piece, from);
+
+        if (flag == Moves.CASTLING) {
+            moveCastlingRook(from, to, true);
+        }
+
+        final int captured = undoCaptured[ply];
+        if (captured != NO_PIECE) {
+            putPiece(captured, flag == Moves.EN_PASSANT ? epCapturedSquare(to, sideToMove) : to);
+        }
+
+        castlingRights = undoCastlingRights[ply];
+        epSquare = undoEpSquare[ply];
+        key = undoKey[ply];
+    }
+
+    /**
+     * Делает "пустой" ход: передаёт очередь хода сопернику, не двигая фигур.
+     * Отменяется вызовом unmakeNullMove.
+     */
+    public void makeNullMove() {
+        undoCaptured[ply] = NO_PIECE;
+        undoCastlingRights[ply] = castlingRights;
+        undoEpSquare[ply] = epSquare;
+        undoKey[ply] = key;
+        ply++;
+
+        key ^= stateKey();
+        epSquare = NO_SQUARE;
+        sideToMove ^= 1;
+        key ^= stateKey();
+    }
+
+    public void unmakeNullMove() {
+        sideToMove ^= 1;
+        ply--;
+        epSquare = undoEpSquare[ply];
+        key = undoKey[ply];
+    }
+
+    // Часть ключа, не зависящая от расстановки: права на рокировку, очередь хода, поле взятия на проходе
+    private long stateKey() {
+        final long epKey = epSquare == NO_SQUARE ? 0L : Zobrist.enPassant(Bitboards.x(epSquare));
+        return Zobrist.castling(castlingRights) ^ (sideToMove == BLACK ? Zobrist.side(ChessColor.Black) : 0L) ^ epKey;
+    }
+
+    // Клетка пешки, взятой на проходе пешкой цвета color, пришедшей на клетку to
+    private int epCapturedSquare(final int to, final int color) {
+        return color == WHITE ? to + SIZE : to - SIZE;
+    }
+
+    // Переставляет ладью при рокировке (или возвращает её обратно)
+    private void moveCastlingRook(final int kingFrom, final int kingTo, final boolean isUndo) {
+        final boolean isKingSide = kingTo > kingFrom;
+        final int rookStart = isKingSide ? kingFrom + 3 : kingFrom - 4;
+        final int rookFinish = isKingSide ? kingFrom + 1 : kingFrom - 1;
+        final int rookFrom = isUndo ? rookFinish : rookStart;
+        final int rookTo = isUndo ? rookStart : rookFinish;
+
+        final int rook = board[rookFrom];
+        removePiece(rookFrom);
+        putPiece(rook, rookTo);
+    }
+
+    // Ходы пешки вперёд на одну и две клетки
+    long pawnPushes(final int square, final int color) {
+        final int forward = color == WHITE ? -SIZE : SIZE;
+        final int oneStep = square + forward;
+        if (oneStep < 0 || oneStep >= SQUARES || board[oneStep] != NO_PIECE) return 0L;
+
+        long pushes = bit(oneStep);
+        final int pawnLine = color == WHITE ? WHITE_PAWN_LINE : BLACK_PAWN_LINE;
+        if (Bitboards.y(square) == pawnLine && board[oneStep + forward] == NO_PIECE) {
+            pushes |= bit(oneStep + forward);
+        }
+        return pushes;
+    }
+
+    /* Клетки, на которые король может сделать рокировку.
+    Между королём и ладьёй не должно быть фигур, а поле, на котором король стоит,
+    которое пересекает и которое занимает, не должно быть атаковано.
+    */
+    long castlingTargets(final int color) {
+        final int kingSide = color == WHITE ? WHITE_KING_SIDE : BLACK_KING_SIDE;
+        final int queenSide = color == WHITE ? WHITE_QUEEN_SIDE : BLACK_QUEEN_SIDE;
+        if ((castlingRights & (kingSide | queenSide)) == 0) return 0L;
+
+        final int king = color == WHITE ? WHITE_KING_START : BLACK_KING_START;
+        final int enemy = color ^ 1;
+        if (isSquareAttacked(king, enemy)) return 0L;
+
+        long targets = 0L;
+        if ((castlingRights & kingSide) != 0
+                && (occupied & (bit(king + 1) | bit(king + 2))) == 0
+                && !isSquareAttacked(king + 1, enemy) && !isSquareAttacked(king + 2, enemy)) {
+            targets |= bit(king + 2);
+        }
+        if ((castlingRights & queenSide) != 0
+                && (occupied & (bit(king - 1) | bit(king - 2) | bit(king - 3))) == 0
+                && !isSquareAttacked(king - 1, enemy) && !isSquareAttacked(king - 2, enemy)) {
+            targets |= bit(king - 2);
+        }
+        return targets;
+    }
+
+    private void removePiece(final int square) {
+        final int piece = board[square];
+        final long bit = bit(square);
+        pieces[colorOf(piece)][typeOf(piece)] &= ~bit;
+        colorPieces[colorOf(piece)] &= ~bit;
+        occupied &= ~bit;
+        board[square] = NO_PIECE;
+        key ^= PIECE_KEYS[piece][square];
+    }
+
+    // Права, для которых король и ладья стоят на своих местах
+    private int castlingRightsByPieces() {
+        int rights = 0;
+        if (board[WHITE_KING_START] == pieceCode(WHITE, KING)) {
+            if (board[WHITE_KING_START + 3] == pieceCode(WHITE, ROOK)) rights |= WHITE_KING_SIDE;
+            if (board[WHITE_KING_START - 4] == pieceCode(WHITE, ROOK)) rights |= WHITE_QUEEN_SIDE;
+        }
+        if (board[BLACK_KING_START] == pieceCode(BLACK, KING)) {
+            if (board[BLACK_KING_START + 3] == pieceCode(BLACK, ROOK)) rights |= BLACK_KING_SIDE;
+            if (board[BLACK_KING_START - 4] == pieceCode(BLACK, ROOK)) rights |= BLACK_QUEEN_SIDE;
+        }
+        return rights;
+    }
+
+}
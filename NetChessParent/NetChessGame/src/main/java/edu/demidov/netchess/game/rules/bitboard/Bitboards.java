@@ -0,0 +1,135 @@
+package edu.demidov.netchess.game.rules.bitboard;
+
+/**
+ * Константы и таблицы атак для битовых досок.
+ * Клетка (x, y) поля ChessField соответствует биту с номером y * 8 + x:
+ * a8 = 0, h8 = 7, ..., a1 = 56, h1 = 63.
+ */
+public final class Bitboards {
+
+    public static final int SIZE = 8;
+    public static final int SQUARES = SIZE * SIZE;
+
+    public static final long RANK_8 = 0xFFL;                 // y = 0
+    public static final long RANK_1 = RANK_8 << 56;          // y = 7
+
+    // Клетки, которые атакуют конь и король с каждой клетки доски
+    public static final long[] KNIGHT_ATTACKS = new long[SQUARES];
+    public static final long[] KING_ATTACKS = new long[SQUARES];
+    // Клетки, которые атакует пешка: [цвет][клетка]
+    public static final long[][] PAWN_ATTACKS = new long[2][SQUARES];
+    // Клетки строго между двумя клетками одной линии (горизонталь, вертикаль, диагональ), иначе 0
+    public static final long[][] BETWEEN = new long[SQUARES][SQUARES];
+    // Вся линия доски, проходящая через две клетки (включая их), иначе 0
+    public static final long[][] LINE = new long[SQUARES][SQUARES];
+
+    private static final int[][] KNIGHT_DELTAS = {
+            {1, -2}, {2, -1}, {2, 1}, {1, 2}, {-1, 2}, {-2, 1}, {-2, -1}, {-1, -2}};
+
+    static {
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                final int sq = square(x, y);
+
+                for (final int[] delta : KNIGHT_DELTAS) {
+                    KNIGHT_ATTACKS[sq] |= bitIfOnBoard(x + delta[0], y + delta[1]);
+                }
+
+                for (int dx = -1; dx <= 1; dx++) {
+                    for (int dy = -1; dy <= 1; dy++) {
+                        if (dx != 0 || dy != 0) KING_ATTACKS[sq] |= bitIfOnBoard(x + dx, y + dy);
+                    }
+                }
+
+                // Белые пешки идут к y = 0, чёрные - к y = 7
+                PAWN_ATTACKS[BitboardPosition.WHITE][sq] = bitIfOnBoard(x - 1, y - 1) | bitIfOnBoard(x + 1, y - 1);
+                PAWN_ATTACKS[BitboardPosition.BLACK][sq] = bitIfOnBoard(x - 1, y + 1) | bitIfOnBoard(x + 1, y + 1);
+
+                fillLines(x, y);
+            }
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    public static int square(final int x, final int y) {
+        return y * SIZE + x;
+    }
+
+    public static int x(final int square) {
+        return square & 7;
+    }
+
+    public static int y(final int square) {
+        return square >>> 3;
+    }
+
+    public static long bit(final int square) {
+        return 1L << square;
+    }
+
+    public static boolean isOnBoard(final int x, final int y) {
+        return x >= 0 && x < SIZE && y >= 0 && y < SIZE;
+    }
+
+    /**
+     * Возвращает номер младшей клетки непустой битовой доски
+     */
+    public static int firstSquare(final long bitboard) {
+        return Long.numberOfTrailingZeros(bitboard);
+    }
+
+    /**
+     * Клетки, которые атакует ладья с клетки square при занятых клетках occupied
+     */
+    public static long rookAttacks(final int square, final long occupied) {
+        return MagicAttacks.rookAttacks(square, occupied);
+    }
+
+    /**
+     * Клетки, которые атакует слон с клетки square при занятых клетках occupied
+     */
+    public static long bishopAttacks(final int square, final long occupied) {
+        return MagicAttacks.bishopAttacks(square, occupied);
+    }
+
+    public static long queenAttacks(final int square, final long occupied) {
+        return MagicAttacks.rookAttacks(square, occupied) | MagicAttacks.bishopAttacks(square, occupied);
+    }
+
+    /* Заполняет BETWEEN и LINE для клетки (x, y): идём по каждому из 8 направлений,
+    накапливая пройденные клетки; линия - это луч в обе стороны плюс сама клетка.
+    */
+    private static void fillLines(final int x, final int y) {
+        final int sq = square(x, y);
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                if (dx == 0 && dy == 0) continue;
+
+                final long line = ray(x, y, dx, dy) | ray(x, y, -dx, -dy) | bit(sq);
+                long between = 0L;
+                for (int rx = x + dx, ry = y + dy; isOnBoard(rx, ry); rx += dx, ry += dy) {
+                    final int target = square(rx, ry);
+                    BETWEEN[sq][target] = between;
+                    LINE[sq][target] = line;
+                    between |= bit(target);
+                }
+            }
+        }
+    }
+
+    // Клетки от (x, y) в направлении (dx, dy) до края доски, не включая саму клетку
+    private static long ray(final int x, final int y, final int dx, final int dy) {
+        long ray = 0L;
+        for (int rx = x + dx, ry = y + dy; isOnBoard(rx, ry); rx += dx, ry += dy) {
+            ray |= bit(square(rx, ry));
+        }
+        return ray;
+    }
+
+    private static long bitIfOnBoard(final int x, final int y) {
+        return isOnBoard(x, y) ? bit(square(x, y)) : 0L;
+    }
+
+}
@@ -0,0 +1,166 @@
+package edu.demidov.netchess.game.rules.bitboard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Таблицы атак ладьи и слона на "магических" битовых досках.
+ * Для каждой клетки занятость на лучах (без крайних клеток) умножается на магическое число,
+ * старшие биты произведения дают индекс в заранее посчитанной таблице атак.
+ * Таблицы строятся один раз при загрузке класса; время построения пишется в лог.
+ * Магические числа подобраны для нумерации клеток из Bitboards (a8 = 0).
+ */
+final class MagicAttacks {
+
+    private static final Logger log = LoggerFactory.getLogger(MagicAttacks.class);
+
+    private static final int[][] ROOK_DIRECTIONS = {{0, -1}, {1, 0}, {0, 1}, {-1, 0}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, -1}, {1, 1}, {-1, 1}, {-1, -1}};
+
+    private static final long[] ROOK_MAGICS = {
+            0x00800034C0032080L, 0xB040100040002000L, 0x8280200080100108L, 0xA080100004800800L,
+            0x3900050002100800L, 0x0A00440200081001L, 0x0400021018042091L, 0x1200002401004082L,
+            0xC000800040008020L, 0x0002804000802001L, 0x0021001900402000L, 0x0C0D000902201000L,
+            0x2002801800240080L, 0x021A000804110200L, 0x20040010D2081104L, 0x0C42001842008C01L,
+            0x0000888004400020L, 0x0080808020004000L, 0xA020008020100084L, 0x0000210010000900L,
+            0x8840808008000400L, 0x00AC080140102004L, 0x0210040002080110L, 0x0080020000A40041L,
+            0x1000400080208000L, 0x9080400180200088L, 0x0860108200402202L, 0x4020100080080084L,
+            0x4200080080800400L, 0x0080020080800400L, 0xC08900090002000CL, 0x0100010200009044L,
+            0x0000400028800082L, 0x42C2008022004100L, 0x3124812004801000L, 0x300022004200100AL,
+            0x1B21001005004800L, 0x0000800601800400L, 0x0042002402008128L, 0x0A00008506000064L,
+            0x2000804000208008L, 0x0020402010024000L, 0x0040820040220010L, 0x0028002010010100L,
+            0x1401000800850010L, 0x0002001148220004L, 0x6008820810040001L, 0x0011001080490002L,
+            0x0508208009084500L, 0x00A7008049221200L, 0x0001100080A00280L, 0x8080100008008480L,
+            0x2220041100080100L, 0x0040020080040080L, 0x0660080190020400L, 0x80000891004C0200L,
+            0x1000148009002041L, 0x1020400100108021L, 0x00820A1041200301L, 0x1443201000040901L,
+            0x200A0010C4200832L, 0x8002000408815002L, 0x00C0021001280084L, 0x00800402A0C08906L
+    };
+
+    private static final long[] BISHOP_MAGICS = {
+            0x2009101002002020L, 0x0002100228810002L, 0x8010208208480020L, 0x0002408502000200L,
+            0x0001104024002148L, 0x000A011148088000L, 0x001A210108400404L, 0x001121220820480AL,
+            0x0081210424008400L, 0x0000208204004080L, 0x004304010A060140L, 0x8040082040400000L,
+            0x2200241520002100L, 0x4000020190088500L, 0x0006840108021180L, 0x8040102114022102L,
+            0x8108104210154208L, 0x0002180404083202L, 0x2042001000921101L, 0x0044002804161001L,
+            0x0002002422010208L, 0x09008028088C2000L, 0x8092880200902800L, 0x0000811100682200L,
+            0x8708600028206102L, 0x0084222C24704404L, 0x4700880310004018L, 0x2068080120220020L,
+            0x000848802C002001L, 0x3488120021088200L, 0x42968D02240C1602L, 0x0412044122010080L,
+            0x0001100850102100L, 0x0401080841600100L, 0x0103024800010800L, 0x2004040400080210L,
+            0x00C0404040440100L, 0x2001101880010040L, 0x2A0C082482104400L, 0x8081044110A20506L,
+            0x10209A10C140D000L, 0x42010901A0001000L, 0x0100914028021000L, 0x0081804010406200L,
+            0x108B1C0494003200L, 0x0140182813200440L, 0x0090120811021441L, 0x0002442C00808320L,
+            0x4004089844100A81L, 0x01302C040404C810L, 0x000022009C240004L, 0x420000A042022494L,
+            0x0001011060220480L, 0x2012042004310202L, 0x0010107001204008L, 0x1002901111110101L,
+            0x0100802918024000L, 0x0000090041042000L, 0x41502A0022011000L, 0x0000004000840428L,
+            0x0010440011020200L, 0x4004404010149122L, 0x0480402454240040L, 0x504808C088020020L
+    };
+
+    private static final long[] ROOK_MASKS = new long[Bitboards.SQUARES];
+    private static final long[] BISHOP_MASKS = new long[Bitboards.SQUARES];
+    private static final int[] ROOK_SHIFTS = new int[Bitboards.SQUARES];
+    private static final int[] BISHOP_SHIFTS = new int[Bitboards.SQUARES];
+    private static final int[] ROOK_OFFSETS = new int[Bitboards.SQUARES];
+    private static final int[] BISHOP_OFFSETS = new int[Bitboards.SQUARES];
+    private static final long[] ROOK_ATTACKS;
+    private static final long[] BISHOP_ATTACKS;
+    private static final long BUILD_TIME_NANOS;
+
+    static {
+        final long started = System.nanoTime();
+        ROOK_ATTACKS = buildTable(ROOK_DIRECTIONS, ROOK_MAGICS, ROOK_MASKS, ROOK_SHIFTS, ROOK_OFFSETS);
+        BISHOP_ATTACKS = buildTable(BISHOP_DIRECTIONS, BISHOP_MAGICS, BISHOP_MASKS, BISHOP_SHIFTS, BISHOP_OFFSETS);
+        BUILD_TIME_NANOS = System.nanoTime() - started;
+
+        log.info("Magic attack tables built in {} ms (rook entries={}, bishop entries={})",
+                TimeUnit.NANOSECONDS.toMillis(BUILD_TIME_NANOS), ROOK_ATTACKS.length, BISHOP_ATTACKS.length);
+    }
+
+    private MagicAttacks() {
+    }
+
+    static long rookAttacks(final int square, final long occupied) {
+        return ROOK_ATTACKS[ROOK_OFFSETS[square]
+                + (int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+    }
+
+    static long bishopAttacks(final int square, final long occupied) {
+        return BISHOP_ATTACKS[BISHOP_OFFSETS[square]
+                + (int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+    }
+
+    /**
+     * Время построения таблиц в наносекундах
+     */
+    static long getBuildTimeNanos() {
+        return BUILD_TIME_NANOS;
+    }
+
+    // Медленный расчёт атак - проход по лучам до первой занятой клетки. Используется для построения таблиц.
+    private static long slidingAttacks(final int[][] directions, final int square, final long occupied) {
+        long attacks = 0L;
+        for (final int[] dir : directions) {
+            for (int x = Bitboards.x(square) + dir[0], y = Bitboards.y(square) + dir[1];
+                 Bitboards.isOnBoard(x, y); x += dir[0], y += dir[1]) {
+                final long bit = Bitboards.bit(Bitboards.square(x, y));
+                attacks |= bit;
+                if ((occupied & bit) != 0) break;
+            }
+        }
+        return attacks;
+    }
+
+    /**
+     * Атаки ладьи без таблиц - для проверки таблиц
+     */
+    static long slowRookAttacks(final int square, final long occupied) {
+        return slidingAttacks(ROOK_DIRECTIONS, square, occupied);
+    }
+
+    /**
+     * Атаки слона без таблиц - для проверки таблиц
+     */
+    static long slowBishopAttacks(final int square, final long occupied) {
+        return slidingAttacks(BISHOP_DIRECTIONS, square, occupied);
+    }
+
+    /* Заполняет маски, сдвиги и смещения для каждой клетки и строит общую таблицу атак.
+    Для каждой клетки перебираются все подмножества маски (приём "carry-rippler").
+    */
+    private static long[] buildTable(final int[][] directions, final long[] magics,
+                                     final long[] masks, final int[] shifts, final int[] offsets) {
+        int size = 0;
+        for (int sq = 0; sq < Bitboards.SQUARES; sq++) {
+            masks[sq] = relevantOccupancyMask(directions, sq);
+            final int bits = Long.bitCount(masks[sq]);
+            shifts[sq] = Long.SIZE - bits;
+            offsets[sq] = size;
+            size += 1 << bits;
+        }
+
+        final long[] table = new long[size];
+        for (int sq = 0; sq < Bitboards.SQUARES; sq++) {
+            long subset = 0L;
+            do {
+                final int index = offsets[sq] + (int) ((subset * magics[sq]) >>> shifts[sq]);
+                table[index] = slidingAttacks(directions, sq, subset);
+                subset = (subset - masks[sq]) & masks[sq];
+            } while (subset != 0);
+        }
+        return table;
+    }
+
+    // Клетки лучей, занятость которых влияет на атаку (крайняя клетка луча не влияет)
+    private static long relevantOccupancyMask(final int[][] directions, final int square) {
+        long mask = 0L;
+        for (final int[] dir : directions) {
+            for (int x = Bitboards.x(square) + dir[0], y = Bitboards.y(square) + dir[1];
+                 Bitboards.isOnBoard(x + dir[0], y + dir[1]); x += dir[0], y += dir[1]) {
+                mask |= Bitboards.bit(Bitboards.square(x, y));
+            }
+        }
+        return mask;
+    }
+
+}
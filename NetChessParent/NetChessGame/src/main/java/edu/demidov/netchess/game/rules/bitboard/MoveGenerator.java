@@ -0,0 +1,182 @@
+package edu.demidov.netchess.game.rules.bitboard;
+
+import static edu.demidov.netchess.game.rules.bitboard.Bitboards.BETWEEN;
+import static edu.demidov.netchess.game.rules.bitboard.Bitboards.KING_ATTACKS;
+import static edu.demidov.netchess.game.rules.bitboard.Bitboards.KNIGHT_ATTACKS;
+import static edu.demidov.netchess.game.rules.bitboard.Bitboards.LINE;
+import static edu.demidov.netchess.game.rules.bitboard.Bitboards.PAWN_ATTACKS;
+import static edu.demidov.netchess.game.rules.bitboard.Bitboards.bishopAttacks;
+import static edu.demidov.netchess.game.rules.bitboard.Bitboards.bit;
+import static edu.demidov.netchess.game.rules.bitboard.Bitboards.firstSquare;
+import static edu.demidov.netchess.game.rules.bitboard.Bitboards.rookAttacks;
+import static edu.demidov.netchess.game.rules.bitboard.BitboardPosition.BISHOP;
+import static edu.demidov.netchess.game.rules.bitboard.BitboardPosition.KNIGHT;
+import static edu.demidov.netchess.game.rules.bitboard.BitboardPosition.NO_SQUARE;
+import static edu.demidov.netchess.game.rules.bitboard.BitboardPosition.PAWN;
+import static edu.demidov.netchess.game.rules.bitboard.BitboardPosition.QUEEN;
+import static edu.demidov.netchess.game.rules.bitboard.BitboardPosition.ROOK;
+
+/**
+ * Генератор допустимых ходов для стороны, чей ход в позиции.
+ * Связанные фигуры и маска ухода от шаха (взятие шахующей фигуры или перекрытие линии шаха)
+ * считаются один раз на позицию, поэтому ходы не нужно проверять по одному через makeMove.
+ * Исключение - взятие на проходе: оно редкое и может открыть линию по горизонтали, его проверяем ходом.
+ * Ходы пишутся в переданный буфер int[] (кодирование - Moves), превращение пешки даёт 4 хода.
+ */
+public final class MoveGenerator {
+
+    // Размер буфера, которого хватает для любой позиции
+    public static final int MAX_MOVES = 256;
+
+    private static final int WHITE_PAWN_TRANSFORM_LINE = 0, BLACK_PAWN_TRANSFORM_LINE = 7;
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Записывает все допустимые ходы в буфер moves (размером не меньше MAX_MOVES)
+     *
+     * @return количество ходов
+     */
+    public static int generateLegalMoves(final BitboardPosition position, final int[] moves) {
+        return generate(position, moves, false);
+    }
+
+    /**
+     * Возвращает true, если у стороны, чей ход, есть хотя бы один допустимый ход.
+     * Генерация останавливается на первой группе фигур, у которой нашёлся ход.
+     */
+    public static boolean hasLegalMove(final BitboardPosition position) {
+        return generate(position, null, true) > 0;
+    }
+
+    /* Генерирует ходы группами: король, конь, дальнобойные фигуры, пешки, рокировка.
+    Если isFirstOnly - выходим после первой группы, давшей хотя бы один ход. Если moves == null - только считаем.
+    */
+    private static int generate(final BitboardPosition position, final int[] moves, final boolean isFirstOnly) {
+        final int side = position.getSideToMove();
+        final int enemy = side ^ 1;
+        final long own = position.getColorPieces(side);
+        final long occupied = position.getOccupied();
+        final int king = position.kingSquare(side);
+        int count = 0;
+
+        // Король: клетка не должна быть атакована даже после того, как король с неё уйдёт с линии атаки
+        final long occupiedWithoutKing = occupied ^ bit(king);
+        for (long targets = KING_ATTACKS[king] & ~own; targets != 0; targets &= targets - 1) {
+            final int to = firstSquare(targets);
+            if (position.attackersTo(to, enemy, occupiedWithoutKing) == 0) {
+                count = add(moves, count, Moves.create(king, to, Moves.NORMAL));
+            }
+        }
+        if (isFirstOnly && count > 0) return count;
+
+        // При двойном шахе ходит только король
+        final long checkers = position.attackersTo(king, enemy, occupied);
+        if (Long.bitCount(checkers) > 1) return count;
+
+        // Куда можно ходить остальным фигурам: при шахе - только взять шахующую фигуру или закрыться
+        final long evasionMask = checkers == 0 ? ~own : checkers | BETWEEN[king][firstSquare(checkers)];
+        final long pinned = pinnedPieces(position, side, king);
+
+        // Кони: связанный конь ходить не может
+        for (long knights = position.getPieces(side, KNIGHT) & ~pinned; knights != 0; knights &= knights - 1) {
+            final int from = firstSquare(knights);
+            count = addTargets(moves, count, from, KNIGHT_ATTACKS[from] & ~own & evasionMask);
+        }
+        if (isFirstOnly && count > 0) return count;
+
+        // Слоны, ладьи, ферзи: связанная фигура ходит только вдоль линии связки
+        final long diagonal = position.getPieces(side, BISHOP) | position.getPieces(side, QUEEN);
+        for (long sliders = diagonal; sliders != 0; sliders &= sliders - 1) {
+            final int from = firstSquare(sliders);
+            final long targets = bishopAttacks(from, occupied) & ~own & evasionMask & pinMask(pinned, king, from);
+            count = addTargets(moves, count, from, targets);
+        }
+        final long straight = position.getPieces(side, ROOK) | position.getPieces(side, QUEEN);
+        for (long sliders = straight; sliders != 0; sliders &= sliders - 1) {
+            final int from = firstSquare(sliders);
+            final long targets = rookAttacks(from, occupied) & ~own & evasionMask & pinMask(pinned, king, from);
+            count = addTargets(moves, count, from, targets);
+        }
+        if (isFirstOnly && count > 0) return count;
+
+        // Пешки
+        final long enemyPieces = position.getColorPieces(enemy);
+        final int epSquare = position.getEpSquare();
+        final int transformLine = side == BitboardPosition.WHITE ? WHITE_PAWN_TRANSFORM_LINE : BLACK_PAWN_TRANSFORM_LINE;
+        for (long pawns = position.getPieces(side, PAWN); pawns != 0; pawns &= pawns - 1) {
+            final int from = firstSquare(pawns);
+            final long targets = (position.pawnPushes(from, side) | (PAWN_ATTACKS[side][from] & enemyPieces))
+                    & evasionMask & pinMask(pinned, king, from);
+
+            for (long t = targets; t != 0; t &= t - 1) {
+                final int to = firstSquare(t);
+                if (Bitboards.y(to) == transformLine) {
+                    for (int flag = Moves.PROMOTION_KNIGHT; flag <= Moves.PROMOTION_QUEEN; flag++) {
+                        count = add(moves, count, Moves.create(from, to, flag));
+                    }
+                } else {
+                    final int flag = Math.abs(to - from) == 2 * Bitboards.SIZE ? Moves.DOUBLE_PAWN_PUSH : Moves.NORMAL;
+                    count = add(moves, count, Moves.create(from, to, flag));
+                }
+            }
+
+            if (epSquare != NO_SQUARE && (PAWN_ATTACKS[side][from] & bit(epSquare)) != 0) {
+                final int move = Moves.create(from, epSquare, Moves.EN_PASSANT);
+                position.makeMove(move);
+                final boolean isLegal = !position.isInCheck(side);
+                position.unmakeMove(move);
+                if (isLegal) count = add(moves, count, move);
+            }
+        }
+        if (isFirstOnly && count > 0) return count;
+
+        // Рокировка (под шахом невозможна; проверки полей - в castlingTargets)
+        if (checkers == 0) {
+            for (long targets = position.castlingTargets(side); targets != 0; targets &= targets - 1) {
+                count = add(moves, count, Moves.create(king, firstSquare(targets), Moves.CASTLING));
+            }
+        }
+
+        return count;
+    }
+
+    /* Фигуры цвета side, связанные с королём: между королём и вражеской дальнобойной фигурой на одной линии
+    стоит ровно одна фигура, и она своя.
+    */
+    private static long pinnedPieces(final BitboardPosition position, final int side, final int king) {
+        final int enemy = side ^ 1;
+        final long occupied = position.getOccupied();
+        final long snipers =
+                (rookAttacks(king, 0L) & (position.getPieces(enemy, ROOK) | position.getPieces(enemy, QUEEN)))
+                | (bishopAttacks(king, 0L) & (position.getPieces(enemy, BISHOP) | position.getPieces(enemy, QUEEN)));
+
+        long pinned = 0L;
+        for (long s = snipers; s != 0; s &= s - 1) {
+            final long between = BETWEEN[king][firstSquare(s)] & occupied;
+            if (between != 0 && (between & (between - 1)) == 0) {
+                pinned |= between & position.getColorPieces(side);
+            }
+        }
+        return pinned;
+    }
+
+    // Для связанной фигуры - линия через короля и фигуру, иначе - вся доска
+    private static long pinMask(final long pinned, final int king, final int from) {
+        return (pinned & bit(from)) == 0 ? ~0L : LINE[king][from];
+    }
+
+    private static int addTargets(final int[] moves, int count, final int from, final long targets) {
+        for (long t = targets; t != 0; t &= t - 1) {
+            count = add(moves, count, Moves.create(from, firstSquare(t), Moves.NORMAL));
+        }
+        return count;
+    }
+
+    private static int add(final int[] moves, final int count, final int move) {
+        if (moves != null) moves[count] = move;
+        return count + 1;
+    }
+
+}
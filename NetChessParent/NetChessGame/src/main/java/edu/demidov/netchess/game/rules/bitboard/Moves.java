@@ -0,0 +1,54 @@
+package edu.demidov.netchess.game.rules.bitboard;
+
+/**
+ * Кодирование хода в int (используются младшие 16 бит):
+ * биты 0-5 - клетка "откуда", 6-11 - клетка "куда", 12-15 - флаг хода.
+ */
+public final class Moves {
+
+    public static final int NO_MOVE = 0;
+
+    // Флаги хода
+    public static final int NORMAL = 0;
+    public static final int DOUBLE_PAWN_PUSH = 1;
+    public static final int CASTLING = 2;
+    public static final int EN_PASSANT = 3;
+    public static final int PROMOTION_KNIGHT = 4;
+    public static final int PROMOTION_BISHOP = 5;
+    public static final int PROMOTION_ROOK = 6;
+    public static final int PROMOTION_QUEEN = 7;
+
+    private static final int[] PROMOTION_TYPES = {
+            BitboardPosition.KNIGHT, BitboardPosition.BISHOP, BitboardPosition.ROOK, BitboardPosition.QUEEN};
+
+    private Moves() {
+    }
+
+    public static int create(final int from, final int to, final int flag) {
+        return from | (to << 6) | (flag << 12);
+    }
+
+    public static int from(final int move) {
+        return move & 0x3F;
+    }
+
+    public static int to(final int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    public static int flag(final int move) {
+        return (move >>> 12) & 0xF;
+    }
+
+    public static boolean isPromotion(final int move) {
+        return flag(move) >= PROMOTION_KNIGHT;
+    }
+
+    /**
+     * Тип фигуры, в которую превращается пешка (для ходов с превращением)
+     */
+    public static int promotionType(final int move) {
+        return PROMOTION_TYPES[flag(move) - PROMOTION_KNIGHT];
+    }
+
+}
@@ -0,0 +1,192 @@
+package edu.demidov.netchess.game.rules.bitboard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Perft - подсчёт листьев дерева допустимых ходов до заданной глубины.
+ * Результаты сравниваются с известными значениями для стандартных позиций, что проверяет генератор ходов
+ * (шахи, связки, рокировки, взятие на проходе, превращения) целиком.
+ * Ходы корня распределяются по ForkJoinPool: каждая задача считает своё поддерево на собственной копии позиции.
+ * <p>
+ * Запуск: java ... Perft [глубина] [потоков] - проверяет все стандартные позиции и выводит узлы в секунду.
+ */
+public final class Perft {
+
+    private static final int DEFAULT_DEPTH = 5;
+    private static final Logger log = LoggerFactory.getLogger(Perft.class);
+
+    private Perft() {
+    }
+
+    /**
+     * Считает листья на глубине depth в одном потоке. Позиция после подсчёта не меняется.
+     */
+    public static long perft(final BitboardPosition position, final int depth) {
+        if (depth == 0) return 1;
+        return perft(position, depth, new int[depth][MoveGenerator.MAX_MOVES]);
+    }
+
+    /**
+     * Считает листья на глубине depth, распределяя ходы корня по задачам пула
+     */
+    public static long perft(final BitboardPosition position, final int depth, final ForkJoinPool pool) {
+        if (depth <= 1) return perft(position, depth);
+        return pool.invoke(new RootTask(position, depth));
+    }
+
+    public static void main(final String[] args) {
+        final int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_DEPTH;
+        final int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        boolean isPassed = true;
+
+        try {
+            for (final StandardPosition standard : StandardPosition.values()) {
+                final BitboardPosition position = standard.createPosition();
+                final int depth = Math.min(maxDepth, standard.getMaxDepth());
+
+                final long started = System.nanoTime();
+                final long nodes = perft(position, depth, pool);
+                final long elapsed = Math.max(System.nanoTime() - started, 1);
+
+                final long expected = standard.getNodes(depth);
+                final long nodesPerSecond = nodes * TimeUnit.SECONDS.toNanos(1) / elapsed;
+                log.info("{} depth={}: nodes={}, expected={}, time={} ms, {} nodes/s",
+                        standard, depth, nodes, expected, TimeUnit.NANOSECONDS.toMillis(elapsed), nodesPerSecond);
+                if (nodes != expected) {
+                    log.error("{} depth={}: perft mismatch, nodes={}, expected={}", standard, depth, nodes, expected);
+                    isPassed = false;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        if (!isPassed) System.exit(1);
+    }
+
+    // Рекурсивный подсчёт; moves[depth - 1] - буфер ходов для текущей глубины
+    private static long perft(final BitboardPosition position, final int depth, final int[][] moves) {
+        final int[] buffer = moves[depth - 1];
+        final int count = MoveGenerator.generateLegalMoves(position, buffer);
+        if (depth == 1) return count;
+
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            position.makeMove(buffer[i]);
+            nodes += perft(position, depth - 1, moves);
+            position.unmakeMove(buffer[i]);
+        }
+        return nodes;
+    }
+
+    /**
+     * Стандартные позиции для perft (Chess Programming Wiki) и количество листьев на глубинах 1..n
+     */
+    public enum StandardPosition {
+
+        INITIAL("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                20L, 400L, 8902L, 197281L, 4865609L, 119060324L),
+        KIWIPETE("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                48L, 2039L, 97862L, 4085603L, 193690690L),
+        POSITION_3("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                14L, 191L, 2812L, 43238L, 674624L, 11030083L),
+        POSITION_4("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                6L, 264L, 9467L, 422333L, 15833292L),
+        POSITION_5("rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                44L, 1486L, 62379L, 2103487L, 89941194L),
+        POSITION_6("r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                46L, 2079L, 89890L, 3894594L, 164075551L);
+
+        private final String fen;
+        private final long[] nodes;
+
+        StandardPosition(final String fen, final long... nodes) {
+            this.fen = fen;
+            this.nodes = nodes;
+        }
+
+        public String getFen() {
+            return fen;
+        }
+
+        public int getMaxDepth() {
+            return nodes.length;
+        }
+
+        public long getNodes(final int depth) {
+            return nodes[depth - 1];
+        }
+
+        public BitboardPosition createPosition() {
+            final BitboardPosition position = new BitboardPosition();
+            position.loadFen(fen);
+            return position;
+        }
+
+    }
+
+    // Задача корня: запускает по подзадаче на каждый ход и суммирует результат
+    private static class RootTask extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final BitboardPosition position;
+        private final int depth;
+
+        RootTask(final BitboardPosition position, final int depth) {
+            this.position = position;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            final int[] moves = new int[MoveGenerator.MAX_MOVES];
+            final int count = MoveGenerator.generateLegalMoves(position, moves);
+
+            final List<MoveTask> tasks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                tasks.add(new MoveTask(position, moves[i], depth - 1));
+            }
+            invokeAll(tasks);
+
+            long nodes = 0;
+            for (final MoveTask task : tasks) {
+                nodes += task.join();
+            }
+            return nodes;
+        }
+
+    }
+
+    // Поддерево одного хода корня, считается на своей копии позиции
+    private static class MoveTask extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final BitboardPosition position;
+        private final int move;
+        private final int depth;
+
+        MoveTask(final BitboardPosition root, final int move, final int depth) {
+            this.position = new BitboardPosition(root);
+            this.move = move;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            position.makeMove(move);
+            return perft(position, depth);
+        }
+
+    }
+
+}
@@ -0,0 +1,149 @@
+package edu.demidov.netchess.game.engine;
+
+import edu.demidov.netchess.game.rules.bitboard.BitboardPosition;
+import edu.demidov.netchess.game.rules.bitboard.Bitboards;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GameAnalyzerTest {
+
+    private static final int FIELD_SIZE = 8;
+    private static final int TABLE_SIZE_MB = 1;
+    private static final int DEPTH = 4;
+    private static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private GameAnalyzer analyzer;
+
+    @Before
+    public void before() {
+        analyzer = new GameAnalyzer(TABLE_SIZE_MB, DEPTH);
+    }
+
+    @Test
+    public void testAnalyze_WhenQueenBlundered() {
+        // 5. Фxf7+?? - ферзь отдан за пешку
+        final BitboardPosition start = position(START);
+        final int[] moves = moves(start, "e2e4 e7e5 d1h5 b8c6 h5f7 e8f7");
+        final long key = start.getKey();
+
+        final GameAnalysis analysis = analyzer.analyze(start, moves, moves.length, null);
+
+        assertEquals(moves.length, analysis.getMoveCount());
+        assertEquals(GameAnalysis.BLUNDER, analysis.getMark(4));
+        assertEquals(BitboardPosition.WHITE, analysis.getColor(4));
+        assertTrue(analysis.getLoss(4) >= GameAnalyzer.BLUNDER_LOSS);
+        assertEquals(1, analysis.count(BitboardPosition.WHITE, GameAnalysis.BLUNDER));
+        assertEquals(0, analysis.count(BitboardPosition.BLACK, GameAnalysis.BLUNDER));
+        assertTrue(analysis.getEvaluation(moves.length) < -GameAnalyzer.BLUNDER_LOSS);
+        // Разбор идёт на копии - исходная позиция не меняется
+        assertEquals(key, start.getKey());
+    }
+
+    @Test
+    public void testAnalyze_WhenMated() {
+        // Дурацкий мат: 2. g4?? Фh4#
+        final BitboardPosition start = position(START);
+        final int[] moves = moves(start, "f2f3 e7e5 g2g4 d8h4");
+
+        final GameAnalysis analysis = analyzer.analyze(start, moves, moves.length, null);
+
+        assertEquals(GameAnalysis.BLUNDER, analysis.getMark(2));
+        assertEquals(GameAnalysis.OK, analysis.getMark(3));
+        assertEquals(-GameAnalysis.MAX_EVALUATION, analysis.getEvaluation(moves.length));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAnalyze_WhenIllegalMove() {
+        final BitboardPosition start = position(START);
+        final int[] moves = moves(start, "e2e4 e7e5 e4e5");
+
+        analyzer.analyze(start, moves, moves.length, null);
+    }
+
+    @Test
+    public void testAnalyze_WhenStopped() {
+        final BitboardPosition start = position(START);
+        final int[] moves = moves(start, "e2e4 e7e5");
+
+        assertNull(analyzer.analyze(start, moves, moves.length, new AtomicBoolean(true)));
+    }
+
+    @Test(timeout = 10000)
+    public void testAnalyze_WhenCoreIsAwaited() throws Exception {
+        final Semaphore cores = new Semaphore(0);
+        final GameAnalyzer limited = new GameAnalyzer(TABLE_SIZE_MB, DEPTH, cores);
+        final BitboardPosition start = position(START);
+        final int[] moves = moves(start, "e2e4 e7e5");
+        final AtomicReference<GameAnalysis> result = new AtomicReference<>();
+        final Thread analysis = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                result.set(limited.analyze(start, moves, moves.length, null));
+            }
+        });
+        analysis.start();
+
+        // Свободное ядро достаётся тому, кто его ждёт, а не разбору
+        final Thread waiting = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                cores.acquireUninterruptibly();
+            }
+        });
+        waiting.start();
+        while (!cores.hasQueuedThreads()) {
+            Thread.sleep(1);
+        }
+        cores.release();
+        waiting.join();
+        assertNull(result.get());
+
+        // Ядро вернули - разбор продолжается и возвращает разрешение после каждой позиции
+        cores.release();
+        analysis.join();
+        assertEquals(moves.length, result.get().getMoveCount());
+        assertEquals(1, cores.availablePermits());
+    }
+
+    @Test
+    public void testAnalyze_WhenInterruptedWhileWaitingForCore() {
+        final GameAnalyzer limited = new GameAnalyzer(TABLE_SIZE_MB, DEPTH, new Semaphore(0));
+        final BitboardPosition start = position(START);
+        final int[] moves = moves(start, "e2e4 e7e5");
+
+        Thread.currentThread().interrupt();
+        assertNull(limited.analyze(start, moves, moves.length, null));
+        assertTrue(Thread.interrupted());
+    }
+
+    private BitboardPosition position(final String fen) {
+        final BitboardPosition position = new BitboardPosition();
+        position.loadFen(fen);
+        return position;
+    }
+
+    // Ходы в координатной записи ("e2e4"); недопустимый ход тоже кодируется - по расстановке фигур
+    private int[] moves(final BitboardPosition start, final String line) {
+        final BitboardPosition position = new BitboardPosition(start);
+        final String[] cells = line.split(" ");
+        final int[] moves = new int[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            moves[i] = position.toMove(square(cells[i].substring(0, 2)), square(cells[i].substring(2, 4)));
+            position.makeMove(moves[i]);
+        }
+        return moves;
+    }
+
+    private int square(final String cell) {
+        return Bitboards.square(cell.charAt(0) - 'a', FIELD_SIZE - (cell.charAt(1) - '0'));
+    }
+
+}
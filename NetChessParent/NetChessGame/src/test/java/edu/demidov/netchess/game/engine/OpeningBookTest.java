@@ -0,0 +1,148 @@
+package edu.demidov.netchess.game.engine;
+
+import edu.demidov.netchess.game.rules.bitboard.BitboardPosition;
+import edu.demidov.netchess.game.rules.bitboard.Bitboards;
+import edu.demidov.netchess.game.rules.bitboard.MoveGenerator;
+import edu.demidov.netchess.game.rules.bitboard.Moves;
+import edu.demidov.netchess.game.rules.bitboard.Perft;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OpeningBookTest {
+
+    private static final int FIELD_SIZE = 8;
+    private static final String ITALIAN = "e2e4 e7e5 g1f3 b8c6 f1c4 f8c5 e1g1";
+    private static final String SICILIAN = "e2e4 c7c5 g1f3 d7d6";
+    private static final String QUEENS_GAMBIT = "d2d4 d7d5 c2c4";
+
+    private Path file;
+
+    @Before
+    public void before() throws IOException {
+        file = File.createTempFile("book", ".bin").toPath();
+    }
+
+    @After
+    public void after() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testChooseMove_WhenPositionInBook() throws IOException {
+        final OpeningBookBuilder builder = new OpeningBookBuilder();
+        builder.addLine(ITALIAN, OpeningBookBuilder.DEFAULT_MAX_PLY);
+        builder.addLine(ITALIAN, OpeningBookBuilder.DEFAULT_MAX_PLY);
+        builder.addLine(SICILIAN, OpeningBookBuilder.DEFAULT_MAX_PLY);
+        builder.addLine(QUEENS_GAMBIT, OpeningBookBuilder.DEFAULT_MAX_PLY);
+        builder.write(file);
+
+        final OpeningBook book = OpeningBook.open(file);
+        assertEquals(builder.size(), book.size());
+        assertEquals(Files.size(file), book.size() * OpeningBook.ENTRY_SIZE);
+
+        // Начальная позиция: e2e4 встретился 3 раза, d2d4 - 1 раз
+        final BitboardPosition position = Perft.StandardPosition.INITIAL.createPosition();
+        final int[] moves = new int[OpeningBook.MAX_BOOK_MOVES];
+        final int[] weights = new int[OpeningBook.MAX_BOOK_MOVES];
+        assertEquals(2, book.findMoves(position, moves, weights));
+        assertEquals(move(position, "e2", "e4"), moves[0]);
+        assertEquals(3, weights[0]);
+        assertEquals(move(position, "d2", "d4"), moves[1]);
+        assertEquals(1, weights[1]);
+
+        // После 1. e4 - два ответа
+        position.makeMove(move(position, "e2", "e4"));
+        position.setEpSquare(BitboardPosition.NO_SQUARE);
+        final int reply = book.chooseMove(position, new Random(1));
+        assertTrue(reply == move(position, "e7", "e5") || reply == move(position, "c7", "c5"));
+    }
+
+    @Test
+    public void testChooseMove_WhenCastlingInBook() throws IOException {
+        final OpeningBookBuilder builder = new OpeningBookBuilder();
+        builder.addLine(ITALIAN, OpeningBookBuilder.DEFAULT_MAX_PLY);
+        builder.write(file);
+
+        final BitboardPosition position = new BitboardPosition();
+        position.loadFen("r1bqk1nr/pppp1ppp/2n5/2b1p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4");
+
+        // Рокировка хранится как ход короля на ладью (e1h1) и возвращается ходом короля на 2 клетки
+        final int castling = OpeningBook.open(file).chooseMove(position, new Random(1));
+        assertEquals(Moves.create(square("e1"), square("g1"), Moves.CASTLING), castling);
+        assertEquals((bookSquare("e1") << 6) | bookSquare("h1"), OpeningBook.toBookMove(castling));
+    }
+
+    @Test
+    public void testChooseMove_WhenPositionNotInBook() throws IOException {
+        final OpeningBookBuilder builder = new OpeningBookBuilder();
+        builder.addLine(QUEENS_GAMBIT, OpeningBookBuilder.DEFAULT_MAX_PLY);
+        builder.write(file);
+        final OpeningBook book = OpeningBook.open(file);
+
+        final BitboardPosition position = Perft.StandardPosition.KIWIPETE.createPosition();
+        assertEquals(Moves.NO_MOVE, book.chooseMove(position, new Random(1)));
+
+        // Из варианта берутся только первые полуходы: 1. d4 d5
+        final OpeningBookBuilder shortBuilder = new OpeningBookBuilder();
+        shortBuilder.addLine(QUEENS_GAMBIT, 2);
+        assertEquals(2, shortBuilder.size());
+    }
+
+    @Test
+    public void testFindMoves_WhenManyPositions() throws IOException {
+        // Все позиции после двух полуходов: ключи покрывают и "отрицательные" значения long
+        final OpeningBookBuilder builder = new OpeningBookBuilder();
+        final BitboardPosition position = Perft.StandardPosition.INITIAL.createPosition();
+        final int[] first = new int[MoveGenerator.MAX_MOVES];
+        final int[] second = new int[MoveGenerator.MAX_MOVES];
+        final int firstCount = MoveGenerator.generateLegalMoves(position, first);
+        for (int i = 0; i < firstCount; i++) {
+            position.makeMove(first[i]);
+            final int secondCount = MoveGenerator.generateLegalMoves(position, second);
+            for (int j = 0; j < secondCount; j++) {
+                builder.add(position, second[j], j + 1);
+            }
+            position.unmakeMove(first[i]);
+        }
+        builder.write(file);
+        final OpeningBook book = OpeningBook.open(file);
+
+        final int[] moves = new int[OpeningBook.MAX_BOOK_MOVES];
+        final int[] weights = new int[OpeningBook.MAX_BOOK_MOVES];
+        for (int i = 0; i < firstCount; i++) {
+            position.makeMove(first[i]);
+            final int secondCount = MoveGenerator.generateLegalMoves(position, second);
+            assertEquals(secondCount, book.findMoves(position, moves, weights));
+            // Ходы позиции идут по убыванию веса
+            assertEquals(second[secondCount - 1], moves[0]);
+            assertEquals(secondCount, weights[0]);
+            position.unmakeMove(first[i]);
+        }
+        assertEquals(0, book.findMoves(position, moves, weights));
+    }
+
+    private int move(final BitboardPosition position, final String from, final String to) {
+        return position.toMove(square(from), square(to));
+    }
+
+    // Клетка в шахматной нотации: "e2" -> номер клетки
+    private int square(final String cell) {
+        return Bitboards.square(cell.charAt(0) - 'a', FIELD_SIZE - (cell.charAt(1) - '0'));
+    }
+
+    // Клетка в нумерации Polyglot (a1 = 0)
+    private int bookSquare(final String cell) {
+        return (cell.charAt(1) - '1') * FIELD_SIZE + (cell.charAt(0) - 'a');
+    }
+
+}
@@ -0,0 +1,106 @@
+package edu.demidov.netchess.game.engine;
+
+import edu.demidov.netchess.game.rules.bitboard.BitboardPosition;
+import edu.demidov.netchess.game.rules.bitboard.Bitboards;
+import edu.demidov.netchess.game.rules.bitboard.MoveGenerator;
+import edu.demidov.netchess.game.rules.bitboard.Moves;
+import edu.demidov.netchess.game.rules.bitboard.Perft;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelSearchTest {
+
+    private static final int FIELD_SIZE = 8;
+    private static final int TABLE_SIZE_MB = 4;
+    private static final int THREADS = 4;
+    private static final long TIME_MILLIS = 5000;
+    private static final long SHORT_TIME_MILLIS = 200;
+
+    private ExecutorService helpers;
+    private ParallelSearch search;
+
+    @Before
+    public void before() {
+        helpers = Executors.newFixedThreadPool(THREADS - 1);
+        search = new ParallelSearch(new TranspositionTable(TABLE_SIZE_MB), helpers);
+    }
+
+    @After
+    public void after() {
+        helpers.shutdownNow();
+    }
+
+    @Test
+    public void testSearch_WhenMateInOne() {
+        final BitboardPosition position = new BitboardPosition();
+        position.loadFen("6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 0 1");
+
+        final SearchResult result = search.search(position, TIME_MILLIS, 4, THREADS);
+
+        assertEquals(Moves.create(square("a1"), square("a8"), Moves.NORMAL), result.getMove());
+        assertTrue(Search.isMateScore(result.getScore()));
+    }
+
+    @Test
+    public void testSearch_WhenStoppedByTime() {
+        final BitboardPosition position = Perft.StandardPosition.KIWIPETE.createPosition();
+        final long key = position.getKey();
+
+        final SearchResult result = search.search(position, SHORT_TIME_MILLIS, Search.MAX_DEPTH, THREADS);
+
+        // Потоки делят одну таблицу; ход должен быть допустимым, позиция - не измениться
+        assertTrue(isLegal(position, result.getMove()));
+        assertTrue(result.getDepth() > 0);
+        assertTrue(result.getTimeMillis() < TIME_MILLIS);
+        assertEquals(key, position.getKey());
+    }
+
+    @Test
+    public void testSearch_WhenCoresAreLimited() {
+        final Semaphore cores = new Semaphore(1);
+        final ParallelSearch limited = new ParallelSearch(new TranspositionTable(TABLE_SIZE_MB), helpers, cores);
+        final BitboardPosition position = Perft.StandardPosition.KIWIPETE.createPosition();
+
+        final SearchResult result = limited.search(position, SHORT_TIME_MILLIS, Search.MAX_DEPTH, THREADS);
+
+        // Помощник был один - по числу свободных разрешений; разрешение возвращено
+        assertTrue(isLegal(position, result.getMove()));
+        assertEquals(1, cores.availablePermits());
+    }
+
+    @Test
+    public void testSearch_WhenNoFreeCores() {
+        final Semaphore cores = new Semaphore(0);
+        final ParallelSearch limited = new ParallelSearch(new TranspositionTable(TABLE_SIZE_MB), helpers, cores);
+        final BitboardPosition position = Perft.StandardPosition.KIWIPETE.createPosition();
+
+        final SearchResult result = limited.search(position, SHORT_TIME_MILLIS, Search.MAX_DEPTH, THREADS);
+
+        // Поиск идёт только в вызывающем потоке
+        assertTrue(isLegal(position, result.getMove()));
+        assertEquals(0, cores.availablePermits());
+    }
+
+    private boolean isLegal(final BitboardPosition position, final int move) {
+        final int[] moves = new int[MoveGenerator.MAX_MOVES];
+        final int count = MoveGenerator.generateLegalMoves(position, moves);
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == move) return true;
+        }
+        return false;
+    }
+
+    // Клетка в шахматной нотации: "e2" -> номер клетки
+    private int square(final String cell) {
+        return Bitboards.square(cell.charAt(0) - 'a', FIELD_SIZE - (cell.charAt(1) - '0'));
+    }
+
+}
@@ -0,0 +1,88 @@
+package edu.demidov.netchess.game.engine;
+
+import edu.demidov.netchess.game.rules.bitboard.BitboardPosition;
+import edu.demidov.netchess.game.rules.bitboard.Bitboards;
+import edu.demidov.netchess.game.rules.bitboard.Moves;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SearchTest {
+
+    private static final int FIELD_SIZE = 8;
+    private static final int TABLE_SIZE_MB = 1;
+    private static final long TIME_MILLIS = 5000;
+    private static final int DEPTH = 4;
+
+    private Search search;
+
+    @Before
+    public void before() {
+        search = new Search(new TranspositionTable(TABLE_SIZE_MB));
+    }
+
+    @Test
+    public void testSearch_WhenMateInOne() {
+        final BitboardPosition position = position("6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 0 1");
+        final long key = position.getKey();
+
+        final SearchResult result = search.search(position, TIME_MILLIS, DEPTH);
+
+        assertEquals(Moves.create(square("a1"), square("a8"), Moves.NORMAL), result.getMove());
+        assertTrue(Search.isMateScore(result.getScore()));
+        assertTrue(result.getScore() > 0);
+        // Поиск идёт на копии - исходная позиция не меняется
+        assertEquals(key, position.getKey());
+    }
+
+    @Test
+    public void testSearch_WhenQueenHangs() {
+        final BitboardPosition position = position("4k3/8/8/3q4/8/8/3R4/4K3 w - - 0 1");
+
+        final SearchResult result = search.search(position, TIME_MILLIS, DEPTH);
+
+        assertEquals(Moves.create(square("d2"), square("d5"), Moves.NORMAL), result.getMove());
+        assertEquals(DEPTH, result.getDepth());
+    }
+
+    @Test
+    public void testSearch_WhenNoMoves() {
+        // Пат чёрным
+        final BitboardPosition position = position("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1");
+
+        assertEquals(Moves.NO_MOVE, search.search(position, TIME_MILLIS, DEPTH).getMove());
+    }
+
+    @Test
+    public void testTranspositionTable_StoreAndProbe() {
+        final TranspositionTable table = new TranspositionTable(TABLE_SIZE_MB);
+        final long key = 0x123456789ABCDEFL;
+        final int move = Moves.create(square("e7"), square("e8"), Moves.PROMOTION_QUEEN);
+
+        assertEquals(TranspositionTable.NO_ENTRY, table.probe(key));
+
+        table.store(key, move, -Search.MATE + 3, 7, TranspositionTable.UPPER);
+        final long entry = table.probe(key);
+        assertEquals(move, TranspositionTable.move(entry));
+        assertEquals(-Search.MATE + 3, TranspositionTable.score(entry));
+        assertEquals(7, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.UPPER, TranspositionTable.bound(entry));
+
+        // Другая позиция с тем же индексом записи не считается попаданием
+        assertEquals(TranspositionTable.NO_ENTRY, table.probe(key + table.size()));
+    }
+
+    private BitboardPosition position(final String fen) {
+        final BitboardPosition position = new BitboardPosition();
+        position.loadFen(fen);
+        return position;
+    }
+
+    // Клетка в шахматной нотации: "e2" -> номер клетки
+    private int square(final String cell) {
+        return Bitboards.square(cell.charAt(0) - 'a', FIELD_SIZE - (cell.charAt(1) - '0'));
+    }
+
+}
@@ -2,22 +2,29 @@ package edu.demidov.netchess.game.impl;
 
 import edu.demidov.netchess.common.model.exceptions.game.chess.GameMoveException;
 import edu.demidov.netchess.common.model.exceptions.game.chess.NoNextPlayerFoundException;
+import edu.demidov.netchess.common.model.game.chess.ChessColor;
 import edu.demidov.netchess.common.model.game.chess.ChessFigure;
 import edu.demidov.netchess.common.model.game.chess.ChessGame;
 import edu.demidov.netchess.common.model.game.chess.ChessPlayer;
 import edu.demidov.netchess.game.api.ChessLogicObserver;
+import edu.demidov.netchess.game.engine.tablebase.Tablebase;
+import edu.demidov.netchess.game.engine.tablebase.Tablebases;
+import edu.demidov.netchess.game.rules.bitboard.BitboardPosition;
+import edu.demidov.netchess.game.rules.impl.ChessRulesImpl;
+import edu.demidov.netchess.utils.Point;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Calendar;
-import java.util.Date;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -26,6 +33,8 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ChessLogicImplTest {
+    private static final long TIME_LEFT = 60000;
+
     private final ChessLogicImpl chessLogic = ChessLogicImpl.getInstance();
     private ChessLogicObserver chessLogicObserver;
 
@@ -103,6 +112,54 @@ public class ChessLogicImplTest {
         verifyThatNoChanges();
     }
 
+    @Test
+    public void testPlayerMoveFigure_WhenLegalMovesCached() throws Exception {
+        chessLogic.setChessRules(new ChessRulesImpl());
+        final ChessPlayer white = new ChessPlayer(ChessColor.White, TIME_LEFT, "white", 0, 0, 0, 0, 0);
+        final ChessPlayer black = new ChessPlayer(ChessColor.Black, TIME_LEFT, "black", 0, 0, 0, 0, 0);
+        final ChessGame realGame = chessLogic.startGame(Arrays.asList(white, black));
+
+        // Набор ходов посчитан при создании партии
+        assertEquals(20, realGame.getLegalMoves().size());
+        assertTrue(realGame.getLegalMoves().contains(new Point(4, 6), new Point(4, 4)));
+
+        try {
+            chessLogic.playerMoveFigure(white, realGame, new Point(4, 6), new Point(4, 3));
+            fail();
+        } catch (final GameMoveException e) {
+        }
+
+        // После хода набор пересчитан для соперника
+        chessLogic.playerMoveFigure(white, realGame, new Point(4, 6), new Point(4, 4));
+        assertEquals(black, realGame.getCurrentPlayer());
+        assertEquals(20, realGame.getLegalMoves().size());
+        assertTrue(realGame.getLegalMoves().contains(new Point(4, 1), new Point(4, 3)));
+    }
+
+    @Test
+    public void testPlayerMoveFigure_WhenTablebaseKnowsOutcome() throws Exception {
+        chessLogic.setChessRules(new ChessRulesImpl());
+        final ChessPlayer white = new ChessPlayer(ChessColor.White, TIME_LEFT, "white", 0, 0, 0, 0, 0);
+        final ChessPlayer black = new ChessPlayer(ChessColor.Black, TIME_LEFT, "black", 0, 0, 0, 0, 0);
+        final ChessGame realGame = chessLogic.startGame(Arrays.asList(white, black));
+        final Tablebases tablebases = mock(Tablebases.class);
+        chessLogic.setTablebases(tablebases);
+
+        try {
+            // Чёрным мат в 2 хода (проигрыш за 4 полухода)
+            when(tablebases.probe(any(BitboardPosition.class))).thenReturn(Tablebase.code(4));
+            chessLogic.playerMoveFigure(white, realGame, new Point(4, 6), new Point(4, 4));
+            assertTrue(realGame.getForcedOutcome().contains("белые"));
+            assertTrue(realGame.getForcedOutcome().contains("2"));
+
+            when(tablebases.probe(any(BitboardPosition.class))).thenReturn(Tablebases.UNKNOWN);
+            chessLogic.playerMoveFigure(black, realGame, new Point(4, 1), new Point(4, 3));
+            assertNull(realGame.getForcedOutcome());
+        } finally {
+            chessLogic.setTablebases(null);
+        }
+    }
+
     @Test
     public void testCheckGameForEndByTime_WhenTimeoutNotExpired() throws Exception {
         chessLogic.checkGameForEndByTime(game);
@@ -165,26 +222,11 @@ public class ChessLogicImplTest {
     }
 
     private void doGameNotExpired(final ChessGame game) {
-        final int MOVE_TIME_STARTED_AGO = 100;
-        final long MOVE_TIME_LEFT = MOVE_TIME_STARTED_AGO * 2;
-
-        setCurrentPlayerTimeout(game, MOVE_TIME_STARTED_AGO, MOVE_TIME_LEFT);
+        when(game.isTimeUp(anyLong())).thenReturn(false);
     }
 
     private void doGameExpired(final ChessGame game) {
-        final int MOVE_TIME_STARTED_AGO = 100;
-        final long MOVE_TIME_LEFT = MOVE_TIME_STARTED_AGO / 2;
-
-        setCurrentPlayerTimeout(game, MOVE_TIME_STARTED_AGO, MOVE_TIME_LEFT);
-    }
-
-    private void setCurrentPlayerTimeout(final ChessGame game, final int moveTimeStartedAgo, final long moveTimeLeft) {
-        Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.MILLISECOND, -moveTimeStartedAgo);
-        Date moveStarted = cal.getTime();
-
-        when(currentPlayer.getTimeLeft()).thenReturn(moveTimeLeft);
-        when(game.getCurrentMoveStarted()).thenReturn(moveStarted);
+        when(game.isTimeUp(anyLong())).thenReturn(true);
     }
 
     private void verifyThatNoChanges() throws NoNextPlayerFoundException {
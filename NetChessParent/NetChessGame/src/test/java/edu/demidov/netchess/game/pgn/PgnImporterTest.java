@@ -0,0 +1,133 @@
+package edu.demidov.netchess.game.pgn;
+
+import edu.demidov.netchess.game.exceptions.InvalidPgnException;
+import edu.demidov.netchess.game.rules.bitboard.Moves;
+import edu.demidov.netchess.game.rules.impl.ChessRulesImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PgnImporterTest {
+
+    private static final int THREADS = 4;
+    private static final int BATCH_SIZE = 8;
+    private static final int MAX_BATCHES = 2;
+    private static final int COPIES = 50;
+
+    private static final String CASTLING = "[Event \"castling\"]\n\n"
+            + "1. e4 e5 2. Nf3 Nc6 3. Bc4 Bc5 4. O-O Nf6 5. d3 O-O 1/2-1/2\n\n";
+    private static final String PROMOTION = "[Event \"promotion\"]\n[FEN \"8/P7/8/8/8/8/8/k6K w - - 0 1\"]\n\n"
+            + "1. a8=Q+ Kb2 2. Qb7+ Kc2 *\n\n";
+    private static final String MATE = "[Event \"mate\"]\n\n1. f3 e5 2. g4 Qh4# 0-1\n\n";
+    private static final String ILLEGAL = "[Event \"illegal\"]\n\n1. e4 e5 2. Ke3 *\n\n";
+    private static final String WRONG_CHECK = "[Event \"wrong check\"]\n\n1. e4+ e5 *\n\n";
+    // Взятия на проходе в правилах игры нет
+    private static final String EN_PASSANT = "[Event \"en passant\"]\n\n1. e4 Nf6 2. e5 d5 3. exd6 *\n\n";
+
+    // Записи, которые не разбираются как ходы
+    private static final String GARBAGE = "[Event \"garbage\"]\n\n1. Qxx9=Z+# ++ 0-0-0-0 e *\n\n";
+
+    private ForkJoinPool pool;
+    private PgnImporter importer;
+
+    @Before
+    public void before() {
+        pool = new ForkJoinPool(THREADS);
+        importer = new PgnImporter(new ChessRulesImpl(), pool, BATCH_SIZE, MAX_BATCHES);
+    }
+
+    @After
+    public void after() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testImportGames() throws IOException {
+        final StringBuilder pgn = new StringBuilder();
+        for (int i = 0; i < COPIES; i++) {
+            pgn.append(CASTLING).append(PROMOTION).append(MATE).append(ILLEGAL).append(WRONG_CHECK).append(EN_PASSANT);
+        }
+        final AtomicLong handled = new AtomicLong();
+        final AtomicLong castlings = new AtomicLong();
+
+        final PgnImportResult result = importer.importGames(new StringReader(pgn.toString()),
+                new PgnImporter.GameHandler() {
+                    @Override
+                    public void gameValidated(final PgnGame game, final int[] moves, final int count) {
+                        handled.incrementAndGet();
+                        for (int i = 0; i < count; i++) {
+                            if (Moves.flag(moves[i]) == Moves.CASTLING) castlings.incrementAndGet();
+                        }
+                    }
+                });
+
+        assertEquals(6 * COPIES, result.getGames());
+        assertEquals(3 * COPIES, result.getValidGames());
+        assertEquals(3 * COPIES, result.getInvalidGames());
+        assertEquals((10 + 4 + 4) * COPIES, result.getMoves());
+        assertEquals(3 * COPIES, handled.get());
+        assertEquals(2 * COPIES, castlings.get());
+        assertEquals(PgnImporter.MAX_ERRORS, result.getErrors().size());
+    }
+
+    @Test
+    public void testImportGames_WhenGarbage() throws IOException {
+        final String pgn = CASTLING + GARBAGE + MATE;
+
+        final PgnImportResult result = importer.importGames(new StringReader(pgn), null);
+
+        assertEquals(3, result.getGames());
+        assertEquals(2, result.getValidGames());
+        assertEquals(1, result.getErrors().size());
+        assertTrue(result.getErrors().get(0).contains("Qxx9=Z+#"));
+    }
+
+    @Test
+    public void testImportGames_WhenGameFails() throws IOException {
+        final String pgn = CASTLING + MATE + GARBAGE + CASTLING;
+
+        // Сбой на одной партии (здесь - в обработчике) не прерывает загрузку; партия считается неверной
+        final PgnImportResult result = importer.importGames(new StringReader(pgn), new PgnImporter.GameHandler() {
+            @Override
+            public void gameValidated(final PgnGame game, final int[] moves, final int count) {
+                if ("mate".equals(game.getTag("Event"))) throw new IndexOutOfBoundsException("bad game");
+            }
+        });
+
+        assertEquals(4, result.getGames());
+        assertEquals(2, result.getValidGames());
+        assertEquals(2 * 10, result.getMoves());
+        assertEquals(2, result.getErrors().size());
+        assertTrue(result.getErrors().contains("Строка 5: сбой проверки партии: java.lang.IndexOutOfBoundsException: bad game"));
+    }
+
+    @Test
+    public void testReplay_WhenPromotion() throws IOException, InvalidPgnException {
+        final PgnReplay replay = new PgnReplay(new ChessRulesImpl());
+        final PgnGame game = new PgnReader(new StringReader(PROMOTION)).next();
+
+        assertEquals(4, replay.replay(game));
+        assertTrue(Moves.isPromotion(replay.getMoves()[0]));
+    }
+
+    @Test
+    public void testReplay_WhenIllegalMove() throws IOException {
+        final PgnReplay replay = new PgnReplay(new ChessRulesImpl());
+        try {
+            replay.replay(new PgnReader(new StringReader(ILLEGAL)).next());
+            fail();
+        } catch (final InvalidPgnException ex) {
+            assertTrue(ex.getMessage().contains("Ke3"));
+        }
+    }
+
+}
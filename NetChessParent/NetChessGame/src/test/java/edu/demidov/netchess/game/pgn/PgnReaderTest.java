@@ -0,0 +1,75 @@
+package edu.demidov.netchess.game.pgn;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PgnReaderTest {
+
+    @Test
+    public void testNext_ReadsTagsAndMoves() throws IOException {
+        final PgnReader reader = new PgnReader(new StringReader(
+                "[Event \"Test \\\"cup\\\"\"]\n"
+                        + "[White \"Fischer\"]\n"
+                        + "[Result \"1-0\"]\n"
+                        + "\n"
+                        + "1. e4 e5 2.Nf3 Nc6 3. Bb5 1-0\n"));
+
+        final PgnGame game = reader.next();
+
+        assertEquals("Test \"cup\"", game.getTag("Event"));
+        assertEquals("Fischer", game.getTag("White"));
+        assertEquals(Arrays.asList("e4", "e5", "Nf3", "Nc6", "Bb5"), game.getMoves());
+        assertEquals("1-0", game.getResult());
+        assertEquals(1, game.getLineNumber());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void testNext_SkipsCommentsVariationsAndAnnotations() throws IOException {
+        final PgnReader reader = new PgnReader(new StringReader(
+                "1. e4 {лучший ход} e5 (1... c5 2. Nf3 (2. c3) d6) 2. Nf3!? $1 Nc6?! ; до конца строки\n"
+                        + "% строка-экранирование\n"
+                        + "3. Bb5 3... a6 *"));
+
+        final PgnGame game = reader.next();
+
+        assertEquals(Arrays.asList("e4", "e5", "Nf3", "Nc6", "Bb5", "a6"), game.getMoves());
+        assertEquals("*", game.getResult());
+    }
+
+    @Test
+    public void testNext_ReadsSeveralGames() throws IOException {
+        final PgnReader reader = new PgnReader(new StringReader(
+                "[Event \"1\"]\n\n1. d4 d5 1/2-1/2\n\n"
+                        + "[Event \"2\"]\n\n1. c4 e5\n\n"
+                        + "[Event \"3\"]\n[Result \"0-1\"]\n\n1. f3 e5 2. g4 Qh4#\n"));
+
+        final PgnGame first = reader.next();
+        final PgnGame second = reader.next();
+        final PgnGame third = reader.next();
+
+        assertEquals("1", first.getTag("Event"));
+        assertEquals("1/2-1/2", first.getResult());
+        // Результата нет - партию заканчивают теги следующей
+        assertEquals("2", second.getTag("Event"));
+        assertEquals(Arrays.asList("c4", "e5"), second.getMoves());
+        assertNull(second.getResult());
+        assertEquals(5, second.getLineNumber());
+        // Результат берётся из тега
+        assertEquals("0-1", third.getResult());
+        assertEquals(Arrays.asList("f3", "e5", "g4", "Qh4#"), third.getMoves());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void testNext_WhenEmpty() throws IOException {
+        assertNull(new PgnReader(new StringReader(" \n\n")).next());
+    }
+
+}
@@ -0,0 +1,195 @@
+package edu.demidov.netchess.game.rules.bitboard;
+
+import edu.demidov.netchess.common.model.game.chess.ChessColor;
+import edu.demidov.netchess.common.model.game.chess.ChessField;
+import edu.demidov.netchess.common.model.game.chess.ChessFigure;
+import edu.demidov.netchess.common.model.game.chess.PackedField;
+import edu.demidov.netchess.common.model.game.chess.Zobrist;
+import edu.demidov.netchess.utils.Point;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BitboardPositionTest {
+
+    private static final int FIELD_SIZE = 8;
+    private static final int GAMES = 50;
+    private static final int MAX_MOVES = 120;
+
+    @Test
+    public void testMakeUnmakeRestoresPosition() throws Exception {
+        final Random random = new Random(1);
+        final int[] moves = new int[MAX_MOVES];
+
+        for (int game = 0; game < GAMES; game++) {
+            final BitboardPosition position = new BitboardPosition(startField(), BitboardPosition.WHITE);
+            final BitboardPosition start = new BitboardPosition(position);
+
+            // Играем случайные допустимые ходы, затем отменяем их в обратном порядке
+            int count = 0;
+            while (count < MAX_MOVES) {
+                final int move = randomLegalMove(position, random);
+                if (move == Moves.NO_MOVE) break;
+                position.makeMove(move);
+                moves[count++] = move;
+            }
+            for (int i = count - 1; i >= 0; i--) {
+                position.unmakeMove(moves[i]);
+            }
+
+            assertSamePosition(start, position);
+        }
+    }
+
+    @Test
+    public void testMakeMove_WhenCastling() throws Exception {
+        final BitboardPosition position = new BitboardPosition();
+        position.putPiece(BitboardPosition.pieceCode(BitboardPosition.WHITE, BitboardPosition.KING), square("e1"));
+        position.putPiece(BitboardPosition.pieceCode(BitboardPosition.WHITE, BitboardPosition.ROOK), square("h1"));
+        position.putPiece(BitboardPosition.pieceCode(BitboardPosition.BLACK, BitboardPosition.KING), square("e8"));
+        position.setCastlingRights(BitboardPosition.WHITE_KING_SIDE);
+
+        final int move = position.toMove(square("e1"), square("g1"));
+        assertEquals(Moves.CASTLING, Moves.flag(move));
+
+        position.makeMove(move);
+        assertEquals(BitboardPosition.pieceCode(BitboardPosition.WHITE, BitboardPosition.ROOK), position.getPiece(square("f1")));
+        assertEquals(BitboardPosition.NO_PIECE, position.getPiece(square("h1")));
+        assertEquals(0, position.getCastlingRights());
+
+        position.unmakeMove(move);
+        assertEquals(BitboardPosition.pieceCode(BitboardPosition.WHITE, BitboardPosition.ROOK), position.getPiece(square("h1")));
+        assertEquals(BitboardPosition.WHITE_KING_SIDE, position.getCastlingRights());
+    }
+
+    @Test
+    public void testMakeMove_WhenEnPassant() throws Exception {
+        final BitboardPosition position = new BitboardPosition();
+        position.putPiece(BitboardPosition.pieceCode(BitboardPosition.WHITE, BitboardPosition.KING), square("e1"));
+        position.putPiece(BitboardPosition.pieceCode(BitboardPosition.WHITE, BitboardPosition.PAWN), square("e5"));
+        position.putPiece(BitboardPosition.pieceCode(BitboardPosition.BLACK, BitboardPosition.KING), square("e8"));
+        position.putPiece(BitboardPosition.pieceCode(BitboardPosition.BLACK, BitboardPosition.PAWN), square("d7"));
+        position.setSideToMove(BitboardPosition.BLACK);
+
+        position.makeMove(position.toMove(square("d7"), square("d5")));
+        assertEquals(square("d6"), position.getEpSquare());
+
+        final int capture = position.toMove(square("e5"), square("d6"));
+        assertEquals(Moves.EN_PASSANT, Moves.flag(capture));
+        position.makeMove(capture);
+        assertEquals(0L, position.getPieces(BitboardPosition.BLACK, BitboardPosition.PAWN));
+
+        position.unmakeMove(capture);
+        assertEquals(Bitboards.bit(square("d5")), position.getPieces(BitboardPosition.BLACK, BitboardPosition.PAWN));
+    }
+
+    @Test
+    public void testStore_WhenPackedFieldRoundTrip() throws Exception {
+        final BitboardPosition position = new BitboardPosition(startField(), BitboardPosition.WHITE);
+        position.makeMove(position.toMove(square("e2"), square("e4")));
+        final PackedField packed = new PackedField();
+
+        position.store(packed);
+        final BitboardPosition loaded = new BitboardPosition(packed, BitboardPosition.BLACK);
+
+        assertEquals(Bitboards.x(square("e4")), packed.getEnPassantFile());
+        assertEquals(square("e3"), loaded.getEpSquare());
+        assertEquals(BitboardPosition.ALL_CASTLING, loaded.getCastlingRights());
+        assertEquals(position.getKey(), loaded.getKey());
+        // Хэш упакованного поля, как и хэш партии, - без вертикали взятия на проходе
+        assertEquals(position.getKey(), packed.hash(ChessColor.Black) ^ Zobrist.enPassant(packed.getEnPassantFile()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadFen_WhenTwoWhiteKings() {
+        new BitboardPosition().loadFen("4k3/8/8/8/8/8/8/3KK3 w - - 0 1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadFen_WhenInvalidEnPassant() {
+        new BitboardPosition().loadFen("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e6 0 1");
+    }
+
+    @Test
+    public void testKey_WhenSamePositionReachedByMoves() throws Exception {
+        final ChessField field = startField();
+        final BitboardPosition position = new BitboardPosition(field, BitboardPosition.WHITE);
+        final long startKey = position.getKey();
+
+        // Ключ совпадает с хэшем партии, который считает ChessGame
+        assertEquals(Zobrist.hash(field, ChessColor.White, Zobrist.ALL_CASTLING), startKey);
+
+        // Кони уходят и возвращаются - позиция и ключ те же
+        position.makeMove(position.toMove(square("g1"), square("f3")));
+        position.makeMove(position.toMove(square("g8"), square("f6")));
+        position.makeMove(position.toMove(square("f3"), square("g1")));
+        assertTrue(position.getKey() != startKey);
+        position.makeMove(position.toMove(square("f6"), square("g8")));
+        assertEquals(startKey, position.getKey());
+
+        // После хода пешкой на 2 клетки ключ учитывает поле взятия на проходе
+        position.makeMove(position.toMove(square("e2"), square("e4")));
+        final BitboardPosition loaded = new BitboardPosition();
+        loaded.loadFen("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1");
+        assertEquals(loaded.getKey(), position.getKey());
+    }
+
+    private int randomLegalMove(final BitboardPosition position, final Random random) {
+        final int side = position.getSideToMove();
+        final int[] legal = new int[256];
+        int count = 0;
+
+        for (long figures = position.getColorPieces(side); figures != 0; figures &= figures - 1) {
+            final int from = Bitboards.firstSquare(figures);
+            for (long targets = position.pseudoLegalTargets(from); targets != 0; targets &= targets - 1) {
+                final int move = position.toMove(from, Bitboards.firstSquare(targets));
+                position.makeMove(move);
+                if (!position.isInCheck(side)) legal[count++] = move;
+                position.unmakeMove(move);
+            }
+        }
+
+        return count == 0 ? Moves.NO_MOVE : legal[random.nextInt(count)];
+    }
+
+    private void assertSamePosition(final BitboardPosition expected, final BitboardPosition actual) {
+        for (int color = BitboardPosition.WHITE; color <= BitboardPosition.BLACK; color++) {
+            for (int type = 0; type < BitboardPosition.PIECE_TYPES; type++) {
+                assertEquals(expected.getPieces(color, type), actual.getPieces(color, type));
+            }
+            assertEquals(expected.getColorPieces(color), actual.getColorPieces(color));
+        }
+        for (int square = 0; square < Bitboards.SQUARES; square++) {
+            assertEquals(expected.getPiece(square), actual.getPiece(square));
+        }
+        assertEquals(expected.getOccupied(), actual.getOccupied());
+        assertEquals(expected.getSideToMove(), actual.getSideToMove());
+        assertEquals(expected.getCastlingRights(), actual.getCastlingRights());
+        assertEquals(expected.getEpSquare(), actual.getEpSquare());
+        assertEquals(expected.getKey(), actual.getKey());
+    }
+
+    private ChessField startField() throws Exception {
+        final ChessFigure.Type[] backLine = {
+                ChessFigure.Type.Castle, ChessFigure.Type.Knight, ChessFigure.Type.Bishop, ChessFigure.Type.Queen,
+                ChessFigure.Type.King, ChessFigure.Type.Bishop, ChessFigure.Type.Knight, ChessFigure.Type.Castle};
+        final ChessField field = new ChessField(FIELD_SIZE);
+
+        for (int x = 0; x < FIELD_SIZE; x++) {
+            field.setFigure(new Point(x, 0), ChessFigure.of(ChessColor.Black, backLine[x]));
+            field.setFigure(new Point(x, 1), ChessFigure.of(ChessColor.Black, ChessFigure.Type.Pawn));
+            field.setFigure(new Point(x, 6), ChessFigure.of(ChessColor.White, ChessFigure.Type.Pawn));
+            field.setFigure(new Point(x, 7), ChessFigure.of(ChessColor.White, backLine[x]));
+        }
+        return field;
+    }
+
+    // Клетка в шахматной нотации: "e2" -> номер клетки
+    private int square(final String cell) {
+        return Bitboards.square(cell.charAt(0) - 'a', FIELD_SIZE - (cell.charAt(1) - '0'));
+    }
+
+}
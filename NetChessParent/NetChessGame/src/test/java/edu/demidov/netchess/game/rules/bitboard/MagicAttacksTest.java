@@ -0,0 +1,55 @@
+package edu.demidov.netchess.game.rules.bitboard;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MagicAttacksTest {
+
+    private static final int OCCUPANCIES_PER_SQUARE = 2_000;
+    private static final long MAX_BUILD_TIME_MILLIS = 500;
+
+    @Test
+    public void testAttacksEqualsSlowAttacks() throws Exception {
+        final Random random = new Random(1);
+
+        for (int square = 0; square < Bitboards.SQUARES; square++) {
+            for (int i = 0; i < OCCUPANCIES_PER_SQUARE; i++) {
+                // Разреженная и плотная занятость доски
+                final long occupied = (i % 2 == 0)
+                        ? random.nextLong() & random.nextLong() & random.nextLong()
+                        : random.nextLong();
+
+                assertEquals(MagicAttacks.slowRookAttacks(square, occupied),
+                        MagicAttacks.rookAttacks(square, occupied));
+                assertEquals(MagicAttacks.slowBishopAttacks(square, occupied),
+                        MagicAttacks.bishopAttacks(square, occupied));
+            }
+        }
+    }
+
+    @Test
+    public void testAttacksOnEmptyBoard() throws Exception {
+        // Ладья на a8 видит всю вертикаль a и горизонталь 8
+        final int a8 = Bitboards.square(0, 0);
+        assertEquals(14, Long.bitCount(Bitboards.rookAttacks(a8, 0L)));
+        assertEquals(7, Long.bitCount(Bitboards.bishopAttacks(a8, 0L)));
+
+        // Слон в центре видит 13 клеток
+        final int d4 = Bitboards.square(3, 4);
+        assertEquals(13, Long.bitCount(Bitboards.bishopAttacks(d4, 0L)));
+    }
+
+    @Test
+    public void testBuildTime() throws Exception {
+        final long buildTimeMillis = TimeUnit.NANOSECONDS.toMillis(MagicAttacks.getBuildTimeNanos());
+
+        assertTrue(String.format("Magic tables were built in %s ms", buildTimeMillis),
+                buildTimeMillis < MAX_BUILD_TIME_MILLIS);
+    }
+
+}
@@ -0,0 +1,49 @@
+package edu.demidov.netchess.game.rules.bitboard;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class PerftTest {
+
+    // Глубины подобраны так, чтобы на позицию приходилось не больше нескольких миллионов листьев
+    private static final long MAX_NODES = 5000000L;
+
+    private static ForkJoinPool pool;
+
+    @BeforeClass
+    public static void beforeClass() {
+        pool = new ForkJoinPool();
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testPerft_WhenStandardPositions() {
+        for (final Perft.StandardPosition standard : Perft.StandardPosition.values()) {
+            for (int depth = 1; depth <= standard.getMaxDepth() && standard.getNodes(depth) <= MAX_NODES; depth++) {
+                final BitboardPosition position = standard.createPosition();
+
+                assertEquals(standard + " depth=" + depth, standard.getNodes(depth), Perft.perft(position, depth, pool));
+            }
+        }
+    }
+
+    @Test
+    public void testPerft_WhenSingleThreaded() {
+        final BitboardPosition position = Perft.StandardPosition.KIWIPETE.createPosition();
+        final BitboardPosition start = new BitboardPosition(position);
+
+        assertEquals(Perft.StandardPosition.KIWIPETE.getNodes(3), Perft.perft(position, 3));
+        assertEquals(start.getOccupied(), position.getOccupied());
+        assertEquals(start.getCastlingRights(), position.getCastlingRights());
+    }
+
+}
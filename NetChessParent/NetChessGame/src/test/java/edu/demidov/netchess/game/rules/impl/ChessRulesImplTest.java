@@ -0,0 +1,211 @@
+package edu.demidov.netchess.game.rules.impl;
+
+import edu.demidov.netchess.common.model.exceptions.game.chess.GameMoveException;
+import edu.demidov.netchess.common.model.game.chess.ChessColor;
+import edu.demidov.netchess.common.model.game.chess.ChessField;
+import edu.demidov.netchess.common.model.game.chess.ChessFigure;
+import edu.demidov.netchess.common.model.game.chess.PackedField;
+import edu.demidov.netchess.common.model.game.chess.Zobrist;
+import edu.demidov.netchess.game.exceptions.NoKingOnFieldException;
+import edu.demidov.netchess.game.rules.bitboard.Bitboards;
+import edu.demidov.netchess.game.rules.bitboard.MoveGenerator;
+import edu.demidov.netchess.game.rules.bitboard.Moves;
+import edu.demidov.netchess.utils.Point;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChessRulesImplTest {
+
+    private static final int FIELD_SIZE = 8;
+    private static final String CHECK_WARNING = "Ход невозможен, так как приведет к шаху";
+
+    private final ChessRulesImpl rules = new ChessRulesImpl();
+    private ChessField field;
+
+    @Before
+    public void before() throws Exception {
+        field = new ChessField(FIELD_SIZE);
+    }
+
+    @Test
+    public void testIsMoveCorrect_WhenStartPosition() throws Exception {
+        setStartPosition();
+
+        assertTrue(rules.isMoveCorrect(ChessColor.White, field, point("e2"), point("e4")));
+        assertTrue(rules.isMoveCorrect(ChessColor.White, field, point("g1"), point("f3")));
+        assertTrue(rules.isMoveCorrect(ChessColor.Black, field, point("e7"), point("e5")));
+
+        assertMoveIncorrect(ChessColor.White, "e2", "e5");
+        assertMoveIncorrect(ChessColor.White, "f1", "c4");
+        assertMoveIncorrect(ChessColor.White, "a1", "a3");
+        assertMoveIncorrect(ChessColor.White, "e7", "e5");
+        assertMoveIncorrect(ChessColor.White, "e2", "e2");
+    }
+
+    @Test
+    public void testIsMoveCorrect_WhenPinnedFigure() throws Exception {
+        put("e1", ChessColor.White, ChessFigure.Type.King);
+        put("e2", ChessColor.White, ChessFigure.Type.Knight);
+        put("e8", ChessColor.Black, ChessFigure.Type.Castle);
+        put("a8", ChessColor.Black, ChessFigure.Type.King);
+
+        try {
+            rules.isMoveCorrect(ChessColor.White, field, point("e2"), point("c3"));
+            fail();
+        } catch (final GameMoveException ex) {
+            assertEquals(CHECK_WARNING, ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testIsMoveCorrect_WhenCastling() throws Exception {
+        put("e1", ChessColor.White, ChessFigure.Type.King);
+        put("h1", ChessColor.White, ChessFigure.Type.Castle);
+        put("a1", ChessColor.White, ChessFigure.Type.Castle);
+        put("e8", ChessColor.Black, ChessFigure.Type.King);
+        put("d8", ChessColor.Black, ChessFigure.Type.Castle);
+
+        // Короткая рокировка возможна, длинная - нет: поле d1 атаковано
+        assertTrue(rules.isMoveCorrect(ChessColor.White, field, point("e1"), point("g1")));
+        assertMoveIncorrect(ChessColor.White, "e1", "c1");
+
+        // Ладья уже ходила
+        field.setCastlingRights(field.getCastlingRights() & ~Zobrist.WHITE_KING_SIDE);
+        assertMoveIncorrect(ChessColor.White, "e1", "g1");
+    }
+
+    @Test
+    public void testIsCheckForPlayer() throws Exception {
+        put("e1", ChessColor.White, ChessFigure.Type.King);
+        put("b4", ChessColor.Black, ChessFigure.Type.Bishop);
+        put("e8", ChessColor.Black, ChessFigure.Type.King);
+
+        assertTrue(rules.isCheckForPlayer(ChessColor.White, field));
+        assertFalse(rules.isCheckForPlayer(ChessColor.Black, field));
+
+        put("d2", ChessColor.White, ChessFigure.Type.Pawn);
+        assertFalse(rules.isCheckForPlayer(ChessColor.White, field));
+    }
+
+    @Test
+    public void testIsNoMoreMoves_WhenMate() throws Exception {
+        setStartPosition();
+        move("f2", "f3");
+        move("e7", "e5");
+        move("g2", "g4");
+        move("d8", "h4");
+
+        assertTrue(rules.isCheckForPlayer(ChessColor.White, field));
+        assertTrue(rules.isNoMoreMoves(ChessColor.White, field));
+        assertFalse(rules.isNoMoreMoves(ChessColor.Black, field));
+    }
+
+    @Test
+    public void testIsNoMoreMoves_WhenStalemate() throws Exception {
+        put("a8", ChessColor.Black, ChessFigure.Type.King);
+        put("b6", ChessColor.White, ChessFigure.Type.Queen);
+        put("h1", ChessColor.White, ChessFigure.Type.King);
+
+        assertFalse(rules.isCheckForPlayer(ChessColor.Black, field));
+        assertTrue(rules.isNoMoreMoves(ChessColor.Black, field));
+    }
+
+    @Test
+    public void testGetLegalMoves_WhenStartPosition() throws Exception {
+        setStartPosition();
+        final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+        assertEquals(20, rules.getLegalMoves(ChessColor.White, field, moves));
+        assertEquals(20, rules.getLegalMoves(ChessColor.Black, field, moves));
+    }
+
+    @Test
+    public void testGetLegalMoves_WhenDoubleCheck() throws Exception {
+        put("e1", ChessColor.White, ChessFigure.Type.King);
+        put("a1", ChessColor.White, ChessFigure.Type.Queen);
+        put("e8", ChessColor.Black, ChessFigure.Type.Castle);
+        put("g3", ChessColor.Black, ChessFigure.Type.Bishop);
+        put("a8", ChessColor.Black, ChessFigure.Type.King);
+        final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+        // Только ходы короля: ферзь не может ни закрыться от двух фигур, ни взять обе
+        final int count = rules.getLegalMoves(ChessColor.White, field, moves);
+        assertEquals(3, count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(Bitboards.square(4, 7), Moves.from(moves[i]));
+        }
+    }
+
+    @Test
+    public void testGetLegalMoves_WhenPackedField() throws Exception {
+        put("e1", ChessColor.White, ChessFigure.Type.King);
+        put("h1", ChessColor.White, ChessFigure.Type.Castle);
+        put("a1", ChessColor.White, ChessFigure.Type.Castle);
+        put("e8", ChessColor.Black, ChessFigure.Type.King);
+        final PackedField packed = new PackedField();
+        packed.pack(field, Zobrist.WHITE_KING_SIDE);
+        final int[] fieldMoves = new int[MoveGenerator.MAX_MOVES];
+        final int[] packedMoves = new int[MoveGenerator.MAX_MOVES];
+
+        // На ChessField разрешены обе рокировки, на упакованном поле - только короткая
+        final int fieldCount = rules.getLegalMoves(ChessColor.White, field, fieldMoves);
+        final int packedCount = rules.getLegalMoves(ChessColor.White, packed, packedMoves);
+
+        assertEquals(fieldCount - 1, packedCount);
+        assertTrue(rules.isMoveCorrect(ChessColor.White, packed, point("e1"), point("g1")));
+        assertFalse(rules.isCheckForPlayer(ChessColor.Black, packed));
+        assertFalse(rules.isNoMoreMoves(ChessColor.Black, packed));
+    }
+
+    @Test(expected = NoKingOnFieldException.class)
+    public void testIsCheckForPlayer_WhenNoKing() throws Exception {
+        put("e1", ChessColor.White, ChessFigure.Type.King);
+
+        rules.isCheckForPlayer(ChessColor.Black, field);
+    }
+
+    private void assertMoveIncorrect(final ChessColor color, final String from, final String to) throws Exception {
+        try {
+            rules.isMoveCorrect(color, field, point(from), point(to));
+            fail(String.format("Move %s-%s must be incorrect", from, to));
+        } catch (final GameMoveException ex) {
+        }
+    }
+
+    private void setStartPosition() throws Exception {
+        final ChessFigure.Type[] backLine = {
+                ChessFigure.Type.Castle, ChessFigure.Type.Knight, ChessFigure.Type.Bishop, ChessFigure.Type.Queen,
+                ChessFigure.Type.King, ChessFigure.Type.Bishop, ChessFigure.Type.Knight, ChessFigure.Type.Castle};
+
+        for (int x = 0; x < FIELD_SIZE; x++) {
+            field.setFigure(new Point(x, 0), ChessFigure.of(ChessColor.Black, backLine[x]));
+            field.setFigure(new Point(x, 1), ChessFigure.of(ChessColor.Black, ChessFigure.Type.Pawn));
+            field.setFigure(new Point(x, 6), ChessFigure.of(ChessColor.White, ChessFigure.Type.Pawn));
+            field.setFigure(new Point(x, 7), ChessFigure.of(ChessColor.White, backLine[x]));
+        }
+    }
+
+    private void move(final String from, final String to) throws Exception {
+        final ChessFigure figure = field.getFigure(point(from));
+        field.setFigure(point(from), null);
+        field.setFigure(point(to), figure);
+        field.setCastlingRights(field.getCastlingRights()
+                & Zobrist.castlingKeep(point(from).getX(), point(from).getY())
+                & Zobrist.castlingKeep(point(to).getX(), point(to).getY()));
+    }
+
+    private void put(final String cell, final ChessColor color, final ChessFigure.Type type) throws Exception {
+        field.setFigure(point(cell), ChessFigure.of(color, type));
+    }
+
+    // Клетка в шахматной нотации: "e2" -> (4, 6)
+    private Point point(final String cell) {
+        return new Point(cell.charAt(0) - 'a', FIELD_SIZE - (cell.charAt(1) - '0'));
+    }
+
+}
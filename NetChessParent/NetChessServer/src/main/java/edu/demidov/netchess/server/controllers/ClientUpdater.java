@@ -1,18 +1,22 @@
 package edu.demidov.netchess.server.controllers;
 
 import edu.demidov.netchess.common.model.game.chess.ChessGame;
+import edu.demidov.netchess.common.model.game.chess.ChessGameSnapshot;
+import edu.demidov.netchess.common.model.game.chess.LegalMoves;
 import edu.demidov.netchess.common.model.network.NetworkMessage;
+import edu.demidov.netchess.common.model.network.payload.GamePayload;
+import edu.demidov.netchess.common.model.network.payload.MultiplePayload;
+import edu.demidov.netchess.common.model.network.payload.UserPayload;
+import edu.demidov.netchess.common.model.network.payload.UsersPayload;
 import edu.demidov.netchess.common.model.users.UserProfile;
-import edu.demidov.netchess.server.model.Options;
 import edu.demidov.netchess.server.model.game.ChessGames;
+import edu.demidov.netchess.server.model.game.EngineOpponent;
 import edu.demidov.netchess.server.model.invitations.Invitations;
 import edu.demidov.netchess.server.model.network.ConnectionManager;
 import edu.demidov.netchess.server.model.users.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Calendar;
-import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -24,9 +28,9 @@ public class ClientUpdater {
     private static final Logger log = LoggerFactory.getLogger(ClientUpdater.class);
     private static ClientUpdater instance;
     private final ConnectionManager connectionManager = ConnectionManager.getInstance();
+    private final EngineOpponent engineOpponent = EngineOpponent.getInstance();
     private Invitations inviteManager;
     private ChessGames chessGames;
-    private Date nextLaunch = Calendar.getInstance().getTime();
 
     private ClientUpdater() {
     }
@@ -48,7 +52,7 @@ public class ClientUpdater {
 
     /**
      * Событие вызывается, когда произошло какое-либо изменение игры.
-     * Метод рассылает обновленный объект игры игрокам.
+     * Метод рассылает игрокам последний снимок игры.
      *
      * @param game
      */
@@ -56,31 +60,22 @@ public class ClientUpdater {
         log.debug("gameChanged game={}", game);
 
         // Отправляет игру всем игрокам
-        final NetworkMessage gameMsg = new NetworkMessage(NetworkMessage.Type.SendCurrentGame);
-        gameMsg.put(NetworkMessage.CURRENT_GAME, game);
-
+        final ChessGame snapshot = snapshotOf(game);
         for (final User playingUser : chessGames.getPlayingUsers(game)) {
-            connectionManager.sendToUser(playingUser, gameMsg);
+            connectionManager.sendToUser(playingUser, currentGameMsg(snapshot, playingUser));
         }
     }
 
     /**
      * Периодически рассылает онлайн-пользователям обновления информации.
-     * Класс ClientUpdater сам учитывает время, метод можно вызывать кажду игровую итерацию.
+     * Вызывается планировщиком сервера раз в Options.USERS_INFO_SEND_UPDATES_SECONDS секунд.
      */
     public void checkSendingUpdates() {
-        if (nextLaunch.before(Calendar.getInstance().getTime())) {
-            log.trace("manageSendInfoForOnlineUsers starts process by time");
-
-            // Устанавливаем время следующей рассылки
-            final Calendar calendar = Calendar.getInstance();
-            calendar.add(Calendar.SECOND, Options.USERS_INFO_SEND_UPDATES_SECONDS);
-            nextLaunch = calendar.getTime();
+        log.trace("checkSendingUpdates");
 
-            //  Рассылаем каждому пользователю инфу
-            for (final User user : connectionManager.getOnlineUsers())
-                sendAllInfoToUser(user, false);
-        }
+        //  Рассылаем каждому пользователю инфу
+        for (final User user : connectionManager.getOnlineUsers())
+            sendAllInfoToUser(user, false);
     }
 
     /**
@@ -100,8 +95,8 @@ public class ClientUpdater {
         if (isSendCurrentGame) messages.add(getCurrentGameMsg(user));
 
         // Упаковываем сообщения в одно
-        final NetworkMessage multiMsg = new NetworkMessage(NetworkMessage.Type.MultipleMessage);
-        multiMsg.put(NetworkMessage.MULTI_MESSAGES, messages);
+        final NetworkMessage multiMsg
+                = new NetworkMessage(NetworkMessage.Type.MultipleMessage, new MultiplePayload(messages));
         connectionManager.sendToUser(user, multiMsg);
     }
 
@@ -113,8 +108,9 @@ public class ClientUpdater {
      */
     public NetworkMessage getOnlineUsersMsg(final User forUser) {
         log.trace("getGetOnlineUsersMsg sender={}", forUser);
-        // Получаем всех онлайн пользователей
-        final Set<User> onlineUsers = connectionManager.getOnlineUsers();
+        // Получаем всех онлайн пользователей. Бот всегда в сети - его тоже можно пригласить.
+        final Set<User> onlineUsers = new HashSet<>(connectionManager.getOnlineUsers());
+        onlineUsers.add(engineOpponent.getUser());
 
         // Переводим объекты User в UserProfile. Также нет смысла отправлять себя.
         final Set<UserProfile> onlineUserProfiles = new HashSet<>();
@@ -129,9 +125,7 @@ public class ClientUpdater {
         }
 
         // Отправляем сообщение на клиент
-        final NetworkMessage netMsg = new NetworkMessage(NetworkMessage.Type.SendOnlineUsers);
-        netMsg.put(NetworkMessage.USERS, onlineUserProfiles);
-        return netMsg;
+        return new NetworkMessage(NetworkMessage.Type.SendOnlineUsers, new UsersPayload(onlineUserProfiles));
     }
 
     /**
@@ -155,9 +149,7 @@ public class ClientUpdater {
         }
 
         // Отправляем сообщение на клиент
-        final NetworkMessage response = new NetworkMessage(NetworkMessage.Type.SendIncomingInvites);
-        response.put(NetworkMessage.INVITES, userProfilesInvites);
-        return response;
+        return new NetworkMessage(NetworkMessage.Type.SendIncomingInvites, new UsersPayload(userProfilesInvites));
     }
 
     /**
@@ -169,18 +161,37 @@ public class ClientUpdater {
     public NetworkMessage getCurrentGameMsg(final User user) {
         log.trace("getCurrentGameMsg user={}", user);
         final ChessGame game = chessGames.getCurrentGame(user);
+        return currentGameMsg(snapshotOf(game), user);
+    }
+
+    /* Партия для отправки - общая копия из последнего снимка, без нового копирования на каждое сообщение.
+    Сообщение сериализуется уже в потоке Netty, а живую партию в это время меняет поток обработки сообщений.
+    Снимки публикует только ChessLogicImpl; если снимка ещё нет, отправляется копия партии без публикации.
+    */
+    private static ChessGame snapshotOf(final ChessGame game) {
+        if (game == null) return null;
+        final ChessGameSnapshot snapshot = game.getSnapshot();
+        return snapshot != null ? snapshot.getGame() : new ChessGame(game);
+    }
+
+    /* Создаёт сообщение с партией.
+    Допустимые ходы получает только игрок, чей сейчас ход, - он может проверить ход, не отправляя его на сервер.
+    */
+    private NetworkMessage currentGameMsg(final ChessGame game, final User user) {
+        final LegalMoves legalMoves = isUserToMove(game, user) ? game.getLegalMoves() : null;
+        return new NetworkMessage(NetworkMessage.Type.SendCurrentGame, new GamePayload(game, legalMoves));
+    }
 
-        final NetworkMessage gameMsg = new NetworkMessage(NetworkMessage.Type.SendCurrentGame);
-        gameMsg.put(NetworkMessage.CURRENT_GAME, game);
-        return gameMsg;
+    // Возвращает true, если в партии сейчас ход пользователя
+    private boolean isUserToMove(final ChessGame game, final User user) {
+        return game != null && !game.isFinished() && game.getCurrentPlayer() != null
+                && user.getName().equals(game.getCurrentPlayer().getName());
     }
 
     // Возвращает сообщение - профиль пользователя
     private NetworkMessage getUserProfileMsg(final User user) {
         log.trace("getUserProfileMsg user={}", user);
-        final NetworkMessage msgUserProfile = new NetworkMessage(NetworkMessage.Type.LoginUserSuccess);
-        msgUserProfile.put(NetworkMessage.USER, userProfile(user));
-        return msgUserProfile;
+        return new NetworkMessage(NetworkMessage.Type.LoginUserSuccess, new UserPayload(userProfile(user)));
     }
 
     // Создаёт объект UserProfile из объекта User
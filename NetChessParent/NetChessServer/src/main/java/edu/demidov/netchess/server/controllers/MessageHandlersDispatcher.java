@@ -2,6 +2,8 @@ package edu.demidov.netchess.server.controllers;
 
 import edu.demidov.netchess.common.model.exceptions.IllegalRequestParameter;
 import edu.demidov.netchess.common.model.network.NetworkMessage;
+import edu.demidov.netchess.common.model.network.payload.Payload;
+import edu.demidov.netchess.common.model.network.payload.TextPayload;
 import edu.demidov.netchess.server.controllers.handlers.ChatSendHandler;
 import edu.demidov.netchess.server.controllers.handlers.ConnectionClosedHandler;
 import edu.demidov.netchess.server.controllers.handlers.ConnectionOpenedHandler;
@@ -30,6 +32,7 @@ import java.util.Map;
 
 /**
  * Класс отвечает за обработку сообщений ServerNetworkMessage:
+ * - выполняет внутренние задачи сервера (ServerNetworkMessage с задачей);
  * - проверяет авторизацию канала;
  * - подбирает подходящий обработчик из хэш-таблицы (каждому типу должен соответствовать свой обраточик).
  */
@@ -40,7 +43,7 @@ public class MessageHandlersDispatcher {
     private static MessageHandlersDispatcher instance;
     private final ConnectionManager connectionManager = ConnectionManager.getInstance();
     // Таблица соответствий типов сообщений (NetworkMessage) и обработчиков для них
-    private final Map<NetworkMessage.Type, NetworkMessageHandler> HANDLERS;
+    private final Map<NetworkMessage.Type, NetworkMessageHandler<?>> HANDLERS;
     // Типы сообщений, для которых не надо проверять атворизацию. Для них sender будет null в ServerNetworkMessage.
     private final List<NetworkMessage.Type> EXCLUDED_CHECK_AUTH;
 
@@ -82,6 +85,13 @@ public class MessageHandlersDispatcher {
      */
     public void process(final ServerNetworkMessage snm) {
         log.trace("process snm={}", snm);
+        // Внутренняя задача сервера: не имеет типа сообщения и канала, выполняется без проверок
+        final Runnable task = snm.getTask();
+        if (task != null) {
+            task.run();
+            return;
+        }
+
         try {
             // Вызываем проверку авторизации для канала
             checkAuthConnection(snm);
@@ -89,13 +99,13 @@ public class MessageHandlersDispatcher {
             dispatchMessageToHandler(snm);
         } catch (final AccessConnectedUserException ex) {
             // Отправляем ошибку
-            final NetworkMessage errMsg = new NetworkMessage(NetworkMessage.Type.AuthError);
-            errMsg.put(NetworkMessage.TEXT, ex.getLocalizedMessage());
+            final NetworkMessage errMsg
+                    = new NetworkMessage(NetworkMessage.Type.AuthError, new TextPayload(ex.getLocalizedMessage()));
             connectionManager.sendAndClose(snm.getChannel(), errMsg);
         } catch (final IllegalRequestParameter ex) {
             log.trace("process: illegal request parameter from client: {}, snm={}", ex.getLocalizedMessage(), snm);
-            final NetworkMessage errMsg = new NetworkMessage(NetworkMessage.Type.SomeError);
-            errMsg.put(NetworkMessage.TEXT, ex.getLocalizedMessage());
+            final NetworkMessage errMsg
+                    = new NetworkMessage(NetworkMessage.Type.SomeError, new TextPayload(ex.getLocalizedMessage()));
             connectionManager.sendAndClose(snm.getChannel(), errMsg);
         }
     }
@@ -120,14 +130,20 @@ public class MessageHandlersDispatcher {
         snm.setSender(connectionManager.accessConnectedUser(snm.getChannel()));
     }
 
-    // Ищет и вызывает нужный обработчик для сообщения
+    /* Ищет и вызывает нужный обработчик для сообщения.
+    Данные сообщения проверяются один раз здесь: обработчик получает их уже нужного класса.
+    */
+    @SuppressWarnings("unchecked")
     private void dispatchMessageToHandler(final ServerNetworkMessage snm)
             throws IllegalRequestParameter {
         log.trace("dispatchMessage snm={}", snm);
-        final NetworkMessage.Type msgType = snm.getNetMsg().getType();
+        final NetworkMessage netMsg = snm.getNetMsg();
+        final NetworkMessage.Type msgType = netMsg.getType();
 
-        if (HANDLERS.containsKey(msgType)) {
-            HANDLERS.get(msgType).process(snm);
+        final NetworkMessageHandler<Payload> handler = (NetworkMessageHandler<Payload>) HANDLERS.get(msgType);
+        if (handler != null) {
+            netMsg.checkPayload();
+            handler.process(snm, netMsg.getPayload());
         } else {
             log.error(fatal, "process: can't find handler for '{}' NetworkMessage.Type"
                     + " (in the map of handlers); snm={}", msgType, snm);
@@ -6,18 +6,26 @@ import edu.demidov.netchess.game.impl.ChessLogicImpl;
 import edu.demidov.netchess.game.rules.impl.ChessRulesImpl;
 import edu.demidov.netchess.server.model.Options;
 import edu.demidov.netchess.server.model.game.ChessGames;
+import edu.demidov.netchess.server.model.game.EngineOpponent;
+import edu.demidov.netchess.server.model.game.PostGameAnalysis;
 import edu.demidov.netchess.server.model.invitations.Invitations;
 import edu.demidov.netchess.server.model.network.ConnectionManager;
 import edu.demidov.netchess.server.model.network.ServerNetworkMessage;
 import edu.demidov.netchess.server.model.network.netty.NettyServer;
+import edu.demidov.netchess.server.model.users.Authenticator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Marker;
 import org.slf4j.MarkerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 public class NetChessServer {
 
-    private static final long SLEEP = 1000L;
     private final static Logger log = LoggerFactory.getLogger(NetChessServer.class);
     private final static Marker fatal = MarkerFactory.getMarker("FATAL");
     private static NetChessServer instance;
@@ -27,7 +35,11 @@ public class NetChessServer {
     private ConnectionManager connectionManager;
     private Invitations inviteManager;
     private ChessGames chessGames;
+    private EngineOpponent engineOpponent;
+    private PostGameAnalysis postGameAnalysis;
+    private Authenticator authenticator;
     private ClientUpdater clientUpdater;
+    private ScheduledExecutorService scheduler;
 
     private NetChessServer() {
         configureObjects();
@@ -59,38 +71,77 @@ public class NetChessServer {
         log.info("start");
 
         nettyServer.run();
+        schedulePeriodicTasks();
 
         // Запускаем цикл по обработке сообщений
         log.info("ready");
         boolean isActive = true;
+        final List<ServerNetworkMessage> batch = new ArrayList<>(Options.MESSAGE_BATCH_SIZE);
         while (isActive) {
-            // Обрабатываем входящие сообщения с клиента и от NettyServer
-            while (messageQueue.hasMessages()) {
-                final ServerNetworkMessage snm = messageQueue.takeMessage();
+            // Ждём входящее сообщение с клиента, от NettyServer или от планировщика и забираем заодно накопившиеся
+            batch.add(messageQueue.takeMessage());
+            messageQueue.drainTo(batch, Options.MESSAGE_BATCH_SIZE - 1);
+
+            for (final ServerNetworkMessage snm : batch) {
                 log.trace("from messageQueue taken {}", snm);
                 handlersDispatcher.process(snm);    // Обрабатывает входящее сообщение
             }
-            log.trace("messageQueue is empty");
-
-            connectionManager.manageConnections();
-            inviteManager.checkTTLs();          // Вызываем обработчик временем жизни приглашений
-            chessGames.manageGamesTime();      // Вызываем обработчик времени партий
-            clientUpdater.checkSendingUpdates();
-
-            // Усыпляем поток
-            Thread.sleep(SLEEP);
+            batch.clear();
         }
 
-        // Закрываем NettyServer
+        // Останавливаем планировщик, потоки бота, разбора партий и проверки паролей, закрываем NettyServer
+        scheduler.shutdownNow();
+        engineOpponent.shutdown();
+        postGameAnalysis.shutdown();
+        authenticator.shutdown();
         nettyServer.stop();
     }
 
+    /**
+     * Запускает периодические задачи сервера.
+     * Планировщик лишь кладёт задачу в очередь сообщений, а выполняется она в потоке обработки сообщений -
+     * так объекты сервера по-прежнему используются только из одного потока.
+     */
+    private void schedulePeriodicTasks() {
+        log.info("schedulePeriodicTasks");
+
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        schedule(connectionManager::manageConnections, Options.CONNECTIONS_FREQ_MANAGE_SECONDS, TimeUnit.SECONDS);
+        schedule(inviteManager::checkTTLs, inviteManager.getInvitationsFreqManageMinutes(), TimeUnit.MINUTES);
+        schedule(chessGames::manageGamesTime, Options.GAMES_FREQ_MANAGE_SECONDES, TimeUnit.SECONDS);
+        schedule(engineOpponent::checkGames, Options.GAMES_FREQ_MANAGE_SECONDES, TimeUnit.SECONDS);
+        schedule(clientUpdater::checkSendingUpdates, Options.USERS_INFO_SEND_UPDATES_SECONDS, TimeUnit.SECONDS);
+        schedule(postGameAnalysis::logMetrics, Options.ANALYSIS_METRICS_LOG_MINUTES, TimeUnit.MINUTES);
+        schedule(this::logQueueMetrics, Options.MESSAGE_QUEUE_METRICS_LOG_MINUTES, TimeUnit.MINUTES);
+    }
+
+    // Выводит в лог глубину очереди сообщений и очереди проверки паролей
+    private void logQueueMetrics() {
+        log.info("logQueueMetrics depth={}, maxDepth={}, capacity={}, rejected={}, authDepth={}", messageQueue.size(),
+                messageQueue.getMaxDepth(), messageQueue.getCapacity(), messageQueue.getRejected(),
+                authenticator.getQueueDepth());
+    }
+
+    // Раз в period кладёт задачу task в служебную очередь сообщений
+    private void schedule(final Runnable task, final long period, final TimeUnit unit) {
+        scheduler.scheduleAtFixedRate(
+                () -> messageQueue.putServiceMessage(new ServerNetworkMessage(task)), 0, period, unit);
+    }
+
     private void configureObjects() {
         log.info("configureObjects");
 
+        // Очередь сообщений нужна остальным объектам сервера - настраиваем её первой
+        MessageQueue.<ServerNetworkMessage>configure(Options.MESSAGE_QUEUE_CAPACITY,
+                Options.MESSAGE_QUEUE_FULL_POLICY, ServerNetworkMessage::isDroppable);
+
         chessGames = ChessGames.getInstance();
+        engineOpponent = EngineOpponent.getInstance();
+        postGameAnalysis = PostGameAnalysis.getInstance();
+        authenticator = Authenticator.getInstance();
         final ChessLogic gameLogic = ChessLogicImpl.getInstance();
         gameLogic.setChessRules(new ChessRulesImpl());
+        gameLogic.setTablebases(engineOpponent.getTablebases());
         gameLogic.addListener(chessGames);
 
         inviteManager = new Invitations(
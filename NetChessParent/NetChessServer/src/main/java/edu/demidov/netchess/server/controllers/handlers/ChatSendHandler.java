@@ -1,13 +1,13 @@
 package edu.demidov.netchess.server.controllers.handlers;
 
 import edu.demidov.netchess.common.model.exceptions.IllegalRequestParameter;
-import edu.demidov.netchess.common.model.network.NetworkMessage;
+import edu.demidov.netchess.common.model.network.payload.TextPayload;
 import edu.demidov.netchess.server.model.BroadcastChat;
 import edu.demidov.netchess.server.model.network.ServerNetworkMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class ChatSendHandler implements NetworkMessageHandler {
+public class ChatSendHandler implements NetworkMessageHandler<TextPayload> {
 
     private final static Logger log = LoggerFactory.getLogger(ChatSendHandler.class);
     private static ChatSendHandler instance;
@@ -27,14 +27,15 @@ public class ChatSendHandler implements NetworkMessageHandler {
      * Принимает запрос об отправке сообщения в чат
      *
      * @param snm
+     * @param payload
      * @throws IllegalRequestParameter
      */
     @Override
-    public void process(final ServerNetworkMessage snm) throws IllegalRequestParameter {
+    public void process(final ServerNetworkMessage snm, final TextPayload payload) throws IllegalRequestParameter {
         log.trace("process snm={}", snm);
 
         // Получаем текст из сообщения
-        final String receivedMessage = snm.getNetMsg().getParam(NetworkMessage.CHAT_TEXT, String.class);
+        final String receivedMessage = payload.getText();
 
         // Рассылаем сообщение всем пользователям on-line
         chat.userChatted(snm.getSender(), receivedMessage);
@@ -1,12 +1,13 @@
 package edu.demidov.netchess.server.controllers.handlers;
 
 import edu.demidov.netchess.common.model.exceptions.IllegalRequestParameter;
+import edu.demidov.netchess.common.model.network.payload.Payload;
 import edu.demidov.netchess.server.model.network.ConnectionManager;
 import edu.demidov.netchess.server.model.network.ServerNetworkMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class ConnectionClosedHandler implements NetworkMessageHandler {
+public class ConnectionClosedHandler implements NetworkMessageHandler<Payload> {
 
     private final static Logger log = LoggerFactory.getLogger(ConnectionClosedHandler.class);
     private static ConnectionClosedHandler instance;
@@ -27,10 +28,11 @@ public class ConnectionClosedHandler implements NetworkMessageHandler {
      * Вызывает соответствующее событие у экзмепляра ConnectionManager.
      *
      * @param snm
+     * @param payload
      * @throws IllegalRequestParameter
      */
     @Override
-    public void process(final ServerNetworkMessage snm) throws IllegalRequestParameter {
+    public void process(final ServerNetworkMessage snm, final Payload payload) throws IllegalRequestParameter {
         log.trace("process snm={}", snm);
         connectionManager.connectionClosed(snm.getChannel());
     }
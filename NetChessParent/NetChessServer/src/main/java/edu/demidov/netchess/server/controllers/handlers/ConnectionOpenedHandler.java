@@ -2,13 +2,15 @@ package edu.demidov.netchess.server.controllers.handlers;
 
 import edu.demidov.netchess.common.model.exceptions.IllegalRequestParameter;
 import edu.demidov.netchess.common.model.network.NetworkMessage;
+import edu.demidov.netchess.common.model.network.payload.Payload;
+import edu.demidov.netchess.common.model.network.payload.TextPayload;
 import edu.demidov.netchess.server.model.exceptions.IPAddressIsBanException;
 import edu.demidov.netchess.server.model.network.ConnectionManager;
 import edu.demidov.netchess.server.model.network.ServerNetworkMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class ConnectionOpenedHandler implements NetworkMessageHandler {
+public class ConnectionOpenedHandler implements NetworkMessageHandler<Payload> {
 
     private final static Logger log = LoggerFactory.getLogger(ConnectionOpenedHandler.class);
     private static ConnectionOpenedHandler instance;
@@ -29,18 +31,18 @@ public class ConnectionOpenedHandler implements NetworkMessageHandler {
      * Вызывает соответствующее событие у экзмепляра ConnectionManager.
      *
      * @param snm
+     * @param payload
      * @throws IllegalRequestParameter
      */
     @Override
-    public void process(final ServerNetworkMessage snm) throws IllegalRequestParameter {
+    public void process(final ServerNetworkMessage snm, final Payload payload) throws IllegalRequestParameter {
         log.trace("process snm={}", snm);
         try {
             connectionManager.connectionOpened(snm.getChannel(), snm.getTimeReceived());
         } catch (final IPAddressIsBanException ex) {
             log.trace("process: {}, snm={}", ex.getLocalizedMessage(), snm);
             // Отправляем ошибку
-            final NetworkMessage errMsg = new NetworkMessage(NetworkMessage.Type.SomeError);
-            errMsg.put(NetworkMessage.TEXT, ex.getLocalizedMessage());
+            final NetworkMessage errMsg = new NetworkMessage(NetworkMessage.Type.SomeError, new TextPayload(ex.getLocalizedMessage()));
             connectionManager.sendAndClose(snm.getChannel(), errMsg);
         }
     }
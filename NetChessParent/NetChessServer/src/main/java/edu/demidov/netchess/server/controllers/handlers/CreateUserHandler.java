@@ -2,10 +2,14 @@ package edu.demidov.netchess.server.controllers.handlers;
 
 import edu.demidov.netchess.common.model.exceptions.IllegalRequestParameter;
 import edu.demidov.netchess.common.model.network.NetworkMessage;
+import edu.demidov.netchess.common.model.network.payload.CredentialsPayload;
+import edu.demidov.netchess.common.model.network.payload.TextPayload;
 import edu.demidov.netchess.server.controllers.ClientUpdater;
 import edu.demidov.netchess.server.model.exceptions.UserCreationException;
 import edu.demidov.netchess.server.model.network.ConnectionManager;
 import edu.demidov.netchess.server.model.network.ServerNetworkMessage;
+import edu.demidov.netchess.server.model.users.AccountManager;
+import edu.demidov.netchess.server.model.users.Authenticator;
 import edu.demidov.netchess.server.model.users.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,15 +17,19 @@ import org.slf4j.Marker;
 import org.slf4j.MarkerFactory;
 
 import java.io.FileNotFoundException;
-import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.RejectedExecutionException;
 
-public class CreateUserHandler implements NetworkMessageHandler {
+public class CreateUserHandler implements NetworkMessageHandler<CredentialsPayload> {
 
+    private static final String SERVER_BUSY = "Сервер занят, повторите регистрацию позже";
+    private static final String AUTH_FAILURE = "Не удалось обработать пароль, повторите регистрацию позже";
     private final static Logger log = LoggerFactory.getLogger(CreateUserHandler.class);
     private final static Marker fatal = MarkerFactory.getMarker("FATAL");
     private static CreateUserHandler instance;
     private final ClientUpdater clientUpdater = ClientUpdater.getInstance();
     private final ConnectionManager connectionManager = ConnectionManager.getInstance();
+    private final AccountManager accountManager = AccountManager.getInstance();
+    private final Authenticator authenticator = Authenticator.getInstance();
 
     private CreateUserHandler() {
     }
@@ -34,34 +42,61 @@ public class CreateUserHandler implements NetworkMessageHandler {
     }
 
     /**
-     * Принимает запрос о регистрации нового аккаунта
+     * Принимает запрос о регистрации нового аккаунта.
+     * Проверяет логин, хэш пароля для хранения считается в потоках Authenticator;
+     * аккаунт создаётся в completeCreation()
      *
      * @param snm
+     * @param payload
      * @throws IllegalRequestParameter
      */
     @Override
-    public void process(final ServerNetworkMessage snm) throws IllegalRequestParameter {
+    public void process(final ServerNetworkMessage snm, final CredentialsPayload payload) throws IllegalRequestParameter {
         log.trace("process snm={}", snm);
         try {
             // Получаем логин, пароль из сообщения
-            final NetworkMessage netMsg = snm.getNetMsg();
-            final String name = netMsg.getParam(NetworkMessage.NAME, String.class);
-            final String passwordHash = netMsg.getParam(NetworkMessage.PASSWORD_HASH, String.class);
+            final String name = payload.getName();
+            final String passwordHash = payload.getPasswordHash();
 
-            final User user = connectionManager.createUser(name, passwordHash, snm.getChannel());
+            accountManager.checkNewUser(name);
+            authenticator.hashPassword(passwordHash,
+                    storedHash -> completeCreation(snm, name, storedHash), () -> failCreation(snm));
+        } catch (final UserCreationException ex) {
+            sendError(snm, ex.getLocalizedMessage());
+        } catch (final RejectedExecutionException ex) {
+            log.warn("process: authentication queue is full, snm={}", snm);
+            sendError(snm, SERVER_BUSY);
+        }
+    }
+
+    // Вызывается в потоке обработки сообщений, когда хэш пароля посчитан
+    private void completeCreation(final ServerNetworkMessage snm, final String name, final String storedHash) {
+        log.trace("completeCreation snm={}, name={}", snm, name);
+        // Пока считался хэш, клиент мог отключиться
+        if (!snm.getChannel().isActive()) return;
+
+        try {
+            final User user = connectionManager.createUser(name, storedHash, snm.getChannel());
             // Отправляем пользователю информацию о нём
             clientUpdater.sendAllInfoToUser(user, true);
         } catch (final UserCreationException ex) {
-            log.trace("{}, snm={}", ex.getLocalizedMessage(), snm);
-            // Отправляем ошибку
-            final NetworkMessage errMsg = new NetworkMessage(NetworkMessage.Type.CreateUserError);
-            errMsg.put(NetworkMessage.TEXT, ex.getLocalizedMessage());
-            connectionManager.sendAndClose(snm.getChannel(), errMsg);
+            sendError(snm, ex.getLocalizedMessage());
         } catch (final FileNotFoundException ex) {
-            log.error(fatal, "process: persistence file of users not found!, snm={}", snm, ex);
-        } catch (final NoSuchAlgorithmException ex) {
-            log.error(fatal, "process: no crypto algorythm found, snm={}", snm, ex);
+            log.error(fatal, "completeCreation: persistence file of users not found!, snm={}", snm, ex);
         }
     }
 
+    // Вызывается в потоке обработки сообщений, если посчитать хэш пароля не удалось
+    private void failCreation(final ServerNetworkMessage snm) {
+        log.warn("failCreation: password hashing failed, snm={}", snm);
+        if (snm.getChannel().isActive()) sendError(snm, AUTH_FAILURE);
+    }
+
+    private void sendError(final ServerNetworkMessage snm, final String text) {
+        log.trace("{}, snm={}", text, snm);
+        // Отправляем ошибку
+        final NetworkMessage errMsg = new NetworkMessage(NetworkMessage.Type.CreateUserError, new TextPayload(text));
+        connectionManager.sendAndClose(snm.getChannel(), errMsg);
+    }
+
 }
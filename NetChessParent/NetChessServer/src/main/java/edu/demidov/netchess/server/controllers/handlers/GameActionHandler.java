@@ -7,6 +7,8 @@ import edu.demidov.netchess.common.model.game.chess.ChessFigure;
 import edu.demidov.netchess.common.model.game.chess.ChessGame;
 import edu.demidov.netchess.common.model.game.chess.ChessPlayer;
 import edu.demidov.netchess.common.model.network.NetworkMessage;
+import edu.demidov.netchess.common.model.network.payload.GameActionPayload;
+import edu.demidov.netchess.common.model.network.payload.TextPayload;
 import edu.demidov.netchess.game.api.ChessLogic;
 import edu.demidov.netchess.game.impl.ChessLogicImpl;
 import edu.demidov.netchess.server.model.exceptions.NoSuchUserInGameException;
@@ -18,7 +20,7 @@ import edu.demidov.netchess.utils.Point;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class GameActionHandler implements NetworkMessageHandler {
+public class GameActionHandler implements NetworkMessageHandler<GameActionPayload> {
     private static final String NO_SUCH_USER_IN_GAME_EXCEPTION = "В игре нет игрока с именем '%s'";
     private static final String INCORRECT_MOVE_COORDINATES_EXCEPTION = "Получены некорректные координаты хода";
     private final static Logger log = LoggerFactory.getLogger(GameActionHandler.class);
@@ -39,12 +41,12 @@ public class GameActionHandler implements NetworkMessageHandler {
     }
 
     @Override
-    public void process(final ServerNetworkMessage snm) throws IllegalRequestParameter {
+    public void process(final ServerNetworkMessage snm, final GameActionPayload payload) throws IllegalRequestParameter {
         log.trace("process snm={}", snm);
         final User user = snm.getSender();
         try {
             // Достаём объект игрового действия
-            final ChessAction chessGameAction = snm.getNetMsg().getParam(NetworkMessage.GAME_ACTION, ChessAction.class);
+            final ChessAction chessGameAction = payload.getAction();
 
             final ChessGame game = chessGames.getCurrentGame(user);
             if (game == null) {
@@ -57,16 +59,15 @@ public class GameActionHandler implements NetworkMessageHandler {
         } catch (final GameMoveException ex) {
             log.trace("process: {}, snm={}", ex.getLocalizedMessage(), snm);
 
-            final NetworkMessage errMsg = new NetworkMessage(NetworkMessage.Type.GameActionError);
-            errMsg.put(NetworkMessage.TEXT, ex.getLocalizedMessage());
+            final NetworkMessage errMsg = new NetworkMessage(
+                    NetworkMessage.Type.GameActionError, new TextPayload(ex.getLocalizedMessage()));
             connectionManager.sendToUser(user, errMsg);
         } catch (final NoSuchUserInGameException e) {
             log.trace("NoSuchUserInGameException");
 
-            final NetworkMessage errMsg = new NetworkMessage(NetworkMessage.Type.GameActionError);
-            errMsg.put(
-                    NetworkMessage.TEXT,
-                    String.format(NO_SUCH_USER_IN_GAME_EXCEPTION, user.getName()));
+            final NetworkMessage errMsg = new NetworkMessage(
+                    NetworkMessage.Type.GameActionError,
+                    new TextPayload(String.format(NO_SUCH_USER_IN_GAME_EXCEPTION, user.getName())));
             connectionManager.sendToUser(user, errMsg);
         }
     }
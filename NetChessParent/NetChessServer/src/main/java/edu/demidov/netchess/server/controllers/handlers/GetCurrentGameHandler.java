@@ -1,6 +1,7 @@
 package edu.demidov.netchess.server.controllers.handlers;
 
 import edu.demidov.netchess.common.model.exceptions.IllegalRequestParameter;
+import edu.demidov.netchess.common.model.network.payload.Payload;
 import edu.demidov.netchess.server.controllers.ClientUpdater;
 import edu.demidov.netchess.server.model.network.ConnectionManager;
 import edu.demidov.netchess.server.model.network.ServerNetworkMessage;
@@ -8,7 +9,7 @@ import edu.demidov.netchess.server.model.users.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class GetCurrentGameHandler implements NetworkMessageHandler {
+public class GetCurrentGameHandler implements NetworkMessageHandler<Payload> {
 
     private final static Logger log = LoggerFactory.getLogger(GetCurrentGameHandler.class);
     private static GetCurrentGameHandler instance;
@@ -29,10 +30,11 @@ public class GetCurrentGameHandler implements NetworkMessageHandler {
      * Отправляет пользователю его текущую игру, либо null, в случае её отсуствия
      *
      * @param snm
+     * @param payload
      * @throws IllegalRequestParameter
      */
     @Override
-    public void process(final ServerNetworkMessage snm) throws IllegalRequestParameter {
+    public void process(final ServerNetworkMessage snm, final Payload payload) throws IllegalRequestParameter {
         log.trace("process snm={}", snm);
         final User sender = snm.getSender();
         connectionManager.sendToUser(sender, clientUpdater.getCurrentGameMsg(sender));
@@ -1,6 +1,7 @@
 package edu.demidov.netchess.server.controllers.handlers;
 
 import edu.demidov.netchess.common.model.exceptions.IllegalRequestParameter;
+import edu.demidov.netchess.common.model.network.payload.Payload;
 import edu.demidov.netchess.server.controllers.ClientUpdater;
 import edu.demidov.netchess.server.model.network.ConnectionManager;
 import edu.demidov.netchess.server.model.network.ServerNetworkMessage;
@@ -8,7 +9,7 @@ import edu.demidov.netchess.server.model.users.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class GetOnlineUsersHandler implements NetworkMessageHandler {
+public class GetOnlineUsersHandler implements NetworkMessageHandler<Payload> {
 
     private final static Logger log = LoggerFactory.getLogger(GetOnlineUsersHandler.class);
     private static GetOnlineUsersHandler instance;
@@ -29,10 +30,11 @@ public class GetOnlineUsersHandler implements NetworkMessageHandler {
      * Отправляет пользователю список он-лайн игроков
      *
      * @param snm
+     * @param payload
      * @throws IllegalRequestParameter
      */
     @Override
-    public void process(final ServerNetworkMessage snm) throws IllegalRequestParameter {
+    public void process(final ServerNetworkMessage snm, final Payload payload) throws IllegalRequestParameter {
         log.trace("process snm={}", snm);
         final User sender = snm.getSender();
         connectionManager.sendToUser(sender, clientUpdater.getOnlineUsersMsg(sender));
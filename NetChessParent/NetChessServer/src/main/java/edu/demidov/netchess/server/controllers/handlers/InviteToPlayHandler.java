@@ -1,8 +1,9 @@
 package edu.demidov.netchess.server.controllers.handlers;
 
 import edu.demidov.netchess.common.model.exceptions.IllegalRequestParameter;
-import edu.demidov.netchess.common.model.network.NetworkMessage;
+import edu.demidov.netchess.common.model.network.payload.InvitePayload;
 import edu.demidov.netchess.server.model.exceptions.NoSuchUserException;
+import edu.demidov.netchess.server.model.game.EngineOpponent;
 import edu.demidov.netchess.server.model.invitations.Invitations;
 import edu.demidov.netchess.server.model.network.ServerNetworkMessage;
 import edu.demidov.netchess.server.model.users.AccountManager;
@@ -10,11 +11,12 @@ import edu.demidov.netchess.server.model.users.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class InviteToPlayHandler implements NetworkMessageHandler {
+public class InviteToPlayHandler implements NetworkMessageHandler<InvitePayload> {
 
     private final static Logger log = LoggerFactory.getLogger(InviteToPlayHandler.class);
     private static InviteToPlayHandler instance;
     private final AccountManager accountManager = AccountManager.getInstance();
+    private final EngineOpponent engineOpponent = EngineOpponent.getInstance();
     private Invitations inviteManager;
 
     private InviteToPlayHandler() {
@@ -35,21 +37,22 @@ public class InviteToPlayHandler implements NetworkMessageHandler {
      * Принимает запрос о том, что пользователь пригласил\отозвал приглашение
      *
      * @param snm
+     * @param payload
      * @throws IllegalRequestParameter
      */
     @Override
-    public void process(final ServerNetworkMessage snm) throws IllegalRequestParameter {
+    public void process(final ServerNetworkMessage snm, final InvitePayload payload) throws IllegalRequestParameter {
         log.trace("process snm={}", snm);
         try {
-            final String targetUserName = snm.getNetMsg().getParam(NetworkMessage.INVITE_NAME, String.class);
-            final String type = snm.getNetMsg().getParam(NetworkMessage.INVITE_TYPE, String.class);
-            final boolean isAccept = type.equals(NetworkMessage.INVITE_TYPE_YES);
+            final String targetUserName = payload.getName();
+            final boolean isAccept = payload.isAccept();
 
             final User targetUser = accountManager.getUser(targetUserName);
             final User sender = snm.getSender();
 
             if (isAccept) {
                 inviteManager.invite(sender, targetUser);
+                if (engineOpponent.isEngine(targetUser)) engineAnswer(sender, targetUser);
             } else {
                 inviteManager.cancelInvite(sender, targetUser);
             }
@@ -59,4 +62,14 @@ public class InviteToPlayHandler implements NetworkMessageHandler {
         }
     }
 
+    // Бот отвечает на приглашение сразу: принимает, если может начать ещё одну партию
+    private void engineAnswer(final User sender, final User engineUser) {
+        log.trace("engineAnswer sender={}", sender);
+        if (engineOpponent.canAcceptGame()) {
+            inviteManager.acceptIncomingInvite(sender, engineUser);
+        } else {
+            inviteManager.rejectIncomingInvite(sender, engineUser);
+        }
+    }
+
 }
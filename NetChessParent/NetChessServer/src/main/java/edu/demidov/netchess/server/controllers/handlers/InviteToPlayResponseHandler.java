@@ -1,7 +1,7 @@
 package edu.demidov.netchess.server.controllers.handlers;
 
 import edu.demidov.netchess.common.model.exceptions.IllegalRequestParameter;
-import edu.demidov.netchess.common.model.network.NetworkMessage;
+import edu.demidov.netchess.common.model.network.payload.InvitePayload;
 import edu.demidov.netchess.server.model.exceptions.NoSuchUserException;
 import edu.demidov.netchess.server.model.invitations.Invitations;
 import edu.demidov.netchess.server.model.network.ServerNetworkMessage;
@@ -10,7 +10,7 @@ import edu.demidov.netchess.server.model.users.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class InviteToPlayResponseHandler implements NetworkMessageHandler {
+public class InviteToPlayResponseHandler implements NetworkMessageHandler<InvitePayload> {
 
     private final static Logger log = LoggerFactory.getLogger(InviteToPlayResponseHandler.class);
     private static InviteToPlayResponseHandler instance;
@@ -39,15 +39,15 @@ public class InviteToPlayResponseHandler implements NetworkMessageHandler {
      * Принимает запрос о том, что пользователь принял\отклонил входящее приглашение
      *
      * @param snm
+     * @param payload
      * @throws IllegalRequestParameter
      */
     @Override
-    public void process(final ServerNetworkMessage snm) throws IllegalRequestParameter {
+    public void process(final ServerNetworkMessage snm, final InvitePayload payload) throws IllegalRequestParameter {
         log.trace("process snm={}", snm);
         try {
-            final String offerrerUserName = snm.getNetMsg().getParam(NetworkMessage.INVITE_NAME, String.class);
-            final String type = snm.getNetMsg().getParam(NetworkMessage.INVITE_TYPE, String.class);
-            final boolean isAccept = type.equals(NetworkMessage.INVITE_TYPE_YES);
+            final String offerrerUserName = payload.getName();
+            final boolean isAccept = payload.isAccept();
 
             final User offerrerUser = accountManager.getUser(offerrerUserName);
             final User sender = snm.getSender();
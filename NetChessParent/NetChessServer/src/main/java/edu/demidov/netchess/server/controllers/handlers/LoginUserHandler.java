@@ -2,25 +2,34 @@ package edu.demidov.netchess.server.controllers.handlers;
 
 import edu.demidov.netchess.common.model.exceptions.IllegalRequestParameter;
 import edu.demidov.netchess.common.model.network.NetworkMessage;
+import edu.demidov.netchess.common.model.network.payload.CredentialsPayload;
+import edu.demidov.netchess.common.model.network.payload.TextPayload;
 import edu.demidov.netchess.server.controllers.ClientUpdater;
 import edu.demidov.netchess.server.model.exceptions.UserLoginException;
 import edu.demidov.netchess.server.model.network.ConnectionManager;
 import edu.demidov.netchess.server.model.network.ServerNetworkMessage;
+import edu.demidov.netchess.server.model.users.AccountManager;
+import edu.demidov.netchess.server.model.users.Authenticator;
 import edu.demidov.netchess.server.model.users.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Marker;
 import org.slf4j.MarkerFactory;
 
-import java.security.NoSuchAlgorithmException;
+import java.io.FileNotFoundException;
+import java.util.concurrent.RejectedExecutionException;
 
-public class LoginUserHandler implements NetworkMessageHandler {
+public class LoginUserHandler implements NetworkMessageHandler<CredentialsPayload> {
 
+    private static final String SERVER_BUSY = "Сервер занят, повторите вход позже";
+    private static final String AUTH_FAILURE = "Не удалось проверить пароль, повторите вход позже";
     private final static Logger log = LoggerFactory.getLogger(LoginUserHandler.class);
     private final static Marker fatal = MarkerFactory.getMarker("FATAL");
     private static LoginUserHandler instance;
     private final ConnectionManager connectionManager = ConnectionManager.getInstance();
     private final ClientUpdater clientUpdater = ClientUpdater.getInstance();
+    private final AccountManager accountManager = AccountManager.getInstance();
+    private final Authenticator authenticator = Authenticator.getInstance();
 
     private LoginUserHandler() {
     }
@@ -34,32 +43,61 @@ public class LoginUserHandler implements NetworkMessageHandler {
 
     /**
      * Принимает запрос о логине.
-     * Вызывает аутентификацию и отправляет результат проверки
+     * Проверяет логин, пароль проверяется в потоках Authenticator;
+     * результат проверки отправляется пользователю из completeLogin()
      *
      * @param snm
+     * @param payload
      * @throws IllegalRequestParameter
      */
     @Override
-    public void process(final ServerNetworkMessage snm) throws IllegalRequestParameter {
+    public void process(final ServerNetworkMessage snm, final CredentialsPayload payload) throws IllegalRequestParameter {
         log.trace("process snm={}", snm);
         try {
             // Получаем логин, пароль из сообщения
-            final NetworkMessage netMsg = snm.getNetMsg();
-            final String name = netMsg.getParam(NetworkMessage.NAME, String.class);
-            final String passwordHash = netMsg.getParam(NetworkMessage.PASSWORD_HASH, String.class);
+            final String name = payload.getName();
+            final String passwordHash = payload.getPasswordHash();
 
-            final User user = connectionManager.loginUser(name, passwordHash, snm.getChannel());
+            final User user = accountManager.getUserForLogin(name);
+            authenticator.verifyPassword(user, passwordHash,
+                    storedHash -> completeLogin(snm, user, storedHash), () -> failLogin(snm));
+        } catch (final UserLoginException ex) {
+            sendError(snm, ex.getLocalizedMessage());
+        } catch (final RejectedExecutionException ex) {
+            log.warn("process: authentication queue is full, snm={}", snm);
+            sendError(snm, SERVER_BUSY);
+        }
+    }
+
+    // Вызывается в потоке обработки сообщений, когда пароль проверен
+    private void completeLogin(final ServerNetworkMessage snm, final User user, final String storedHash) {
+        log.trace("completeLogin snm={}, user={}", snm, user);
+        // Пока проверялся пароль, клиент мог отключиться
+        if (!snm.getChannel().isActive()) return;
+
+        try {
+            accountManager.completeLogin(user, storedHash);
+            connectionManager.loginUser(user, snm.getChannel());
             // Отправляем пользователю информацию о нём
             clientUpdater.sendAllInfoToUser(user, true);
         } catch (final UserLoginException ex) {
-            log.trace("{}, snm={}", ex.getLocalizedMessage(), snm);
-            // Отправляем ошибку
-            final NetworkMessage errMsg = new NetworkMessage(NetworkMessage.Type.LoginUserError);
-            errMsg.put(NetworkMessage.TEXT, ex.getLocalizedMessage());
-            connectionManager.sendAndClose(snm.getChannel(), errMsg);
-        } catch (final NoSuchAlgorithmException ex) {
-            log.error(fatal, "process: no crypto algorythm found, snm={}", snm, ex);
+            sendError(snm, ex.getLocalizedMessage());
+        } catch (final FileNotFoundException ex) {
+            log.error(fatal, "completeLogin: persistence file of users not found!, snm={}", snm, ex);
         }
     }
 
+    // Вызывается в потоке обработки сообщений, если проверить пароль не удалось
+    private void failLogin(final ServerNetworkMessage snm) {
+        log.warn("failLogin: password verification failed, snm={}", snm);
+        if (snm.getChannel().isActive()) sendError(snm, AUTH_FAILURE);
+    }
+
+    private void sendError(final ServerNetworkMessage snm, final String text) {
+        log.trace("{}, snm={}", text, snm);
+        // Отправляем ошибку
+        final NetworkMessage errMsg = new NetworkMessage(NetworkMessage.Type.LoginUserError, new TextPayload(text));
+        connectionManager.sendAndClose(snm.getChannel(), errMsg);
+    }
+
 }
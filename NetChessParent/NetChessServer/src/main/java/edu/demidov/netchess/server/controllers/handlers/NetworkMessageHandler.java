@@ -1,19 +1,23 @@
 package edu.demidov.netchess.server.controllers.handlers;
 
 import edu.demidov.netchess.common.model.exceptions.IllegalRequestParameter;
+import edu.demidov.netchess.common.model.network.payload.Payload;
 import edu.demidov.netchess.server.model.network.ServerNetworkMessage;
 
 /**
  * Интерфейс для обработчиков-контроллеров сообщений (ServerNetworkMessage)
+ *
+ * @param <P> класс данных сообщения (NetworkMessage.Type.getPayloadClass()); Payload - если данных нет
  */
-public interface NetworkMessageHandler {
+public interface NetworkMessageHandler<P extends Payload> {
 
     /**
      * Обрабатывает ответ, пришедший с клиента
      *
      * @param snm
+     * @param payload данные сообщения, уже проверенные диспетчером; null, если у типа сообщения данных нет
      * @throws edu.demidov.netchess.common.model.exceptions.IllegalRequestParameter
      */
-    public void process(final ServerNetworkMessage snm) throws IllegalRequestParameter;
+    public void process(final ServerNetworkMessage snm, final P payload) throws IllegalRequestParameter;
 
 }
@@ -1,6 +1,7 @@
 package edu.demidov.netchess.server.model;
 
 import edu.demidov.netchess.common.model.network.NetworkMessage;
+import edu.demidov.netchess.common.model.network.payload.TextPayload;
 import edu.demidov.netchess.server.model.network.ConnectionManager;
 import edu.demidov.netchess.server.model.users.User;
 import io.netty.channel.Channel;
@@ -45,8 +46,7 @@ public class BroadcastChat {
                 new SimpleDateFormat(TIME_FORMAT).format(System.currentTimeMillis()),
                 formatRemoteAddress(closedChannel.remoteAddress()));
 
-        final NetworkMessage message = new NetworkMessage(NetworkMessage.Type.ChatNewMessage);
-        message.put(NetworkMessage.TEXT, userExitMsg);
+        final NetworkMessage message = new NetworkMessage(NetworkMessage.Type.ChatNewMessage, new TextPayload(userExitMsg));
         ConnectionManager.getInstance().sendToAllOnline(message);
     }
 
@@ -63,8 +63,7 @@ public class BroadcastChat {
                 new SimpleDateFormat(TIME_FORMAT).format(System.currentTimeMillis()),
                 formatRemoteAddress(ConnectionManager.getInstance().getRemoteAddress(user)));
 
-        final NetworkMessage message = new NetworkMessage(NetworkMessage.Type.ChatNewMessage);
-        message.put(NetworkMessage.TEXT, userConnectedMsg);
+        final NetworkMessage message = new NetworkMessage(NetworkMessage.Type.ChatNewMessage, new TextPayload(userConnectedMsg));
         ConnectionManager.getInstance().sendToAllOnline(message);
     }
 
@@ -83,8 +82,7 @@ public class BroadcastChat {
                 formatRemoteAddress(ConnectionManager.getInstance().getRemoteAddress(user)),
                 chatMessage);
 
-        final NetworkMessage message = new NetworkMessage(NetworkMessage.Type.ChatNewMessage);
-        message.put(NetworkMessage.TEXT, newMessage);
+        final NetworkMessage message = new NetworkMessage(NetworkMessage.Type.ChatNewMessage, new TextPayload(newMessage));
         ConnectionManager.getInstance().sendToAllOnline(message);
     }
 
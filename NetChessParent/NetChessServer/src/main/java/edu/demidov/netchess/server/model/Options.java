@@ -1,5 +1,7 @@
 package edu.demidov.netchess.server.model;
 
+import edu.demidov.netchess.common.model.network.MessageQueue;
+
 public class Options {
     public static final String SERVER_HOST = "localhost";
     public static final int SERVER_PORT = 22_222;
@@ -7,15 +9,41 @@ public class Options {
     public static final int USER_RANK_DEFAULT = 1000;               // игровой ранг по умолчанию
     public static final int USERS_INFO_SEND_UPDATES_SECONDS = 7;    // как часто сервер будет рассылать пользователям инфу (приглашения, лобби и пр.)
 
+    public static final int MESSAGE_QUEUE_CAPACITY = 4096;           // ёмкость очереди входящих сообщений
+    public static final MessageQueue.FullPolicy MESSAGE_QUEUE_FULL_POLICY = MessageQueue.FullPolicy.DROP_DROPPABLE; // что делать, когда очередь заполнена: отклонённым запросам - ошибка, остальные ждут, а соединение перестаёт читаться
+    public static final int MESSAGE_BATCH_SIZE = 64;                // сколько сообщений забирается из очереди за раз
+    public static final int MESSAGE_QUEUE_METRICS_LOG_MINUTES = 10; // как часто выводить в лог статистику очереди, в минутах
+
     public static final int CONNECTIONS_FREQ_MANAGE_SECONDS = 60;   // как часто проверять соединения
     public static final int CONNECTION_UNAUTH_TTL_SECONDS = 60;     // минимальное TTL незалогиненного соединения
 
+    public static final int PASSWORD_HASH_ITERATIONS = 10_000;      // сколько раз повторяется SHA-512 при хэшировании пароля
+    public static final int AUTH_THREADS = 2;                       // потоков проверки паролей, отдельно от потока обработки сообщений
+    public static final int AUTH_QUEUE_SIZE = 256;                  // сколько логинов ждут проверки пароля; остальным "сервер занят"
+
     public static final int INVITATIONS_TTL_MINUTES = 10;           // минимальное время жизни приглашений (TTL), в минутах
     public static final int INVITATIONS_FREQ_MANAGE_MINUTES = 3;    // как часто запускать процедуру проверки TTL, в минутах
 
     public static final int GAME_TIME_TO_PLAYER_MILLIS = 1000 * 60 * 30;    // время на партию для игрока, миллисекунды
+    public static final int GAME_INCREMENT_MILLIS = 0;                      // добавка Фишера за каждый ход, миллисекунды
+    public static final int GAME_DELAY_MILLIS = 0;                          // задержка Бронштейна на каждый ход, миллисекунды
     public static final int GAMES_FREQ_MANAGE_SECONDES = 3;                 // как часто запускается проверка истечения времени партий, секунды
 
+    public static final String ENGINE_USER_NAME = "NetChessBot";    // имя встроенного соперника-бота
+    public static final int ENGINE_CORES = Math.max(1, Runtime.getRuntime().availableProcessors() - 1); // общий бюджет ядер бота и разбора партий; одно ядро - потоку обработки сообщений
+    public static final boolean ENGINE_LAZY_SMP = true;             // искать ход бота в несколько потоков (Lazy SMP), деля ядра между партиями
+    public static final int ENGINE_MAX_GAMES = 16;                  // сколько партий бот играет одновременно (и размер очереди поиска)
+    public static final int ENGINE_HASH_MB = 64;                    // размер общей таблицы перестановок, мегабайты
+    public static final int ENGINE_MOVES_TO_GO = 30;                // на сколько ходов вперёд бот делит оставшееся время
+    public static final int ENGINE_MIN_MOVE_MILLIS = 100;           // минимальное время на ход бота, миллисекунды
+    public static final int ENGINE_MAX_MOVE_MILLIS = 10_000;        // максимальное время на ход бота, миллисекунды
+
+    public static final int ANALYSIS_THREADS = Math.max(1, ENGINE_CORES / 4); // потоков разбора сыгранных партий - четверть бюджета ядер бота
+    public static final int ANALYSIS_QUEUE_SIZE = 64;               // сколько партий ждут разбора; остальные не разбираются
+    public static final int ANALYSIS_DEPTH = 6;                     // глубина поиска для каждой позиции разбора
+    public static final int ANALYSIS_HASH_MB = 16;                  // таблица перестановок каждого потока разбора, мегабайты
+    public static final int ANALYSIS_METRICS_LOG_MINUTES = 10;      // как часто выводить в лог статистику разбора, в минутах
+
     private Options() {
     }
 }
@@ -4,6 +4,7 @@ import edu.demidov.netchess.common.model.exceptions.game.chess.NoNextPlayerFound
 import edu.demidov.netchess.common.model.game.chess.ChessColor;
 import edu.demidov.netchess.common.model.game.chess.ChessGame;
 import edu.demidov.netchess.common.model.game.chess.ChessPlayer;
+import edu.demidov.netchess.common.model.game.chess.TimeControl;
 import edu.demidov.netchess.game.api.ChessLogic;
 import edu.demidov.netchess.game.api.ChessLogicObserver;
 import edu.demidov.netchess.game.impl.ChessLogicImpl;
@@ -22,8 +23,6 @@ import org.slf4j.LoggerFactory;
 
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -35,6 +34,8 @@ import java.util.Set;
 
 public class ChessGames implements InvitationsObserver, ChessLogicObserver {
     private static final Random RANDOM = new Random();
+    private static final TimeControl TIME_CONTROL = new TimeControl(
+            Options.GAME_TIME_TO_PLAYER_MILLIS, Options.GAME_INCREMENT_MILLIS, Options.GAME_DELAY_MILLIS);
     private final static Logger log = LoggerFactory.getLogger(ChessGames.class);
     private static ChessGames instance;
 
@@ -42,9 +43,10 @@ public class ChessGames implements InvitationsObserver, ChessLogicObserver {
     private final ConnectionManager connectionManager;
     private final ChessLogic gameLogic;
     private final ClientUpdater clientUpdater;
+    private final EngineOpponent engineOpponent;
+    private final PostGameAnalysis postGameAnalysis;
 
     private final Map<User, ChessGame> map;
-    private Date nextLaunch = Calendar.getInstance().getTime();
 
     private ChessGames() {
         map = new HashMap<>();
@@ -53,6 +55,8 @@ public class ChessGames implements InvitationsObserver, ChessLogicObserver {
         gameLogic = ChessLogicImpl.getInstance();
         connectionManager = ConnectionManager.getInstance();
         clientUpdater = ClientUpdater.getInstance();
+        engineOpponent = EngineOpponent.getInstance();
+        postGameAnalysis = PostGameAnalysis.getInstance();
     }
 
     public static synchronized ChessGames getInstance() {
@@ -77,11 +81,11 @@ public class ChessGames implements InvitationsObserver, ChessLogicObserver {
             checkThatUsersFree(player1, player2);
 
             final List<ChessPlayer> chessPlayers = createPlayers(player1, player2);
-            final ChessGame game = gameLogic.startGame(chessPlayers);
+            final ChessGame game = gameLogic.startGame(chessPlayers, TIME_CONTROL);
 
-            // Обновляем текущую игру пользователей
-            map.put(player1, game);
-            map.put(player2, game);
+            // Обновляем текущую игру пользователей. Бот играет несколько партий сразу - его партии ведёт EngineOpponent.
+            if (!engineOpponent.isEngine(player1)) map.put(player1, game);
+            if (!engineOpponent.isEngine(player2)) map.put(player2, game);
 
             gameChanged(game);
         } catch (final OneOfUserIsPlayingException ex) {
@@ -93,6 +97,8 @@ public class ChessGames implements InvitationsObserver, ChessLogicObserver {
     @Override
     public void gameChanged(final ChessGame game) {
         clientUpdater.gameChanged(game);
+        engineOpponent.gameChanged(game);
+        postGameAnalysis.gameChanged(game);
     }
 
     @Override
@@ -101,6 +107,7 @@ public class ChessGames implements InvitationsObserver, ChessLogicObserver {
 
         savePlayersChanges(game, winner);
         releasePlayers(game);
+        postGameAnalysis.gameEnded(game);
 
         gameChanged(game);
     }
@@ -117,50 +124,46 @@ public class ChessGames implements InvitationsObserver, ChessLogicObserver {
     }
 
     /**
-     * Возвращает true, если пользователь в данный момент играет
+     * Возвращает true, если пользователь в данный момент играет.
+     * Бот считается играющим, когда он уже не может начать ещё одну партию.
      *
      * @param user
      * @return
      */
     public boolean isUserPlaying(final User user) {
+        if (engineOpponent.isEngine(user)) return !engineOpponent.canAcceptGame();
         return getCurrentGame(user) != null;
     }
 
     /**
      * Проверяет окончание всех партий по времени. А также подчищает хеш-таблицу.
-     * Метод запускает обработку раз в n секунд.
+     * Вызывается планировщиком сервера раз в Options.GAMES_FREQ_MANAGE_SECONDES секунд.
      */
     public void manageGamesTime() {
-        if (nextLaunch.before(Calendar.getInstance().getTime())) {
-            log.trace("manageGamesTime starts process by time");
-            // Устанавливаем время следующей проверки TTL
-            final Calendar calendar = Calendar.getInstance();
-            calendar.add(Calendar.SECOND, Options.GAMES_FREQ_MANAGE_SECONDES);
-            nextLaunch = calendar.getTime();
-
-            // Для каждой игры
-            final Iterator<Entry<User, ChessGame>> it = map.entrySet().iterator();
-            while (it.hasNext()) {
-                final Entry<User, ChessGame> entry = it.next();
-                final ChessGame game = entry.getValue();
-
-                // Если игра = null или уже завершилась - удаляем
-                if (game == null || game.isFinished()) {
-                    log.trace("manageGamesTime the game will remove: null or finished, game={}", game);
-                    it.remove();
-                    continue;
-                }
+        log.trace("manageGamesTime");
+
+        // Для каждой игры
+        final Iterator<Entry<User, ChessGame>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            final Entry<User, ChessGame> entry = it.next();
+            final ChessGame game = entry.getValue();
+
+            // Если игра = null или уже завершилась - удаляем
+            if (game == null || game.isFinished()) {
+                log.trace("manageGamesTime the game will remove: null or finished, game={}", game);
+                it.remove();
+                continue;
+            }
 
-                try {
-                    // Подсчитываем - не истекло ли время у текущего игрока
-                    gameLogic.checkGameForEndByTime(game);
-                    if (game.isFinished()) {
-                        log.trace("manageGamesTime the game will remove: finished, game={}", game);
-                        it.remove();
-                    }
-                } catch (final NoNextPlayerFoundException ex) {
-                    log.error("Error during manageGamesTime, game={}", game, ex);
+            try {
+                // Подсчитываем - не истекло ли время у текущего игрока
+                gameLogic.checkGameForEndByTime(game);
+                if (game.isFinished()) {
+                    log.trace("manageGamesTime the game will remove: finished, game={}", game);
+                    it.remove();
                 }
+            } catch (final NoNextPlayerFoundException ex) {
+                log.error("Error during manageGamesTime, game={}", game, ex);
             }
         }
     }
@@ -262,12 +265,17 @@ public class ChessGames implements InvitationsObserver, ChessLogicObserver {
     }
 
     private boolean isAnyonePlayerOffline(final User player1, final User player2) {
-        return !connectionManager.isUserOnline(player1) || !connectionManager.isUserOnline(player2);
+        return !isUserOnline(player1) || !isUserOnline(player2);
+    }
+
+    // Бот всегда в сети
+    private boolean isUserOnline(final User user) {
+        return engineOpponent.isEngine(user) || connectionManager.isUserOnline(user);
     }
 
     private void releasePlayers(final ChessGame game) {
         for (final User user : getPlayingUsers(game)) {
-            map.put(user, null);
+            if (!engineOpponent.isEngine(user)) map.put(user, null);
         }
     }
 }
@@ -0,0 +1,45 @@
+package edu.demidov.netchess.server.model.game;
+
+import edu.demidov.netchess.server.model.Options;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Общий бюджет ядер для вычислений сервера: поиска хода бота (главные потоки и помощники Lazy SMP)
+ * и разбора сыгранных партий.
+ * <p>
+ * Каждый считающий поток держит одно разрешение, поэтому одновременно считают не больше Options.ENGINE_CORES
+ * потоков, сколько бы партий ни шло, - остальные ядра остаются потоку обработки сообщений и Netty.
+ * Приоритеты потоков этого не гарантируют: в Linux они по умолчанию не учитываются.
+ */
+public class EngineCores {
+
+    private static EngineCores instance;
+
+    private final Semaphore permits = new Semaphore(Options.ENGINE_CORES);
+
+    private EngineCores() {
+    }
+
+    public static synchronized EngineCores getInstance() {
+        if (instance == null) {
+            instance = new EngineCores();
+        }
+        return instance;
+    }
+
+    /**
+     * Разрешения на считающие потоки - по одному на ядро бюджета
+     */
+    public Semaphore getPermits() {
+        return permits;
+    }
+
+    /**
+     * Сколько ядер в бюджете
+     */
+    public int getCores() {
+        return Options.ENGINE_CORES;
+    }
+
+}
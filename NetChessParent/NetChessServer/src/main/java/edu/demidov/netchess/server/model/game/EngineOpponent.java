@@ -0,0 +1,374 @@
+package edu.demidov.netchess.server.model.game;
+
+import edu.demidov.netchess.common.model.exceptions.game.chess.GameMoveException;
+import edu.demidov.netchess.common.model.exceptions.game.chess.InvalidBoardSizeException;
+import edu.demidov.netchess.common.model.game.chess.ChessFigure;
+import edu.demidov.netchess.common.model.game.chess.ChessGame;
+import edu.demidov.netchess.common.model.game.chess.ChessPlayer;
+import edu.demidov.netchess.common.model.game.chess.TimeControl;
+import edu.demidov.netchess.common.model.network.MessageQueue;
+import edu.demidov.netchess.game.api.ChessLogic;
+import edu.demidov.netchess.game.engine.OpeningBook;
+import edu.demidov.netchess.game.engine.ParallelSearch;
+import edu.demidov.netchess.game.engine.Search;
+import edu.demidov.netchess.game.engine.SearchResult;
+import edu.demidov.netchess.game.engine.TranspositionTable;
+import edu.demidov.netchess.game.engine.tablebase.Tablebases;
+import edu.demidov.netchess.game.impl.ChessLogicImpl;
+import edu.demidov.netchess.game.rules.bitboard.BitboardPosition;
+import edu.demidov.netchess.game.rules.bitboard.Bitboards;
+import edu.demidov.netchess.game.rules.bitboard.Moves;
+import edu.demidov.netchess.server.model.Options;
+import edu.demidov.netchess.server.model.exceptions.UserCreationException;
+import edu.demidov.netchess.server.model.network.ServerNetworkMessage;
+import edu.demidov.netchess.server.model.users.AccountManager;
+import edu.demidov.netchess.server.model.users.User;
+import edu.demidov.netchess.utils.Point;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Встроенный соперник - бот. Для остальной части сервера это обычный пользователь (User) с именем
+ * Options.ENGINE_USER_NAME: его можно пригласить, и партия с ним создаётся через ChessGames.usersAgreed.
+ * <p>
+ * Когда в партии наступает ход бота, позиция копируется и поиск хода уходит в отдельный пул потоков
+ * ограниченного размера - поток обработки сообщений не ждёт поиска. Найденный ход возвращается в очередь
+ * сообщений задачей сервера и делается уже в потоке обработки сообщений, как ход обычного игрока.
+ * <p>
+ * В режиме Lazy SMP (Options.ENGINE_LAZY_SMP) каждому поиску добавляются потоки-помощники из второго пула,
+ * общая таблица перестановок одна на все партии. Главные потоки и помощники берут разрешения из общего бюджета
+ * ядер (EngineCores): главный поток ждёт разрешения, помощник без свободного разрешения просто не запускается.
+ * Так считающих потоков никогда не больше бюджета, даже когда поиски начинаются одновременно.
+ * <p>
+ * Если есть файл дебютной книги (BOOK_FILE), в дебюте ход берётся из неё без поиска.
+ * Книга отображается в память один раз при старте и общая для всех партий.
+ * Так же открываются таблицы эндшпиля (TABLEBASES_DIR): в позициях из них бот играет точно и без поиска.
+ * Все методы, кроме самого поиска, вызываются только из потока обработки сообщений.
+ */
+public class EngineOpponent {
+
+    private final static Logger log = LoggerFactory.getLogger(EngineOpponent.class);
+    private static final int HELPER_KEEP_ALIVE_SECONDS = 60;
+    private static final String BOOK_FILE = "data/book.bin";
+    private static final String TABLEBASES_DIR = "data/tablebases";
+    private static EngineOpponent instance;
+
+    private final ChessLogic gameLogic = ChessLogicImpl.getInstance();
+    private final MessageQueue<ServerNetworkMessage> messageQueue = MessageQueue.getInstance();
+    private final User user;
+    private final Semaphore cores = EngineCores.getInstance().getPermits();
+    private final ThreadPoolExecutor executor;
+    // Помощники Lazy SMP: без очереди - если свободных потоков или ядер нет, поиск идёт с меньшим числом помощников
+    private final ThreadPoolExecutor helpers;
+    private final ParallelSearch search;
+    // Дебютная книга, либо null, если файла книги нет
+    private final OpeningBook book;
+    private final Tablebases tablebases;
+
+    // Незавершённые партии бота и партии, в которых сейчас идёт поиск
+    private final Set<ChessGame> activeGames = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<ChessGame> thinkingGames = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private EngineOpponent() {
+        user = createUser();
+        executor = new ThreadPoolExecutor(
+                Options.ENGINE_CORES, Options.ENGINE_CORES, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Options.ENGINE_MAX_GAMES), new EngineThreadFactory("engine-"));
+        helpers = new ThreadPoolExecutor(
+                0, Math.max(Options.ENGINE_CORES - 1, 1), HELPER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new EngineThreadFactory("engine-helper-"));
+        search = new ParallelSearch(new TranspositionTable(Options.ENGINE_HASH_MB), helpers, cores);
+        book = openBook(Paths.get(BOOK_FILE));
+        tablebases = Tablebases.open(Paths.get(TABLEBASES_DIR));
+    }
+
+    public static synchronized EngineOpponent getInstance() {
+        if (instance == null) {
+            instance = new EngineOpponent();
+        }
+        return instance;
+    }
+
+    /**
+     * Пользователь, под которым играет бот
+     */
+    public User getUser() {
+        return user;
+    }
+
+    /**
+     * Таблицы эндшпиля, открытые ботом (набор может быть пустым)
+     */
+    public Tablebases getTablebases() {
+        return tablebases;
+    }
+
+    /**
+     * Возвращает true, если user - бот
+     */
+    public boolean isEngine(final User user) {
+        return this.user.equals(user);
+    }
+
+    /**
+     * Возвращает true, если бот может начать ещё одну партию
+     */
+    public boolean canAcceptGame() {
+        return activeGames.size() < Options.ENGINE_MAX_GAMES;
+    }
+
+    /**
+     * Событие вызывается при любом изменении партии.
+     * Если бот играет в партии и сейчас его ход - запускает поиск хода.
+     *
+     * @param game
+     */
+    public void gameChanged(final ChessGame game) {
+        final ChessPlayer player = getEnginePlayer(game);
+        if (player == null) return;
+
+        if (game.isFinished()) {
+            log.trace("gameChanged: the game finished, game={}", game);
+            activeGames.remove(game);
+            return;
+        }
+
+        activeGames.add(game);
+        if (isEngineToMove(game, player) && !thinkingGames.contains(game)) {
+            startThinking(game, player);
+        }
+    }
+
+    /**
+     * Проверяет партии бота и запускает поиск там, где он не запущен (например, пул был занят).
+     * Вызывается планировщиком сервера раз в Options.GAMES_FREQ_MANAGE_SECONDES секунд.
+     */
+    public void checkGames() {
+        log.trace("checkGames activeGames={}, thinkingGames={}", activeGames.size(), thinkingGames.size());
+        for (final ChessGame game : new ArrayList<>(activeGames)) {
+            gameChanged(game);
+        }
+    }
+
+    /**
+     * Останавливает потоки поиска
+     */
+    public void shutdown() {
+        log.info("shutdown");
+        executor.shutdownNow();
+        helpers.shutdownNow();
+    }
+
+    /* Время на ход: равная доля оставшегося времени плюс добавка за ход (она вернётся после хода),
+    но не больше половины оставшегося времени
+    */
+    private static long moveTimeMillis(final long timeLeftMillis, final TimeControl timeControl) {
+        final long share = timeLeftMillis / Options.ENGINE_MOVES_TO_GO
+                + timeControl.getIncrementMillis() + timeControl.getDelayMillis();
+        final long bounded = Math.max(Options.ENGINE_MIN_MOVE_MILLIS, Math.min(Options.ENGINE_MAX_MOVE_MILLIS, share));
+        return Math.min(bounded, timeLeftMillis / 2);
+    }
+
+    /* Сколько потоков просит поиск: ядра делятся между партиями, где бот думает (включая новую).
+    Это лишь пожелание - сколько потоков запустится на самом деле, решают свободные разрешения EngineCores.
+    */
+    private int searchThreads() {
+        if (!Options.ENGINE_LAZY_SMP) return 1;
+        return Math.max(1, Options.ENGINE_CORES / (thinkingGames.size() + 1));
+    }
+
+    // Копирует позицию и отдаёт поиск в пул. Если очередь пула заполнена - повторим при следующей проверке.
+    private void startThinking(final ChessGame game, final ChessPlayer player) {
+        final BitboardPosition position;
+        try {
+            position = new BitboardPosition(game.getField(), BitboardPosition.color(player.getColor()));
+        } catch (final InvalidBoardSizeException ex) {
+            log.error("startThinking: game={}", game, ex);
+            return;
+        }
+
+        final long key = game.getZobristKey();
+        final long timeMillis = moveTimeMillis(game.getTimeLeftMillis(player), game.getClock().getTimeControl());
+        final int threads = searchThreads();
+        log.debug("startThinking game={}, timeMillis={}, threads={}", game, timeMillis, threads);
+
+        try {
+            executor.execute(() -> {
+                SearchResult result = null;
+                try {
+                    result = findTablebaseMove(position);
+                    if (result == null) result = findBookMove(position);
+                    if (result == null) result = searchWithCore(position, timeMillis, threads);
+                    log.debug("search finished, result={}", result);
+                } catch (final RuntimeException ex) {
+                    log.error("search failed, position key={}", key, ex);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    postMove(game, key, result);
+                }
+            });
+            thinkingGames.add(game);
+        } catch (final RejectedExecutionException ex) {
+            log.warn("startThinking: search pool is full, will retry, game={}", game);
+        }
+    }
+
+    /* Выполняется в потоке поиска: главный поиск ждёт свободное ядро из общего бюджета.
+    Часы партии в это время идут, поэтому ожидание вычитается из времени на ход.
+    */
+    private SearchResult searchWithCore(final BitboardPosition position, final long timeMillis, final int threads)
+            throws InterruptedException {
+        final long waitStarted = System.nanoTime();
+        cores.acquire();
+        try {
+            final long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - waitStarted);
+            if (waitedMillis > 0) log.debug("searchWithCore: waited for a core, waitedMillis={}", waitedMillis);
+            return search.search(position, Math.max(1, timeMillis - waitedMillis), Search.MAX_DEPTH, threads);
+        } finally {
+            cores.release();
+        }
+    }
+
+    // Ход по таблицам эндшпиля, либо null, если позиции в таблицах нет
+    private SearchResult findTablebaseMove(final BitboardPosition position) {
+        final int move = tablebases.bestMove(position);
+        return move == Moves.NO_MOVE ? null : new SearchResult(move, 0, 0, 0, 0);
+    }
+
+    // Ход из дебютной книги, либо null, если позиции в книге нет
+    private SearchResult findBookMove(final BitboardPosition position) {
+        if (book == null) return null;
+
+        final int move = book.chooseMove(position, ThreadLocalRandom.current());
+        return move == Moves.NO_MOVE ? null : new SearchResult(move, 0, 0, 0, 0);
+    }
+
+    // Выполняется в потоке поиска: кладёт ход в служебную очередь сообщений (result = null, если поиск упал)
+    private void postMove(final ChessGame game, final long key, final SearchResult result) {
+        messageQueue.putServiceMessage(new ServerNetworkMessage(() -> makeMove(game, key, result)));
+    }
+
+    // Делает найденный ход. Если за время поиска партия изменилась - ход устарел, проверяем партию заново.
+    private void makeMove(final ChessGame game, final long key, final SearchResult result) {
+        log.trace("makeMove game={}, result={}", game, result);
+        thinkingGames.remove(game);
+
+        if (result == null || result.getMove() == Moves.NO_MOVE) return;
+
+        final ChessPlayer player = getEnginePlayer(game);
+        if (game.isFinished() || game.getZobristKey() != key || !isEngineToMove(game, player)) {
+            log.trace("makeMove: the move is out of date, game={}", game);
+            gameChanged(game);
+            return;
+        }
+
+        final int move = result.getMove();
+        try {
+            gameLogic.playerMoveFigure(player, game, point(Moves.from(move)), point(Moves.to(move)));
+
+            if (Moves.isPromotion(move) && game.isCurrentPlayerChoosingFigure()) {
+                gameLogic.playerTransformPawn(player, game, ChessFigure.Type.values()[Moves.promotionType(move)]);
+            }
+        } catch (final GameMoveException ex) {
+            // Ход, отвергнутый правилами, поиск найдёт снова - бот сдаётся, чтобы не повторять его бесконечно
+            log.error("makeMove: the engine move is rejected, the engine resigns, game={}, result={}",
+                    game, result, ex);
+            resign(game, player);
+        }
+    }
+
+    private void resign(final ChessGame game, final ChessPlayer player) {
+        try {
+            gameLogic.playerSurrender(player, game);
+        } catch (final GameMoveException ex) {
+            log.error("resign: game={}", game, ex);
+        } finally {
+            activeGames.remove(game);
+        }
+    }
+
+    // Игрок-бот в партии, либо null, если бот в ней не играет
+    private ChessPlayer getEnginePlayer(final ChessGame game) {
+        for (final ChessPlayer player : game.getPlayers()) {
+            if (user.getName().equals(player.getName())) return player;
+        }
+        return null;
+    }
+
+    // Ход бота, и он не выбирает фигуру вместо пешки (это делается вместе с самим ходом)
+    private boolean isEngineToMove(final ChessGame game, final ChessPlayer player) {
+        return player.equals(game.getCurrentPlayer()) && !game.isCurrentPlayerChoosingFigure();
+    }
+
+    private Point point(final int square) {
+        return Point.of(Bitboards.x(square), Bitboards.y(square));
+    }
+
+    private static OpeningBook openBook(final Path file) {
+        if (!Files.exists(file)) {
+            log.info("openBook: no opening book, file={}", file);
+            return null;
+        }
+
+        try {
+            final OpeningBook book = OpeningBook.open(file);
+            log.info("openBook: file={}, entries={}", file, book.size());
+            return book;
+        } catch (final IOException ex) {
+            log.error("openBook: can't open the opening book, file={}", file, ex);
+            return null;
+        }
+    }
+
+    // Если имя бота занято человеком - сервер не запускается: иначе человек мог бы ходить за бота
+    private User createUser() {
+        try {
+            return AccountManager.getInstance().getServiceUser(Options.ENGINE_USER_NAME);
+        } catch (final FileNotFoundException ex) {
+            log.error("createUser: can't save the engine user", ex);
+            return new User(Options.ENGINE_USER_NAME, null, Options.USER_RANK_DEFAULT);
+        } catch (final UserCreationException ex) {
+            throw new IllegalStateException(ex.getLocalizedMessage(), ex);
+        }
+    }
+
+    // Потоки поиска - демоны; сколько из них считает одновременно, ограничивает EngineCores
+    private static class EngineThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger number = new AtomicInteger();
+
+        EngineThreadFactory(final String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(final Runnable task) {
+            final Thread thread = new Thread(task, prefix + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
@@ -0,0 +1,320 @@
+package edu.demidov.netchess.server.model.game;
+
+import edu.demidov.netchess.common.model.exceptions.game.chess.InvalidBoardSizeException;
+import edu.demidov.netchess.common.model.game.chess.ChessFigure;
+import edu.demidov.netchess.common.model.game.chess.ChessGame;
+import edu.demidov.netchess.common.model.game.chess.ChessPlayer;
+import edu.demidov.netchess.common.model.game.chess.MoveHistory;
+import edu.demidov.netchess.game.engine.GameAnalysis;
+import edu.demidov.netchess.game.engine.GameAnalyzer;
+import edu.demidov.netchess.game.rules.bitboard.BitboardPosition;
+import edu.demidov.netchess.game.rules.bitboard.Moves;
+import edu.demidov.netchess.server.model.Options;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Разбор сыгранных партий в фоне.
+ * <p>
+ * При первом изменении партии запоминается её позиция; ходы партия хранит сама (ChessGame.getMoveHistory()).
+ * Когда партия закончилась, её ходы уходят в очередь разбора ограниченного размера
+ * (Options.ANALYSIS_QUEUE_SIZE). Если очередь заполнена, партия не разбирается - поток обработки сообщений
+ * никогда не ждёт разбора, а отказы видны в статистике.
+ * <p>
+ * Разбор идёт в Options.ANALYSIS_THREADS потоках, у каждого потока свой GameAnalyzer, поиск ограничен глубиной
+ * Options.ANALYSIS_DEPTH. Каждую позицию разбор оценивает с разрешением из общего с ботом бюджета ядер (EngineCores),
+ * но уступает его, пока разрешение ждёт бот, - разбор не задерживает ходы бота в идущих партиях.
+ * Потоки разбора - с наименьшим приоритетом.
+ * Готовый разбор дописывается строкой в файл RESULTS_FILE прямо в потоке разбора (см. formatResult()).
+ * Все методы, кроме самого разбора и статистики, вызываются только из потока обработки сообщений.
+ */
+public class PostGameAnalysis {
+
+    private final static Logger log = LoggerFactory.getLogger(PostGameAnalysis.class);
+    private static final String RESULTS_FILE = "data/game_analysis.txt";
+    private static PostGameAnalysis instance;
+
+    private final Path resultsFile = Paths.get(RESULTS_FILE);
+    private final Semaphore cores = EngineCores.getInstance().getPermits();
+    private final ThreadPoolExecutor executor;
+    private final ThreadLocal<GameAnalyzer> analyzers = ThreadLocal.withInitial(
+            () -> new GameAnalyzer(Options.ANALYSIS_HASH_MB, Options.ANALYSIS_DEPTH, cores));
+    private final AtomicBoolean stopSignal = new AtomicBoolean();
+
+    // Начальные позиции идущих партий
+    private final Map<ChessGame, GameRecord> records = new IdentityHashMap<>();
+
+    // Статистика
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong analyzedPositions = new AtomicLong();
+    private final AtomicLong analysisNanos = new AtomicLong();
+
+    private PostGameAnalysis() {
+        executor = new ThreadPoolExecutor(
+                Options.ANALYSIS_THREADS, Options.ANALYSIS_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Options.ANALYSIS_QUEUE_SIZE), new AnalysisThreadFactory());
+    }
+
+    public static synchronized PostGameAnalysis getInstance() {
+        if (instance == null) {
+            instance = new PostGameAnalysis();
+        }
+        return instance;
+    }
+
+    /**
+     * Событие вызывается при любом изменении партии: при первом изменении запоминает позицию партии
+     *
+     * @param game
+     */
+    public void gameChanged(final ChessGame game) {
+        if (game.isFinished() || records.containsKey(game)) return;
+
+        startRecord(game);
+    }
+
+    /**
+     * Событие вызывается, когда партия закончилась: отдаёт её ходы в очередь разбора
+     *
+     * @param game
+     */
+    public void gameEnded(final ChessGame game) {
+        final GameRecord record = records.remove(game);
+        if (record == null) return;
+
+        // Ходы с запомненной позиции; переводятся в ходы движка уже в потоке разбора
+        final short[] history = game.getMoveHistory().toArray(record.firstMove);
+        if (history.length == 0) return;
+
+        final int gameId = game.getId();
+        final String players = playerNames(game);
+        try {
+            executor.execute(() -> analyze(gameId, players, record.start, history));
+            submitted.incrementAndGet();
+            log.debug("gameEnded: the game queued for analysis, gameId={}, moves={}", gameId, history.length);
+        } catch (final RejectedExecutionException ex) {
+            rejected.incrementAndGet();
+            log.warn("gameEnded: analysis queue is full, the game is skipped, gameId={}", gameId);
+        }
+    }
+
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Сколько партий ждут разбора
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Среднее время разбора одной позиции, миллисекунды
+     */
+    public double getAveragePositionMillis() {
+        final long positions = analyzedPositions.get();
+        return positions == 0 ? 0 : analysisNanos.get() / 1e6 / positions;
+    }
+
+    /**
+     * Выводит статистику разбора в лог.
+     * Вызывается планировщиком сервера раз в Options.ANALYSIS_METRICS_LOG_MINUTES минут.
+     */
+    public void logMetrics() {
+        log.info("logMetrics submitted={}, rejected={}, completed={}, failed={}, queueDepth={}, recording={}, "
+                        + "averagePositionMillis={}", getSubmitted(), getRejected(), getCompleted(), getFailed(),
+                getQueueDepth(), records.size(), String.format("%.1f", getAveragePositionMillis()));
+    }
+
+    /**
+     * Прерывает текущий разбор и останавливает потоки разбора
+     */
+    public void shutdown() {
+        log.info("shutdown");
+        stopSignal.set(true);
+        executor.shutdownNow();
+    }
+
+    private void startRecord(final ChessGame game) {
+        try {
+            final BitboardPosition position = new BitboardPosition(
+                    game.getField(), BitboardPosition.color(game.getCurrentPlayer().getColor()));
+            records.put(game, new GameRecord(position, game.getMoveHistory().size()));
+        } catch (final InvalidBoardSizeException ex) {
+            log.error("startRecord: game={}", game, ex);
+        }
+    }
+
+    /* Переводит ходы партии в ходы движка, переигрывая их с позиции start: флаги рокировки и хода пешки
+    на две клетки берутся из позиции. Возвращает null, если какой-то ход не подходит к позиции.
+    */
+    private static int[] toEngineMoves(final BitboardPosition start, final short[] history) {
+        final int[] moves = new int[history.length];
+        BitboardPosition position = start;
+        for (int i = 0; i < history.length; i++) {
+            final int from = MoveHistory.from(history[i]);
+            final int to = MoveHistory.to(history[i]);
+            if (position.getPiece(from) == BitboardPosition.NO_PIECE) return null;
+
+            int move = position.toMove(from, to);
+            if (Moves.isPromotion(move)) move = Moves.create(from, to, promotionFlag(MoveHistory.promotion(history[i])));
+            position = play(position, move);
+            moves[i] = move;
+        }
+        return moves;
+    }
+
+    private static int promotionFlag(final ChessFigure.Type type) {
+        if (type == null) return Moves.PROMOTION_QUEEN;
+        switch (type) {
+            case Knight:
+                return Moves.PROMOTION_KNIGHT;
+            case Bishop:
+                return Moves.PROMOTION_BISHOP;
+            case Castle:
+                return Moves.PROMOTION_ROOK;
+            default:
+                return Moves.PROMOTION_QUEEN;
+        }
+    }
+
+    // Позиция после хода - копия без стека отмены, чтобы длина партии не ограничивалась BitboardPosition.MAX_PLY
+    private static BitboardPosition play(final BitboardPosition position, final int move) {
+        final BitboardPosition next = new BitboardPosition(position);
+        next.makeMove(move);
+        // Взятия на проходе в правилах игры нет
+        next.setEpSquare(BitboardPosition.NO_SQUARE);
+        return next;
+    }
+
+    // Имена игроков партии через запятую, в порядке ходов
+    private static String playerNames(final ChessGame game) {
+        final StringBuilder names = new StringBuilder();
+        for (final ChessPlayer player : game.getPlayers()) {
+            if (names.length() > 0) names.append(',');
+            names.append(player.getName());
+        }
+        return names.toString();
+    }
+
+    /* Строка файла разбора: номер партии; игроки; ходов; ошибки и зевки белых; ошибки и зевки чёрных;
+    оценки позиций с точки зрения белых в сотых долях пешки через запятую
+    */
+    private static String formatResult(final int gameId, final String players, final GameAnalysis analysis) {
+        final StringBuilder line = new StringBuilder()
+                .append(gameId).append(';')
+                .append(players).append(';')
+                .append(analysis.getMoveCount()).append(';')
+                .append(analysis.count(BitboardPosition.WHITE, GameAnalysis.MISTAKE)).append(';')
+                .append(analysis.count(BitboardPosition.WHITE, GameAnalysis.BLUNDER)).append(';')
+                .append(analysis.count(BitboardPosition.BLACK, GameAnalysis.MISTAKE)).append(';')
+                .append(analysis.count(BitboardPosition.BLACK, GameAnalysis.BLUNDER)).append(';');
+        for (int ply = 0; ply <= analysis.getMoveCount(); ply++) {
+            if (ply > 0) line.append(',');
+            line.append(analysis.getEvaluation(ply));
+        }
+        return line.toString();
+    }
+
+    // Выполняется в потоке разбора
+    private void analyze(final int gameId, final String players, final BitboardPosition start,
+                         final short[] history) {
+        try {
+            final int[] moves = toEngineMoves(start, history);
+            if (moves == null) {
+                failed.incrementAndGet();
+                log.warn("analyze: the moves don't match the position, gameId={}", gameId);
+                return;
+            }
+
+            final long started = System.nanoTime();
+            final GameAnalysis analysis = analyzers.get().analyze(start, moves, moves.length, stopSignal);
+            if (analysis == null) return;     // Разбор остановлен
+            analysisNanos.addAndGet(System.nanoTime() - started);
+            analyzedPositions.addAndGet(moves.length + 1);
+
+            completed.incrementAndGet();
+            log.debug("analyze: gameId={}, analysis={}", gameId, analysis);
+            saveResult(formatResult(gameId, players, analysis));
+        } catch (final RuntimeException ex) {
+            failed.incrementAndGet();
+            log.error("analyze: failed, gameId={}", gameId, ex);
+        }
+    }
+
+    // Дописывает строку разбора в файл; потоков разбора может быть несколько
+    private synchronized void saveResult(final String line) {
+        final List<String> lines = Collections.singletonList(line);
+        try {
+            Files.write(resultsFile, lines, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (final IOException ex) {
+            log.error("saveResult: can't write the analysis, file={}", resultsFile, ex);
+        }
+    }
+
+    // Позиция партии при первом изменении и номер первого хода после неё
+    private static class GameRecord {
+
+        private final BitboardPosition start;
+        private final int firstMove;
+
+        GameRecord(final BitboardPosition start, final int firstMove) {
+            this.start = start;
+            this.firstMove = firstMove;
+        }
+
+    }
+
+    // Потоки разбора - демоны с наименьшим приоритетом; сколько из них считает одновременно, ограничивает EngineCores
+    private static class AnalysisThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger number = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable task) {
+            final Thread thread = new Thread(task, "analysis-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+
+    }
+
+}
@@ -37,13 +37,19 @@ public class Invitations implements InvitationsObservable {
     private final Map<User, Map<User, Invitation>> map = new HashMap<>();
     private final int invitationsFreqManageMinutes;
     private final int invitationsTtlMinutes;
-    private Date nextLaunch = Calendar.getInstance().getTime();
 
     public Invitations(final int invitationsFreqManageMinutes, final int invitationsTtlMinutes) {
         this.invitationsFreqManageMinutes = invitationsFreqManageMinutes;
         this.invitationsTtlMinutes = invitationsTtlMinutes;
     }
 
+    /**
+     * Возвращает периодичность (в минутах), с которой нужно вызывать checkTTLs()
+     */
+    public int getInvitationsFreqManageMinutes() {
+        return invitationsFreqManageMinutes;
+    }
+
     /**
      * Возвращает true, если targetUser был приглашён sourceUser'ом
      */
@@ -145,39 +151,31 @@ public class Invitations implements InvitationsObservable {
 
     /**
      * Управляет временем жизни отосланных приглашений.
-     * Должен вызываться из игрового цикла. Метод можно вызывать каждую игровую итерацию:
-     * Метод запускает обработку раз в n минут.
+     * Вызывается планировщиком сервера раз в getInvitationsFreqManageMinutes() минут.
      */
     public void checkTTLs() {
-        if (nextLaunch.before(Calendar.getInstance().getTime())) {
-            log.trace("checkTTLs starts process by time");
-
-            // Устанавливаем время следующей проверки TTL
-            final Calendar calendar = Calendar.getInstance();
-            calendar.add(Calendar.MINUTE, invitationsFreqManageMinutes);
-            nextLaunch = calendar.getTime();
-
-            // Для каждого приглашённого пользователя
-            final Iterator<Entry<User, Map<User, Invitation>>> it1 = map.entrySet().iterator();
-            while (it1.hasNext()) {
-                final Map<User, Invitation> invitesMap = it1.next().getValue();
-
-                // Для каждого приглашения
-                final Iterator<Entry<User, Invitation>> it2 = invitesMap.entrySet().iterator();
-                while (it2.hasNext()) {
-                    final Invitation invitation = it2.next().getValue();
-
-                    // Если TTL приглашения истекло - удаляем его
-                    if (isDateExpired(invitation.getInvitedDate(), invitationsTtlMinutes)) {
-                        log.trace("checkTTLs invitation's time expired, invitation={}", invitation);
-
-                        it2.remove();
-                    }
-                }
+        log.trace("checkTTLs");
 
-                // Если приглашений ноль - удаляем приглашённого пользователя из map
-                if (invitesMap.isEmpty()) it1.remove();
+        // Для каждого приглашённого пользователя
+        final Iterator<Entry<User, Map<User, Invitation>>> it1 = map.entrySet().iterator();
+        while (it1.hasNext()) {
+            final Map<User, Invitation> invitesMap = it1.next().getValue();
+
+            // Для каждого приглашения
+            final Iterator<Entry<User, Invitation>> it2 = invitesMap.entrySet().iterator();
+            while (it2.hasNext()) {
+                final Invitation invitation = it2.next().getValue();
+
+                // Если TTL приглашения истекло - удаляем его
+                if (isDateExpired(invitation.getInvitedDate(), invitationsTtlMinutes)) {
+                    log.trace("checkTTLs invitation's time expired, invitation={}", invitation);
+
+                    it2.remove();
+                }
             }
+
+            // Если приглашений ноль - удаляем приглашённого пользователя из map
+            if (invitesMap.isEmpty()) it1.remove();
         }
     }
 
@@ -1,6 +1,7 @@
 package edu.demidov.netchess.server.model.network;
 
 import edu.demidov.netchess.common.model.network.NetworkMessage;
+import edu.demidov.netchess.common.model.network.payload.TextPayload;
 import edu.demidov.netchess.server.model.BroadcastChat;
 import edu.demidov.netchess.server.model.Options;
 import edu.demidov.netchess.server.model.exceptions.AccessConnectedUserException;
@@ -20,7 +21,6 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.net.SocketAddress;
-import java.security.NoSuchAlgorithmException;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
@@ -60,7 +60,6 @@ public class ConnectionManager {
     private final Map<User, Connection> onlineUsers;
     private final AccountManager accountManager;    // Экземпляр AccountManager для управления аккаунтами
     private final BroadcastChat chat;
-    private Date nextLaunch = Calendar.getInstance().getTime();
 
     private ConnectionManager() {
         allConnections = new HashMap<>();
@@ -79,18 +78,17 @@ public class ConnectionManager {
      * В случае успешного создания - пользователь сразу регистрируется онлайн.
      *
      * @param userName
-     * @param password
+     * @param passwordHash хэш пароля для хранения (Authenticator.hashPassword())
      * @param channel
      * @return
      * @throws FileNotFoundException
      * @throws UserCreationException
-     * @throws java.security.NoSuchAlgorithmException
      */
-    public User createUser(final String userName, final String password, final Channel channel)
-            throws FileNotFoundException, UserCreationException, NoSuchAlgorithmException {
+    public User createUser(final String userName, final String passwordHash, final Channel channel)
+            throws FileNotFoundException, UserCreationException {
         log.trace("createUser, userName={}, channel={}", userName, channel);
         try {
-            final User logginedUser = accountManager.createUser(userName, password);
+            final User logginedUser = accountManager.createUser(userName, passwordHash);
 
             // В случае успеха - обновляем содинение для этого пользователя
             updateChannel(logginedUser, channel);
@@ -103,27 +101,18 @@ public class ConnectionManager {
 
     /**
      * Устанавливает соединение.
-     * Правильность логина обеспечивается IAccountManager.
+     * Правильность логина и пароля обеспечивается AccountManager и Authenticator - метод вызывается после них.
      * После чего для этого пользователя установится\обновится соединение.
      *
-     * @param userName
-     * @param password
+     * @param user
      * @param channel
-     * @return
      * @throws UserLoginException
-     * @throws java.security.NoSuchAlgorithmException
      */
-    public User loginUser(final String userName, final String password,
-                          final Channel channel) throws UserLoginException, NoSuchAlgorithmException {
-        log.trace("loginUser, userName={}, channel={}", userName, channel);
+    public void loginUser(final User user, final Channel channel) throws UserLoginException {
+        log.trace("loginUser, user={}, channel={}", user, channel);
         try {
-            // Проходим процедуру логина
-            final User logginedUser = accountManager.loginUser(userName, password);
-
-            // В случае успеха - обновляем содинение для этого пользователя
-            updateChannel(logginedUser, channel);
-
-            return logginedUser;
+            // Обновляем содинение для этого пользователя
+            updateChannel(user, channel);
         } catch (final IPAddressIsBanException ex) {
             throw new UserLoginException(ex.getLocalizedMessage());
         }
@@ -268,46 +257,39 @@ public class ConnectionManager {
     /**
      * Контроллирует канал.
      * Удаляем неактивные, или с истекшим TTL.
-     * Метод запускает обработку раз в n секунд.
+     * Вызывается планировщиком сервера раз в Options.CONNECTIONS_FREQ_MANAGE_SECONDS секунд.
      */
     public void manageConnections() {
-        if (nextLaunch.before(Calendar.getInstance().getTime())) {
-            log.debug("manageConnections starts process by time");
-
-            // Устанавливаем время следующей проверки TTL
-            Calendar calendar = Calendar.getInstance();
-            calendar.add(Calendar.SECOND, Options.CONNECTIONS_FREQ_MANAGE_SECONDS);
-            nextLaunch = calendar.getTime();
-
-            // Находим разницу между текущим временем и INVITES_TTL_MIN
-            calendar = Calendar.getInstance();
-            calendar.add(Calendar.SECOND, -Options.CONNECTION_UNAUTH_TTL_SECONDS);
-            final Date curDeltaDate = calendar.getTime();
-
-            final Iterator<Entry<Channel, Connection>> it = allConnections.entrySet().iterator();
-            while (it.hasNext()) {
-                final Entry<Channel, Connection> entry = it.next();
-                final Channel channel = entry.getKey();
-                final Connection connection = entry.getValue();
-
-                // Если канал неактивен - удаляем его
-                if (!channel.isActive() || connection == null) {
-                    log.trace("manageConnections: the channel not active or null - will remove, channel={}, connection={}", channel, connection);
-                    it.remove();
-                    if (connection != null) onlineUsers.remove(connection.getUser());
-                    continue;
-                }
+        log.debug("manageConnections");
 
-                // Если канал не авторизован и висит дольше TTL - удаляем его
-                if (connection.getUser() == null && connection.getOpenDate().before(curDeltaDate)) {
-                    // Закрываем канал, отправляем польз-лю сообщение, что старый канал закроется по причине TTL
-                    log.trace("manageConnections: the channel not auth and TTL expired - will remove, channel={}, connection={}", channel, connection);
-                    final NetworkMessage netMsg = new NetworkMessage(NetworkMessage.Type.SomeError);
-                    netMsg.put(NetworkMessage.TEXT, CONNECTION_TTL_EXPIRED);
-                    final ChannelFuture future = channel.writeAndFlush(netMsg);
-                    future.addListener(ChannelFutureListener.CLOSE);
-                    it.remove();
-                }
+        // Находим разницу между текущим временем и INVITES_TTL_MIN
+        final Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.SECOND, -Options.CONNECTION_UNAUTH_TTL_SECONDS);
+        final Date curDeltaDate = calendar.getTime();
+
+        final Iterator<Entry<Channel, Connection>> it = allConnections.entrySet().iterator();
+        while (it.hasNext()) {
+            final Entry<Channel, Connection> entry = it.next();
+            final Channel channel = entry.getKey();
+            final Connection connection = entry.getValue();
+
+            // Если канал неактивен - удаляем его
+            if (!channel.isActive() || connection == null) {
+                log.trace("manageConnections: the channel not active or null - will remove, channel={}, connection={}", channel, connection);
+                it.remove();
+                if (connection != null) onlineUsers.remove(connection.getUser());
+                continue;
+            }
+
+            // Если канал не авторизован и висит дольше TTL - удаляем его
+            if (connection.getUser() == null && connection.getOpenDate().before(curDeltaDate)) {
+                // Закрываем канал, отправляем польз-лю сообщение, что старый канал закроется по причине TTL
+                log.trace("manageConnections: the channel not auth and TTL expired - will remove, channel={}, connection={}", channel, connection);
+                final NetworkMessage netMsg
+                        = new NetworkMessage(NetworkMessage.Type.SomeError, new TextPayload(CONNECTION_TTL_EXPIRED));
+                final ChannelFuture future = channel.writeAndFlush(netMsg);
+                future.addListener(ChannelFutureListener.CLOSE);
+                it.remove();
             }
         }
     }
@@ -360,10 +342,9 @@ public class ConnectionManager {
         if (oldUserConnection != null && !oldUserConnection.getChannel().equals(channel)) {
             // Отправляем польз-лю сообщение, что старый канал закроется по причине логина с нового соединения
             final Channel oldChannel = oldUserConnection.getChannel();
-            final NetworkMessage netMsg = new NetworkMessage(NetworkMessage.Type.SomeError);
-            netMsg.put(
-                    NetworkMessage.TEXT,
-                    String.format(CONNECTION_WILL_CLOSE, channel.remoteAddress()));
+            final NetworkMessage netMsg = new NetworkMessage(
+                    NetworkMessage.Type.SomeError,
+                    new TextPayload(String.format(CONNECTION_WILL_CLOSE, channel.remoteAddress())));
             final ChannelFuture future = oldChannel.writeAndFlush(netMsg);
             future.addListener(ChannelFutureListener.CLOSE);
 
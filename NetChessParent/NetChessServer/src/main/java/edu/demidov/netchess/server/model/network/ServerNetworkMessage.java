@@ -6,6 +6,8 @@ import io.netty.channel.Channel;
 
 import java.util.Calendar;
 import java.util.Date;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * Класс содержит NetworkMessage, прсиланное с клиента.
@@ -13,9 +15,18 @@ import java.util.Date;
  */
 public class ServerNetworkMessage {
 
+    // Сообщения лобби: при перегрузке сервера их можно не обрабатывать
+    private static final Set<NetworkMessage.Type> LOBBY_TYPES = EnumSet.of(
+            NetworkMessage.Type.ChatSend,
+            NetworkMessage.Type.GetOnlineUsers,
+            NetworkMessage.Type.GetIncomingInviters,
+            NetworkMessage.Type.InviteToPlay,
+            NetworkMessage.Type.InviteToPlayResponse);
+
     private final NetworkMessage netMsg;
     private final Channel channel;
     private final Date timeReceived;
+    private final Runnable task;
     private User sender;
 
     public ServerNetworkMessage(final NetworkMessage netMsg, final Channel channel) {
@@ -25,6 +36,23 @@ public class ServerNetworkMessage {
         this.netMsg = netMsg;
         this.channel = channel;
         this.timeReceived = Calendar.getInstance().getTime();
+        this.task = null;
+    }
+
+    /**
+     * Создаёт внутреннее сообщение сервера - задачу, которая должна выполниться в потоке обработки сообщений.
+     * Такое сообщение не привязано ни к одному каналу и не содержит NetworkMessage (getNetMsg() - null):
+     * задачи никогда не передаются по сети.
+     *
+     * @param task
+     */
+    public ServerNetworkMessage(final Runnable task) {
+        assert task != null;
+
+        this.netMsg = null;
+        this.channel = null;
+        this.timeReceived = Calendar.getInstance().getTime();
+        this.task = task;
     }
 
     public NetworkMessage getNetMsg() {
@@ -39,6 +67,18 @@ public class ServerNetworkMessage {
         return timeReceived;
     }
 
+    public Runnable getTask() {
+        return task;
+    }
+
+    /**
+     * Можно ли отбросить сообщение, когда очередь сообщений заполнена (MessageQueue.FullPolicy.DROP_DROPPABLE).
+     * Отбрасываются только запросы лобби; ходы, соединения и задачи сервера - никогда.
+     */
+    public boolean isDroppable() {
+        return netMsg != null && LOBBY_TYPES.contains(netMsg.getType());
+    }
+
     public User getSender() {
         return sender;
     }
@@ -53,6 +93,7 @@ public class ServerNetworkMessage {
                 + "netMsg=" + netMsg
                 + ", channel=" + channel
                 + ", timeReceived=" + timeReceived
+                + ", task=" + task
                 + ", sender=" + sender
                 + "}";
     }
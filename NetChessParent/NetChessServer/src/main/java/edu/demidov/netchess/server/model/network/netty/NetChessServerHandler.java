@@ -2,30 +2,38 @@ package edu.demidov.netchess.server.model.network.netty;
 
 import edu.demidov.netchess.common.model.network.MessageQueue;
 import edu.demidov.netchess.common.model.network.NetworkMessage;
+import edu.demidov.netchess.common.model.network.netty.MessageQueueInboundHandler;
+import edu.demidov.netchess.common.model.network.payload.TextPayload;
 import edu.demidov.netchess.server.model.network.ServerNetworkMessage;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.util.ReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class NetChessServerHandler extends ChannelInboundHandlerAdapter {
+/**
+ * Кладёт сообщения клиента в очередь сообщений сервера, не останавливая поток ввода-вывода Netty
+ * (см. MessageQueueInboundHandler). Что отклонять, когда очередь заполнена, решает Options.MESSAGE_QUEUE_FULL_POLICY;
+ * отклонённому запросу клиент получает ошибку SERVER_IS_BUSY.
+ */
+public class NetChessServerHandler extends MessageQueueInboundHandler<ServerNetworkMessage> {
 
+    private static final String SERVER_IS_BUSY = "Сервер перегружен, повторите запрос позже";
     private final static Logger log = LoggerFactory.getLogger(NetChessServerHandler.class.getName());
-    private final MessageQueue messageQueue = MessageQueue.getInstance();
+
+    public NetChessServerHandler() {
+        this(MessageQueue.<ServerNetworkMessage>getInstance());
+    }
+
+    NetChessServerHandler(final MessageQueue<ServerNetworkMessage> messageQueue) {
+        super(messageQueue);
+    }
 
     @Override
     public void channelActive(final ChannelHandlerContext ctx) {
         log.debug("channelActive channel={}", ctx.channel());
-        try {
-            // Помещаем сообщение в очередь обработки
-            final NetworkMessage netMsg = new NetworkMessage(NetworkMessage.Type.ConnectionOpened);
-            final ServerNetworkMessage snm
-                    = new ServerNetworkMessage(netMsg, ctx.channel());
-            messageQueue.putMessage(snm);
-        } catch (final InterruptedException ex) {
-            log.error("channelActive channel={}", ctx.channel(), ex);
-        }
+        // Помещаем сообщение в служебную очередь обработки: у канала ещё нет сообщений, которые оно могло бы обогнать
+        final NetworkMessage netMsg = new NetworkMessage(NetworkMessage.Type.ConnectionOpened);
+        messageQueue.putServiceMessage(new ServerNetworkMessage(netMsg, ctx.channel()));
     }
 
     @Override
@@ -33,11 +41,7 @@ public class NetChessServerHandler extends ChannelInboundHandlerAdapter {
         log.trace("channelRead channel={}, msg={}", ctx.channel(), msg);
         try {
             // Помещаем сообщение в очередь сообщений
-            final ServerNetworkMessage snm
-                    = new ServerNetworkMessage((NetworkMessage) msg, ctx.channel());
-            messageQueue.putMessage(snm);
-        } catch (final InterruptedException ex) {
-            log.error("channelRead channel={}, msg={}", ctx.channel(), msg, ex);
+            enqueue(ctx, new ServerNetworkMessage((NetworkMessage) msg, ctx.channel()));
         } finally {
             ReferenceCountUtil.release(msg);
         }
@@ -46,17 +50,19 @@ public class NetChessServerHandler extends ChannelInboundHandlerAdapter {
     @Override
     public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) {
         log.trace("exceptionCaught channel={}, cause={}", ctx.channel(), cause);
-        try {
-            ctx.close();    // Close the connection when an exception is raised.
-
-            // Помещаем сообщение в очередь обработки
-            final NetworkMessage netMsg = new NetworkMessage(NetworkMessage.Type.ConnectionClosed);
-            final ServerNetworkMessage snm
-                    = new ServerNetworkMessage(netMsg, ctx.channel());
-            messageQueue.putMessage(snm);
-        } catch (final InterruptedException ex) {
-            log.error("exceptionCaught channel={}, cause={}", ctx.channel(), cause, ex);
-        }
+        ctx.close();    // Close the connection when an exception is raised.
+
+        // Помещаем сообщение в очередь обработки за уже пришедшими сообщениями канала
+        final NetworkMessage netMsg = new NetworkMessage(
+                NetworkMessage.Type.ConnectionClosed, new TextPayload(String.valueOf(cause.getLocalizedMessage())));
+        enqueueReliably(ctx, new ServerNetworkMessage(netMsg, ctx.channel()));
+    }
+
+    @Override
+    protected void onRejected(final ChannelHandlerContext ctx, final ServerNetworkMessage snm) {
+        // Очередь заполнена - сообщаем клиенту, что запрос не обработан
+        log.warn("onRejected: messageQueue is full, message rejected; channel={}, msg={}", ctx.channel(), snm.getNetMsg());
+        ctx.writeAndFlush(new NetworkMessage(NetworkMessage.Type.SomeError, new TextPayload(SERVER_IS_BUSY)));
     }
 
 }
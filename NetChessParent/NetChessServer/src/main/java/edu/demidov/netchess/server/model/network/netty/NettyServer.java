@@ -1,7 +1,10 @@
 package edu.demidov.netchess.server.model.network.netty;
 
+import edu.demidov.netchess.common.model.network.netty.NetworkMessageDecoder;
+import edu.demidov.netchess.common.model.network.netty.NetworkMessageEncoder;
 import edu.demidov.netchess.server.model.Options;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
@@ -9,9 +12,6 @@ import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.serialization.ClassResolvers;
-import io.netty.handler.codec.serialization.ObjectDecoder;
-import io.netty.handler.codec.serialization.ObjectEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,6 +21,8 @@ public class NettyServer {
     private final int BOSS_GROUP_THREADS = 1;
     private final int WORKER_GROUP_THREADS = 1;
     private final int CHANNEL_SO_BACKLOG = 128;
+    // Кодировщик без состояния - один на все каналы
+    private final NetworkMessageEncoder encoder = new NetworkMessageEncoder();
     private final String host;
     private final int port;
     /* Для небольшого проекта вполне хватит по одному потоку для 'boss' и 'worker' EventLoopGroup.
@@ -55,14 +57,16 @@ public class NettyServer {
                         public void initChannel(final SocketChannel ch) throws Exception {
                             ch.pipeline().addLast(
                                     //new LoggingHandler(LogLevel.INFO),
-                                    new ObjectEncoder(),
-                                    new ObjectDecoder(ClassResolvers.cacheDisabled(null)),
+                                    encoder,
+                                    new NetworkMessageDecoder(),
                                     new NetChessServerHandler()
                             );
                         }
                     })
                     .option(ChannelOption.SO_BACKLOG, CHANNEL_SO_BACKLOG)
-                    .childOption(ChannelOption.SO_KEEPALIVE, true);
+                    .childOption(ChannelOption.SO_KEEPALIVE, true)
+                    // Буферы кадров - из пула, а не новые на каждое сообщение
+                    .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
 
             // Bind and start to accept incoming connections.
             channelFuture = b.bind(host, port).sync();
@@ -5,7 +5,6 @@ import edu.demidov.netchess.server.model.exceptions.LoginIsBanException;
 import edu.demidov.netchess.server.model.exceptions.NoSuchUserException;
 import edu.demidov.netchess.server.model.exceptions.UserCreationException;
 import edu.demidov.netchess.server.model.exceptions.UserLoginException;
-import edu.demidov.netchess.utils.EncryptAlgorithm;
 import edu.demidov.netchess.utils.XmlSerialization;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,7 +14,6 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Serializable;
-import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -36,6 +34,9 @@ public class AccountManager {
     private static final String NAME_ALREADY_USE_EXCEPTION
             = "Пользователь с таким логином уже существует";
     private static final String LOGIN_OR_NAME_EXCEPTION = "Ошибка в логине или пароле";
+    private static final String NAME_RESERVED_EXCEPTION = "Логин '%s' зарезервирован сервером";
+    private static final String SERVICE_NAME_TAKEN_EXCEPTION
+            = "Логин служебного пользователя '%s' занят зарегистрированным пользователем";
 
     // Бан по логину
     private static final String BANNED_LOGINS_FILE = "data/banned_logins.txt",
@@ -46,7 +47,6 @@ public class AccountManager {
     private static AccountManager instance;
     private final XmlSerialization xmlSerialization;
     private final UtilUserList utilUserList;
-    private final EncryptAlgorithm encryptAlgorithm;
 
     private AccountManager() {
         UtilUserList tempUtilUserList;
@@ -61,7 +61,6 @@ public class AccountManager {
         }
 
         this.utilUserList = tempUtilUserList;
-        encryptAlgorithm = EncryptAlgorithm.getInstance();
     }
 
     public static synchronized AccountManager getInstance() {
@@ -70,27 +69,42 @@ public class AccountManager {
     }
 
     /**
-     * Создаёт аккаунт пользователя
+     * Проверяет, можно ли создать аккаунт с таким логином.
+     * Вызывается до хэширования пароля, чтобы не считать хэш для заведомо неудачного запроса.
      *
      * @param userName
-     * @param password
-     * @return
-     * @throws FileNotFoundException
      * @throws UserCreationException
-     * @throws java.security.NoSuchAlgorithmException
      */
-    public User createUser(final String userName, final String password)
-            throws FileNotFoundException, UserCreationException, NoSuchAlgorithmException {
-        log.trace("createUser userName={}", userName);
+    public void checkNewUser(final String userName) throws UserCreationException {
+        log.trace("checkNewUser userName={}", userName);
         try {
             // Проверяем имя на валидность
             checkNewNameForCreateUser(userName);
 
             // Проверяем бан по логину
             checkBannedLogins(userName);
+        } catch (final LoginIsBanException ex) {
+            log.trace("checkNewUser: login banned, userName={}", userName);
+            throw new UserCreationException(ex.getLocalizedMessage());
+        }
+    }
 
-            // Хешируем пароль
-            final String passwordHash = getHashForPassword(password);
+    /**
+     * Создаёт аккаунт пользователя
+     *
+     * @param userName
+     * @param passwordHash хэш пароля для хранения (PasswordHasher.hash())
+     * @return
+     * @throws FileNotFoundException
+     * @throws UserCreationException
+     */
+    public User createUser(final String userName, final String passwordHash)
+            throws FileNotFoundException, UserCreationException {
+        log.trace("createUser userName={}", userName);
+        try {
+            // Проверяем ещё раз: пока считался хэш, логин мог занять другой пользователь
+            checkNewNameForCreateUser(userName);
+            checkBannedLogins(userName);
 
             // Создаем пользователя
             final User user = new User(userName, passwordHash, Options.USER_RANK_DEFAULT);
@@ -109,24 +123,21 @@ public class AccountManager {
     }
 
     /**
-     * Проверяет возможность\правильность логина логина.
+     * Проверяет возможность логина (без пароля - его проверяет Authenticator).
      * В случае успеха возвращает объект пользователя
      * В случае неудачи выбрасывает исключения.
      *
      * @param userName
-     * @param password
      * @return
      * @throws UserLoginException
-     * @throws java.security.NoSuchAlgorithmException
      */
-    public User loginUser(final String userName, final String password)
-            throws UserLoginException, NoSuchAlgorithmException {
-        log.trace("loginUser userName={}", userName);
+    public User getUserForLogin(final String userName) throws UserLoginException {
+        log.trace("getUserForLogin userName={}", userName);
 
         try {
             // Проверяем есть ли такое имя
             if (!utilUserList.getUsers().containsKey(userName)) {
-                log.trace("loginUser NO_SUCH_USER_EXCEPTION");
+                log.trace("getUserForLogin NO_SUCH_USER_EXCEPTION");
                 throw new UserLoginException(String.format(
                         NO_SUCH_USER_EXCEPTION, userName));
             }
@@ -134,19 +145,9 @@ public class AccountManager {
             // Проверяем бан по логину
             checkBannedLogins(userName);
 
-            // Хешируем пароль
-            final String passwordHash = getHashForPassword(password);
-
-            // Проверяем логин, пароль
-            final User user = utilUserList.getUsers().get(userName);
-            if (!(userName.equals(user.getName()) && passwordHash.equals(user.getPasswordHash()))) {
-                log.trace("loginUser {}", LOGIN_OR_NAME_EXCEPTION);
-                throw new UserLoginException(LOGIN_OR_NAME_EXCEPTION);
-            }
-
-            return user;
+            return utilUserList.getUsers().get(userName);
         } catch (final LoginIsBanException ex) {
-            log.trace("loginUser: login banned, userName={}", userName);
+            log.trace("getUserForLogin: login banned, userName={}", userName);
             throw new UserLoginException(ex.getLocalizedMessage());
         }
     }
@@ -165,6 +166,35 @@ public class AccountManager {
         return utilUserList.getUsers().get(userName);
     }
 
+    /**
+     * Возвращает служебного пользователя (например, встроенного бота), при первом обращении создаёт его.
+     * У служебного пользователя нет пароля, поэтому войти под ним с клиента нельзя.
+     * Имя служебного пользователя должно быть зарезервировано (см. isReservedName()) - иначе его мог бы
+     * зарегистрировать человек.
+     *
+     * @param userName
+     * @return
+     * @throws FileNotFoundException
+     * @throws UserCreationException если логин уже занят пользователем с паролем
+     */
+    public User getServiceUser(final String userName) throws FileNotFoundException, UserCreationException {
+        log.trace("getServiceUser userName={}", userName);
+        assert isReservedName(userName);
+        final User existing = utilUserList.getUsers().get(userName);
+        if (existing != null) {
+            if (existing.getPasswordHash() != null) {
+                log.error("getServiceUser: the name is taken by a registered user, userName={}", userName);
+                throw new UserCreationException(String.format(SERVICE_NAME_TAKEN_EXCEPTION, userName));
+            }
+            return existing;
+        }
+
+        final User user = new User(userName, null, Options.USER_RANK_DEFAULT);
+        this.utilUserList.getUsers().put(userName, user);
+        xmlSerialization.write(this.utilUserList, FILE_NAME);
+        return user;
+    }
+
     /**
      * Сохраняет данные о пользователе
      *
@@ -191,10 +221,36 @@ public class AccountManager {
         xmlSerialization.write(this.utilUserList, FILE_NAME);
     }
 
-    // Хеширует пароль
-    private String getHashForPassword(final String password) throws NoSuchAlgorithmException {
-        return encryptAlgorithm.getHashCodeFromString(
-                EncryptAlgorithm.SHA512_ALGORITHM, password);
+    /**
+     * Завершает логин по результату проверки пароля (Authenticator.verifyPassword()).
+     * Бан по логину проверяется ещё раз. Если хэш пароля пересчитан в новом формате - сохраняет его.
+     *
+     * @param user
+     * @param passwordHash хэш для хранения, либо null, если пароль неверен
+     * @throws UserLoginException
+     * @throws FileNotFoundException
+     */
+    public void completeLogin(final User user, final String passwordHash)
+            throws UserLoginException, FileNotFoundException {
+        log.trace("completeLogin user={}", user);
+        try {
+            // Проверяем ещё раз: пока проверялся пароль, логин могли внести в чёрный список
+            checkBannedLogins(user.getName());
+        } catch (final LoginIsBanException ex) {
+            log.trace("completeLogin: login banned, user={}", user);
+            throw new UserLoginException(ex.getLocalizedMessage());
+        }
+
+        if (passwordHash == null) {
+            log.trace("completeLogin {}", LOGIN_OR_NAME_EXCEPTION);
+            throw new UserLoginException(LOGIN_OR_NAME_EXCEPTION);
+        }
+
+        if (!passwordHash.equals(user.getPasswordHash())) {
+            log.debug("completeLogin: the password hash is upgraded, user={}", user);
+            user.setPasswordHash(passwordHash);
+            xmlSerialization.write(this.utilUserList, FILE_NAME);
+        }
     }
 
     /**
@@ -213,6 +269,12 @@ public class AccountManager {
             throw new UserCreationException(NAME_LENGTH_EXCEPTION);
         }
 
+        // Проверяем, не зарезервирован ли логин сервером
+        if (isReservedName(userName)) {
+            log.trace("checkNewNameForCreateUser {}", NAME_RESERVED_EXCEPTION);
+            throw new UserCreationException(String.format(NAME_RESERVED_EXCEPTION, userName));
+        }
+
         // Проверяем не занят ли логин
         if (utilUserList.getUsers().containsKey(userName)) {
             log.trace("checkNewNameForCreateUser {}", NAME_ALREADY_USE_EXCEPTION);
@@ -220,6 +282,11 @@ public class AccountManager {
         }
     }
 
+    // Логины служебных пользователей (без учёта регистра, чтобы нельзя было выдать себя за бота)
+    private static boolean isReservedName(final String name) {
+        return Options.ENGINE_USER_NAME.equalsIgnoreCase(name);
+    }
+
     // Проверяет не внесён ли логин в чёрный список
     private void checkBannedLogins(final String name) throws LoginIsBanException {
         log.trace("checkBannedLogins name={}", name);
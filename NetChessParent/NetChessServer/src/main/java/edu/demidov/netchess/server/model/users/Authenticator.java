@@ -0,0 +1,120 @@
+package edu.demidov.netchess.server.model.users;
+
+import edu.demidov.netchess.common.model.network.MessageQueue;
+import edu.demidov.netchess.server.model.Options;
+import edu.demidov.netchess.server.model.network.ServerNetworkMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Проверка и хэширование паролей вне потока обработки сообщений.
+ * <p>
+ * Хэш считается в Options.AUTH_THREADS потоках; ждать своей очереди могут не больше Options.AUTH_QUEUE_SIZE запросов,
+ * остальные сразу отклоняются (RejectedExecutionException) - наплыв логинов после перезапуска сервера
+ * не останавливает идущие партии. Результат возвращается в очередь сообщений и обрабатывается
+ * в потоке обработки сообщений, как и всё остальное состояние сервера.
+ */
+public class Authenticator {
+
+    private final static Logger log = LoggerFactory.getLogger(Authenticator.class);
+    private static Authenticator instance;
+
+    private final MessageQueue<ServerNetworkMessage> messageQueue = MessageQueue.getInstance();
+    private final PasswordHasher passwordHasher = new PasswordHasher(Options.PASSWORD_HASH_ITERATIONS);
+    private final ThreadPoolExecutor executor;
+
+    private Authenticator() {
+        executor = new ThreadPoolExecutor(
+                Options.AUTH_THREADS, Options.AUTH_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Options.AUTH_QUEUE_SIZE), new AuthThreadFactory());
+    }
+
+    public static synchronized Authenticator getInstance() {
+        if (instance == null) {
+            instance = new Authenticator();
+        }
+        return instance;
+    }
+
+    /**
+     * Проверяет пароль пользователя. onResult получает хэш для хранения: прежний, либо пересчитанный,
+     * если прежний устарел (см. PasswordHasher.needsRehash()); null - если пароль неверен.
+     *
+     * @param user     пользователь; его хэш читается в момент вызова
+     * @param password
+     * @param onResult  вызывается в потоке обработки сообщений
+     * @param onFailure вызывается в потоке обработки сообщений, если проверка упала
+     * @throws RejectedExecutionException если очередь проверки заполнена
+     */
+    public void verifyPassword(final User user, final String password, final Consumer<String> onResult,
+                               final Runnable onFailure) {
+        final String stored = user.getPasswordHash();
+        execute(() -> {
+            if (!passwordHasher.verify(password, stored)) return null;
+            return passwordHasher.needsRehash(stored) ? passwordHasher.hash(password) : stored;
+        }, onResult, onFailure);
+    }
+
+    /**
+     * Считает хэш пароля для нового пользователя
+     *
+     * @param password
+     * @param onResult  вызывается в потоке обработки сообщений
+     * @param onFailure вызывается в потоке обработки сообщений, если хэш посчитать не удалось
+     * @throws RejectedExecutionException если очередь проверки заполнена
+     */
+    public void hashPassword(final String password, final Consumer<String> onResult, final Runnable onFailure) {
+        execute(() -> passwordHasher.hash(password), onResult, onFailure);
+    }
+
+    /**
+     * Сколько запросов ждут проверки
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public void shutdown() {
+        log.info("shutdown");
+        executor.shutdownNow();
+    }
+
+    private void execute(final Supplier<String> work, final Consumer<String> onResult, final Runnable onFailure) {
+        executor.execute(() -> {
+            final String result;
+            try {
+                result = work.get();
+            } catch (final RuntimeException ex) {
+                log.error("execute: hashing failed", ex);
+                // Клиент ждёт ответа - сообщаем об ошибке из потока обработки сообщений
+                messageQueue.putServiceMessage(new ServerNetworkMessage(onFailure));
+                return;
+            }
+            messageQueue.putServiceMessage(new ServerNetworkMessage(() -> onResult.accept(result)));
+        });
+    }
+
+    // Потоки проверки паролей - демоны
+    private static class AuthThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger number = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable task) {
+            final Thread thread = new Thread(task, "auth-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
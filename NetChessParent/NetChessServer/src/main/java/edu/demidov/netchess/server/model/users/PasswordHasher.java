@@ -0,0 +1,103 @@
+package edu.demidov.netchess.server.model.users;
+
+import edu.demidov.netchess.utils.EncryptAlgorithm;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+/**
+ * Хэш пароля для хранения: соль и многократный SHA-512 - h = SHA-512(соль, пароль),
+ * затем iterations - 1 раз h = SHA-512(h, пароль). Подбор пароля по украденному файлу пользователей
+ * дороже в iterations раз, одинаковые пароли дают разные хэши.
+ * <p>
+ * Формат: "$sha512i$iterations$соль$хэш" (соль и хэш - hex). Пароли, сохранённые раньше одним SHA-512
+ * без соли, тоже проверяются; для них needsRehash() = true.
+ * <p>
+ * Считать хэш долго, поэтому методы вызываются из потоков Authenticator, а не из потока обработки сообщений.
+ * Потокобезопасен: MessageDigest у каждого потока свой.
+ */
+public class PasswordHasher {
+
+    private static final String PREFIX = "$sha512i$";
+    private static final String SEPARATOR = "$";
+    private static final int SALT_BYTES = 16;
+
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+    private final EncryptAlgorithm encryptAlgorithm = EncryptAlgorithm.getInstance();
+
+    public PasswordHasher(final int iterations) {
+        assert iterations > 0;
+        this.iterations = iterations;
+    }
+
+    /**
+     * Хэш пароля с новой солью
+     */
+    public String hash(final String password) {
+        final byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        return PREFIX + iterations + SEPARATOR + EncryptAlgorithm.toHex(salt) + SEPARATOR
+                + EncryptAlgorithm.toHex(derive(password, salt, iterations));
+    }
+
+    /**
+     * Проверяет пароль по сохранённому хэшу (в том числе старого формата).
+     * Некорректный сохранённый хэш не подходит ни к одному паролю.
+     */
+    public boolean verify(final String password, final String stored) {
+        if (stored == null) return false;
+
+        if (!stored.startsWith(PREFIX)) {
+            // Старый формат: SHA-512 без соли
+            final byte[] expected = digest(password.getBytes());
+            return MessageDigest.isEqual(EncryptAlgorithm.toHex(expected).getBytes(), stored.getBytes());
+        }
+
+        final String[] parts = stored.substring(PREFIX.length()).split("\\" + SEPARATOR);
+        if (parts.length != 3) return false;
+        try {
+            final int storedIterations = Integer.parseInt(parts[0]);
+            if (storedIterations <= 0) return false;
+            final byte[] salt = EncryptAlgorithm.fromHex(parts[1]);
+            final byte[] expected = EncryptAlgorithm.fromHex(parts[2]);
+            return MessageDigest.isEqual(derive(password, salt, storedIterations), expected);
+        } catch (final IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Нужно ли пересчитать сохранённый хэш (старый формат или другое число повторений)
+     */
+    public boolean needsRehash(final String stored) {
+        return stored == null || !stored.startsWith(PREFIX + iterations + SEPARATOR);
+    }
+
+    private byte[] derive(final String password, final byte[] salt, final int iterations) {
+        final byte[] passwordBytes = password.getBytes(StandardCharsets.UTF_8);
+        final MessageDigest md = encryptAlgorithm.getSha512Digest();
+        md.update(salt);
+        md.update(passwordBytes);
+        final byte[] hash = md.digest();
+
+        // Результат пишется в тот же массив - на повторение новых объектов не создаётся
+        try {
+            for (int i = 1; i < iterations; i++) {
+                md.update(hash);
+                md.update(passwordBytes);
+                md.digest(hash, 0, hash.length);
+            }
+        } catch (final DigestException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return hash;
+    }
+
+    private byte[] digest(final byte[] bytes) {
+        return encryptAlgorithm.getSha512Digest().digest(bytes);
+    }
+
+}
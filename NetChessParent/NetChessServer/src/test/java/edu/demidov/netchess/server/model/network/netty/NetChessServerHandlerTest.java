@@ -0,0 +1,127 @@
+package edu.demidov.netchess.server.model.network.netty;
+
+import edu.demidov.netchess.common.model.game.chess.ChessAction;
+import edu.demidov.netchess.common.model.network.MessageQueue;
+import edu.demidov.netchess.common.model.network.NetworkMessage;
+import edu.demidov.netchess.common.model.network.payload.GameActionPayload;
+import edu.demidov.netchess.common.model.network.payload.TextPayload;
+import edu.demidov.netchess.server.model.network.ServerNetworkMessage;
+import edu.demidov.netchess.utils.Point;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class NetChessServerHandlerTest {
+
+    private static final int CAPACITY = 2;
+    private static final int MAX_MESSAGES = 10;
+
+    private MessageQueue<ServerNetworkMessage> queue;
+    private EmbeddedChannel channel;
+
+    @Before
+    public void before() {
+        createChannel(MessageQueue.FullPolicy.DROP_DROPPABLE);
+    }
+
+    @After
+    public void after() {
+        channel.finish();
+    }
+
+    @Test(timeout = 5000)
+    public void testChannelRead_WhenQueueIsFull() throws Exception {
+        // ConnectionOpened идёт служебной очередью, ходы заполняют буфер; третий ход не должен остановить поток
+        for (int i = 0; i < CAPACITY + 1; i++) {
+            channel.writeInbound(move());
+        }
+        assertFalse(channel.config().isAutoRead());
+        assertEquals(CAPACITY + 1, queue.size());
+
+        final List<ServerNetworkMessage> taken = new ArrayList<>();
+        queue.drainTo(taken, MAX_MESSAGES);
+        assertEquals(NetworkMessage.Type.ConnectionOpened, taken.get(0).getNetMsg().getType());
+
+        // Отложенный ход попадает в очередь при повторе, чтение канала возобновляется
+        Thread.sleep(NetChessServerHandler.RETRY_MILLIS * 2);
+        channel.runPendingTasks();
+        assertTrue(channel.config().isAutoRead());
+        final ServerNetworkMessage retried = queue.pollMessage();
+        assertEquals(NetworkMessage.Type.DoAction, retried.getNetMsg().getType());
+        assertSame(channel, retried.getChannel());
+        assertEquals(0, queue.getRejected());
+    }
+
+    @Test(timeout = 5000)
+    public void testChannelRead_WhenQueueIsFullAndDroppable() {
+        for (int i = 0; i < CAPACITY; i++) {
+            channel.writeInbound(move());
+        }
+
+        // Сообщение лобби отклоняется сразу, клиенту уходит ошибка, чтение не останавливается
+        channel.writeInbound(new NetworkMessage(NetworkMessage.Type.ChatSend, new TextPayload("hi")));
+        final NetworkMessage error = (NetworkMessage) channel.readOutbound();
+        assertEquals(NetworkMessage.Type.SomeError, error.getType());
+        assertNull(channel.readOutbound());
+        assertTrue(channel.config().isAutoRead());
+        assertEquals(1, queue.getRejected());
+    }
+
+    @Test(timeout = 5000)
+    public void testChannelRead_WhenQueueIsFullAndReject() {
+        channel.finish();
+        createChannel(MessageQueue.FullPolicy.REJECT);
+        for (int i = 0; i < CAPACITY + 1; i++) {
+            channel.writeInbound(move());
+        }
+
+        // При FullPolicy.REJECT отклоняется и ход: клиенту уходит ошибка, чтение не останавливается
+        final NetworkMessage error = (NetworkMessage) channel.readOutbound();
+        assertEquals(NetworkMessage.Type.SomeError, error.getType());
+        assertTrue(channel.config().isAutoRead());
+        assertEquals(1, queue.getRejected());
+    }
+
+    @Test(timeout = 5000)
+    public void testExceptionCaught_WhenMessagesArePending() throws Exception {
+        for (int i = 0; i < CAPACITY + 1; i++) {
+            channel.writeInbound(move());
+        }
+        channel.pipeline().fireExceptionCaught(new IllegalStateException("error"));
+
+        // Закрытие соединения не обгоняет сообщения канала, которые пришли раньше
+        final List<ServerNetworkMessage> taken = new ArrayList<>();
+        queue.drainTo(taken, MAX_MESSAGES);
+        Thread.sleep(NetChessServerHandler.RETRY_MILLIS * 2);
+        channel.runPendingTasks();
+        queue.drainTo(taken, MAX_MESSAGES);
+
+        assertEquals(CAPACITY + 3, taken.size());
+        assertEquals(NetworkMessage.Type.ConnectionOpened, taken.get(0).getNetMsg().getType());
+        for (int i = 1; i <= CAPACITY + 1; i++) {
+            assertEquals(NetworkMessage.Type.DoAction, taken.get(i).getNetMsg().getType());
+        }
+        assertEquals(NetworkMessage.Type.ConnectionClosed, taken.get(CAPACITY + 2).getNetMsg().getType());
+    }
+
+    private void createChannel(final MessageQueue.FullPolicy fullPolicy) {
+        queue = new MessageQueue<>(CAPACITY, fullPolicy, ServerNetworkMessage::isDroppable);
+        channel = new EmbeddedChannel(new NetChessServerHandler(queue));
+    }
+
+    private static NetworkMessage move() {
+        final ChessAction action = new ChessAction(ChessAction.Type.Move, new Point[]{Point.of(4, 6), Point.of(4, 4)});
+        return new NetworkMessage(NetworkMessage.Type.DoAction, new GameActionPayload(action));
+    }
+
+}
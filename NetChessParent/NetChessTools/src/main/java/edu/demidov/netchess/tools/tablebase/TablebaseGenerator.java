@@ -0,0 +1,380 @@
+package edu.demidov.netchess.tools.tablebase;
+
+import edu.demidov.netchess.game.engine.tablebase.Endgame;
+import edu.demidov.netchess.game.engine.tablebase.Tablebase;
+import edu.demidov.netchess.game.rules.bitboard.BitboardPosition;
+import edu.demidov.netchess.game.rules.bitboard.Bitboards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Строит таблицы эндшпиля (Endgame) ретроградным анализом.
+ * <p>
+ * Сначала помечаются маты и заведомые ничьи (пат, взятие фигуры слабым королём). Затем по уровням:
+ * из позиций, проигранных за n полуходов, обратными ходами сильной стороны находятся позиции, выигранные за n + 1;
+ * из позиций, выигранных за n, обратными ходами слабого короля - кандидаты на проигрыш за n + 1,
+ * и кандидат проигран, только если все его ходы ведут к уже найденным выигрышам.
+ * Превращение пешки выводит из таблицы: исход берётся из уже построенных таблиц KQK и KRK,
+ * превращение в лёгкую фигуру - ничья. Всё, что не найдено, - ничья.
+ * <p>
+ * Запуск: java ... TablebaseGenerator [каталог] - строит все таблицы в каталог (по умолчанию data/tablebases).
+ */
+public class TablebaseGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(TablebaseGenerator.class);
+    private static final String DEFAULT_DIRECTORY = "data/tablebases";
+    private static final int[] PROMOTIONS = {
+            BitboardPosition.QUEEN, BitboardPosition.ROOK, BitboardPosition.BISHOP, BitboardPosition.KNIGHT};
+    // Ничья, известная до анализа; в готовой таблице - Tablebase.DRAW
+    private static final byte DRAW_MARK = -1;
+    private static final String CODE_OVERFLOW_EXCEPTION = "Слишком длинный мат для таблицы: %d полуходов";
+
+    // Построенные таблицы: нужны для превращений пешки
+    private final Map<Endgame, byte[]> generated = new EnumMap<>(Endgame.class);
+
+    public static void main(final String[] args) throws IOException {
+        final Path directory = Paths.get(args.length > 0 ? args[0] : DEFAULT_DIRECTORY);
+        Files.createDirectories(directory);
+
+        final TablebaseGenerator generator = new TablebaseGenerator();
+        for (final Endgame endgame : Endgame.values()) {
+            final long started = System.nanoTime();
+            final byte[] codes = generator.generate(endgame);
+            final Path file = directory.resolve(endgame.fileName());
+            Tablebase.write(file, endgame, codes);
+            log.info("{}: positions={}, longest mate={} plies, file={} ({} bytes), time={} ms", endgame, codes.length,
+                    longestMate(codes), file, Files.size(file),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        }
+    }
+
+    /**
+     * Самый длинный выигрыш таблицы, в полуходах
+     */
+    public static int longestMate(final byte[] codes) {
+        int longest = 0;
+        for (final byte code : codes) {
+            if (Tablebase.isWin(code)) longest = Math.max(longest, Tablebase.distance(code));
+        }
+        return longest;
+    }
+
+    /**
+     * Строит таблицу эндшпиля (коды Tablebase по индексам Endgame).
+     * Таблицы, в которые ведут превращения пешки, строятся раньше и запоминаются.
+     */
+    public byte[] generate(final Endgame endgame) {
+        byte[] codes = generated.get(endgame);
+        if (codes == null) {
+            codes = new Generation(endgame).run();
+            generated.put(endgame, codes);
+        }
+        return codes;
+    }
+
+    // Эндшпиль, где фигура сильной стороны с номером piece заменена на type, либо null (такой таблицы нет)
+    private static Endgame replacePiece(final Endgame endgame, final int piece, final int type) {
+        final int[] pieces = endgame.getPieces();
+        pieces[piece] = type;
+        Arrays.sort(pieces);
+
+        for (final Endgame other : Endgame.values()) {
+            final int[] otherPieces = other.getPieces();
+            Arrays.sort(otherPieces);
+            if (Arrays.equals(pieces, otherPieces)) return other;
+        }
+        return null;
+    }
+
+    // Построение одной таблицы
+    private class Generation {
+
+        private final Endgame endgame;
+        private final int[] pieces;
+        private final byte[] codes;
+        private final BitSet legal;
+        // Выигрыш превращением пешки (код), 0 - нет; только для эндшпилей с пешками
+        private final byte[] promotionWins;
+        private int longestPromotionWin;
+
+        // Буферы клеток: текущая позиция, предыдущая (до обратного хода), следующая (после хода)
+        private final int[] squares, previous, next;
+
+        Generation(final Endgame endgame) {
+            this.endgame = endgame;
+            pieces = endgame.getPieces();
+            codes = new byte[endgame.size()];
+            legal = new BitSet(endgame.size());
+            promotionWins = endgame.hasPawns() ? new byte[endgame.size()] : null;
+
+            final int count = Endgame.FIRST_PIECE + pieces.length;
+            squares = new int[count];
+            previous = new int[count];
+            next = new int[count];
+        }
+
+        byte[] run() {
+            markTerminalPositions();
+
+            for (int plies = 0; ; plies++) {
+                final int code = Tablebase.code(plies);
+                if (code >= Byte.MAX_VALUE) throw new IllegalStateException(String.format(CODE_OVERFLOW_EXCEPTION, plies));
+
+                if (promotionWins != null && plies % 2 == 1) {
+                    for (int index = 0; index < codes.length; index++) {
+                        if (promotionWins[index] == code && codes[index] == 0) codes[index] = (byte) code;
+                    }
+                }
+
+                boolean isFound = false;
+                for (int index = 0; index < codes.length; index++) {
+                    if (codes[index] != code) continue;
+                    isFound = true;
+                    if (plies % 2 == 0) {
+                        retractStrongMoves(index, plies);
+                    } else {
+                        retractWeakMoves(index, plies);
+                    }
+                }
+                if (!isFound && plies >= longestPromotionWin) break;
+            }
+
+            for (int index = 0; index < codes.length; index++) {
+                if (codes[index] == DRAW_MARK) codes[index] = Tablebase.DRAW;
+            }
+            return codes;
+        }
+
+        // Отмечает допустимые позиции, маты, заведомые ничьи и выигрыши превращением
+        private void markTerminalPositions() {
+            for (int index = 0; index < codes.length; index++) {
+                final boolean isStrongToMove = endgame.decode(index, squares);
+                // Индексы, не используемые из-за симметрии, считаются невозможными позициями
+                if (!isLegal(squares, isStrongToMove) || endgame.index(squares, isStrongToMove) != index) continue;
+                legal.set(index);
+
+                if (isStrongToMove) {
+                    if (promotionWins != null) markPromotionWin(index);
+                    continue;
+                }
+
+                final int weakKing = squares[Endgame.WEAK_KING];
+                final long occupied = occupied(squares);
+                final long attacked = strongAttacks(squares, occupied & ~Bitboards.bit(weakKing));
+                final long targets = Bitboards.KING_ATTACKS[weakKing] & ~attacked;
+
+                if ((targets & occupied) != 0) {
+                    codes[index] = DRAW_MARK;           // король берёт незащищённую фигуру
+                } else if (targets == 0) {
+                    final boolean isCheck = (attacked & Bitboards.bit(weakKing)) != 0;
+                    codes[index] = isCheck ? (byte) Tablebase.code(0) : DRAW_MARK;   // мат или пат
+                }
+            }
+        }
+
+        // Ищет превращения пешки, после которых таблица эндшпиля с новой фигурой даёт выигрыш
+        private void markPromotionWin(final int index) {
+            final long occupied = occupied(squares);
+            for (int piece = 0; piece < pieces.length; piece++) {
+                final int square = squares[Endgame.FIRST_PIECE + piece];
+                if (pieces[piece] != BitboardPosition.PAWN || Bitboards.y(square) != 1) continue;
+                final int target = square - Bitboards.SIZE;
+                if ((occupied & Bitboards.bit(target)) != 0) continue;
+
+                for (final int type : PROMOTIONS) {
+                    final Endgame promoted = replacePiece(endgame, piece, type);
+                    if (promoted == null) continue;     // например, KBK - ничья
+
+                    final int code = generate(promoted)[promoted.index(promotedSquares(promoted, piece, type, target),
+                            false)];
+                    if (!Tablebase.isLoss(code)) continue;
+
+                    final int winCode = Tablebase.code(Tablebase.distance(code) + 1);
+                    if (promotionWins[index] == 0 || winCode < promotionWins[index]) {
+                        promotionWins[index] = (byte) winCode;
+                        longestPromotionWin = Math.max(longestPromotionWin, Tablebase.distance(winCode));
+                    }
+                }
+            }
+        }
+
+        // Клетки позиции эндшпиля promoted после превращения фигуры piece в type на клетке target
+        private int[] promotedSquares(final Endgame promoted, final int piece, final int type, final int target) {
+            final int[] promotedPieces = promoted.getPieces();
+            final int[] result = new int[Endgame.FIRST_PIECE + promotedPieces.length];
+            result[Endgame.STRONG_KING] = squares[Endgame.STRONG_KING];
+            result[Endgame.WEAK_KING] = squares[Endgame.WEAK_KING];
+
+            final boolean[] isUsed = new boolean[pieces.length];
+            for (int i = 0; i < promotedPieces.length; i++) {
+                for (int j = 0; j < pieces.length; j++) {
+                    final int oldType = j == piece ? type : pieces[j];
+                    if (!isUsed[j] && oldType == promotedPieces[i]) {
+                        isUsed[j] = true;
+                        result[Endgame.FIRST_PIECE + i] = j == piece ? target : squares[Endgame.FIRST_PIECE + j];
+                        break;
+                    }
+                }
+            }
+            return result;
+        }
+
+        // Позиция index проиграна за plies: все обратные ходы сильной стороны ведут к выигрышу за plies + 1
+        private void retractStrongMoves(final int index, final int plies) {
+            endgame.decode(index, squares);
+            final long occupied = occupied(squares);
+
+            for (int i = 0; i < squares.length; i++) {
+                if (i == Endgame.WEAK_KING) continue;
+
+                long origins = retractions(i, squares[i], occupied);
+                while (origins != 0) {
+                    final int origin = Bitboards.firstSquare(origins);
+                    origins &= origins - 1;
+
+                    System.arraycopy(squares, 0, previous, 0, squares.length);
+                    previous[i] = origin;
+                    final int previousIndex = endgame.index(previous, true);
+                    if (legal.get(previousIndex) && codes[previousIndex] == 0) {
+                        codes[previousIndex] = (byte) Tablebase.code(plies + 1);
+                    }
+                }
+            }
+        }
+
+        // Позиция index выиграна за plies: обратные ходы слабого короля дают кандидатов на проигрыш за plies + 1
+        private void retractWeakMoves(final int index, final int plies) {
+            endgame.decode(index, squares);
+            long origins = Bitboards.KING_ATTACKS[squares[Endgame.WEAK_KING]] & ~occupied(squares);
+
+            while (origins != 0) {
+                final int origin = Bitboards.firstSquare(origins);
+                origins &= origins - 1;
+
+                System.arraycopy(squares, 0, previous, 0, squares.length);
+                previous[Endgame.WEAK_KING] = origin;
+                final int previousIndex = endgame.index(previous, false);
+                if (legal.get(previousIndex) && codes[previousIndex] == 0 && isEveryMoveLost(previous)) {
+                    codes[previousIndex] = (byte) Tablebase.code(plies + 1);
+                }
+            }
+        }
+
+        // Все ходы слабого короля из позиции position ведут к уже найденным выигрышам сильной стороны
+        private boolean isEveryMoveLost(final int[] position) {
+            final int weakKing = position[Endgame.WEAK_KING];
+            final long occupied = occupied(position);
+            long targets = Bitboards.KING_ATTACKS[weakKing] & ~occupied
+                    & ~strongAttacks(position, occupied & ~Bitboards.bit(weakKing));
+
+            while (targets != 0) {
+                final int target = Bitboards.firstSquare(targets);
+                targets &= targets - 1;
+
+                System.arraycopy(position, 0, next, 0, position.length);
+                next[Endgame.WEAK_KING] = target;
+                if (!Tablebase.isWin(codes[endgame.index(next, true)])) return false;
+            }
+            return true;
+        }
+
+        // Клетки, откуда фигура с номером i могла прийти на square, не взяв ничего
+        private long retractions(final int i, final int square, final long occupied) {
+            if (i == Endgame.STRONG_KING) return Bitboards.KING_ATTACKS[square] & ~occupied;
+
+            switch (pieces[i - Endgame.FIRST_PIECE]) {
+                case BitboardPosition.KNIGHT:
+                    return Bitboards.KNIGHT_ATTACKS[square] & ~occupied;
+                case BitboardPosition.BISHOP:
+                    return Bitboards.bishopAttacks(square, occupied) & ~occupied;
+                case BitboardPosition.ROOK:
+                    return Bitboards.rookAttacks(square, occupied) & ~occupied;
+                case BitboardPosition.QUEEN:
+                    return Bitboards.queenAttacks(square, occupied) & ~occupied;
+                case BitboardPosition.PAWN:
+                    return pawnRetractions(square, occupied);
+                default:
+                    return 0L;
+            }
+        }
+
+        // Пешка сильной стороны идёт к y = 0: пришла с соседней клетки сзади или на 2 клетки со второй горизонтали
+        private long pawnRetractions(final int square, final long occupied) {
+            final int y = Bitboards.y(square);
+            if (y + 1 >= Bitboards.SIZE - 1) return 0L;
+
+            final long behind = Bitboards.bit(square + Bitboards.SIZE);
+            if ((occupied & behind) != 0) return 0L;
+
+            long origins = behind;
+            if (y + 2 == Bitboards.SIZE - 2 && (occupied & Bitboards.bit(square + 2 * Bitboards.SIZE)) == 0) {
+                origins |= Bitboards.bit(square + 2 * Bitboards.SIZE);
+            }
+            return origins;
+        }
+
+        private boolean isLegal(final int[] position, final boolean isStrongToMove) {
+            final long occupied = occupied(position);
+            if (Long.bitCount(occupied) != position.length) return false;
+
+            for (int i = 0; i < pieces.length; i++) {
+                final int y = Bitboards.y(position[Endgame.FIRST_PIECE + i]);
+                if (pieces[i] == BitboardPosition.PAWN && (y == 0 || y == Bitboards.SIZE - 1)) return false;
+            }
+
+            final int weakKing = position[Endgame.WEAK_KING];
+            if ((Bitboards.KING_ATTACKS[position[Endgame.STRONG_KING]] & Bitboards.bit(weakKing)) != 0) return false;
+
+            // Ходит сильная сторона - слабому королю не может быть шаха
+            return !isStrongToMove || (strongAttacks(position, occupied) & Bitboards.bit(weakKing)) == 0;
+        }
+
+        // Клетки, которые бьют король и фигуры сильной стороны
+        private long strongAttacks(final int[] position, final long occupied) {
+            long attacks = Bitboards.KING_ATTACKS[position[Endgame.STRONG_KING]];
+            for (int i = 0; i < pieces.length; i++) {
+                final int square = position[Endgame.FIRST_PIECE + i];
+                switch (pieces[i]) {
+                    case BitboardPosition.PAWN:
+                        attacks |= Bitboards.PAWN_ATTACKS[BitboardPosition.WHITE][square];
+                        break;
+                    case BitboardPosition.KNIGHT:
+                        attacks |= Bitboards.KNIGHT_ATTACKS[square];
+                        break;
+                    case BitboardPosition.BISHOP:
+                        attacks |= Bitboards.bishopAttacks(square, occupied);
+                        break;
+                    case BitboardPosition.ROOK:
+                        attacks |= Bitboards.rookAttacks(square, occupied);
+                        break;
+                    case BitboardPosition.QUEEN:
+                        attacks |= Bitboards.queenAttacks(square, occupied);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return attacks;
+        }
+
+        private long occupied(final int[] position) {
+            long occupied = 0L;
+            for (final int square : position) {
+                occupied |= Bitboards.bit(square);
+            }
+            return occupied;
+        }
+
+    }
+
+}
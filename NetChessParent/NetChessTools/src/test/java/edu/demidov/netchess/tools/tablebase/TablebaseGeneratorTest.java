@@ -0,0 +1,136 @@
+package edu.demidov.netchess.tools.tablebase;
+
+import edu.demidov.netchess.game.engine.tablebase.Endgame;
+import edu.demidov.netchess.game.engine.tablebase.Tablebase;
+import edu.demidov.netchess.game.engine.tablebase.Tablebases;
+import edu.demidov.netchess.game.rules.bitboard.BitboardPosition;
+import edu.demidov.netchess.game.rules.bitboard.MoveGenerator;
+import edu.demidov.netchess.game.rules.bitboard.Moves;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TablebaseGeneratorTest {
+
+    // Самые длинные маты: ферзём - 10 ходов, ладьёй - 16 (ходит сильная сторона)
+    private static final int KQK_LONGEST_MATE = 19;
+    private static final int KRK_LONGEST_MATE = 31;
+    private static final Endgame[] ENDGAMES = {Endgame.KQK, Endgame.KRK, Endgame.KPK};
+
+    private static TablebaseGenerator generator;
+    private static Path directory;
+    private static Tablebases tablebases;
+
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        generator = new TablebaseGenerator();
+        directory = Files.createTempDirectory("tablebases");
+        for (final Endgame endgame : ENDGAMES) {
+            Tablebase.write(directory.resolve(endgame.fileName()), endgame, generator.generate(endgame));
+        }
+        tablebases = Tablebases.open(directory);
+    }
+
+    @AfterClass
+    public static void afterClass() throws IOException {
+        for (final Endgame endgame : ENDGAMES) {
+            Files.deleteIfExists(directory.resolve(endgame.fileName()));
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void testGenerate_WhenKnownLongestMates() {
+        assertEquals(KQK_LONGEST_MATE, TablebaseGenerator.longestMate(generator.generate(Endgame.KQK)));
+        assertEquals(KRK_LONGEST_MATE, TablebaseGenerator.longestMate(generator.generate(Endgame.KRK)));
+    }
+
+    @Test
+    public void testWrite_WhenPacked() throws IOException {
+        final byte[] codes = generator.generate(Endgame.KQK);
+        final Tablebase table = Tablebase.open(directory.resolve(Endgame.KQK.fileName()), Endgame.KQK);
+
+        // Коды KQK до 20 - 5 бит на позицию
+        assertEquals(5, table.getBits());
+        for (int index = 0; index < codes.length; index++) {
+            assertEquals(codes[index], table.get(index));
+        }
+    }
+
+    @Test
+    public void testProbe_WhenPositionInTables() {
+        // Мат: ходит проигравший, 0 полуходов
+        final int mated = tablebases.probe(position("k7/2K5/8/8/8/8/8/Q7 b - - 0 1"));
+        assertEquals(Tablebase.code(0), mated);
+
+        // Король перед пешкой на 6-й горизонтали выигрывает; пешка на 7-й при ходе чёрных - пат
+        assertTrue(Tablebase.isWin(tablebases.probe(position("4k3/8/4K3/4P3/8/8/8/8 w - - 0 1"))));
+        assertTrue(Tablebase.isLoss(tablebases.probe(position("4k3/8/4K3/4P3/8/8/8/8 b - - 0 1"))));
+        assertEquals(Tablebase.DRAW, tablebases.probe(position("4k3/4P3/4K3/8/8/8/8/8 b - - 0 1")));
+
+        // Та же позиция за чёрных: доска переворачивается
+        assertTrue(Tablebase.isWin(tablebases.probe(position("8/8/8/8/4p3/4k3/8/4K3 b - - 0 1"))));
+        assertEquals(Tablebase.DRAW, tablebases.probe(position("8/8/8/8/8/4k3/4p3/4K3 w - - 0 1")));
+
+        // Ладья под боем без защиты - ничья
+        assertEquals(Tablebase.DRAW, tablebases.probe(position("8/8/8/3Kr3/8/8/8/k7 w - - 0 1")));
+    }
+
+    @Test
+    public void testProbe_WhenPositionNotInTables() {
+        assertEquals(Tablebases.UNKNOWN, tablebases.probe(position("4k3/8/8/8/8/8/8/4K2R w K - 0 1")));
+        assertEquals(Tablebases.UNKNOWN, tablebases.probe(position("4k3/8/8/8/8/8/8/2B1KN2 w - - 0 1")));
+        assertEquals(Tablebases.UNKNOWN, tablebases.probe(position("4k3/4p3/8/8/8/8/4P3/4K3 w - - 0 1")));
+    }
+
+    @Test
+    public void testBestMove_WhenPlayedToMate() {
+        // Обе стороны играют по таблицам: мат ровно через столько полуходов, сколько обещано
+        final BitboardPosition position = position("8/8/8/3k4/8/8/8/R3K3 w - - 0 1");
+        final int code = tablebases.probe(position);
+        assertTrue(Tablebase.isWin(code));
+
+        int plies = 0;
+        int move;
+        while ((move = tablebases.bestMove(position)) != Moves.NO_MOVE) {
+            position.makeMove(move);
+            plies++;
+            assertEquals(Tablebase.distance(code) - plies, Tablebase.distance(tablebases.probe(position)));
+        }
+        assertEquals(Tablebase.distance(code), plies);
+        assertTrue(position.isInCheck(position.getSideToMove()));
+        assertEquals(0, MoveGenerator.generateLegalMoves(position, new int[MoveGenerator.MAX_MOVES]));
+    }
+
+    @Test
+    public void testBestMove_WhenPawnPromotes() {
+        // Пешка проходит в ферзи и дальше - мат по таблице KQK
+        final BitboardPosition position = position("8/8/8/8/8/3K4/3P4/5k2 w - - 0 1");
+        final int code = tablebases.probe(position);
+        assertTrue(Tablebase.isWin(code));
+
+        int plies = 0;
+        int move;
+        while ((move = tablebases.bestMove(position)) != Moves.NO_MOVE) {
+            position.makeMove(move);
+            position.setEpSquare(BitboardPosition.NO_SQUARE);
+            plies++;
+        }
+        assertEquals(Tablebase.distance(code), plies);
+        assertTrue(position.isInCheck(position.getSideToMove()));
+    }
+
+    private BitboardPosition position(final String fen) {
+        final BitboardPosition position = new BitboardPosition();
+        position.loadFen(fen);
+        return position;
+    }
+
+}